@@ -0,0 +1,197 @@
+/*
+ * Copyright 2018 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog.event.deserialization;
+
+import com.github.shyiko.mysql.binlog.io.ByteArrayInputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DECIMAL decoding: the way it used to be done (bytes copied out of the event buffer and then folded through
+ * BigDecimal.movePointRight/add/movePointLeft) vs {@link AbstractRowsEventDataDeserializer#readDecimal} /
+ * {@link AbstractRowsEventDataDeserializer#readUnscaledDecimal} (9-digit groups accumulated into a long straight
+ * from the buffer).
+ * <pre>
+ * ./mvnw -P benchmark test-compile exec:exec@benchmark -Dbenchmark=DecimalDeserializationBenchmark
+ * # add "-prof gc" (e.g. -Dbenchmark="DecimalDeserializationBenchmark -prof gc") to compare allocation rates
+ * </pre>
+ *
+ * @author <a href="mailto:stanley.shyiko@gmail.com">Stanley Shyiko</a>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DecimalDeserializationBenchmark {
+
+    private static final int DIG_PER_DEC = 9;
+    private static final int[] DIG_TO_BYTES = {0, 1, 1, 2, 2, 3, 3, 4, 4, 4};
+    private static final int NUMBER_OF_VALUES = 1024; // so that JIT would not be able to fold the result
+
+    /**
+     * "precision,scale" (JMH injects @Param values into non-private fields only).
+     */
+    @Param({ "10,2", "18,4", "30,10", "65,30" })
+    // checkstyle, please ignore VisibilityModifier for the next line
+    public String decimal;
+
+    private int precision;
+    private int scale;
+    private int decimalLength;
+    private byte[][] values;
+    private int index;
+    private final ByteArrayInputStream inputStream = new ByteArrayInputStream(new byte[0]);
+
+    @Setup
+    public void setUp() {
+        String[] split = decimal.split(",");
+        precision = Integer.parseInt(split[0]);
+        scale = Integer.parseInt(split[1]);
+        int x = precision - scale, ipd = x / DIG_PER_DEC, fpd = scale / DIG_PER_DEC;
+        decimalLength = (ipd << 2) + DIG_TO_BYTES[x - ipd * DIG_PER_DEC] +
+            (fpd << 2) + DIG_TO_BYTES[scale - fpd * DIG_PER_DEC];
+        Random random = new Random(0);
+        values = new byte[NUMBER_OF_VALUES][];
+        for (int i = 0; i < values.length; i++) {
+            BigInteger unscaled = new BigInteger(precision * 4, random).mod(BigInteger.TEN.pow(precision));
+            values[i] = encode(random.nextBoolean() ? unscaled : unscaled.negate());
+        }
+    }
+
+    @Benchmark
+    public BigDecimal legacy() throws IOException {
+        nextValue();
+        return legacyAsBigDecimal(precision, scale, inputStream.read(decimalLength));
+    }
+
+    @Benchmark
+    public BigDecimal readDecimal() throws IOException {
+        nextValue();
+        return AbstractRowsEventDataDeserializer.readDecimal(precision, scale, inputStream);
+    }
+
+    /**
+     * Primitive accessor (DECIMAL(M&lt;=18) only, wider precisions fall back to {@link #readDecimal()}).
+     */
+    @Benchmark
+    public long readUnscaledDecimal() throws IOException {
+        nextValue();
+        if (precision > 18) {
+            BigDecimal value = AbstractRowsEventDataDeserializer.readDecimal(precision, scale, inputStream);
+            return value.unscaledValue().longValue();
+        }
+        return AbstractRowsEventDataDeserializer.readUnscaledDecimal(precision, scale, inputStream);
+    }
+
+    private void nextValue() {
+        byte[] value = values[index++ & (NUMBER_OF_VALUES - 1)];
+        inputStream.setBuffer(value, 0, value.length);
+    }
+
+    /**
+     * mysql/strings/decimal.c#decimal2bin
+     */
+    private byte[] encode(BigInteger unscaled) {
+        StringBuilder digits = new StringBuilder(unscaled.abs().toString());
+        while (digits.length() < precision) {
+            digits.insert(0, '0');
+        }
+        byte[] result = new byte[decimalLength];
+        int x = precision - scale, position = 0, offset = 0;
+        int[] groups = {x % DIG_PER_DEC, x / DIG_PER_DEC, scale / DIG_PER_DEC, scale % DIG_PER_DEC};
+        for (int g = 0; g < groups.length; g++) {
+            boolean partial = g == 0 || g == 3;
+            int count = partial ? (groups[g] > 0 ? 1 : 0) : groups[g];
+            int groupDigits = partial ? groups[g] : DIG_PER_DEC;
+            for (int i = 0; i < count; i++) {
+                int group = Integer.parseInt(digits.substring(position, position + groupDigits));
+                position += groupDigits;
+                for (int b = DIG_TO_BYTES[groupDigits] - 1; b >= 0; b--) {
+                    result[offset++] = (byte) (group >>> (b << 3));
+                }
+            }
+        }
+        if (unscaled.signum() < 0) {
+            for (int i = 0; i < result.length; i++) {
+                result[i] = (byte) ~result[i];
+            }
+        }
+        result[0] ^= 0x80;
+        return result;
+    }
+
+    /**
+     * AbstractRowsEventDataDeserializer.asBigDecimal prior to the unscaled long fast path (kept as is for comparison).
+     */
+    private static BigDecimal legacyAsBigDecimal(int precision, int scale, byte[] value) {
+        boolean positive = (value[0] & 0x80) == 0x80;
+        value[0] ^= 0x80;
+        if (!positive) {
+            for (int i = 0; i < value.length; i++) {
+                value[i] ^= 0xFF;
+            }
+        }
+        int x = precision - scale;
+        int ipDigits = x / DIG_PER_DEC;
+        int ipDigitsX = x - ipDigits * DIG_PER_DEC;
+        int ipSize = (ipDigits << 2) + DIG_TO_BYTES[ipDigitsX];
+        int offset = DIG_TO_BYTES[ipDigitsX];
+        BigDecimal ip = offset > 0 ? BigDecimal.valueOf(bigEndianInteger(value, 0, offset)) : BigDecimal.ZERO;
+        for (; offset < ipSize; offset += 4) {
+            int i = bigEndianInteger(value, offset, 4);
+            ip = ip.movePointRight(DIG_PER_DEC).add(BigDecimal.valueOf(i));
+        }
+        int shift = 0;
+        BigDecimal fp = BigDecimal.ZERO;
+        for (; shift + DIG_PER_DEC <= scale; shift += DIG_PER_DEC, offset += 4) {
+            int i = bigEndianInteger(value, offset, 4);
+            fp = fp.add(BigDecimal.valueOf(i).movePointLeft(shift + DIG_PER_DEC));
+        }
+        if (shift < scale) {
+            int i = bigEndianInteger(value, offset, DIG_TO_BYTES[scale - shift]);
+            fp = fp.add(BigDecimal.valueOf(i).movePointLeft(scale));
+        }
+        BigDecimal result = ip.add(fp);
+        return positive ? result : result.negate();
+    }
+
+    private static int bigEndianInteger(byte[] bytes, int offset, int length) {
+        int result = 0;
+        for (int i = offset; i < (offset + length); i++) {
+            byte b = bytes[i];
+            result = (result << 8) | (b >= 0 ? (int) b : (b + 256));
+        }
+        return result;
+    }
+
+}
@@ -16,13 +16,16 @@
 package com.github.shyiko.mysql.binlog;
 
 import com.github.shyiko.mysql.binlog.event.Event;
+import com.github.shyiko.mysql.binlog.event.EventData;
 import com.github.shyiko.mysql.binlog.event.EventHeader;
 import com.github.shyiko.mysql.binlog.event.EventHeaderV4;
 import com.github.shyiko.mysql.binlog.event.EventType;
 import com.github.shyiko.mysql.binlog.event.GtidEventData;
 import com.github.shyiko.mysql.binlog.event.QueryEventData;
 import com.github.shyiko.mysql.binlog.event.RotateEventData;
+import com.github.shyiko.mysql.binlog.event.TransactionPayloadEventData;
 import com.github.shyiko.mysql.binlog.event.deserialization.ChecksumType;
+import com.github.shyiko.mysql.binlog.event.deserialization.EventChecksumMismatchException;
 import com.github.shyiko.mysql.binlog.event.deserialization.EventDataDeserializationException;
 import com.github.shyiko.mysql.binlog.event.deserialization.EventDataDeserializer;
 import com.github.shyiko.mysql.binlog.event.deserialization.EventDeserializer;
@@ -34,6 +37,7 @@ import com.github.shyiko.mysql.binlog.io.ByteArrayInputStream;
 import com.github.shyiko.mysql.binlog.jmx.BinaryLogClientMXBean;
 import com.github.shyiko.mysql.binlog.network.AuthenticationException;
 import com.github.shyiko.mysql.binlog.network.ClientCapabilities;
+import com.github.shyiko.mysql.binlog.network.CompressionAlgorithm;
 import com.github.shyiko.mysql.binlog.network.DefaultSSLSocketFactory;
 import com.github.shyiko.mysql.binlog.network.SSLMode;
 import com.github.shyiko.mysql.binlog.network.SSLSocketFactory;
@@ -42,8 +46,9 @@ import com.github.shyiko.mysql.binlog.network.SocketFactory;
 import com.github.shyiko.mysql.binlog.network.TLSHostnameVerifier;
 import com.github.shyiko.mysql.binlog.network.protocol.ErrorPacket;
 import com.github.shyiko.mysql.binlog.network.protocol.GreetingPacket;
-import com.github.shyiko.mysql.binlog.network.protocol.Packet;
+import com.github.shyiko.mysql.binlog.network.protocol.PacketBuffer;
 import com.github.shyiko.mysql.binlog.network.protocol.PacketChannel;
+import com.github.shyiko.mysql.binlog.network.protocol.PacketRingBuffer;
 import com.github.shyiko.mysql.binlog.network.protocol.ResultSetRowPacket;
 import com.github.shyiko.mysql.binlog.network.protocol.command.AuthenticateCommand;
 import com.github.shyiko.mysql.binlog.network.protocol.command.AuthenticateNativePasswordCommand;
@@ -62,17 +67,23 @@ import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.net.SocketException;
+import java.nio.channels.SocketChannel;
 import java.security.GeneralSecurityException;
 import java.security.cert.X509Certificate;
+import java.util.ArrayDeque;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -112,8 +123,6 @@ public class BinaryLogClient implements BinaryLogClientMXBean {
     };
     private static final SSLSocketFactory DEFAULT_VERIFY_CA_SSL_MODE_SOCKET_FACTORY = new DefaultSSLSocketFactory();
 
-    // https://dev.mysql.com/doc/internals/en/sending-more-than-16mbyte.html
-    private static final int MAX_PACKET_LENGTH = 16777215;
 
     private final Logger logger = Logger.getLogger(getClass().getName());
 
@@ -129,12 +138,14 @@ public class BinaryLogClient implements BinaryLogClientMXBean {
     private volatile long binlogPosition = 4;
     private volatile long connectionId;
     private SSLMode sslMode = SSLMode.DISABLED;
+    private CompressionAlgorithm compressionAlgorithm = CompressionAlgorithm.UNCOMPRESSED;
 
-    private GtidSet gtidSet;
+    // written by event/connect thread(s) only (under gtidSetAccessLock), read by anyone without locking
+    private volatile GtidSetSnapshot gtidSet;
     private final Object gtidSetAccessLock = new Object();
     private boolean gtidSetFallbackToPurged;
     private boolean useBinlogFilenamePositionInGtidMode;
-    private String gtid;
+    private GtidEventData gtid;
     private boolean tx;
 
     private EventDeserializer eventDeserializer = new EventDeserializer();
@@ -142,8 +153,18 @@ public class BinaryLogClient implements BinaryLogClientMXBean {
     private final List<EventListener> eventListeners = new CopyOnWriteArrayList<EventListener>();
     private final List<LifecycleListener> lifecycleListeners = new CopyOnWriteArrayList<LifecycleListener>();
 
+    private int packetRingBufferSize;
+    private PacketRingBuffer.WaitStrategy packetRingBufferWaitStrategy = PacketRingBuffer.WaitStrategy.BLOCKING;
+    private volatile PacketRingBuffer packetRingBuffer;
+
+    private Executor rowsDeserializationExecutor;
+    private int maxNumberOfPendingRowsEvents = 256;
+    // row events handed over to rowsDeserializationExecutor (in binlog order), accessed by the dispatching thread only
+    private final ArrayDeque<Future<Event>> pendingEvents = new ArrayDeque<Future<Event>>();
+
     private SocketFactory socketFactory;
     private SSLSocketFactory sslSocketFactory;
+    private boolean useSocketChannel;
 
     private volatile PacketChannel channel;
     private volatile boolean connected;
@@ -225,6 +246,26 @@ public class BinaryLogClient implements BinaryLogClientMXBean {
         this.sslMode = sslMode;
     }
 
+    /**
+     * @see #setCompressionAlgorithm(CompressionAlgorithm)
+     */
+    public CompressionAlgorithm getCompressionAlgorithm() {
+        return compressionAlgorithm;
+    }
+
+    /**
+     * @param compressionAlgorithm compression protocol to use ({@link CompressionAlgorithm#UNCOMPRESSED} by default).
+     * Trades CPU for bandwidth (binlog is usually highly compressible), which makes sense for consumers that are
+     * network-bound (e.g. cross-datacenter replication). If server does not support requested algorithm, client falls
+     * back to the next best thing (zstd -&gt; zlib -&gt; uncompressed).
+     */
+    public void setCompressionAlgorithm(CompressionAlgorithm compressionAlgorithm) {
+        if (compressionAlgorithm == null) {
+            throw new IllegalArgumentException("Compression algorithm cannot be NULL");
+        }
+        this.compressionAlgorithm = compressionAlgorithm;
+    }
+
     /**
      * @return server id (65535 by default)
      * @see #setServerId(long)
@@ -296,9 +337,17 @@ public class BinaryLogClient implements BinaryLogClientMXBean {
      * @see #setGtidSet(String)
      */
     public String getGtidSet() {
-        synchronized (gtidSetAccessLock) {
-            return gtidSet != null ? gtidSet.toString() : null;
-        }
+        GtidSetSnapshot gtidSet = this.gtidSet;
+        return gtidSet != null ? gtidSet.toString() : null;
+    }
+
+    /**
+     * @return consistent (immutable) GTID set as of the last committed transaction (or null if client is not in
+     * GTID mode). Unlike {@link #getGtidSet()}, this method neither blocks nor builds GTID set string.
+     * @see #getGtidSet()
+     */
+    public GtidSetSnapshot getGtidSetSnapshot() {
+        return gtidSet;
     }
 
     /**
@@ -316,7 +365,9 @@ public class BinaryLogClient implements BinaryLogClientMXBean {
             this.binlogFilename = "";
         }
         synchronized (gtidSetAccessLock) {
-            this.gtidSet = gtidSet != null ? new GtidSet(gtidSet) : null;
+            GtidSetSnapshot current = this.gtidSet;
+            this.gtidSet = gtidSet != null ?
+                new GtidSetSnapshot(new GtidSet(gtidSet), current != null ? current.getVersion() + 1 : 0) : null;
         }
     }
 
@@ -459,6 +510,102 @@ public class BinaryLogClient implements BinaryLogClientMXBean {
         this.eventDeserializer = eventDeserializer;
     }
 
+    /**
+     * @return size of the ring buffer used to pass raw packets from socket reader thread to the event dispatching
+     * one, 0 if events are read and dispatched by the same thread (default).
+     * @see #setPacketRingBufferSize(int)
+     */
+    public int getPacketRingBufferSize() {
+        return packetRingBufferSize;
+    }
+
+    /**
+     * @param packetRingBufferSize number of raw packets that can be buffered between a dedicated socket reader thread
+     * and the thread deserializing/dispatching events (rounded up to the next power of two). If set, slow
+     * {@link EventListener}s no longer stall TCP reads (back-pressure is applied only when ring buffer is full).
+     * 0 (default) means that socket is read, events are deserialized and dispatched by the same thread.
+     * @see #setPacketRingBufferWaitStrategy(PacketRingBuffer.WaitStrategy)
+     * @see #getPacketRingBufferDepth()
+     */
+    public void setPacketRingBufferSize(int packetRingBufferSize) {
+        if (packetRingBufferSize < 0) {
+            throw new IllegalArgumentException("Packet ring buffer size cannot be negative");
+        }
+        this.packetRingBufferSize = packetRingBufferSize;
+    }
+
+    /**
+     * @see #setPacketRingBufferWaitStrategy(PacketRingBuffer.WaitStrategy)
+     */
+    public PacketRingBuffer.WaitStrategy getPacketRingBufferWaitStrategy() {
+        return packetRingBufferWaitStrategy;
+    }
+
+    /**
+     * @param packetRingBufferWaitStrategy strategy socket reader/event dispatching threads use while waiting on
+     * full/empty ring buffer, {@link PacketRingBuffer.WaitStrategy#BLOCKING} by default.
+     * @see #setPacketRingBufferSize(int)
+     */
+    public void setPacketRingBufferWaitStrategy(PacketRingBuffer.WaitStrategy packetRingBufferWaitStrategy) {
+        if (packetRingBufferWaitStrategy == null) {
+            throw new IllegalArgumentException("Wait strategy cannot be NULL");
+        }
+        this.packetRingBufferWaitStrategy = packetRingBufferWaitStrategy;
+    }
+
+    /**
+     * @return number of packets read from the socket but not yet dispatched (always 0 unless
+     * {@link #setPacketRingBufferSize(int)} is set)
+     */
+    public int getPacketRingBufferDepth() {
+        PacketRingBuffer ringBuffer = this.packetRingBuffer;
+        return ringBuffer != null ? ringBuffer.size() : 0;
+    }
+
+    /**
+     * @see #setRowsDeserializationExecutor(Executor)
+     */
+    public Executor getRowsDeserializationExecutor() {
+        return rowsDeserializationExecutor;
+    }
+
+    /**
+     * @param rowsDeserializationExecutor executor to deserialize WRITE_ROWS/UPDATE_ROWS/DELETE_ROWS (and their EXT_
+     * counterparts) data with (e.g. {@code Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors())}
+     * or a {@code ForkJoinPool}). Events are still delivered to {@link EventListener}s in binlog order. Executor is
+     * not managed by the client (it's up to the caller to shut it down). Body of each rows event is copied out of the
+     * (reusable) packet buffer before being handed over to the executor (except for events &gt;16MB, chunks of which
+     * are shared as is). null (default) means that all events are
+     * deserialized by the thread dispatching them.
+     * Note that executor is only used if rows event data deserializer is an instance of
+     * {@link com.github.shyiko.mysql.binlog.event.deserialization.AbstractRowsEventDataDeserializer} and no
+     * {@link com.github.shyiko.mysql.binlog.event.deserialization.RowListener} is set (rows handed over to the listener
+     * are always decoded by the thread dispatching the events, in binlog order).
+     * @see #setMaxNumberOfPendingRowsEvents(int)
+     */
+    public void setRowsDeserializationExecutor(Executor rowsDeserializationExecutor) {
+        this.rowsDeserializationExecutor = rowsDeserializationExecutor;
+    }
+
+    /**
+     * @see #setMaxNumberOfPendingRowsEvents(int)
+     */
+    public int getMaxNumberOfPendingRowsEvents() {
+        return maxNumberOfPendingRowsEvents;
+    }
+
+    /**
+     * @param maxNumberOfPendingRowsEvents max number of row events being deserialized by
+     * {@link #setRowsDeserializationExecutor(Executor)} at any given time (256 by default). Once limit is reached
+     * client stops reading until the oldest one is dispatched.
+     */
+    public void setMaxNumberOfPendingRowsEvents(int maxNumberOfPendingRowsEvents) {
+        if (maxNumberOfPendingRowsEvents < 1) {
+            throw new IllegalArgumentException("Max number of pending rows events must be positive");
+        }
+        this.maxNumberOfPendingRowsEvents = maxNumberOfPendingRowsEvents;
+    }
+
     /**
      * @param socketFactory custom socket factory. If not provided, socket will be created with "new Socket()".
      */
@@ -466,6 +613,22 @@ public class BinaryLogClient implements BinaryLogClientMXBean {
         this.socketFactory = socketFactory;
     }
 
+    /**
+     * @see #setUseSocketChannel(boolean)
+     */
+    public boolean isUseSocketChannel() {
+        return useSocketChannel;
+    }
+
+    /**
+     * @param useSocketChannel true if connection should be established using {@link SocketChannel} (in which case
+     * incoming data is read into a pooled direct buffer, saving a kernel-to-heap copy), false otherwise (default).
+     * Note that {@link #setSocketFactory(SocketFactory)} is ignored when this option is on.
+     */
+    public void setUseSocketChannel(boolean useSocketChannel) {
+        this.useSocketChannel = useSocketChannel;
+    }
+
     /**
      * @param sslSocketFactory custom ssl socket factory
      */
@@ -556,8 +719,9 @@ public class BinaryLogClient implements BinaryLogClientMXBean {
             connectionId = greetingPacket.getThreadId();
             if ("".equals(binlogFilename)) {
                 synchronized (gtidSetAccessLock) {
-                    if (gtidSet != null && "".equals(gtidSet.toString()) && gtidSetFallbackToPurged) {
-                        gtidSet = new GtidSet(fetchGtidPurged(channel));
+                    GtidSetSnapshot current = gtidSet;
+                    if (current != null && "".equals(current.toString()) && gtidSetFallbackToPurged) {
+                        gtidSet = new GtidSetSnapshot(new GtidSet(fetchGtidPurged(channel)), current.getVersion() + 1);
                     }
                 }
             }
@@ -597,10 +761,8 @@ public class BinaryLogClient implements BinaryLogClientMXBean {
         }
         connected = true;
         if (logger.isLoggable(Level.INFO)) {
-            String position;
-            synchronized (gtidSetAccessLock) {
-                position = gtidSet != null ? gtidSet.toString() : binlogFilename + "/" + binlogPosition;
-            }
+            GtidSetSnapshot gtidSet = this.gtidSet;
+            String position = gtidSet != null ? gtidSet.toString() : binlogFilename + "/" + binlogPosition;
             logger.info("Connected to " + hostname + ":" + port + " at " + position +
                 " (" + (blocking ? "sid:" + serverId + ", " : "") + "cid:" + connectionId + ")");
         }
@@ -609,15 +771,29 @@ public class BinaryLogClient implements BinaryLogClientMXBean {
 
     private void ensureEventDeserializerHasRequiredEDDs() {
         ensureEventDataDeserializerIfPresent(EventType.ROTATE, RotateEventDataDeserializer.class);
-        synchronized (gtidSetAccessLock) {
-            if (gtidSet != null) {
-                ensureEventDataDeserializerIfPresent(EventType.GTID, GtidEventDataDeserializer.class);
-                ensureEventDataDeserializerIfPresent(EventType.QUERY, QueryEventDataDeserializer.class);
-            }
+        if (gtidSet != null) {
+            ensureEventDataDeserializerIfPresent(EventType.GTID, GtidEventDataDeserializer.class);
+            ensureEventDataDeserializerIfPresent(EventType.QUERY, QueryEventDataDeserializer.class);
         }
+        // binlog filename/position (and GTID set) tracking must not be affected by
+        // EventDeserializer::setIncludedEventTypes (otherwise client would resume from the wrong place)
+        eventDeserializer.setRequiredEventTypes(gtidSet != null ?
+            EnumSet.of(EventType.ROTATE, EventType.GTID, EventType.XID, EventType.QUERY,
+                EventType.TRANSACTION_PAYLOAD) :
+            EnumSet.of(EventType.ROTATE));
     }
 
     private PacketChannel openChannel(final long connectTimeout) throws IOException {
+        if (useSocketChannel) {
+            SocketChannel socketChannel = SocketChannel.open();
+            try {
+                socketChannel.socket().connect(new InetSocketAddress(hostname, port), (int) connectTimeout);
+                return new PacketChannel(socketChannel);
+            } catch (IOException e) {
+                socketChannel.close();
+                throw e;
+            }
+        }
         Socket socket = socketFactory != null ? socketFactory.createSocket() : new Socket();
         socket.connect(new InetSocketAddress(hostname, port), (int) connectTimeout);
         return new PacketChannel(socket);
@@ -686,15 +862,14 @@ public class BinaryLogClient implements BinaryLogClientMXBean {
     private void requestBinaryLogStream(final PacketChannel channel) throws IOException {
         long serverId = blocking ? this.serverId : 0; // http://bugs.mysql.com/bug.php?id=71178
         Command dumpBinaryLogCommand;
-        synchronized (gtidSetAccessLock) {
-            if (gtidSet != null) {
-                dumpBinaryLogCommand = new DumpBinaryLogGtidCommand(serverId,
-                    useBinlogFilenamePositionInGtidMode ? binlogFilename : "",
-                    useBinlogFilenamePositionInGtidMode ? binlogPosition : 4,
-                    gtidSet);
-            } else {
-                dumpBinaryLogCommand = new DumpBinaryLogCommand(serverId, binlogFilename, binlogPosition);
-            }
+        GtidSetSnapshot gtidSet = this.gtidSet;
+        if (gtidSet != null) {
+            dumpBinaryLogCommand = new DumpBinaryLogGtidCommand(serverId,
+                useBinlogFilenamePositionInGtidMode ? binlogFilename : "",
+                useBinlogFilenamePositionInGtidMode ? binlogPosition : 4,
+                gtidSet.toGtidSet());
+        } else {
+            dumpBinaryLogCommand = new DumpBinaryLogCommand(serverId, binlogFilename, binlogPosition);
         }
         channel.write(dumpBinaryLogCommand);
     }
@@ -745,6 +920,8 @@ public class BinaryLogClient implements BinaryLogClientMXBean {
         AuthenticateCommand authenticateCommand = new AuthenticateCommand(schema, username, password,
             greetingPacket.getScramble());
         authenticateCommand.setCollation(collation);
+        CompressionAlgorithm compressionAlgorithm = negotiateCompressionAlgorithm(greetingPacket);
+        authenticateCommand.setCompressionAlgorithm(compressionAlgorithm);
         channel.write(authenticateCommand, packetNumber);
         byte[] authenticationResult = channel.read();
         if (authenticationResult[0] != (byte) 0x00 /* ok */) {
@@ -759,6 +936,27 @@ public class BinaryLogClient implements BinaryLogClientMXBean {
                 throw new AuthenticationException("Unexpected authentication result (" + authenticationResult[0] + ")");
             }
         }
+        if (compressionAlgorithm != CompressionAlgorithm.UNCOMPRESSED) {
+            // everything past the handshake goes through compressed packet envelope
+            channel.enableCompression(compressionAlgorithm);
+        }
+    }
+
+    private CompressionAlgorithm negotiateCompressionAlgorithm(GreetingPacket greetingPacket) {
+        int serverCapabilities = greetingPacket.getServerCapabilities();
+        CompressionAlgorithm result = compressionAlgorithm;
+        if (result == CompressionAlgorithm.ZSTD &&
+                (serverCapabilities & ClientCapabilities.ZSTD_COMPRESSION_ALGORITHM) == 0) {
+            result = CompressionAlgorithm.ZLIB;
+        }
+        if (result == CompressionAlgorithm.ZLIB && (serverCapabilities & ClientCapabilities.COMPRESS) == 0) {
+            result = CompressionAlgorithm.UNCOMPRESSED;
+        }
+        if (result != compressionAlgorithm && logger.isLoggable(Level.INFO)) {
+            logger.info("MySQL server does not support " + compressionAlgorithm + " compression (" +
+                (result == CompressionAlgorithm.UNCOMPRESSED ? "compression is disabled" : "using " + result) + ")");
+        }
+        return result;
     }
 
     private void switchAuthentication(final PacketChannel channel, byte[] authenticationResult, boolean usingSSLSocket)
@@ -962,50 +1160,11 @@ public class BinaryLogClient implements BinaryLogClientMXBean {
     }
 
     private void listenForEventPackets(final PacketChannel channel) throws IOException {
-        ByteArrayInputStream inputStream = channel.getInputStream();
         boolean completeShutdown = false;
         try {
-            while (inputStream.peek() != -1) {
-                int packetLength = inputStream.readInteger(3);
-                //noinspection ResultOfMethodCallIgnored
-                inputStream.skip(1); // 1 byte for sequence
-                int marker = inputStream.read();
-                if (marker == 0xFF) {
-                    ErrorPacket errorPacket = new ErrorPacket(inputStream.read(packetLength - 1));
-                    throw new ServerException(errorPacket.getErrorMessage(), errorPacket.getErrorCode(),
-                        errorPacket.getSqlState());
-                }
-                if (marker == 0xFE && !blocking) {
-                    completeShutdown = true;
-                    break;
-                }
-                Event event;
-                try {
-                    event = eventDeserializer.nextEvent(packetLength == MAX_PACKET_LENGTH ?
-                        new ByteArrayInputStream(readPacketSplitInChunks(inputStream, packetLength - 1)) :
-                        inputStream);
-                    if (event == null) {
-                        throw new EOFException();
-                    }
-                } catch (Exception e) {
-                    Throwable cause = e instanceof EventDataDeserializationException ? e.getCause() : e;
-                    if (cause instanceof EOFException || cause instanceof SocketException) {
-                        throw e;
-                    }
-                    if (connected) {
-                        for (LifecycleListener lifecycleListener : lifecycleListeners) {
-                            lifecycleListener.onEventDeserializationFailure(this, e);
-                        }
-                    }
-                    continue;
-                }
-                if (connected) {
-                    eventLastSeen = System.currentTimeMillis();
-                    updateGtidSet(event);
-                    notifyEventListeners(event);
-                    updateClientBinlogFilenameAndPosition(event);
-                }
-            }
+            completeShutdown = packetRingBufferSize > 0 ?
+                listenForEventPacketsUsingReaderThread(channel) :
+                listenForEventPacketsUsingCurrentThread(channel);
         } catch (Exception e) {
             if (connected) {
                 for (LifecycleListener lifecycleListener : lifecycleListeners) {
@@ -1013,6 +1172,7 @@ public class BinaryLogClient implements BinaryLogClientMXBean {
                 }
             }
         } finally {
+            pendingEvents.clear();
             if (connected) {
                 if (completeShutdown) {
                     disconnect(); // initiate complete shutdown sequence (which includes keep alive thread)
@@ -1023,17 +1183,234 @@ public class BinaryLogClient implements BinaryLogClientMXBean {
         }
     }
 
-    private byte[] readPacketSplitInChunks(ByteArrayInputStream inputStream, int packetLength) throws IOException {
-        byte[] result = inputStream.read(packetLength);
-        int chunkLength;
-        do {
-            chunkLength = inputStream.readInteger(3);
-            //noinspection ResultOfMethodCallIgnored
-            inputStream.skip(1); // 1 byte for sequence
-            result = Arrays.copyOf(result, result.length + chunkLength);
-            inputStream.fill(result, result.length - chunkLength, chunkLength);
-        } while (chunkLength == Packet.MAX_LENGTH);
-        return result;
+    /**
+     * @return true if end of stream has been reached in non-blocking mode, false otherwise
+     */
+    private boolean listenForEventPacketsUsingCurrentThread(final PacketChannel channel) throws Exception {
+        ByteArrayInputStream inputStream = channel.getInputStream();
+        // event packets are read into a reusable buffer (as a whole) so that EventDeserializer could decode them
+        // by index instead of pulling bytes one by one out of the socket stream
+        PacketBuffer packet = new PacketBuffer();
+        while (inputStream.peek() != -1) {
+            packet.readFrom(inputStream);
+            try {
+                if (!processEventPacket(packet)) {
+                    return true;
+                }
+            } finally {
+                packet.clear(); // so that oversized packet would not be kept around until the next one arrives
+            }
+        }
+        dispatchPendingEvents(true);
+        return false;
+    }
+
+    /**
+     * Socket is read by a dedicated thread (into a {@link PacketRingBuffer}) while current thread deserializes and
+     * dispatches events. This way slow event listeners do not stall TCP reads (until ring buffer is full).
+     * @return true if end of stream has been reached in non-blocking mode, false otherwise
+     */
+    private boolean listenForEventPacketsUsingReaderThread(final PacketChannel channel) throws Exception {
+        final ByteArrayInputStream inputStream = channel.getInputStream();
+        final PacketRingBuffer ringBuffer = new PacketRingBuffer(packetRingBufferSize, packetRingBufferWaitStrategy);
+        newNamedThread(new Runnable() {
+
+            @Override
+            public void run() {
+                Exception failure = null;
+                try {
+                    while (inputStream.peek() != -1) {
+                        PacketBuffer packet = ringBuffer.claim();
+                        if (packet == null) {
+                            break; // consumer is gone
+                        }
+                        packet.readFrom(inputStream);
+                        ringBuffer.publish();
+                    }
+                } catch (Exception e) {
+                    failure = e;
+                } finally {
+                    ringBuffer.complete(failure);
+                }
+            }
+        }, "blc-reader-" + hostname + ":" + port).start();
+        packetRingBuffer = ringBuffer;
+        try {
+            for (PacketBuffer packet; (packet = ringBuffer.take()) != null; ) {
+                try {
+                    if (!processEventPacket(packet)) {
+                        return true;
+                    }
+                } finally {
+                    ringBuffer.release();
+                }
+            }
+            if (ringBuffer.getFailure() != null) {
+                throw ringBuffer.getFailure();
+            }
+            dispatchPendingEvents(true);
+            return false;
+        } finally {
+            packetRingBuffer = null;
+            ringBuffer.close(); // in case reader is waiting for a free slot
+        }
+    }
+
+    /**
+     * @return false if end of stream has been reached in non-blocking mode, true otherwise
+     */
+    private boolean processEventPacket(PacketBuffer packet) throws Exception {
+        ByteArrayInputStream inputStream = packet.getInputStream();
+        int marker = inputStream.read();
+        if (marker == 0xFF) {
+            ErrorPacket errorPacket = new ErrorPacket(inputStream.read(inputStream.available()));
+            throw new ServerException(errorPacket.getErrorMessage(), errorPacket.getErrorCode(),
+                errorPacket.getSqlState());
+        }
+        if (marker == 0xFE && !blocking) {
+            dispatchPendingEvents(true);
+            return false;
+        }
+        if (rowsDeserializationExecutor != null) {
+            Future<Event> event;
+            try {
+                if (inputStream.peek() == -1) {
+                    throw new EOFException();
+                }
+                event = eventDeserializer.nextEvent(inputStream, rowsDeserializationExecutor);
+            } catch (Exception e) {
+                handleEventDeserializationFailure(e);
+                return true;
+            }
+            if (event == null) {
+                eventLastSeen = System.currentTimeMillis(); // excluded (see EventDeserializer::setIncludedEventTypes)
+                return true;
+            }
+            pendingEvents.add(event);
+            // anything that is not a row event (e.g. XID/COMMIT closing the transaction) is deserialized synchronously
+            // and flushes the queue so that events are never held back waiting for the next one to arrive
+            dispatchPendingEvents(!isRowsEvent(event));
+            return true;
+        }
+        Event event;
+        try {
+            if (inputStream.peek() == -1) {
+                throw new EOFException();
+            }
+            event = eventDeserializer.nextEvent(inputStream);
+        } catch (Exception e) {
+            handleEventDeserializationFailure(e);
+            return true;
+        }
+        if (event == null) {
+            eventLastSeen = System.currentTimeMillis(); // excluded (see EventDeserializer::setIncludedEventTypes)
+            return true;
+        }
+        dispatchEvent(event);
+        return true;
+    }
+
+    /**
+     * Dispatch (in order) events from the head of {@link #pendingEvents} that were already deserialized (waiting for
+     * deserialization to complete if {@code all} is true or there are too many pending events).
+     */
+    private void dispatchPendingEvents(boolean all) throws Exception {
+        Future<Event> future;
+        while ((future = pendingEvents.peek()) != null &&
+                (all || future.isDone() || pendingEvents.size() > maxNumberOfPendingRowsEvents)) {
+            pendingEvents.poll();
+            Event event;
+            try {
+                event = future.get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                handleEventDeserializationFailure((Exception) cause);
+                continue;
+            }
+            dispatchEvent(event);
+        }
+    }
+
+    private static boolean isRowsEvent(Future<Event> future) throws InterruptedException {
+        if (!future.isDone()) {
+            return true;
+        }
+        try {
+            return EventType.isRowMutation(future.get().getHeader().getEventType());
+        } catch (ExecutionException e) {
+            return true;
+        }
+    }
+
+    private void handleEventDeserializationFailure(Exception e) throws Exception {
+        Throwable cause = e instanceof EventDataDeserializationException ? e.getCause() : e;
+        if (cause instanceof EOFException || cause instanceof SocketException) {
+            throw e;
+        }
+        if (connected) {
+            for (LifecycleListener lifecycleListener : lifecycleListeners) {
+                lifecycleListener.onEventDeserializationFailure(this, e);
+            }
+        }
+        if (e instanceof EventChecksumMismatchException) {
+            // event got corrupted (most likely in transit), skipping it would mean losing data. instead, connection
+            // is dropped (same as in case of any other communication failure) so that (provided keepAlive is on)
+            // client could reconnect and re-read it starting from the last successfully dispatched event
+            throw e;
+        }
+    }
+
+    private void dispatchEvent(Event event) throws IOException {
+        if (connected) {
+            eventLastSeen = System.currentTimeMillis();
+            updateGtidSet(event);
+            // excluded events might still come through (see EventDeserializer::setRequiredEventTypes)
+            boolean included = eventDeserializer.isIncluded(event.getHeader().getEventType());
+            if (included) {
+                notifyEventListeners(event);
+            }
+            if (event.getHeader().getEventType() == EventType.TRANSACTION_PAYLOAD) {
+                dispatchTransactionPayload(event, included);
+            }
+            updateClientBinlogFilenameAndPosition(event);
+        }
+    }
+
+    /**
+     * Dispatch events embedded into TRANSACTION_PAYLOAD (right after the TRANSACTION_PAYLOAD itself, so that
+     * listeners do not need to know about binlog_transaction_compression). Binlog position is advanced only once
+     * the whole payload has been dispatched.
+     * @param notify false if embedded events should only be used to update GTID set (listeners are not notified)
+     * @throws IOException if payload could not be inflated/deserialized (in full)
+     */
+    private void dispatchTransactionPayload(Event event, boolean notify) throws IOException {
+        EventData eventData = EventDataWrapper.internal(event.getData());
+        if (!(eventData instanceof TransactionPayloadEventData)) {
+            return;
+        }
+        try {
+            for (Event embeddedEvent : (TransactionPayloadEventData) eventData) {
+                updateGtidSet(embeddedEvent);
+                if (notify && eventDeserializer.isIncluded(embeddedEvent.getHeader().getEventType())) {
+                    notifyEventListeners(embeddedEvent);
+                }
+            }
+        } catch (IllegalStateException e) {
+            if (!(e.getCause() instanceof IOException)) {
+                throw e;
+            }
+            IOException cause = (IOException) e.getCause();
+            for (LifecycleListener lifecycleListener : lifecycleListeners) {
+                lifecycleListener.onEventDeserializationFailure(this, cause);
+            }
+            // part of the transaction might have been dispatched already, but the rest of it (XID included) cannot
+            // be. same as in case of a checksum mismatch, connection is dropped (binlog position is not advanced past
+            // TRANSACTION_PAYLOAD) so that (provided keepAlive is on) client could reconnect and re-read it
+            throw cause;
+        }
     }
 
     private void updateClientBinlogFilenameAndPosition(Event event) {
@@ -1056,16 +1433,13 @@ public class BinaryLogClient implements BinaryLogClientMXBean {
     }
 
     private void updateGtidSet(Event event) {
-        synchronized (gtidSetAccessLock) {
-            if (gtidSet == null) {
-                return;
-            }
+        if (gtidSet == null) {
+            return;
         }
         EventHeader eventHeader = event.getHeader();
         switch(eventHeader.getEventType()) {
             case GTID:
-                GtidEventData gtidEventData = (GtidEventData) EventDataWrapper.internal(event.getData());
-                gtid = gtidEventData.getGtid();
+                gtid = (GtidEventData) EventDataWrapper.internal(event.getData());
                 break;
             case XID:
                 commitGtid();
@@ -1095,7 +1469,11 @@ public class BinaryLogClient implements BinaryLogClientMXBean {
     private void commitGtid() {
         if (gtid != null) {
             synchronized (gtidSetAccessLock) {
-                gtidSet.add(gtid);
+                GtidSetSnapshot current = gtidSet;
+                if (current != null) {
+                    gtidSet = current.add(gtid.getSourceIdMostSignificantBits(),
+                        gtid.getSourceIdLeastSignificantBits(), gtid.getTransactionId());
+                }
             }
         }
     }
@@ -1292,6 +1670,12 @@ public class BinaryLogClient implements BinaryLogClientMXBean {
         /**
          * Called in case of failed event deserialization. Note this type of error does NOT cause client to
          * disconnect. If you wish to stop receiving events you'll need to fire client.disconnect() manually.
+         * <p>
+         * Event checksum mismatch (see {@link EventDeserializer#setVerifyChecksums(boolean)}) is reported here too
+         * (with ex being {@link EventChecksumMismatchException}). Unlike other failures it's followed by
+         * {@link #onCommunicationFailure(BinaryLogClient, Exception)} and disconnect (event is not skipped, client
+         * reconnects (if keepAlive is on) and re-reads it). Same goes for TRANSACTION_PAYLOAD that could not be
+         * inflated/deserialized in full (as some of the embedded events might have been dispatched already).
          */
         void onEventDeserializationFailure(BinaryLogClient client, Exception ex);
 
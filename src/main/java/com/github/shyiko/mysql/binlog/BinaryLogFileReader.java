@@ -18,6 +18,7 @@ package com.github.shyiko.mysql.binlog;
 import com.github.shyiko.mysql.binlog.event.Event;
 import com.github.shyiko.mysql.binlog.event.deserialization.EventDeserializer;
 import com.github.shyiko.mysql.binlog.io.ByteArrayInputStream;
+import com.github.shyiko.mysql.binlog.network.protocol.PacketBuffer;
 
 import java.io.BufferedInputStream;
 import java.io.Closeable;
@@ -36,9 +37,20 @@ public class BinaryLogFileReader implements Closeable {
 
     public static final byte[] MAGIC_HEADER = new byte[]{(byte) 0xfe, (byte) 0x62, (byte) 0x69, (byte) 0x6e};
 
+    // https://dev.mysql.com/doc/internals/en/binlog-event-header.html
+    private static final int EVENT_HEADER_LENGTH = 19;
+    private static final int EVENT_LENGTH_OFFSET = 9;
+
     private final ByteArrayInputStream inputStream;
     private final EventDeserializer eventDeserializer;
 
+    // events up to this size are read into eventBuffer, bigger ones get an array of their own (so that a single
+    // large event would not pin memory for as long as reader is open)
+    private static final int MAX_RETAINED_CAPACITY = PacketBuffer.MAX_RETAINED_CAPACITY;
+
+    private final byte[] eventBuffer = new byte[MAX_RETAINED_CAPACITY];
+    private final ByteArrayInputStream eventInputStream = new ByteArrayInputStream(eventBuffer, 0, 0);
+
     public BinaryLogFileReader(File file) throws IOException {
         this(file, new EventDeserializer());
     }
@@ -79,7 +91,36 @@ public class BinaryLogFileReader implements Closeable {
      * @return deserialized event or null in case of end-of-stream
      */
     public Event readEvent() throws IOException {
-        return eventDeserializer.nextEvent(inputStream);
+        Event event;
+        do {
+            if (inputStream.peek() == -1) {
+                return null;
+            }
+            // each event is read as a whole so that EventDeserializer could decode it straight from the buffer
+            inputStream.fill(eventBuffer, 0, EVENT_HEADER_LENGTH);
+            int eventLength = 0;
+            for (int i = 0; i < 4; i++) {
+                eventLength |= (eventBuffer[EVENT_LENGTH_OFFSET + i] & 0xFF) << (i << 3);
+            }
+            if (eventLength < EVENT_HEADER_LENGTH) {
+                throw new IOException("Invalid event length " + (eventLength & 0xFFFFFFFFL));
+            }
+            byte[] bytes = eventBuffer;
+            if (eventLength > MAX_RETAINED_CAPACITY) {
+                bytes = new byte[eventLength];
+                System.arraycopy(eventBuffer, 0, bytes, 0, EVENT_HEADER_LENGTH);
+            }
+            inputStream.fill(bytes, EVENT_HEADER_LENGTH, eventLength - EVENT_HEADER_LENGTH);
+            eventInputStream.setBuffer(bytes, 0, eventLength);
+            try {
+                event = eventDeserializer.nextEvent(eventInputStream);
+            } finally {
+                if (bytes != eventBuffer) {
+                    eventInputStream.setBuffer(eventBuffer, 0, 0);
+                }
+            }
+        } while (event == null); // event type is excluded (see EventDeserializer::setIncludedEventTypes)
+        return event;
     }
 
     @Override
@@ -15,13 +15,11 @@
  */
 package com.github.shyiko.mysql.binlog;
 
-import java.util.ArrayList;
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.Iterator;
-import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.UUID;
 
 /**
  * GTID set as described in <a href="https://dev.mysql.com/doc/refman/5.6/en/replication-gtids-concepts.html">GTID
@@ -34,11 +32,19 @@ import java.util.Map;
  * interval: n[-n], (n >= 1)
  * </pre>
  *
+ * Internally, {@link UUIDSet}s are kept in a table sorted by UUID (compared as 128-bit unsigned integer, which is
+ * the order MySQL uses) while intervals of each {@link UUIDSet} are packed into a single long[] of start/end pairs.
+ *
  * @author <a href="mailto:stanley.shyiko@gmail.com">Stanley Shyiko</a>
  */
 public class GtidSet {
 
-    private final Map<String, UUIDSet> map = new LinkedHashMap<String, UUIDSet>();
+    private static final long[] NO_INTERVALS = new long[0];
+
+    private UUIDSet[] uuidSets = new UUIDSet[4];
+    private int size;
+    // most of the time all transactions come from the same server, hence the shortcut
+    private int lastIndex = -1;
 
     /**
      * @param gtidSet gtid set comprised of closed intervals (like MySQL's executed_gtid_set).
@@ -48,30 +54,55 @@ public class GtidSet {
             gtidSet.replace("\n", "").split(",");
         for (String uuidSet : uuidSets) {
             int uuidSeparatorIndex = uuidSet.indexOf(":");
-            String sourceId = uuidSet.substring(0, uuidSeparatorIndex);
-            List<Interval> intervals = new ArrayList<Interval>();
+            String sourceId = uuidSet.substring(0, uuidSeparatorIndex).trim();
             String[] rawIntervals = uuidSet.substring(uuidSeparatorIndex + 1).split(":");
-            for (String interval : rawIntervals) {
-                String[] is = interval.split("-");
-                long[] split = new long[is.length];
-                for (int i = 0, e = is.length; i < e; i++) {
-                    split[i] = Long.parseLong(is[i]);
-                }
-                if (split.length == 1) {
-                    split = new long[] {split[0], split[0]};
+            long[] intervals = new long[rawIntervals.length << 1];
+            for (int i = 0; i < rawIntervals.length; i++) {
+                String interval = rawIntervals[i].trim();
+                int rangeSeparatorIndex = interval.indexOf('-');
+                if (rangeSeparatorIndex < 0) {
+                    intervals[i << 1] = intervals[(i << 1) + 1] = Long.parseLong(interval);
+                } else {
+                    intervals[i << 1] = Long.parseLong(interval.substring(0, rangeSeparatorIndex));
+                    intervals[(i << 1) + 1] = Long.parseLong(interval.substring(rangeSeparatorIndex + 1));
                 }
-                intervals.add(new Interval(split[0], split[1]));
             }
-            map.put(sourceId, new UUIDSet(sourceId, intervals));
+            UUID uuid = UUID.fromString(sourceId);
+            UUIDSet value = new UUIDSet(sourceId, uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(),
+                intervals, intervals.length);
+            value.normalize();
+            int index = indexOf(value.mostSignificantBits, value.leastSignificantBits);
+            if (index < 0) {
+                insert(-(index + 1), value);
+            } else {
+                this.uuidSets[index] = this.uuidSets[index].union(value);
+            }
         }
     }
 
+    private GtidSet() {
+    }
+
     /**
      * Get an immutable collection of the {@link UUIDSet range of GTIDs for a single server}.
-     * @return the {@link UUIDSet GTID ranges for each server}; never null
+     * @return the {@link UUIDSet GTID ranges for each server} (ordered by UUID); never null
      */
     public Collection<UUIDSet> getUUIDSets() {
-        return Collections.unmodifiableCollection(map.values());
+        return new AbstractList<UUIDSet>() {
+
+            @Override
+            public UUIDSet get(int index) {
+                if (index >= size) {
+                    throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+                }
+                return uuidSets[index];
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
     }
 
     /**
@@ -80,7 +111,14 @@ public class GtidSet {
      * @return the {@link UUIDSet} for the identified server, or {@code null} if there are no GTIDs from that server.
      */
     public UUIDSet getUUIDSet(String uuid) {
-        return map.get(uuid);
+        UUID sourceId;
+        try {
+            sourceId = UUID.fromString(uuid);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        int index = indexOf(sourceId.getMostSignificantBits(), sourceId.getLeastSignificantBits());
+        return index < 0 ? null : uuidSets[index];
     }
 
     /**
@@ -90,7 +128,14 @@ public class GtidSet {
      *         or {@code null} if there are no UUIDSet for the given server.
      */
     public UUIDSet putUUIDSet(UUIDSet uuidSet) {
-        return map.put(uuidSet.getUUID(), uuidSet);
+        int index = indexOf(uuidSet.mostSignificantBits, uuidSet.leastSignificantBits);
+        if (index < 0) {
+            insert(-(index + 1), uuidSet);
+            return null;
+        }
+        UUIDSet previous = uuidSets[index];
+        uuidSets[index] = uuidSet;
+        return previous;
     }
 
     /**
@@ -98,14 +143,141 @@ public class GtidSet {
      * @return whether or not gtid was added to the set (false if it was already there)
      */
     public boolean add(String gtid) {
-        String[] split = gtid.split(":");
-        String sourceId = split[0];
-        long transactionId = Long.parseLong(split[1]);
-        UUIDSet uuidSet = map.get(sourceId);
-        if (uuidSet == null) {
-            map.put(sourceId, uuidSet = new UUIDSet(sourceId, new ArrayList<Interval>()));
-        }
-        return uuidSet.add(transactionId);
+        int separatorIndex = gtid.indexOf(':');
+        String sourceId = gtid.substring(0, separatorIndex);
+        long transactionId = Long.parseLong(gtid.substring(separatorIndex + 1));
+        UUID uuid = UUID.fromString(sourceId);
+        return uuidSet(sourceId, uuid.getMostSignificantBits(), uuid.getLeastSignificantBits()).add(transactionId);
+    }
+
+    /**
+     * Same as {@link #add(String)} but without the need to format/parse GTID string.
+     * @param sourceIdMostSignificantBits most significant 64 bits of the source (server) UUID
+     * @param sourceIdLeastSignificantBits least significant 64 bits of the source (server) UUID
+     * @param transactionId transaction number (GNO)
+     * @return whether or not gtid was added to the set (false if it was already there)
+     */
+    public boolean add(long sourceIdMostSignificantBits, long sourceIdLeastSignificantBits, long transactionId) {
+        return uuidSet(null, sourceIdMostSignificantBits, sourceIdLeastSignificantBits).add(transactionId);
+    }
+
+    private UUIDSet uuidSet(String sourceId, long mostSignificantBits, long leastSignificantBits) {
+        int index = lastIndex;
+        if (index < 0 || index >= size || uuidSets[index].mostSignificantBits != mostSignificantBits ||
+                uuidSets[index].leastSignificantBits != leastSignificantBits) {
+            index = indexOf(mostSignificantBits, leastSignificantBits);
+            if (index < 0) {
+                index = -(index + 1);
+                insert(index, new UUIDSet(sourceId, mostSignificantBits, leastSignificantBits, NO_INTERVALS, 0));
+            }
+            lastIndex = index;
+        }
+        return uuidSets[index];
+    }
+
+    /**
+     * Copy-on-write version of {@link #add(long, long, long)} (only the affected {@link UUIDSet} is copied, the rest
+     * is shared with this set (hence neither of them should be modified afterwards)).
+     * @return set containing GTIDs from this set plus the given one (this set if GTID was already there)
+     */
+    GtidSet with(long sourceIdMostSignificantBits, long sourceIdLeastSignificantBits, long transactionId) {
+        int index = indexOf(sourceIdMostSignificantBits, sourceIdLeastSignificantBits);
+        if (index >= 0 && uuidSets[index].contains(transactionId)) {
+            return this;
+        }
+        GtidSet result = new GtidSet();
+        result.uuidSets = Arrays.copyOf(uuidSets, Math.max(size + 1, 4));
+        result.size = size;
+        UUIDSet uuidSet;
+        if (index < 0) {
+            index = -(index + 1);
+            uuidSet = new UUIDSet(null, sourceIdMostSignificantBits, sourceIdLeastSignificantBits, NO_INTERVALS, 0);
+            result.insert(index, uuidSet);
+        } else {
+            uuidSet = uuidSets[index].copy();
+            result.uuidSets[index] = uuidSet;
+        }
+        uuidSet.add(transactionId);
+        return result;
+    }
+
+    /**
+     * @return deep copy of this set
+     */
+    GtidSet copy() {
+        GtidSet result = new GtidSet();
+        result.uuidSets = new UUIDSet[Math.max(size, 4)];
+        for (int i = 0; i < size; i++) {
+            result.uuidSets[i] = uuidSets[i].copy();
+        }
+        result.size = size;
+        return result;
+    }
+
+    /**
+     * @param other the other set of GTIDs
+     * @return new set containing GTIDs that are either in this or in the other set
+     */
+    public GtidSet union(GtidSet other) {
+        GtidSet result = new GtidSet();
+        int i = 0, j = 0;
+        while (i < size || j < other.size) {
+            int c = i == size ? 1 : j == other.size ? -1 : compare(uuidSets[i], other.uuidSets[j]);
+            if (c < 0) {
+                result.append(uuidSets[i++].copy());
+            } else
+            if (c > 0) {
+                result.append(other.uuidSets[j++].copy());
+            } else {
+                result.append(uuidSets[i++].union(other.uuidSets[j++]));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param other the other set of GTIDs
+     * @return new set containing GTIDs from this set that are not in the other one
+     */
+    public GtidSet subtract(GtidSet other) {
+        GtidSet result = new GtidSet();
+        int j = 0;
+        for (int i = 0; i < size; i++) {
+            UUIDSet uuidSet = uuidSets[i];
+            while (j < other.size && compare(other.uuidSets[j], uuidSet) < 0) {
+                j++;
+            }
+            UUIDSet difference = j < other.size && compare(other.uuidSets[j], uuidSet) == 0 ?
+                uuidSet.subtract(other.uuidSets[j]) : uuidSet.copy();
+            if (difference.size != 0) {
+                result.append(difference);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param other the other set of GTIDs
+     * @return new set containing GTIDs that are both in this and the other set
+     */
+    public GtidSet intersect(GtidSet other) {
+        GtidSet result = new GtidSet();
+        int i = 0, j = 0;
+        while (i < size && j < other.size) {
+            int c = compare(uuidSets[i], other.uuidSets[j]);
+            if (c < 0) {
+                i++;
+            } else
+            if (c > 0) {
+                j++;
+            } else {
+                UUIDSet intersection = uuidSets[i++].intersect(other.uuidSets[j++]);
+                if (intersection.size != 0) {
+                    result.append(intersection);
+                }
+            }
+        }
+        return result;
     }
 
     /**
@@ -122,21 +294,114 @@ public class GtidSet {
         if (this == other) {
             return true;
         }
-        if (this.equals(other)) {
-            return true;
-        }
-        for (UUIDSet uuidSet : map.values()) {
-            UUIDSet thatSet = other.getUUIDSet(uuidSet.getUUID());
-            if (!uuidSet.isContainedWithin(thatSet)) {
+        int j = 0;
+        for (int i = 0; i < size; i++) {
+            UUIDSet uuidSet = uuidSets[i];
+            while (j < other.size && compare(other.uuidSets[j], uuidSet) < 0) {
+                j++;
+            }
+            if (j == other.size || !uuidSet.isContainedWithin(other.uuidSets[j])) {
                 return false;
             }
         }
         return true;
     }
 
+    /**
+     * @return GTID set encoded the way COM_BINLOG_DUMP_GTID expects it (number of UUID sets followed by
+     * uuid/number of intervals/[start, end) for each of them)
+     */
+    public byte[] toByteArray() {
+        int length = 8;
+        for (int i = 0; i < size; i++) {
+            length += 16 + 8 + (uuidSets[i].size << 3);
+        }
+        byte[] result = new byte[length];
+        int offset = writeLittleEndian(result, 0, size);
+        for (int i = 0; i < size; i++) {
+            UUIDSet uuidSet = uuidSets[i];
+            offset = writeBigEndian(result, offset, uuidSet.mostSignificantBits);
+            offset = writeBigEndian(result, offset, uuidSet.leastSignificantBits);
+            offset = writeLittleEndian(result, offset, uuidSet.size >> 1);
+            for (int k = 0; k < uuidSet.size; k += 2) {
+                offset = writeLittleEndian(result, offset, uuidSet.intervals[k]);
+                offset = writeLittleEndian(result, offset, uuidSet.intervals[k + 1] + 1 /* right-open */);
+            }
+        }
+        return result;
+    }
+
+    private static int writeLittleEndian(byte[] buffer, int offset, long value) {
+        for (int i = 0; i < 8; i++) {
+            buffer[offset + i] = (byte) (value >>> (i << 3));
+        }
+        return offset + 8;
+    }
+
+    private static int writeBigEndian(byte[] buffer, int offset, long value) {
+        for (int i = 0; i < 8; i++) {
+            buffer[offset + i] = (byte) (value >>> ((7 - i) << 3));
+        }
+        return offset + 8;
+    }
+
+    /**
+     * @return index of the UUIDSet (if present), (-(insertion point) - 1) otherwise
+     */
+    private int indexOf(long mostSignificantBits, long leastSignificantBits) {
+        int l = 0, r = size - 1;
+        while (l <= r) {
+            int p = (l + r) >>> 1;
+            UUIDSet uuidSet = uuidSets[p];
+            int c = compare(uuidSet.mostSignificantBits, uuidSet.leastSignificantBits,
+                mostSignificantBits, leastSignificantBits);
+            if (c < 0) {
+                l = p + 1;
+            } else
+            if (c > 0) {
+                r = p - 1;
+            } else {
+                return p;
+            }
+        }
+        return -(l + 1);
+    }
+
+    private void insert(int index, UUIDSet uuidSet) {
+        if (size == uuidSets.length) {
+            uuidSets = Arrays.copyOf(uuidSets, size << 1);
+        }
+        System.arraycopy(uuidSets, index, uuidSets, index + 1, size - index);
+        uuidSets[index] = uuidSet;
+        size++;
+    }
+
+    private void append(UUIDSet uuidSet) {
+        insert(size, uuidSet);
+    }
+
+    private static int compare(UUIDSet a, UUIDSet b) {
+        return compare(a.mostSignificantBits, a.leastSignificantBits, b.mostSignificantBits, b.leastSignificantBits);
+    }
+
+    private static int compare(long aMostSignificantBits, long aLeastSignificantBits,
+                               long bMostSignificantBits, long bLeastSignificantBits) {
+        if (aMostSignificantBits != bMostSignificantBits) {
+            return aMostSignificantBits + Long.MIN_VALUE < bMostSignificantBits + Long.MIN_VALUE ? -1 : 1;
+        }
+        if (aLeastSignificantBits != bLeastSignificantBits) {
+            return aLeastSignificantBits + Long.MIN_VALUE < bLeastSignificantBits + Long.MIN_VALUE ? -1 : 1;
+        }
+        return 0;
+    }
+
     @Override
     public int hashCode() {
-        return map.keySet().hashCode();
+        int result = 0;
+        for (int i = 0; i < size; i++) {
+            result = 31 * result + uuidSets[i].hashCode();
+        }
+        return result;
     }
 
     @Override
@@ -146,29 +411,29 @@ public class GtidSet {
         }
         if (obj instanceof GtidSet) {
             GtidSet that = (GtidSet) obj;
-            return this.map.equals(that.map);
+            if (this.size != that.size) {
+                return false;
+            }
+            for (int i = 0; i < size; i++) {
+                if (!this.uuidSets[i].equals(that.uuidSets[i])) {
+                    return false;
+                }
+            }
+            return true;
         }
         return false;
     }
 
     @Override
     public String toString() {
-        List<String> gtids = new ArrayList<String>();
-        for (UUIDSet uuidSet : map.values()) {
-            gtids.add(uuidSet.getUUID() + ":" + join(uuidSet.intervals, ":"));
-        }
-        return join(gtids, ",");
-    }
-
-    private static String join(Collection<?> o, String delimiter) {
-        if (o.isEmpty()) {
-            return "";
-        }
         StringBuilder sb = new StringBuilder();
-        for (Object o1 : o) {
-            sb.append(o1).append(delimiter);
+        for (int i = 0; i < size; i++) {
+            if (i != 0) {
+                sb.append(',');
+            }
+            uuidSets[i].appendTo(sb);
         }
-        return sb.substring(0, sb.length() - delimiter.length());
+        return sb.toString();
     }
 
     /**
@@ -178,76 +443,188 @@ public class GtidSet {
     public static final class UUIDSet {
 
         private String uuid;
-        private List<Interval> intervals;
+        private final long mostSignificantBits;
+        private final long leastSignificantBits;
+        // [start0, end0, start1, end1, ...] (closed, sorted, neither overlapping nor adjacent)
+        private long[] intervals;
+        private int size;
 
         public UUIDSet(String uuid, List<Interval> intervals) {
+            UUID sourceId = UUID.fromString(uuid);
+            this.uuid = uuid;
+            this.mostSignificantBits = sourceId.getMostSignificantBits();
+            this.leastSignificantBits = sourceId.getLeastSignificantBits();
+            this.intervals = new long[intervals.size() << 1];
+            for (Interval interval : intervals) {
+                this.intervals[size++] = interval.start;
+                this.intervals[size++] = interval.end;
+            }
+            normalize();
+        }
+
+        private UUIDSet(String uuid, long mostSignificantBits, long leastSignificantBits, long[] intervals, int size) {
             this.uuid = uuid;
+            this.mostSignificantBits = mostSignificantBits;
+            this.leastSignificantBits = leastSignificantBits;
             this.intervals = intervals;
-            if (intervals.size() > 1) {
-                joinAdjacentIntervals(0);
+            this.size = size;
+        }
+
+        /**
+         * Sorts intervals and collapses the ones that overlap / are adjacent (like a-(b-1):b-c into a-c).
+         */
+        private void normalize() {
+            int n = size >> 1;
+            boolean sorted = true;
+            for (int i = 2; i < size && sorted; i += 2) {
+                sorted = intervals[i - 2] <= intervals[i];
             }
+            if (!sorted) {
+                Interval[] list = new Interval[n];
+                for (int i = 0; i < n; i++) {
+                    list[i] = new Interval(intervals[i << 1], intervals[(i << 1) + 1]);
+                }
+                Arrays.sort(list);
+                for (int i = 0; i < n; i++) {
+                    intervals[i << 1] = list[i].start;
+                    intervals[(i << 1) + 1] = list[i].end;
+                }
+            }
+            int length = 0;
+            for (int i = 0; i < size; i += 2) {
+                if (length != 0 && intervals[i] <= intervals[length - 1] + 1) {
+                    intervals[length - 1] = Math.max(intervals[length - 1], intervals[i + 1]);
+                } else {
+                    intervals[length++] = intervals[i];
+                    intervals[length++] = intervals[i + 1];
+                }
+            }
+            size = length;
         }
 
         private boolean add(long transactionId) {
             int index = findInterval(transactionId);
-            boolean addedToExisting = false;
-            if (index < intervals.size()) {
-                Interval interval = intervals.get(index);
-                if (interval.start == transactionId + 1) {
-                    interval.start = transactionId;
-                    addedToExisting = true;
-                } else
-                if (interval.end + 1 == transactionId) {
-                    interval.end = transactionId;
-                    addedToExisting = true;
-                } else
-                if (interval.start <= transactionId && transactionId <= interval.end) {
-                    return false;
-                }
-            }
-            if (!addedToExisting) {
-                intervals.add(index, new Interval(transactionId, transactionId));
+            if (index < size && intervals[index] <= transactionId) {
+                return false;
             }
-            if (intervals.size() > 1) {
-                joinAdjacentIntervals(index);
+            boolean joinsPrevious = index > 0 && intervals[index - 1] + 1 == transactionId;
+            boolean joinsNext = index < size && intervals[index] == transactionId + 1;
+            if (joinsPrevious && joinsNext) {
+                intervals[index - 1] = intervals[index + 1];
+                System.arraycopy(intervals, index + 2, intervals, index, size - index - 2);
+                size -= 2;
+            } else
+            if (joinsPrevious) {
+                intervals[index - 1] = transactionId;
+            } else
+            if (joinsNext) {
+                intervals[index] = transactionId;
+            } else {
+                if (size + 2 > intervals.length) {
+                    intervals = Arrays.copyOf(intervals, Math.max(4, intervals.length << 1));
+                }
+                System.arraycopy(intervals, index, intervals, index + 2, size - index);
+                intervals[index] = intervals[index + 1] = transactionId;
+                size += 2;
             }
             return true;
         }
 
-        /**
-         * Collapses intervals like a-(b-1):b-c into a-c (only in index+-1 range).
-         */
-        private void joinAdjacentIntervals(int index) {
-            for (int i = Math.min(index + 1, intervals.size() - 1), e = Math.max(index - 1, 0); i > e; i--) {
-                Interval a = intervals.get(i - 1), b = intervals.get(i);
-                if (a.end + 1 == b.start) {
-                    a.end = b.end;
-                    intervals.remove(i);
-                }
-            }
+        private boolean contains(long transactionId) {
+            int index = findInterval(transactionId);
+            return index < size && intervals[index] <= transactionId;
         }
 
         /**
-         * @return index which is either a pointer to the interval containing v or a position at which v can be added
+         * @return offset of the first interval which end is &gt;= v (size if there is no such interval)
          */
         private int findInterval(long v) {
-            int l = 0, p = 0, r = intervals.size();
-            while (l < r) {
-                p = (l + r) / 2;
-                Interval i = intervals.get(p);
-                if (i.end < v) {
+            int l = 0, r = (size >> 1) - 1;
+            while (l <= r) {
+                int p = (l + r) >>> 1;
+                if (intervals[(p << 1) + 1] < v) {
                     l = p + 1;
-                } else
-                if (v < i.start) {
-                    r = p;
                 } else {
-                    return p;
+                    r = p - 1;
+                }
+            }
+            return l << 1;
+        }
+
+        private UUIDSet copy() {
+            return new UUIDSet(uuid, mostSignificantBits, leastSignificantBits, Arrays.copyOf(intervals, size),
+                size);
+        }
+
+        private UUIDSet union(UUIDSet other) {
+            long[] result = new long[size + other.size];
+            int length = 0;
+            for (int i = 0, j = 0; i < size || j < other.size;) {
+                long start, end;
+                if (j == other.size || (i < size && intervals[i] <= other.intervals[j])) {
+                    start = intervals[i];
+                    end = intervals[i + 1];
+                    i += 2;
+                } else {
+                    start = other.intervals[j];
+                    end = other.intervals[j + 1];
+                    j += 2;
+                }
+                if (length != 0 && start <= result[length - 1] + 1) {
+                    result[length - 1] = Math.max(result[length - 1], end);
+                } else {
+                    result[length++] = start;
+                    result[length++] = end;
+                }
+            }
+            return new UUIDSet(uuid, mostSignificantBits, leastSignificantBits, result, length);
+        }
+
+        private UUIDSet subtract(UUIDSet other) {
+            long[] result = new long[size + other.size];
+            int length = 0;
+            for (int i = 0, j = 0; i < size; i += 2) {
+                long start = intervals[i], end = intervals[i + 1];
+                while (j < other.size && other.intervals[j + 1] < start) {
+                    j += 2;
+                }
+                boolean covered = false;
+                for (int k = j; k < other.size && other.intervals[k] <= end; k += 2) {
+                    if (other.intervals[k] > start) {
+                        result[length++] = start;
+                        result[length++] = other.intervals[k] - 1;
+                    }
+                    if (other.intervals[k + 1] >= end) {
+                        covered = true;
+                        break;
+                    }
+                    start = other.intervals[k + 1] + 1;
+                }
+                if (!covered) {
+                    result[length++] = start;
+                    result[length++] = end;
                 }
             }
-            if (!intervals.isEmpty() && intervals.get(p).end < v) {
-                p++;
+            return new UUIDSet(uuid, mostSignificantBits, leastSignificantBits, result, length);
+        }
+
+        private UUIDSet intersect(UUIDSet other) {
+            long[] result = new long[size + other.size];
+            int length = 0;
+            for (int i = 0, j = 0; i < size && j < other.size;) {
+                long start = Math.max(intervals[i], other.intervals[j]);
+                long end = Math.min(intervals[i + 1], other.intervals[j + 1]);
+                if (start <= end) {
+                    result[length++] = start;
+                    result[length++] = end;
+                }
+                if (intervals[i + 1] < other.intervals[j + 1]) {
+                    i += 2;
+                } else {
+                    j += 2;
+                }
             }
-            return p;
+            return new UUIDSet(uuid, mostSignificantBits, leastSignificantBits, result, length);
         }
 
         /**
@@ -255,6 +632,9 @@ public class GtidSet {
          * @return the server's UUID; never null
          */
         public String getUUID() {
+            if (uuid == null) {
+                uuid = new UUID(mostSignificantBits, leastSignificantBits).toString();
+            }
             return uuid;
         }
 
@@ -263,7 +643,21 @@ public class GtidSet {
          * @return the immutable transaction intervals; never null
          */
         public List<Interval> getIntervals() {
-            return Collections.unmodifiableList(intervals);
+            return new AbstractList<Interval>() {
+
+                @Override
+                public Interval get(int index) {
+                    if (index >= size()) {
+                        throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+                    }
+                    return new Interval(intervals[index << 1], intervals[(index << 1) + 1]);
+                }
+
+                @Override
+                public int size() {
+                    return size >> 1;
+                }
+            };
         }
 
         /**
@@ -277,35 +671,35 @@ public class GtidSet {
             if (other == null) {
                 return false;
             }
-            if (!this.getUUID().equalsIgnoreCase(other.getUUID())) {
+            if (this.mostSignificantBits != other.mostSignificantBits ||
+                    this.leastSignificantBits != other.leastSignificantBits) {
                 // not even the same server ...
                 return false;
             }
-            if (this.intervals.isEmpty()) {
-                return true;
-            }
-            if (other.intervals.isEmpty()) {
-                return false;
-            }
             // every interval in this must be within an interval of the other ...
-            for (Interval thisInterval : this.intervals) {
-                boolean found = false;
-                for (Interval otherInterval : other.intervals) {
-                    if (thisInterval.isContainedWithin(otherInterval)) {
-                        found = true;
-                        break;
-                    }
+            for (int i = 0, j = 0; i < size; i += 2) {
+                while (j < other.size && other.intervals[j + 1] < intervals[i]) {
+                    j += 2;
                 }
-                if (!found) {
-                    return false; // didn't find a match
+                if (j == other.size || other.intervals[j] > intervals[i] ||
+                        other.intervals[j + 1] < intervals[i + 1]) {
+                    return false;
                 }
             }
             return true;
         }
 
+        private void appendTo(StringBuilder sb) {
+            sb.append(getUUID());
+            for (int i = 0; i < size; i += 2) {
+                sb.append(':').append(intervals[i]).append('-').append(intervals[i + 1]);
+            }
+        }
+
         @Override
         public int hashCode() {
-            return uuid.hashCode();
+            return (int) (mostSignificantBits ^ (mostSignificantBits >>> 32) ^
+                leastSignificantBits ^ (leastSignificantBits >>> 32));
         }
 
         @Override
@@ -315,27 +709,24 @@ public class GtidSet {
             }
             if (obj instanceof UUIDSet) {
                 UUIDSet that = (UUIDSet) obj;
-                return this.getUUID().equalsIgnoreCase(that.getUUID()) &&
-                    this.getIntervals().equals(that.getIntervals());
+                if (this.mostSignificantBits != that.mostSignificantBits ||
+                        this.leastSignificantBits != that.leastSignificantBits || this.size != that.size) {
+                    return false;
+                }
+                for (int i = 0; i < size; i++) {
+                    if (this.intervals[i] != that.intervals[i]) {
+                        return false;
+                    }
+                }
+                return true;
             }
-            return super.equals(obj);
+            return false;
         }
 
         @Override
         public String toString() {
             StringBuilder sb = new StringBuilder();
-            if (sb.length() != 0) {
-                sb.append(',');
-            }
-            sb.append(uuid).append(':');
-            Iterator<Interval> iter = intervals.iterator();
-            if (iter.hasNext()) {
-                sb.append(iter.next());
-            }
-            while (iter.hasNext()) {
-                sb.append(':');
-                sb.append(iter.next());
-            }
+            appendTo(sb);
             return sb.toString();
         }
     }
@@ -346,8 +737,8 @@ public class GtidSet {
      */
     public static final class Interval implements Comparable<Interval> {
 
-        private long start;
-        private long end;
+        private final long start;
+        private final long end;
 
         public Interval(long start, long end) {
             this.start = start;
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2018 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog;
+
+import java.util.Collection;
+
+/**
+ * Immutable (point-in-time) view of a {@link GtidSet}. Meant to be published by a single writer (through a volatile
+ * reference) and read by any number of threads without locking.
+ *
+ * @author <a href="mailto:stanley.shyiko@gmail.com">Stanley Shyiko</a>
+ */
+public final class GtidSetSnapshot {
+
+    private final GtidSet gtidSet;
+    private final long version;
+    private volatile String string;
+
+    /**
+     * @param gtidSet gtid set comprised of closed intervals (like MySQL's executed_gtid_set).
+     */
+    public GtidSetSnapshot(String gtidSet) {
+        this(new GtidSet(gtidSet), 0);
+    }
+
+    GtidSetSnapshot(GtidSet gtidSet, long version) {
+        this.gtidSet = gtidSet;
+        this.version = version;
+    }
+
+    /**
+     * @return number of changes made since the first snapshot in a chain (i.e. snapshot with a greater version is
+     * always a more recent one)
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return snapshot containing GTIDs from this one plus the given one (this snapshot if GTID was already there).
+     * Only the {@link GtidSet.UUIDSet} GTID belongs to is copied.
+     */
+    public GtidSetSnapshot add(long sourceIdMostSignificantBits, long sourceIdLeastSignificantBits,
+                               long transactionId) {
+        GtidSet result = gtidSet.with(sourceIdMostSignificantBits, sourceIdLeastSignificantBits, transactionId);
+        return result == gtidSet ? this : new GtidSetSnapshot(result, version + 1);
+    }
+
+    /**
+     * @see GtidSet#getUUIDSets()
+     */
+    public Collection<GtidSet.UUIDSet> getUUIDSets() {
+        return gtidSet.getUUIDSets();
+    }
+
+    /**
+     * @see GtidSet#getUUIDSet(String)
+     */
+    public GtidSet.UUIDSet getUUIDSet(String uuid) {
+        return gtidSet.getUUIDSet(uuid);
+    }
+
+    /**
+     * @see GtidSet#isContainedWithin(GtidSet)
+     */
+    public boolean isContainedWithin(GtidSetSnapshot other) {
+        return other != null && gtidSet.isContainedWithin(other.gtidSet);
+    }
+
+    /**
+     * @return (mutable) copy of the underlying GTID set
+     */
+    public GtidSet toGtidSet() {
+        return gtidSet.copy();
+    }
+
+    @Override
+    public int hashCode() {
+        return gtidSet.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj == this || obj instanceof GtidSetSnapshot && gtidSet.equals(((GtidSetSnapshot) obj).gtidSet);
+    }
+
+    /**
+     * @return GTID set string (computed once per snapshot)
+     */
+    @Override
+    public String toString() {
+        String result = string;
+        if (result == null) {
+            string = result = gtidSet.toString();
+        }
+        return result;
+    }
+
+}
@@ -30,6 +30,14 @@ public class Event implements Serializable {
         this.data = data;
     }
 
+    /**
+     * @see ReusableEvent
+     */
+    void reset(EventHeader header, EventData data) {
+        this.header = header;
+        this.data = data;
+    }
+
     @SuppressWarnings("unchecked")
     public <T extends EventHeader> T getHeader() {
         return (T) header;
@@ -30,6 +30,18 @@ public class EventHeaderV4 implements EventHeader {
     private long nextPosition;
     private int flags;
 
+    public EventHeaderV4() {
+    }
+
+    public EventHeaderV4(EventHeaderV4 header) {
+        this.timestamp = header.timestamp;
+        this.eventType = header.eventType;
+        this.serverId = header.serverId;
+        this.eventLength = header.eventLength;
+        this.nextPosition = header.nextPosition;
+        this.flags = header.flags;
+    }
+
     @Override
     public long getTimestamp() {
         return timestamp;
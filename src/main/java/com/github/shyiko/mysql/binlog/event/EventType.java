@@ -192,7 +192,16 @@ public enum EventType {
     /**
      * Prepared XA transaction terminal event similar to XID except that it is specific to XA transaction.
      */
-    XA_PREPARE;
+    XA_PREPARE,
+    /**
+     * Describes partially updated JSON columns (binlog_row_value_options=PARTIAL_JSON, MySQL 8.0.3+).
+     */
+    PARTIAL_UPDATE_ROWS,
+    /**
+     * Compressed transaction (binlog_transaction_compression=ON, MySQL 8.0.20+).
+     * @see com.github.shyiko.mysql.binlog.event.TransactionPayloadEventData
+     */
+    TRANSACTION_PAYLOAD;
 
     public static boolean isRowMutation(EventType eventType) {
         return EventType.isWrite(eventType) ||
@@ -15,6 +15,8 @@
  */
 package com.github.shyiko.mysql.binlog.event;
 
+import java.util.UUID;
+
 /**
  * @author <a href="mailto:pprasse@actindo.de">Patrick Prasse</a>
  */
@@ -22,17 +24,65 @@ public class GtidEventData implements EventData {
 
     public static final byte COMMIT_FLAG = 1;
 
+    private long sourceIdMostSignificantBits;
+    private long sourceIdLeastSignificantBits;
+    private long transactionId;
     private String gtid;
     private byte flags;
+    private long lastCommitted;
+    private long sequenceNumber;
 
+    /**
+     * @return GTID ("source_id:transaction_id"), built (and cached) on first access
+     */
     public String getGtid() {
+        if (gtid == null) {
+            gtid = getSourceId().toString() + ":" + transactionId;
+        }
         return gtid;
     }
 
     public void setGtid(String gtid) {
+        int separatorIndex = gtid.indexOf(':');
+        UUID sourceId = UUID.fromString(gtid.substring(0, separatorIndex));
+        this.sourceIdMostSignificantBits = sourceId.getMostSignificantBits();
+        this.sourceIdLeastSignificantBits = sourceId.getLeastSignificantBits();
+        this.transactionId = Long.parseLong(gtid.substring(separatorIndex + 1));
         this.gtid = gtid;
     }
 
+    public UUID getSourceId() {
+        return new UUID(sourceIdMostSignificantBits, sourceIdLeastSignificantBits);
+    }
+
+    /**
+     * @return most significant 64 bits of the source (server) UUID
+     */
+    public long getSourceIdMostSignificantBits() {
+        return sourceIdMostSignificantBits;
+    }
+
+    /**
+     * @return least significant 64 bits of the source (server) UUID
+     */
+    public long getSourceIdLeastSignificantBits() {
+        return sourceIdLeastSignificantBits;
+    }
+
+    /**
+     * @return transaction number (GNO)
+     */
+    public long getTransactionId() {
+        return transactionId;
+    }
+
+    public void setGtid(long sourceIdMostSignificantBits, long sourceIdLeastSignificantBits, long transactionId) {
+        this.sourceIdMostSignificantBits = sourceIdMostSignificantBits;
+        this.sourceIdLeastSignificantBits = sourceIdLeastSignificantBits;
+        this.transactionId = transactionId;
+        this.gtid = null;
+    }
+
     public byte getFlags() {
         return flags;
     }
@@ -41,10 +91,36 @@ public class GtidEventData implements EventData {
         this.flags = flags;
     }
 
+    /**
+     * @return sequence number of the most recent transaction this one doesn't conflict with (MySQL 5.7+ logical
+     * clock, see binlog_transaction_dependency_tracking), 0 if not available
+     */
+    public long getLastCommitted() {
+        return lastCommitted;
+    }
+
+    public void setLastCommitted(long lastCommitted) {
+        this.lastCommitted = lastCommitted;
+    }
+
+    /**
+     * @return sequence number of this transaction within the binary log file (MySQL 5.7+ logical clock),
+     * 0 if not available
+     */
+    public long getSequenceNumber() {
+        return sequenceNumber;
+    }
+
+    public void setSequenceNumber(long sequenceNumber) {
+        this.sequenceNumber = sequenceNumber;
+    }
+
     public String toString() {
         final StringBuilder sb = new StringBuilder();
         sb.append("GtidEventData");
-        sb.append("{flags=").append(flags).append(", gtid='").append(gtid).append('\'');
+        sb.append("{flags=").append(flags).append(", gtid='").append(getGtid()).append('\'');
+        sb.append(", lastCommitted=").append(lastCommitted);
+        sb.append(", sequenceNumber=").append(sequenceNumber);
         sb.append('}');
         return sb.toString();
     }
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2018 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog.event;
+
+/**
+ * {@link Event} that is reused between
+ * {@link com.github.shyiko.mysql.binlog.event.deserialization.EventDeserializer#nextEvent} calls (meant to be used by
+ * {@link com.github.shyiko.mysql.binlog.event.deserialization.EventDeserializer} only).
+ *
+ * @see com.github.shyiko.mysql.binlog.event.deserialization.EventDeserializer#setReuseEvents(boolean)
+ * @author <a href="mailto:stanley.shyiko@gmail.com">Stanley Shyiko</a>
+ */
+public final class ReusableEvent extends Event {
+
+    public ReusableEvent() {
+        super(null, null);
+    }
+
+    public void reset(EventHeader header, EventData data) {
+        super.reset(header, data);
+    }
+
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2018 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog.event;
+
+import java.util.Iterator;
+
+/**
+ * TRANSACTION_PAYLOAD event (binlog_transaction_compression=ON, MySQL 8.0.20+), which carries all the events
+ * of a single transaction (GTID excluded) in compressed form.
+ * <p>
+ * Embedded events are inflated and deserialized lazily (one at a time, as iteration goes), which means that
+ * iteration must take place before next event is read by the
+ * {@link com.github.shyiko.mysql.binlog.event.deserialization.EventDeserializer} that produced this event
+ * (TABLE_MAPs are shared between the two). {@link com.github.shyiko.mysql.binlog.BinaryLogClient} does this
+ * automatically (listeners receive embedded events right after the TRANSACTION_PAYLOAD itself).
+ *
+ * @author <a href="mailto:stanley.shyiko@gmail.com">Stanley Shyiko</a>
+ */
+public class TransactionPayloadEventData implements EventData, Iterable<Event> {
+
+    public static final int COMPRESSION_TYPE_ZSTD = 0;
+    public static final int COMPRESSION_TYPE_NONE = 255;
+
+    private int payloadSize;
+    private long uncompressedSize;
+    private int compressionType;
+    private byte[] payload;
+    private transient Iterable<Event> events;
+
+    public int getPayloadSize() {
+        return payloadSize;
+    }
+
+    public void setPayloadSize(int payloadSize) {
+        this.payloadSize = payloadSize;
+    }
+
+    public long getUncompressedSize() {
+        return uncompressedSize;
+    }
+
+    public void setUncompressedSize(long uncompressedSize) {
+        this.uncompressedSize = uncompressedSize;
+    }
+
+    /**
+     * @return {@link #COMPRESSION_TYPE_ZSTD} or {@link #COMPRESSION_TYPE_NONE}
+     */
+    public int getCompressionType() {
+        return compressionType;
+    }
+
+    public void setCompressionType(int compressionType) {
+        this.compressionType = compressionType;
+    }
+
+    /**
+     * @return raw (possibly compressed) payload
+     */
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    public void setPayload(byte[] payload) {
+        this.payload = payload;
+    }
+
+    /**
+     * Meant to be used by {@link com.github.shyiko.mysql.binlog.event.deserialization.EventDeserializer} only.
+     */
+    public void setEvents(Iterable<Event> events) {
+        this.events = events;
+    }
+
+    /**
+     * @return iterator over the embedded events
+     * @throws IllegalStateException if event was not produced by
+     * {@link com.github.shyiko.mysql.binlog.event.deserialization.EventDeserializer} (e.g. deserialized from Java
+     * serialization form)
+     */
+    @Override
+    public Iterator<Event> iterator() {
+        if (events == null) {
+            throw new IllegalStateException("Embedded events are not available");
+        }
+        return events.iterator();
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("TransactionPayloadEventData");
+        sb.append("{payloadSize=").append(payloadSize);
+        sb.append(", uncompressedSize=").append(uncompressedSize);
+        sb.append(", compressionType=").append(compressionType);
+        sb.append('}');
+        return sb.toString();
+    }
+
+}
@@ -15,7 +15,13 @@
  */
 package com.github.shyiko.mysql.binlog.event;
 
+import com.github.shyiko.mysql.binlog.event.deserialization.LazyRows;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.BitSet;
 import java.util.List;
@@ -33,6 +39,12 @@ public class UpdateRowsEventData implements EventData {
      * @see com.github.shyiko.mysql.binlog.event.deserialization.AbstractRowsEventDataDeserializer
      */
     private List<Map.Entry<Serializable[], Serializable[]>> rows;
+    /**
+     * Set in case rows are deserialized lazily.
+     * @see com.github.shyiko.mysql.binlog.event.deserialization.EventDeserializer#setDeserializeRowsLazily(boolean)
+     */
+    private transient LazyRows lazyRowsBeforeUpdate;
+    private transient LazyRows lazyRows;
 
     public long getTableId() {
         return tableId;
@@ -58,7 +70,19 @@ public class UpdateRowsEventData implements EventData {
         this.includedColumns = includedColumns;
     }
 
+    /**
+     * @return rows (materialized on first access if rows were deserialized lazily)
+     */
     public List<Map.Entry<Serializable[], Serializable[]>> getRows() {
+        if (rows == null && lazyRows != null) {
+            List<Map.Entry<Serializable[], Serializable[]>> result =
+                new ArrayList<Map.Entry<Serializable[], Serializable[]>>(lazyRows.size());
+            for (int i = 0; i < lazyRows.size(); i++) {
+                result.add(new AbstractMap.SimpleEntry<Serializable[], Serializable[]>(
+                    lazyRowsBeforeUpdate.getRow(i), lazyRows.getRow(i)));
+            }
+            rows = result;
+        }
         return rows;
     }
 
@@ -66,6 +90,30 @@ public class UpdateRowsEventData implements EventData {
         this.rows = rows;
     }
 
+    public LazyRows getLazyRowsBeforeUpdate() {
+        return lazyRowsBeforeUpdate;
+    }
+
+    public void setLazyRowsBeforeUpdate(LazyRows lazyRowsBeforeUpdate) {
+        this.lazyRowsBeforeUpdate = lazyRowsBeforeUpdate;
+    }
+
+    /**
+     * @return rows kept in a raw form (cells are deserialized on demand) or null if rows were deserialized eagerly
+     */
+    public LazyRows getLazyRows() {
+        return lazyRows;
+    }
+
+    public void setLazyRows(LazyRows lazyRows) {
+        this.lazyRows = lazyRows;
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        getRows(); // LazyRows are not serializable
+        out.defaultWriteObject();
+    }
+
     @Override
     public String toString() {
         final StringBuilder sb = new StringBuilder();
@@ -74,13 +122,13 @@ public class UpdateRowsEventData implements EventData {
         sb.append(", includedColumnsBeforeUpdate=").append(includedColumnsBeforeUpdate);
         sb.append(", includedColumns=").append(includedColumns);
         sb.append(", rows=[");
-        for (Map.Entry<Serializable[], Serializable[]> row : rows) {
+        for (Map.Entry<Serializable[], Serializable[]> row : getRows()) {
             sb.append("\n    ").
                     append("{before=").append(Arrays.toString(row.getKey())).
                     append(", after=").append(Arrays.toString(row.getValue())).
                append("},");
         }
-        if (!rows.isEmpty()) {
+        if (!getRows().isEmpty()) {
             sb.replace(sb.length() - 1, sb.length(), "\n");
         }
         sb.append("]}");
@@ -15,7 +15,12 @@
  */
 package com.github.shyiko.mysql.binlog.event;
 
+import com.github.shyiko.mysql.binlog.event.deserialization.LazyRows;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.BitSet;
 import java.util.List;
@@ -31,6 +36,11 @@ public class WriteRowsEventData implements EventData {
      * @see com.github.shyiko.mysql.binlog.event.deserialization.AbstractRowsEventDataDeserializer
      */
     private List<Serializable[]> rows;
+    /**
+     * Set in case rows are deserialized lazily.
+     * @see com.github.shyiko.mysql.binlog.event.deserialization.EventDeserializer#setDeserializeRowsLazily(boolean)
+     */
+    private transient LazyRows lazyRows;
 
     public long getTableId() {
         return tableId;
@@ -48,7 +58,13 @@ public class WriteRowsEventData implements EventData {
         this.includedColumns = includedColumns;
     }
 
+    /**
+     * @return rows (materialized on first access if rows were deserialized lazily)
+     */
     public List<Serializable[]> getRows() {
+        if (rows == null && lazyRows != null) {
+            rows = new ArrayList<Serializable[]>(lazyRows.asList());
+        }
         return rows;
     }
 
@@ -56,6 +72,22 @@ public class WriteRowsEventData implements EventData {
         this.rows = rows;
     }
 
+    /**
+     * @return rows kept in a raw form (cells are deserialized on demand) or null if rows were deserialized eagerly
+     */
+    public LazyRows getLazyRows() {
+        return lazyRows;
+    }
+
+    public void setLazyRows(LazyRows lazyRows) {
+        this.lazyRows = lazyRows;
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        getRows(); // LazyRows are not serializable
+        out.defaultWriteObject();
+    }
+
     @Override
     public String toString() {
         final StringBuilder sb = new StringBuilder();
@@ -63,10 +95,10 @@ public class WriteRowsEventData implements EventData {
         sb.append("{tableId=").append(tableId);
         sb.append(", includedColumns=").append(includedColumns);
         sb.append(", rows=[");
-        for (Object[] row : rows) {
+        for (Object[] row : getRows()) {
             sb.append("\n    ").append(Arrays.toString(row)).append(",");
         }
-        if (!rows.isEmpty()) {
+        if (!getRows().isEmpty()) {
             sb.replace(sb.length() - 1, sb.length(), "\n");
         }
         sb.append("]}");
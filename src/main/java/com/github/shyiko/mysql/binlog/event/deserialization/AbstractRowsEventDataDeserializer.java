@@ -17,15 +17,21 @@ package com.github.shyiko.mysql.binlog.event.deserialization;
 
 import com.github.shyiko.mysql.binlog.event.EventData;
 import com.github.shyiko.mysql.binlog.event.TableMapEventData;
+import com.github.shyiko.mysql.binlog.event.deserialization.json.JsonBinary;
+import com.github.shyiko.mysql.binlog.event.deserialization.json.JsonPath;
 import com.github.shyiko.mysql.binlog.io.ByteArrayInputStream;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.Serializable;
 import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.util.BitSet;
 import java.util.Calendar;
 import java.util.Map;
 import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Whole class is basically a mix of <a href="https://code.google.com/p/open-replicator">open-replicator</a>'s
@@ -55,6 +61,7 @@ import java.util.TimeZone;
  * {@link ColumnType#VARCHAR}: String
  * {@link ColumnType#VAR_STRING}: String
  * {@link ColumnType#STRING}: String
+ * (decoded using column charset if TABLE_MAP carries one (MySQL 8.0.1+), platform default charset otherwise)
  * {@link ColumnType#BLOB}: byte[]
  * {@link ColumnType#GEOMETRY}: byte[]
  * </pre>
@@ -66,15 +73,32 @@ import java.util.TimeZone;
  */
 public abstract class AbstractRowsEventDataDeserializer<T extends EventData> implements EventDataDeserializer<T> {
 
+    // multiplier turning 1/2/3 bytes of fractional seconds (1/100, 1/10000, 1/1000000 of a second) into microseconds
+    private static final int[] FRACTIONAL_SECONDS_SCALE = {0, 10000, 100, 1};
+
     private static final int DIG_PER_DEC = 9;
     private static final int[] DIG_TO_BYTES = {0, 1, 1, 2, 2, 3, 3, 4, 4, 4};
+    private static final int[] POWERS_OF_TEN = {1, 10, 100, 1000, 10000, 100000, 1000000, 10000000, 100000000,
+        1000000000};
+    // max number of decimal digits that is guaranteed to fit into a long
+    private static final int MAX_LONG_DIGITS = 18;
 
     private final Map<Long, TableMapEventData> tableMapEventByTableId;
+    // TableMapEventData captured at the time event was read (see deserialize(ByteArrayInputStream, TableMapEventData))
+    private final ThreadLocal<TableMapEventData> boundTableMapEvent = new ThreadLocal<TableMapEventData>();
+    // CHAR/VARCHAR decoders (by column index) resolved for a particular TABLE_MAP (keyed by table id)
+    private final ConcurrentMap<Long, ColumnDecoders> columnDecodersByTableId =
+        new ConcurrentHashMap<Long, ColumnDecoders>();
+    private volatile ColumnDecoders lastColumnDecoders;
 
     private boolean deserializeDateAndTimeAsLong;
     private Long invalidDateAndTimeRepresentation;
     private boolean microsecondsPrecision;
+    private boolean prolepticGregorianCalendar;
     private boolean deserializeCharAndBinaryAsByteArray;
+    private boolean deserializeRowsLazily;
+    private ColumnProjection columnProjection;
+    private RowListener rowListener;
 
     public AbstractRowsEventDataDeserializer(Map<Long, TableMapEventData> tableMapEventByTableId) {
         this.tableMapEventByTableId = tableMapEventByTableId;
@@ -93,54 +117,318 @@ public abstract class AbstractRowsEventDataDeserializer<T extends EventData> imp
         this.microsecondsPrecision = value;
     }
 
+    void setProlepticGregorianCalendar(boolean value) {
+        this.prolepticGregorianCalendar = value;
+    }
+
     void setDeserializeCharAndBinaryAsByteArray(boolean value) {
         this.deserializeCharAndBinaryAsByteArray = value;
     }
 
+    void setDeserializeRowsLazily(boolean value) {
+        this.deserializeRowsLazily = value;
+    }
+
+    boolean isDeserializeRowsLazily() {
+        return deserializeRowsLazily;
+    }
+
+    void setColumnProjection(ColumnProjection value) {
+        this.columnProjection = value;
+    }
+
+    void setRowListener(RowListener value) {
+        this.rowListener = value;
+    }
+
+    RowListener getRowListener() {
+        return rowListener;
+    }
+
+    /**
+     * Same as {@link #deserialize(ByteArrayInputStream)} except that rows are decoded using given
+     * {@link TableMapEventData} (instead of the one currently registered under the table id). Safe to call
+     * concurrently (provided custom deserializers don't keep per-event state), which is what parallel rows
+     * deserialization relies on.
+     */
+    public T deserialize(ByteArrayInputStream inputStream, TableMapEventData tableMapEvent) throws IOException {
+        boundTableMapEvent.set(tableMapEvent);
+        try {
+            return deserialize(inputStream);
+        } finally {
+            boundTableMapEvent.remove();
+        }
+    }
+
     protected Serializable[] deserializeRow(long tableId, BitSet includedColumns, ByteArrayInputStream inputStream)
             throws IOException {
-        TableMapEventData tableMapEvent = tableMapEventByTableId.get(tableId);
-        if (tableMapEvent == null) {
-            throw new MissingTableMapEventException("No TableMapEventData has been found for table id:" + tableId +
-                ". Usually that means that you have started reading binary log 'within the logical event group'" +
-                " (e.g. from WRITE_ROWS and not proceeding TABLE_MAP");
-        }
+        return deserializeRow(tableId, includedColumns, includedColumns, inputStream);
+    }
+
+    /**
+     * @param includedColumns columns present in the row image
+     * @param projectedColumns subset of {@code includedColumns} to deserialize (see {@link #projectColumns})
+     */
+    protected Serializable[] deserializeRow(long tableId, BitSet includedColumns, BitSet projectedColumns,
+            ByteArrayInputStream inputStream) throws IOException {
+        TableMapEventData tableMapEvent = getTableMapEvent(tableId);
         byte[] types = tableMapEvent.getColumnTypes();
         int[] metadata = tableMapEvent.getColumnMetadata();
-        Serializable[] result = new Serializable[numberOfBitsSet(includedColumns)];
-        BitSet nullColumns = inputStream.readBitSet(result.length, true);
-        for (int i = 0, numberOfSkippedColumns = 0; i < types.length; i++) {
+        int numberOfIncludedColumns = numberOfBitsSet(includedColumns);
+        boolean projected = projectedColumns != includedColumns;
+        Serializable[] result = projected ?
+            new Serializable[numberOfBitsSet(projectedColumns)] : new Serializable[numberOfIncludedColumns];
+        StringDecoder[] decoders = getColumnDecoders(tableMapEvent);
+        JsonPath[] jsonPaths = getJsonPaths(tableMapEvent);
+        BitSet nullColumns = inputStream.readBitSet(numberOfIncludedColumns, true);
+        for (int i = 0, numberOfSkippedColumns = 0, numberOfOmittedColumns = 0; i < types.length; i++) {
             if (!includedColumns.get(i)) {
                 numberOfSkippedColumns++;
                 continue;
             }
-            int index = i - numberOfSkippedColumns;
-            if (!nullColumns.get(index)) {
-                // mysql-5.6.24 sql/log_event.cc log_event_print_value (line 1980)
-                int typeCode = types[i] & 0xFF, meta = metadata[i], length = 0;
-                if (typeCode == ColumnType.STRING.getCode()) {
-                    if (meta >= 256) {
-                        int meta0 = meta >> 8, meta1 = meta & 0xFF;
-                        if ((meta0 & 0x30) != 0x30) {
-                            typeCode = meta0 | 0x30;
-                            length = meta1 | (((meta0 & 0x30) ^ 0x30) << 4);
-                        } else {
-                            // mysql-5.6.24 sql/rpl_utility.h enum_field_types (line 278)
-                            if (meta0 == ColumnType.ENUM.getCode() || meta0 == ColumnType.SET.getCode()) {
-                                typeCode = meta0;
-                            }
-                            length = meta1;
-                        }
-                    } else {
-                        length = meta;
+            boolean omitted = projected && !projectedColumns.get(i);
+            if (!nullColumns.get(i - numberOfSkippedColumns)) {
+                int typeCode = types[i] & 0xFF, meta = metadata[i];
+                ColumnType type = ColumnType.byCode(resolveTypeCode(typeCode, meta));
+                int length = resolveLength(typeCode, meta);
+                if (omitted) {
+                    skipCell(type, meta, length, inputStream);
+                } else if (jsonPaths != null && jsonPaths[i] != null) {
+                    result[i - numberOfSkippedColumns - numberOfOmittedColumns] =
+                        deserializeJson(meta, jsonPaths[i], inputStream);
+                } else {
+                    result[i - numberOfSkippedColumns - numberOfOmittedColumns] = decoders == null ?
+                        deserializeCell(type, meta, length, inputStream) :
+                        deserializeCell(type, meta, length, decoders[i], inputStream);
+                }
+            }
+            if (omitted) {
+                numberOfOmittedColumns++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Index rows (without deserializing any of the cells). Rows are expected to follow each other in
+     * {@code includedColumns} order (e.g. before/after image in case of UPDATE_ROWS).
+     * @param projectedColumns subsets of {@code includedColumns} to index (see {@link #projectColumns})
+     * @return one {@link LazyRows} per each element of {@code includedColumns}
+     */
+    protected LazyRows[] deserializeRowsLazily(long tableId, BitSet[] includedColumns, BitSet[] projectedColumns,
+            ByteArrayInputStream inputStream) throws IOException {
+        TableMapEventData tableMapEvent = getTableMapEvent(tableId);
+        // input stream content is not guaranteed to outlive the event (e.g. packet buffer is reused), hence the copy
+        // (chunks of >16MB event included, see EventDeserializer::setDeserializeRowsLazily)
+        byte[] buffer = inputStream.read(inputStream.available());
+        ByteArrayInputStream bufferInputStream = new ByteArrayInputStream(buffer);
+        LazyRows[] result = new LazyRows[includedColumns.length];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = new LazyRows(this, buffer, tableMapEvent, projectedColumns[i]);
+        }
+        while (bufferInputStream.available() > 0) {
+            for (int k = 0; k < result.length; k++) {
+                indexRow(result[k], includedColumns[k], projectedColumns[k], bufferInputStream, buffer.length);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Decode rows one at a time, handing each one over to the {@link RowListener} (rows are not retained, meaning
+     * that memory footprint is bounded by the size of a single row). Rows are expected to follow each other in
+     * {@code includedColumns} order (e.g. before/after image in case of UPDATE_ROWS).
+     * @param projectedColumns subsets of {@code includedColumns} to expose (see {@link #projectColumns})
+     * @param types type of each image (one per each element of {@code includedColumns})
+     */
+    protected void deserializeRows(long tableId, BitSet[] includedColumns, BitSet[] projectedColumns,
+            RowView.Type[] types, ByteArrayInputStream inputStream) throws IOException {
+        TableMapEventData tableMapEvent = getTableMapEvent(tableId);
+        RowListener rowListener = this.rowListener;
+        if (!inputStream.markSupported()) {
+            // row boundaries are not known until row is indexed (and stream-backed input can't be rewound, unless
+            // it's over the chunks of >16MB event)
+            inputStream = new ByteArrayInputStream(inputStream.read(inputStream.available()));
+        }
+        byte[] buffer = new byte[64];
+        LazyRows[] rows = new LazyRows[includedColumns.length];
+        RowView[] rowViews = new RowView[includedColumns.length];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = new LazyRows(this, buffer, tableMapEvent, projectedColumns[i]);
+            rowViews[i] = new RowView(rows[i], types[i]);
+        }
+        while (inputStream.available() > 0) {
+            for (int k = 0; k < rows.length; k++) {
+                LazyRows row = rows[k];
+                row.clear();
+                int origin = inputStream.available();
+                inputStream.mark(0);
+                indexRow(row, includedColumns[k], projectedColumns[k], inputStream, origin);
+                int rowLength = origin - inputStream.available();
+                inputStream.reset();
+                if (buffer.length < rowLength) {
+                    buffer = new byte[Math.max(rowLength, buffer.length << 1)];
+                    for (LazyRows r : rows) {
+                        r.setBuffer(buffer);
                     }
                 }
-                result[index] = deserializeCell(ColumnType.byCode(typeCode), meta, length, inputStream);
+                inputStream.fill(buffer, 0, rowLength); // cell offsets are relative to the start of the row
+                rowListener.onRow(tableMapEvent, projectedColumns[k], rowViews[k]);
+            }
+        }
+    }
+
+    /**
+     * Index cells of the next row (without deserializing any of them), appending it to the {@code rows}.
+     * @param origin {@code inputStream.available()} that corresponds to the offset 0 within the {@code rows} buffer
+     */
+    private void indexRow(LazyRows rows, BitSet includedColumns, BitSet projectedColumns,
+            ByteArrayInputStream inputStream, int origin) throws IOException {
+        TableMapEventData tableMapEvent = rows.getTableMapEvent();
+        byte[] types = tableMapEvent.getColumnTypes();
+        int[] metadata = tableMapEvent.getColumnMetadata();
+        int index = rows.addRow();
+        BitSet nullColumns = inputStream.readBitSet(includedColumns.cardinality(), true);
+        for (int i = includedColumns.nextSetBit(0), n = 0; i >= 0 && i < types.length;
+                i = includedColumns.nextSetBit(i + 1), n++) {
+            boolean omitted = !projectedColumns.get(i);
+            if (nullColumns.get(n)) {
+                if (!omitted) {
+                    rows.setCell(index++, -1, -1);
+                }
+                continue;
+            }
+            int typeCode = types[i] & 0xFF, meta = metadata[i];
+            int offset = origin - inputStream.available();
+            skipCell(ColumnType.byCode(resolveTypeCode(typeCode, meta)), meta, resolveLength(typeCode, meta),
+                inputStream);
+            if (!omitted) {
+                rows.setCell(index++, offset, origin - inputStream.available());
             }
         }
+    }
+
+    /**
+     * @return subset of {@code includedColumns} that should be deserialized (according to {@link ColumnProjection},
+     * if any) or {@code includedColumns} itself if all of them
+     */
+    protected BitSet projectColumns(long tableId, BitSet includedColumns) {
+        if (columnProjection == null) {
+            return includedColumns;
+        }
+        TableMapEventData tableMapEvent = boundTableMapEvent.get();
+        if (tableMapEvent == null || tableMapEvent.getTableId() != tableId) {
+            tableMapEvent = tableMapEventByTableId.get(tableId);
+        }
+        BitSet columns = tableMapEvent != null ? columnProjection.getColumns(tableMapEvent) : null;
+        if (columns == null) {
+            return includedColumns;
+        }
+        BitSet result = (BitSet) includedColumns.clone();
+        result.and(columns);
         return result;
     }
 
+    private TableMapEventData getTableMapEvent(long tableId) throws MissingTableMapEventException {
+        TableMapEventData tableMapEvent = boundTableMapEvent.get();
+        if (tableMapEvent == null || tableMapEvent.getTableId() != tableId) {
+            tableMapEvent = tableMapEventByTableId.get(tableId);
+        }
+        if (tableMapEvent == null) {
+            throw new MissingTableMapEventException("No TableMapEventData has been found for table id:" + tableId +
+                ". Usually that means that you have started reading binary log 'within the logical event group'" +
+                " (e.g. from WRITE_ROWS and not proceeding TABLE_MAP");
+        }
+        return tableMapEvent;
+    }
+
+    /**
+     * @return CHAR/VARCHAR decoders (indexed by column position within the table, null for columns of any other
+     * type or unknown charset) or null if TABLE_MAP carries no charset information
+     */
+    StringDecoder[] getColumnDecoders(TableMapEventData tableMapEvent) {
+        ColumnDecoders columnDecoders = lastColumnDecoders;
+        if (columnDecoders == null || columnDecoders.tableMapEvent != tableMapEvent) {
+            columnDecoders = columnDecodersByTableId.get(tableMapEvent.getTableId());
+            if (columnDecoders == null || columnDecoders.tableMapEvent != tableMapEvent) {
+                columnDecoders = new ColumnDecoders(tableMapEvent, resolveColumnDecoders(tableMapEvent));
+                columnDecodersByTableId.put(tableMapEvent.getTableId(), columnDecoders);
+            }
+            lastColumnDecoders = columnDecoders;
+        }
+        return columnDecoders.decoders;
+    }
+
+    /**
+     * @return JSON paths JSON columns are narrowed down to (indexed by column position within the table, null for
+     * columns that are not) or null if there are none (see {@link ColumnProjection#includeJsonPath})
+     */
+    JsonPath[] getJsonPaths(TableMapEventData tableMapEvent) {
+        ColumnProjection columnProjection = this.columnProjection;
+        return columnProjection != null ? columnProjection.getJsonPaths(tableMapEvent) : null;
+    }
+
+    private static StringDecoder[] resolveColumnDecoders(TableMapEventData tableMapEvent) {
+        int[] collations = CharsetRegistry.getColumnCollations(tableMapEvent);
+        byte[] types = tableMapEvent.getColumnTypes();
+        StringDecoder[] result = new StringDecoder[collations.length];
+        boolean resolved = false;
+        for (int i = 0; i < collations.length; i++) {
+            if (collations[i] > 0 && (types[i] & 0xFF) != ColumnType.BLOB.getCode() &&
+                    (result[i] = CharsetRegistry.getDecoder(collations[i])) != null) {
+                resolved = true;
+            }
+        }
+        return resolved ? result : null;
+    }
+
+    // mysql-5.6.24 sql/log_event.cc log_event_print_value (line 1980)
+    static int resolveTypeCode(int typeCode, int meta) {
+        if (typeCode == ColumnType.STRING.getCode() && meta >= 256) {
+            int meta0 = meta >> 8;
+            if ((meta0 & 0x30) != 0x30) {
+                return meta0 | 0x30;
+            }
+            // mysql-5.6.24 sql/rpl_utility.h enum_field_types (line 278)
+            if (meta0 == ColumnType.ENUM.getCode() || meta0 == ColumnType.SET.getCode()) {
+                return meta0;
+            }
+        }
+        return typeCode;
+    }
+
+    static int resolveLength(int typeCode, int meta) {
+        if (typeCode != ColumnType.STRING.getCode()) {
+            return 0;
+        }
+        if (meta >= 256) {
+            int meta0 = meta >> 8, meta1 = meta & 0xFF;
+            if ((meta0 & 0x30) != 0x30) {
+                return meta1 | (((meta0 & 0x30) ^ 0x30) << 4);
+            }
+            return meta1;
+        }
+        return meta;
+    }
+
+    /**
+     * Same as {@link #deserializeCell(ColumnType, int, int, ByteArrayInputStream)} except that CHAR/VARCHAR value is
+     * decoded using a given decoder (unless CHAR_AND_BINARY_AS_BYTE_ARRAY is on), straight from the input stream.
+     */
+    Serializable deserializeCell(ColumnType type, int meta, int length, StringDecoder decoder,
+            ByteArrayInputStream inputStream) throws IOException {
+        if (decoder != null && !deserializeCharAndBinaryAsByteArray) {
+            switch (type) {
+                case STRING:
+                    return decoder.decode(inputStream, inputStream.readInteger(length < 256 ? 1 : 2));
+                case VARCHAR: case VAR_STRING:
+                    return decoder.decode(inputStream, inputStream.readInteger(meta < 256 ? 1 : 2));
+                default:
+            }
+        }
+        return deserializeCell(type, meta, length, inputStream);
+    }
+
     protected Serializable deserializeCell(ColumnType type, int meta, int length, ByteArrayInputStream inputStream)
             throws IOException {
         switch (type) {
@@ -197,6 +485,67 @@ public abstract class AbstractRowsEventDataDeserializer<T extends EventData> imp
         }
     }
 
+    /**
+     * Skip the value (without deserializing it).
+     * @see #deserializeCell(ColumnType, int, int, ByteArrayInputStream)
+     */
+    protected void skipCell(ColumnType type, int meta, int length, ByteArrayInputStream inputStream)
+            throws IOException {
+        int cellLength;
+        switch (type) {
+            case BIT:
+                cellLength = ((meta >> 8) * 8 + (meta & 0xFF) + 7) >> 3;
+                break;
+            case TINY: case YEAR:
+                cellLength = 1;
+                break;
+            case SHORT:
+                cellLength = 2;
+                break;
+            case INT24: case DATE: case TIME:
+                cellLength = 3;
+                break;
+            case LONG: case FLOAT: case TIMESTAMP:
+                cellLength = 4;
+                break;
+            case LONGLONG: case DOUBLE: case DATETIME:
+                cellLength = 8;
+                break;
+            case NEWDECIMAL:
+                int precision = meta & 0xFF, scale = meta >> 8, x = precision - scale;
+                int ipd = x / DIG_PER_DEC, fpd = scale / DIG_PER_DEC;
+                cellLength = (ipd << 2) + DIG_TO_BYTES[x - ipd * DIG_PER_DEC] +
+                    (fpd << 2) + DIG_TO_BYTES[scale - fpd * DIG_PER_DEC];
+                break;
+            case TIME_V2:
+                cellLength = 3 + (meta + 1) / 2;
+                break;
+            case TIMESTAMP_V2:
+                cellLength = 4 + (meta + 1) / 2;
+                break;
+            case DATETIME_V2:
+                cellLength = 5 + (meta + 1) / 2;
+                break;
+            case STRING:
+                cellLength = length < 256 ? inputStream.readInteger(1) : inputStream.readInteger(2);
+                break;
+            case VARCHAR: case VAR_STRING:
+                cellLength = meta < 256 ? inputStream.readInteger(1) : inputStream.readInteger(2);
+                break;
+            case BLOB: case GEOMETRY: case JSON:
+                cellLength = inputStream.readInteger(meta);
+                break;
+            case ENUM: case SET:
+                cellLength = length;
+                break;
+            default:
+                throw new IOException("Unsupported type " + type);
+        }
+        if (inputStream.skip(cellLength) != cellLength) {
+            throw new EOFException();
+        }
+    }
+
     protected Serializable deserializeBit(int meta, ByteArrayInputStream inputStream) throws IOException {
         int bitSetLength = (meta >> 8) * 8 + (meta & 0xFF);
         return inputStream.readBitSet(bitSetLength, false);
@@ -231,11 +580,7 @@ public abstract class AbstractRowsEventDataDeserializer<T extends EventData> imp
     }
 
     protected Serializable deserializeNewDecimal(int meta, ByteArrayInputStream inputStream) throws IOException {
-        int precision = meta & 0xFF, scale = meta >> 8, x = precision - scale;
-        int ipd = x / DIG_PER_DEC, fpd = scale / DIG_PER_DEC;
-        int decimalLength = (ipd << 2) + DIG_TO_BYTES[x - ipd * DIG_PER_DEC] +
-            (fpd << 2) + DIG_TO_BYTES[scale - fpd * DIG_PER_DEC];
-        return asBigDecimal(precision, scale, inputStream.read(decimalLength));
+        return readDecimal(meta & 0xFF, meta >> 8, inputStream);
     }
 
     private Long castTimestamp(Long timestamp, int fsp) {
@@ -260,8 +605,7 @@ public abstract class AbstractRowsEventDataDeserializer<T extends EventData> imp
 
     protected Serializable deserializeTime(ByteArrayInputStream inputStream) throws IOException {
         int value = inputStream.readInteger(3);
-        int[] split = split(value, 100, 3);
-        Long timestamp = asUnixTime(1970, 1, 1, split[2], split[1], split[0], 0);
+        Long timestamp = asUnixTime(1970, 1, 1, value / 10000, value / 100 % 100, value % 100, 0);
         if (deserializeDateAndTimeAsLong) {
             return castTimestamp(timestamp, 0);
         }
@@ -282,7 +626,7 @@ public abstract class AbstractRowsEventDataDeserializer<T extends EventData> imp
 
             + fractional-seconds storage (size depends on meta)
         */
-        long time = bigEndianLong(inputStream.read(3), 0, 3);
+        long time = readBigEndianLong(inputStream, 3);
         int fsp = deserializeFractionalSeconds(meta, inputStream);
         Long timestamp = asUnixTime(1970, 1, 1,
             bitSlice(time, 2, 10, 24),
@@ -305,7 +649,7 @@ public abstract class AbstractRowsEventDataDeserializer<T extends EventData> imp
     }
 
     protected Serializable deserializeTimestampV2(int meta, ByteArrayInputStream inputStream) throws IOException {
-        long millis = bigEndianLong(inputStream.read(4), 0, 4);
+        long millis = readBigEndianLong(inputStream, 4);
         int fsp = deserializeFractionalSeconds(meta, inputStream);
         long timestamp = millis * 1000 + fsp / 1000;
         if (deserializeDateAndTimeAsLong) {
@@ -315,8 +659,11 @@ public abstract class AbstractRowsEventDataDeserializer<T extends EventData> imp
     }
 
     protected Serializable deserializeDatetime(ByteArrayInputStream inputStream) throws IOException {
-        int[] split = split(inputStream.readLong(8), 100, 6);
-        Long timestamp = asUnixTime(split[5], split[4], split[3], split[2], split[1], split[0], 0);
+        // YYYYMMDDhhmmss
+        long value = inputStream.readLong(8);
+        int date = (int) (value / 1000000), time = (int) (value % 1000000);
+        Long timestamp = asUnixTime(date / 10000, date / 100 % 100, date % 100,
+            time / 10000, time / 100 % 100, time % 100, 0);
         if (deserializeDateAndTimeAsLong) {
             return castTimestamp(timestamp, 0);
         }
@@ -338,7 +685,7 @@ public abstract class AbstractRowsEventDataDeserializer<T extends EventData> imp
 
             + fractional-seconds storage (size depends on meta)
         */
-        long datetime = bigEndianLong(inputStream.read(5), 0, 5);
+        long datetime = readBigEndianLong(inputStream, 5);
         int yearMonth = bitSlice(datetime, 1, 17, 40);
         int fsp = deserializeFractionalSeconds(meta, inputStream);
         Long timestamp = asUnixTime(
@@ -361,8 +708,8 @@ public abstract class AbstractRowsEventDataDeserializer<T extends EventData> imp
     }
 
     protected Serializable deserializeString(int length, ByteArrayInputStream inputStream) throws IOException {
-        // charset is not present in the binary log (meaning there is no way to distinguish between CHAR / BINARY)
-        // as a result - return byte[] instead of an actual String
+        // unless TABLE_MAP carries column charsets (see deserializeCell(..., StringDecoder, ...)) there is no way to
+        // distinguish between CHAR / BINARY (which is why CHAR_AND_BINARY_AS_BYTE_ARRAY exists)
         int stringLength = length < 256 ? inputStream.readInteger(1) : inputStream.readInteger(2);
         if (deserializeCharAndBinaryAsByteArray) {
             return inputStream.read(stringLength);
@@ -411,20 +758,30 @@ public abstract class AbstractRowsEventDataDeserializer<T extends EventData> imp
         return inputStream.read(blobLength);
     }
 
+    /**
+     * @return value at a given path within the JSON document (see {@link JsonBinary#extract(byte[], JsonPath)})
+     */
+    Serializable deserializeJson(int meta, JsonPath path, ByteArrayInputStream inputStream) throws IOException {
+        byte[] document = deserializeJson(meta, inputStream);
+        return document.length != 0 ? JsonBinary.extract(document, path) : null;
+    }
+
     // checkstyle, please ignore ParameterNumber for the next line
     protected Long asUnixTime(int year, int month, int day, int hour, int minute, int second, int millis) {
         // https://dev.mysql.com/doc/refman/5.0/en/datetime.html
         if (year == 0 || month == 0 || day == 0) {
             return invalidDateAndTimeRepresentation;
         }
+        if (prolepticGregorianCalendar) {
+            return UnixTime.fromProlepticGregorian(year, month, day, hour, minute, second, millis);
+        }
         return UnixTime.from(year, month, day, hour, minute, second, millis);
     }
 
     protected int deserializeFractionalSeconds(int meta, ByteArrayInputStream inputStream) throws IOException {
         int length = (meta + 1) / 2;
         if (length > 0) {
-            int fraction = bigEndianInteger(inputStream.read(length), 0, length);
-            return fraction * (int) Math.pow(100, 3 - length);
+            return (int) readBigEndianLong(inputStream, length) * FRACTIONAL_SECONDS_SCALE[length];
         }
         return 0;
     }
@@ -442,13 +799,11 @@ public abstract class AbstractRowsEventDataDeserializer<T extends EventData> imp
         return result;
     }
 
-    private static int[] split(long value, int divider, int length) {
-        int[] result = new int[length];
-        for (int i = 0; i < length - 1; i++) {
-            result[i] = (int) (value % divider);
-            value /= divider;
+    private static long readBigEndianLong(ByteArrayInputStream inputStream, int length) throws IOException {
+        long result = 0;
+        for (int i = 0; i < length; i++) {
+            result = (result << 8) | inputStream.read();
         }
-        result[length - 1] = (int) value;
         return result;
     }
 
@@ -456,53 +811,99 @@ public abstract class AbstractRowsEventDataDeserializer<T extends EventData> imp
      * see mysql/strings/decimal.c
      */
     public static BigDecimal asBigDecimal(int precision, int scale, byte[] value) {
-        boolean positive = (value[0] & 0x80) == 0x80;
-        value[0] ^= 0x80;
-        if (!positive) {
-            for (int i = 0; i < value.length; i++) {
-                value[i] ^= 0xFF;
+        try {
+            return readDecimal(precision, scale, new ByteArrayInputStream(value));
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Malformed DECIMAL(" + precision + "," + scale + ")", e);
+        }
+    }
+
+    /**
+     * DECIMAL is stored as a sequence of big-endian groups of 9 digits (4 bytes each), integer part going first
+     * (most significant group might hold less digits and so take less bytes), fractional - second (with the least
+     * significant group holding the rest). Sign is encoded by flipping the highest bit of the first byte (and
+     * inverting all the bytes in case of negative numbers). See mysql/strings/decimal.c for more.
+     * <p>
+     * Digits are accumulated into a long (no intermediate BigDecimals), meaning that up to DECIMAL(18) it's just one
+     * {@link BigDecimal#valueOf(long, int)}. BigInteger is only involved for wider precisions.
+     */
+    static BigDecimal readDecimal(int precision, int scale, ByteArrayInputStream inputStream) throws IOException {
+        if (precision <= MAX_LONG_DIGITS) {
+            return BigDecimal.valueOf(readUnscaledDecimal(precision, scale, inputStream), scale);
+        }
+        int x = precision - scale, ipDigitsX = x % DIG_PER_DEC, fpDigitsX = scale % DIG_PER_DEC;
+        int numberOfGroups = x / DIG_PER_DEC + scale / DIG_PER_DEC + (ipDigitsX > 0 ? 1 : 0) + (fpDigitsX > 0 ? 1 : 0);
+        int mask = (inputStream.peek() & 0x80) == 0x80 ? 0 : 0xFF;
+        BigInteger result = null;
+        long unscaled = 0;
+        int unscaledDigits = 0;
+        for (int i = 0; i < numberOfGroups; i++) {
+            int digits = i == 0 && ipDigitsX > 0 ? ipDigitsX :
+                i == numberOfGroups - 1 && fpDigitsX > 0 ? fpDigitsX : DIG_PER_DEC;
+            if (unscaledDigits + digits > MAX_LONG_DIGITS) {
+                result = append(result, unscaled, unscaledDigits);
+                unscaled = 0;
+                unscaledDigits = 0;
             }
+            unscaled = unscaled * POWERS_OF_TEN[digits] +
+                readDecimalGroup(inputStream, DIG_TO_BYTES[digits], mask, i == 0 ? 0x80 : 0);
+            unscaledDigits += digits;
         }
-        int x = precision - scale;
-        int ipDigits = x / DIG_PER_DEC;
-        int ipDigitsX = x - ipDigits * DIG_PER_DEC;
-        int ipSize = (ipDigits << 2) + DIG_TO_BYTES[ipDigitsX];
-        int offset = DIG_TO_BYTES[ipDigitsX];
-        BigDecimal ip = offset > 0 ? BigDecimal.valueOf(bigEndianInteger(value, 0, offset)) : BigDecimal.ZERO;
-        for (; offset < ipSize; offset += 4) {
-            int i = bigEndianInteger(value, offset, 4);
-            ip = ip.movePointRight(DIG_PER_DEC).add(BigDecimal.valueOf(i));
+        result = append(result, unscaled, unscaledDigits);
+        return new BigDecimal(mask == 0 ? result : result.negate(), scale);
+    }
+
+    /**
+     * Same as {@link #readDecimal(int, int, ByteArrayInputStream)} except that value is returned as an unscaled long
+     * (without allocating anything). Precision must not exceed 18.
+     */
+    static long readUnscaledDecimal(int precision, int scale, ByteArrayInputStream inputStream) throws IOException {
+        int x = precision - scale, ipDigits = x / DIG_PER_DEC, ipDigitsX = x - ipDigits * DIG_PER_DEC;
+        int fpDigits = scale / DIG_PER_DEC, fpDigitsX = scale - fpDigits * DIG_PER_DEC;
+        int mask = (inputStream.peek() & 0x80) == 0x80 ? 0 : 0xFF, flip = 0x80;
+        long result = 0;
+        if (ipDigitsX > 0) {
+            result = readDecimalGroup(inputStream, DIG_TO_BYTES[ipDigitsX], mask, flip);
+            flip = 0;
         }
-        int shift = 0;
-        BigDecimal fp = BigDecimal.ZERO;
-        for (; shift + DIG_PER_DEC <= scale; shift += DIG_PER_DEC, offset += 4) {
-            int i = bigEndianInteger(value, offset, 4);
-            fp = fp.add(BigDecimal.valueOf(i).movePointLeft(shift + DIG_PER_DEC));
+        for (int i = ipDigits + fpDigits; i > 0; i--) {
+            result = result * 1000000000L + readDecimalGroup(inputStream, 4, mask, flip);
+            flip = 0;
         }
-        if (shift < scale) {
-            int i = bigEndianInteger(value, offset, DIG_TO_BYTES[scale - shift]);
-            fp = fp.add(BigDecimal.valueOf(i).movePointLeft(scale));
+        if (fpDigitsX > 0) {
+            result = result * POWERS_OF_TEN[fpDigitsX] +
+                readDecimalGroup(inputStream, DIG_TO_BYTES[fpDigitsX], mask, flip);
         }
-        BigDecimal result = ip.add(fp);
-        return positive ? result : result.negate();
+        return mask == 0 ? result : -result;
     }
 
-    private static int bigEndianInteger(byte[] bytes, int offset, int length) {
-        int result = 0;
-        for (int i = offset; i < (offset + length); i++) {
-            byte b = bytes[i];
-            result = (result << 8) | (b >= 0 ? (int) b : (b + 256));
+    private static int readDecimalGroup(ByteArrayInputStream inputStream, int length, int mask, int flip)
+            throws IOException {
+        int result = inputStream.read() ^ mask ^ flip;
+        for (int i = 1; i < length; i++) {
+            result = (result << 8) | (inputStream.read() ^ mask);
         }
         return result;
     }
 
-    private static long bigEndianLong(byte[] bytes, int offset, int length) {
-        long result = 0;
-        for (int i = offset; i < (offset + length); i++) {
-            byte b = bytes[i];
-            result = (result << 8) | (b >= 0 ? (int) b : (b + 256));
+    private static BigInteger append(BigInteger value, long digits, int numberOfDigits) {
+        BigInteger result = BigInteger.valueOf(digits);
+        return value == null ? result : value.multiply(BigInteger.TEN.pow(numberOfDigits)).add(result);
+    }
+
+    /**
+     * CHAR/VARCHAR decoders resolved against a particular {@link TableMapEventData} (table id alone is not enough as
+     * it might get reassigned).
+     */
+    private static final class ColumnDecoders {
+
+        private final TableMapEventData tableMapEvent;
+        private final StringDecoder[] decoders;
+
+        private ColumnDecoders(TableMapEventData tableMapEvent, StringDecoder[] decoders) {
+            this.tableMapEvent = tableMapEvent;
+            this.decoders = decoders;
         }
-        return result;
     }
 
     /**
@@ -516,6 +917,16 @@ public abstract class AbstractRowsEventDataDeserializer<T extends EventData> imp
         private static final int[] LEAP_YEAR_DAYS_BY_MONTH = new int[] {
             0, 31, 60, 91, 121, 152, 182, 213, 244, 274, 305, 335, 366
         };
+        private static final int FIRST_CACHED_YEAR = 1900;
+        private static final int LAST_CACHED_YEAR = 2299;
+        // number of days between January 1, 1970 and January 1 of a given year (indexed by year - FIRST_CACHED_YEAR)
+        private static final int[] DAYS_BEFORE_YEAR = new int[LAST_CACHED_YEAR - FIRST_CACHED_YEAR + 1];
+
+        static {
+            for (int i = 0; i < DAYS_BEFORE_YEAR.length; i++) {
+                DAYS_BEFORE_YEAR[i] = (int) daysFromCivil(FIRST_CACHED_YEAR + i, 1, 1);
+            }
+        }
 
         /**
          * Calendar::getTimeInMillis but magnitude faster for all dates starting from October 15, 1582
@@ -537,15 +948,26 @@ public abstract class AbstractRowsEventDataDeserializer<T extends EventData> imp
             if (year < 1582 || (year == 1582 && (month < 10 || (month == 10 && day < 15)))) {
                 return fallbackToGC(year, month, day, hour, minute, second, millis);
             }
-            long timestamp = 0;
-            int numberOfLeapYears = leapYears(1970, year);
-            timestamp += 366L * 24 * 60 * 60 * numberOfLeapYears;
-            timestamp += 365L * 24 * 60 * 60 * (year - 1970 - numberOfLeapYears);
-            long daysUpToMonth = isLeapYear(year) ? LEAP_YEAR_DAYS_BY_MONTH[month - 1] : YEAR_DAYS_BY_MONTH[month - 1];
-            timestamp += ((daysUpToMonth + day - 1) * 24 * 60 * 60) +
-                (hour * 60 * 60) + (minute * 60) + (second);
-            timestamp = timestamp * 1000 + millis;
-            return timestamp;
+            return fromProlepticGregorian(year, month, day, hour, minute, second, millis);
+        }
+
+        /**
+         * Same as {@link #from(int, int, int, int, int, int, int)} except that dates prior to October 15, 1582 are
+         * interpreted according to the proleptic Gregorian calendar (which is what MySQL does) instead of the Julian
+         * one. No Calendar is involved (days since the epoch come either from a table (1900-2299) or
+         * a closed-form formula).
+         */
+        // checkstyle, please ignore ParameterNumber for the next line
+        public static long fromProlepticGregorian(int year, int month, int day, int hour, int minute, int second,
+                int millis) {
+            long days;
+            if (year >= FIRST_CACHED_YEAR && year <= LAST_CACHED_YEAR) {
+                days = DAYS_BEFORE_YEAR[year - FIRST_CACHED_YEAR] +
+                    (isLeapYear(year) ? LEAP_YEAR_DAYS_BY_MONTH[month - 1] : YEAR_DAYS_BY_MONTH[month - 1]) + day - 1;
+            } else {
+                days = daysFromCivil(year, month, day);
+            }
+            return (((days * 24 + hour) * 60 + minute) * 60 + second) * 1000 + millis;
         }
 
         // checkstyle, please ignore ParameterNumber for the next line
@@ -562,12 +984,18 @@ public abstract class AbstractRowsEventDataDeserializer<T extends EventData> imp
             return c.getTimeInMillis();
         }
 
-        private static int leapYears(int from, int end) {
-            return leapYearsBefore(end) - leapYearsBefore(from + 1);
-        }
-
-        private static int leapYearsBefore(int year) {
-            year--; return (year / 4) - (year / 100) + (year / 400);
+        /**
+         * http://howardhinnant.github.io/date_algorithms.html#days_from_civil
+         *
+         * @return number of days since January 1, 1970 (proleptic Gregorian calendar)
+         */
+        private static long daysFromCivil(int year, int month, int day) {
+            int y = month <= 2 ? year - 1 : year;
+            int era = (y >= 0 ? y : y - 399) / 400;
+            int yearOfEra = y - era * 400;
+            int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+            int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+            return era * 146097L + dayOfEra - 719468;
         }
 
         private static boolean isLeapYear(int year) {
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2018 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog.event.deserialization;
+
+import com.github.shyiko.mysql.binlog.event.TableMapEventData;
+import com.github.shyiko.mysql.binlog.event.TableMapEventMetadata;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * MySQL collation id (as found in TABLE_MAP metadata (DEFAULT_CHARSET/COLUMN_CHARSET)) to {@link Charset} mapping.
+ * <p>
+ * Collations of the charsets Java has no counterpart for (dec8, hp8, swe7, armscii8, keybcs2, geostd8) as well as
+ * binary (63) are not mapped (values of such columns are deserialized the same way they would be without TABLE_MAP
+ * metadata).
+ *
+ * @see <a href="https://dev.mysql.com/doc/refman/8.0/en/information-schema-collations-table.html">
+ * INFORMATION_SCHEMA.COLLATIONS</a>
+ * @author <a href="mailto:stanley.shyiko@gmail.com">Stanley Shyiko</a>
+ */
+public final class CharsetRegistry {
+
+    private static final int MAX_COLLATION_ID = 2047;
+
+    private static volatile StringDecoder[] decoders = new StringDecoder[256];
+
+    static {
+        register("Big5", 1, 84);
+        register("ISO-8859-2", 2, 9, 21, 27, 77);
+        register("IBM850", 4, 80);
+        // MySQL's latin1 is actually cp1252
+        register("windows-1252", 5, 8, 15, 31, 47, 48, 49, 94);
+        register("KOI8-R", 7, 74);
+        register("US-ASCII", 11, 65);
+        register("EUC-JP", 12, 91);
+        register("Shift_JIS", 13, 88);
+        register("windows-1251", 14, 23, 50, 51, 52);
+        register("ISO-8859-8", 16, 71);
+        register("TIS-620", 18, 89);
+        register("EUC-KR", 19, 85);
+        register("ISO-8859-13", 20, 41, 42, 79);
+        register("KOI8-U", 22, 75);
+        register("GB2312", 24, 86);
+        register("ISO-8859-7", 25, 70);
+        register("windows-1250", 26, 34, 44, 66, 99);
+        register("GBK", 28, 87);
+        register("windows-1257", 29, 58, 59);
+        register("ISO-8859-9", 30, 78);
+        register("IBM866", 36, 68);
+        register("x-MacCentralEurope", 38, 43);
+        register("x-MacRoman", 39, 53);
+        register("IBM852", 40, 81);
+        register("UTF-16LE", 56, 62);
+        register("windows-1256", 57, 67);
+        register("windows-31j", 95, 96);
+        register("x-eucJP-Open", 97, 98);
+        register("GB18030", 248, 249, 250);
+        // utf8mb3
+        register("UTF-8", 33, 76, 83, 223);
+        register("UTF-8", range(192, 215));
+        // utf8mb4
+        register("UTF-8", 45, 46);
+        register("UTF-8", range(224, 247));
+        register("UTF-8", range(255, 323));
+        // ucs2
+        register("UTF-16BE", 35, 90, 159);
+        register("UTF-16BE", range(128, 151));
+        register("UTF-16", 54, 55);
+        register("UTF-16", range(101, 124));
+        register("UTF-32", 60, 61);
+        register("UTF-32", range(160, 183));
+    }
+
+    private CharsetRegistry() {
+    }
+
+    /**
+     * @return charset of a given collation, null if collation is binary or unknown
+     */
+    public static Charset getCharset(int collationId) {
+        StringDecoder decoder = getDecoder(collationId);
+        return decoder != null ? decoder.getCharset() : null;
+    }
+
+    /**
+     * @return true if collation is mapped to a charset that encodes 7-bit characters as single bytes of the same value
+     * (meaning that non-ASCII characters are always encoded with bytes &gt;= 0x80), false otherwise
+     */
+    public static boolean isAsciiCompatible(int collationId) {
+        StringDecoder decoder = getDecoder(collationId);
+        return decoder != null && decoder.isAsciiCompatible();
+    }
+
+    /**
+     * https://dev.mysql.com/doc/dev/mysql-server/latest/classbinary__log_1_1Table__map__event.html
+     * (DEFAULT_CHARSET/COLUMN_CHARSET are given for character columns (CHAR/VARCHAR/BINARY/VARBINARY/BLOB/TEXT) only).
+     * @return collation of each column (indexed by column position within the table), -1 if column is not a
+     * character one, 0 if TABLE_MAP carries no charset information for it
+     */
+    public static int[] getColumnCollations(TableMapEventData tableMapEvent) {
+        byte[] types = tableMapEvent.getColumnTypes();
+        int[] metadata = tableMapEvent.getColumnMetadata();
+        TableMapEventMetadata eventMetadata = tableMapEvent.getEventMetadata();
+        List<Integer> columnCharsets = eventMetadata != null ? eventMetadata.getColumnCharsets() : null;
+        TableMapEventMetadata.DefaultCharset defaultCharset = eventMetadata != null ?
+            eventMetadata.getDefaultCharset() : null;
+        int[] result = new int[types.length];
+        for (int i = 0, characterColumnIndex = 0; i < types.length; i++) {
+            ColumnType type = ColumnType.byCode(
+                AbstractRowsEventDataDeserializer.resolveTypeCode(types[i] & 0xFF, metadata[i]));
+            if (type != ColumnType.STRING && type != ColumnType.VARCHAR && type != ColumnType.VAR_STRING &&
+                    type != ColumnType.BLOB) {
+                result[i] = -1;
+                continue;
+            }
+            if (columnCharsets != null) {
+                result[i] = characterColumnIndex < columnCharsets.size() ? columnCharsets.get(characterColumnIndex) : 0;
+            } else
+            if (defaultCharset != null) {
+                Map<Integer, Integer> charsetCollations = defaultCharset.getCharsetCollations();
+                Integer columnCollation = charsetCollations != null ?
+                    charsetCollations.get(characterColumnIndex) : null;
+                result[i] = columnCollation != null ? columnCollation : defaultCharset.getDefaultCharsetCollation();
+            }
+            characterColumnIndex++;
+        }
+        return result;
+    }
+
+    /**
+     * Map (custom) collation to a given charset (overriding existing mapping, if any).
+     * Expected to be called before any data is read.
+     */
+    public static void register(int collationId, Charset charset) {
+        if (collationId < 0 || collationId > MAX_COLLATION_ID) {
+            throw new IllegalArgumentException("Collation id must be within [0, " + MAX_COLLATION_ID + "]");
+        }
+        register(collationId, charset != null ? new StringDecoder(charset) : null);
+    }
+
+    static StringDecoder getDecoder(int collationId) {
+        StringDecoder[] decoders = CharsetRegistry.decoders;
+        return collationId >= 0 && collationId < decoders.length ? decoders[collationId] : null;
+    }
+
+    private static synchronized void register(int collationId, StringDecoder decoder) {
+        StringDecoder[] result = decoders;
+        if (collationId >= result.length) {
+            result = Arrays.copyOf(result, Math.max(collationId + 1, result.length << 1));
+        } else {
+            result = result.clone();
+        }
+        result[collationId] = decoder;
+        decoders = result;
+    }
+
+    private static void register(String charsetName, int... collationIds) {
+        if (!Charset.isSupported(charsetName)) {
+            return;
+        }
+        StringDecoder decoder = new StringDecoder(Charset.forName(charsetName));
+        for (int collationId : collationIds) {
+            register(collationId, decoder);
+        }
+    }
+
+    private static int[] range(int from, int to) {
+        int[] result = new int[to - from + 1];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = from + i;
+        }
+        return result;
+    }
+
+}
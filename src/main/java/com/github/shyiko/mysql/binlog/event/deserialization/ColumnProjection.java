@@ -0,0 +1,231 @@
+/*
+ * Copyright 2018 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog.event.deserialization;
+
+import com.github.shyiko.mysql.binlog.event.TableMapEventData;
+import com.github.shyiko.mysql.binlog.event.TableMapEventMetadata;
+import com.github.shyiko.mysql.binlog.event.deserialization.json.JsonPath;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Per-table set of columns that should be deserialized (values of all the other columns are skipped without being
+ * materialized). Tables without an entry are deserialized in full.
+ * <pre>
+ * ColumnProjection columnProjection = new ColumnProjection()
+ *     .include("db", "orders", 0, 3) // by column index
+ *     .include("db", "customers", "id", "email"); // by column name (requires binlog_row_metadata=FULL)
+ * eventDeserializer.setColumnProjection(columnProjection);
+ * </pre>
+ * Columns given by name can only be resolved when TABLE_MAP carries column names (MySQL 8.0.1+
+ * with binlog_row_metadata=FULL). Otherwise such table is deserialized in full.
+ * <p>
+ * JSON columns can be narrowed down to a single value within the document (the rest of the document is never looked
+ * at), in which case value of such column is the one returned by
+ * {@link com.github.shyiko.mysql.binlog.event.deserialization.json.JsonBinary#extract(byte[], JsonPath)} (instead of
+ * the binary representation of the whole document):
+ * <pre>
+ * columnProjection.includeJsonPath("db", "events", "payload", JsonPath.parse("$.tenant_id"));
+ * </pre>
+ * <p>
+ * Projection is expected to be configured before it's handed over to the {@link EventDeserializer}.
+ *
+ * @see EventDeserializer#setColumnProjection(ColumnProjection)
+ * @author <a href="mailto:stanley.shyiko@gmail.com">Stanley Shyiko</a>
+ */
+public class ColumnProjection {
+
+    private final Map<String, BitSet> columnIndexesByTable = new HashMap<String, BitSet>();
+    private final Map<String, Set<String>> columnNamesByTable = new HashMap<String, Set<String>>();
+    private final Map<String, Map<Integer, JsonPath>> jsonPathsByColumnIndexByTable =
+        new HashMap<String, Map<Integer, JsonPath>>();
+    private final Map<String, Map<String, JsonPath>> jsonPathsByColumnNameByTable =
+        new HashMap<String, Map<String, JsonPath>>();
+    // columns resolved for a particular TABLE_MAP (keyed by table id)
+    private final ConcurrentMap<Long, ResolvedColumns> resolvedColumnsByTableId =
+        new ConcurrentHashMap<Long, ResolvedColumns>();
+
+    public ColumnProjection include(String database, String table, int... columnIndexes) {
+        String key = key(database, table);
+        BitSet columns = columnIndexesByTable.get(key);
+        if (columns == null) {
+            columnIndexesByTable.put(key, columns = new BitSet());
+        }
+        for (int columnIndex : columnIndexes) {
+            columns.set(columnIndex);
+        }
+        resolvedColumnsByTableId.clear();
+        return this;
+    }
+
+    public ColumnProjection include(String database, String table, String... columnNames) {
+        String key = key(database, table);
+        Set<String> columns = columnNamesByTable.get(key);
+        if (columns == null) {
+            columnNamesByTable.put(key, columns = new HashSet<String>());
+        }
+        Collections.addAll(columns, columnNames);
+        resolvedColumnsByTableId.clear();
+        return this;
+    }
+
+    /**
+     * Include JSON column, narrowed down to the value at a given path (overriding path set before, if any).
+     */
+    public ColumnProjection includeJsonPath(String database, String table, int columnIndex, JsonPath path) {
+        include(database, table, columnIndex);
+        String key = key(database, table);
+        Map<Integer, JsonPath> jsonPaths = jsonPathsByColumnIndexByTable.get(key);
+        if (jsonPaths == null) {
+            jsonPathsByColumnIndexByTable.put(key, jsonPaths = new HashMap<Integer, JsonPath>());
+        }
+        jsonPaths.put(columnIndex, path);
+        return this;
+    }
+
+    /**
+     * Include JSON column, narrowed down to the value at a given path (overriding path set before, if any).
+     */
+    public ColumnProjection includeJsonPath(String database, String table, String columnName, JsonPath path) {
+        include(database, table, columnName);
+        String key = key(database, table);
+        Map<String, JsonPath> jsonPaths = jsonPathsByColumnNameByTable.get(key);
+        if (jsonPaths == null) {
+            jsonPathsByColumnNameByTable.put(key, jsonPaths = new HashMap<String, JsonPath>());
+        }
+        jsonPaths.put(columnName, path);
+        return this;
+    }
+
+    /**
+     * @return columns (by index) that should be deserialized, null if all of them
+     */
+    public BitSet getColumns(TableMapEventData tableMapEvent) {
+        return getResolvedColumns(tableMapEvent).columns;
+    }
+
+    /**
+     * @return JSON paths indexed by column position within the table (null for columns that are not narrowed down),
+     * null if there are none
+     */
+    JsonPath[] getJsonPaths(TableMapEventData tableMapEvent) {
+        return getResolvedColumns(tableMapEvent).jsonPaths;
+    }
+
+    private ResolvedColumns getResolvedColumns(TableMapEventData tableMapEvent) {
+        ResolvedColumns resolvedColumns = resolvedColumnsByTableId.get(tableMapEvent.getTableId());
+        if (resolvedColumns == null || resolvedColumns.tableMapEvent != tableMapEvent) {
+            BitSet columns = resolve(tableMapEvent);
+            resolvedColumns = new ResolvedColumns(tableMapEvent, columns,
+                columns != null ? resolveJsonPaths(tableMapEvent) : null);
+            resolvedColumnsByTableId.put(tableMapEvent.getTableId(), resolvedColumns);
+        }
+        return resolvedColumns;
+    }
+
+    private BitSet resolve(TableMapEventData tableMapEvent) {
+        String key = key(tableMapEvent.getDatabase(), tableMapEvent.getTable());
+        BitSet columnIndexes = columnIndexesByTable.get(key);
+        Set<String> columnNames = columnNamesByTable.get(key);
+        if (columnIndexes == null && columnNames == null) {
+            return null;
+        }
+        BitSet result = columnIndexes != null ? (BitSet) columnIndexes.clone() : new BitSet();
+        if (columnNames != null) {
+            List<String> tableColumnNames = getColumnNames(tableMapEvent);
+            if (tableColumnNames == null) {
+                return null;
+            }
+            for (int i = 0; i < tableColumnNames.size(); i++) {
+                if (columnNames.contains(tableColumnNames.get(i))) {
+                    result.set(i);
+                }
+            }
+        }
+        return result;
+    }
+
+    private JsonPath[] resolveJsonPaths(TableMapEventData tableMapEvent) {
+        String key = key(tableMapEvent.getDatabase(), tableMapEvent.getTable());
+        Map<Integer, JsonPath> jsonPathsByColumnIndex = jsonPathsByColumnIndexByTable.get(key);
+        Map<String, JsonPath> jsonPathsByColumnName = jsonPathsByColumnNameByTable.get(key);
+        if (jsonPathsByColumnIndex == null && jsonPathsByColumnName == null) {
+            return null;
+        }
+        byte[] types = tableMapEvent.getColumnTypes();
+        JsonPath[] result = new JsonPath[types.length];
+        if (jsonPathsByColumnIndex != null) {
+            for (Map.Entry<Integer, JsonPath> entry : jsonPathsByColumnIndex.entrySet()) {
+                if (entry.getKey() < result.length) {
+                    result[entry.getKey()] = entry.getValue();
+                }
+            }
+        }
+        if (jsonPathsByColumnName != null) {
+            // names are known to be available (otherwise table would have been deserialized in full)
+            List<String> tableColumnNames = getColumnNames(tableMapEvent);
+            for (int i = 0; i < tableColumnNames.size() && i < result.length; i++) {
+                JsonPath path = jsonPathsByColumnName.get(tableColumnNames.get(i));
+                if (path != null) {
+                    result[i] = path;
+                }
+            }
+        }
+        boolean resolved = false;
+        for (int i = 0; i < result.length; i++) {
+            if (result[i] != null && (types[i] & 0xFF) != ColumnType.JSON.getCode()) {
+                result[i] = null; // not a JSON column
+            }
+            resolved |= result[i] != null;
+        }
+        return resolved ? result : null;
+    }
+
+    private static List<String> getColumnNames(TableMapEventData tableMapEvent) {
+        TableMapEventMetadata metadata = tableMapEvent.getEventMetadata();
+        return metadata != null ? metadata.getColumnNames() : null;
+    }
+
+    private static String key(String database, String table) {
+        return database + "." + table;
+    }
+
+    /**
+     * Columns resolved against a particular {@link TableMapEventData} (table id alone is not enough as it might
+     * get reassigned).
+     */
+    private static final class ResolvedColumns {
+
+        private final TableMapEventData tableMapEvent;
+        private final BitSet columns;
+        private final JsonPath[] jsonPaths;
+
+        private ResolvedColumns(TableMapEventData tableMapEvent, BitSet columns, JsonPath[] jsonPaths) {
+            this.tableMapEvent = tableMapEvent;
+            this.columns = columns;
+            this.jsonPaths = jsonPaths;
+        }
+    }
+
+}
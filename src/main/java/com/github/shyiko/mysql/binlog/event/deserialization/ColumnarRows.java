@@ -0,0 +1,227 @@
+/*
+ * Copyright 2018 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog.event.deserialization;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Column-oriented (and reusable) view of {@link LazyRows}: integer columns are decoded into a {@code long[]}
+ * (one per column), FLOAT/DOUBLE ones into a {@code double[]}, while the rest are kept as offset/length slices of
+ * the event buffer ({@link #getBuffer()}). No value gets boxed. Arrays are retained (and grown when necessary)
+ * between {@link #load(LazyRows)}s, so reusing the same instance across events allocates nothing in a steady
+ * state.
+ * <pre>
+ * ColumnarRows columnarRows = new ColumnarRows(); // one per listener/thread
+ * ...
+ * columnarRows.load(writeRowsEventData.getLazyRows());
+ * for (int row = 0; row &lt; columnarRows.size(); row++) {
+ *     long id = columnarRows.getLong(row, 0);
+ *     ...
+ * }
+ * </pre>
+ * Content is only valid until the next {@link #load(LazyRows)}. Instances are not thread-safe.
+ *
+ * @see EventDeserializer#setDeserializeRowsLazily(boolean)
+ * @author <a href="mailto:stanley.shyiko@gmail.com">Stanley Shyiko</a>
+ */
+public class ColumnarRows {
+
+    private static final long[][] NO_LONGS = new long[0][];
+    private static final double[][] NO_DOUBLES = new double[0][];
+    private static final int[][] NO_INTS = new int[0][];
+
+    private LazyRows rows;
+    private int numberOfRows;
+    private int numberOfColumns;
+    private ColumnType[] columnTypes = new ColumnType[0];
+    // per column (null unless column is of a matching type)
+    private long[][] longs = NO_LONGS;
+    private double[][] doubles = NO_DOUBLES;
+    // per column, offset is -1 if value is NULL
+    private int[][] offsets = NO_INTS;
+    private int[][] lengths = NO_INTS;
+
+    /**
+     * Decode given rows (replacing current content).
+     * @return this
+     */
+    public ColumnarRows load(LazyRows rows) {
+        this.rows = rows;
+        this.numberOfRows = rows.size();
+        this.numberOfColumns = rows.getNumberOfColumns();
+        ensureCapacity();
+        for (int column = 0; column < numberOfColumns; column++) {
+            ColumnType type = rows.getColumnType(column);
+            columnTypes[column] = type;
+            int[] columnOffsets = offsets[column] = grow(offsets[column]);
+            int[] columnLengths = lengths[column] = grow(lengths[column]);
+            for (int row = 0; row < numberOfRows; row++) {
+                columnOffsets[row] = rows.getValueOffset(row, column);
+                columnLengths[row] = rows.getValueLength(row, column);
+            }
+            if (isInteger(type)) {
+                long[] values = longs[column] = grow(longs[column]);
+                for (int row = 0; row < numberOfRows; row++) {
+                    values[row] = rows.getLong(row, column);
+                }
+            } else
+            if (type == ColumnType.FLOAT || type == ColumnType.DOUBLE) {
+                double[] values = doubles[column] = grow(doubles[column]);
+                for (int row = 0; row < numberOfRows; row++) {
+                    values[row] = rows.getDouble(row, column);
+                }
+            }
+        }
+        return this;
+    }
+
+    public int size() {
+        return numberOfRows;
+    }
+
+    public int getNumberOfColumns() {
+        return numberOfColumns;
+    }
+
+    public ColumnType getColumnType(int column) {
+        checkColumn(column);
+        return columnTypes[column];
+    }
+
+    public boolean isNull(int row, int column) {
+        checkRow(row);
+        checkColumn(column);
+        return offsets[column][row] == -1;
+    }
+
+    /**
+     * @return value of TINY/SHORT/INT24/LONG/LONGLONG/YEAR/ENUM/SET column, 0 if value is NULL
+     * @throws IllegalStateException if column is of any other type
+     */
+    public long getLong(int row, int column) {
+        checkRow(row);
+        checkColumn(column);
+        if (!isInteger(columnTypes[column])) {
+            throw new IllegalStateException("Column " + column + " (" + columnTypes[column] + ") is not an integer");
+        }
+        return longs[column][row];
+    }
+
+    /**
+     * @return value of FLOAT/DOUBLE (or integer) column, 0 if value is NULL
+     * @throws IllegalStateException if column is of any other type
+     */
+    public double getDouble(int row, int column) {
+        checkRow(row);
+        checkColumn(column);
+        ColumnType type = columnTypes[column];
+        if (type == ColumnType.FLOAT || type == ColumnType.DOUBLE) {
+            return doubles[column][row];
+        }
+        if (isInteger(type)) {
+            return longs[column][row];
+        }
+        throw new IllegalStateException("Column " + column + " (" + type + ") is not a floating point number");
+    }
+
+    /**
+     * @return buffer {@link #getOffset(int, int)}/{@link #getLength(int, int)} point into (shared, do not modify)
+     */
+    public byte[] getBuffer() {
+        return rows != null ? rows.getBuffer() : null;
+    }
+
+    /**
+     * @return offset of the raw value (length prefix, if any, excluded) within {@link #getBuffer()}, -1 if value
+     * is NULL
+     */
+    public int getOffset(int row, int column) {
+        checkRow(row);
+        checkColumn(column);
+        return offsets[column][row];
+    }
+
+    /**
+     * @return length of the raw value (length prefix, if any, excluded), 0 if value is NULL
+     */
+    public int getLength(int row, int column) {
+        checkRow(row);
+        checkColumn(column);
+        return lengths[column][row];
+    }
+
+    /**
+     * @return value as it would have been deserialized eagerly (boxed, for columns that don't have a primitive
+     * representation, e.g. DECIMAL or DATETIME)
+     */
+    public Serializable getObject(int row, int column) {
+        checkRow(row);
+        checkColumn(column);
+        return rows.getObject(row, column);
+    }
+
+    private static boolean isInteger(ColumnType type) {
+        switch (type) {
+            case TINY: case SHORT: case INT24: case LONG: case LONGLONG: case YEAR: case ENUM: case SET:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private void ensureCapacity() {
+        if (columnTypes.length < numberOfColumns) {
+            columnTypes = Arrays.copyOf(columnTypes, numberOfColumns);
+            longs = Arrays.copyOf(longs, numberOfColumns);
+            doubles = Arrays.copyOf(doubles, numberOfColumns);
+            offsets = Arrays.copyOf(offsets, numberOfColumns);
+            lengths = Arrays.copyOf(lengths, numberOfColumns);
+        }
+    }
+
+    private int[] grow(int[] array) {
+        return array != null && array.length >= numberOfRows ? array :
+            new int[capacity(array == null ? 0 : array.length)];
+    }
+
+    private long[] grow(long[] array) {
+        return array != null && array.length >= numberOfRows ? array :
+            new long[capacity(array == null ? 0 : array.length)];
+    }
+
+    private double[] grow(double[] array) {
+        return array != null && array.length >= numberOfRows ? array :
+            new double[capacity(array == null ? 0 : array.length)];
+    }
+
+    private int capacity(int length) {
+        return Math.max(numberOfRows, Math.max(length << 1, 16));
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= numberOfRows) {
+            throw new IndexOutOfBoundsException("Row: " + row + ", size: " + numberOfRows);
+        }
+    }
+
+    private void checkColumn(int column) {
+        if (column < 0 || column >= numberOfColumns) {
+            throw new IndexOutOfBoundsException("Column: " + column + ", number of columns: " + numberOfColumns);
+        }
+    }
+
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2018 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog.event.deserialization;
+
+import com.github.shyiko.mysql.binlog.event.EventHeader;
+
+import java.io.IOException;
+
+/**
+ * Thrown by {@link EventDeserializer} (with checksum verification enabled) when CRC32 computed over the event
+ * doesn't match the one that came with it. Event (in its entirety) is skipped by the deserializer
+ * (BinaryLogClient disconnects (and then reconnects, if keepAlive is on) re-reading it from the last known position).
+ *
+ * @see EventDeserializer#setVerifyChecksums(boolean)
+ * @author <a href="mailto:stanley.shyiko@gmail.com">Stanley Shyiko</a>
+ */
+public class EventChecksumMismatchException extends IOException {
+
+    private EventHeader eventHeader;
+    private long expectedChecksum;
+    private long actualChecksum;
+
+    public EventChecksumMismatchException(EventHeader eventHeader, long expectedChecksum, long actualChecksum) {
+        super("Checksum mismatch (expected " + Long.toHexString(expectedChecksum) + ", got " +
+            Long.toHexString(actualChecksum) + ") in " + eventHeader);
+        this.eventHeader = eventHeader;
+        this.expectedChecksum = expectedChecksum;
+        this.actualChecksum = actualChecksum;
+    }
+
+    public EventHeader getEventHeader() {
+        return eventHeader;
+    }
+
+    /**
+     * @return checksum that came with the event
+     */
+    public long getExpectedChecksum() {
+        return expectedChecksum;
+    }
+
+    /**
+     * @return checksum computed over the event
+     */
+    public long getActualChecksum() {
+        return actualChecksum;
+    }
+}
@@ -18,28 +18,62 @@ package com.github.shyiko.mysql.binlog.event.deserialization;
 import com.github.shyiko.mysql.binlog.event.Event;
 import com.github.shyiko.mysql.binlog.event.EventData;
 import com.github.shyiko.mysql.binlog.event.EventHeader;
+import com.github.shyiko.mysql.binlog.event.EventHeaderV4;
 import com.github.shyiko.mysql.binlog.event.EventType;
 import com.github.shyiko.mysql.binlog.event.FormatDescriptionEventData;
+import com.github.shyiko.mysql.binlog.event.ReusableEvent;
 import com.github.shyiko.mysql.binlog.event.TableMapEventData;
+import com.github.shyiko.mysql.binlog.event.TransactionPayloadEventData;
 import com.github.shyiko.mysql.binlog.io.ByteArrayInputStream;
 
 import java.io.IOException;
+import java.io.SequenceInputStream;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.IdentityHashMap;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.zip.CRC32;
 
 /**
  * @author <a href="mailto:stanley.shyiko@gmail.com">Stanley Shyiko</a>
  */
 public class EventDeserializer {
 
+    private static final int EVENT_TYPE_OFFSET = 4;
+    private static final int EVENT_LENGTH_OFFSET = 9;
+
+    private static final Runnable NO_OP = new Runnable() {
+
+        @Override
+        public void run() {
+        }
+    };
+
     private final EventHeaderDeserializer eventHeaderDeserializer;
     private final EventDataDeserializer defaultEventDataDeserializer;
     private final Map<EventType, EventDataDeserializer> eventDataDeserializers;
 
     private EnumSet<CompatibilityMode> compatibilitySet = EnumSet.noneOf(CompatibilityMode.class);
     private int checksumLength;
+    private boolean deserializeRowsLazily;
+    private ColumnProjection columnProjection;
+    private RowListener rowListener;
+    private TableFilter tableFilter;
+    private ReusableEvent reusableEvent;
+    private TransactionPayloadEventReader transactionPayloadEventReader;
+    private CRC32 crc32; // null unless checksum verification is enabled
+    private EnumSet<EventType> includedEventTypes;
+    private EnumSet<EventType> requiredEventTypes;
+    private boolean[] processedEventTypes; // indexed by type code, null unless includedEventTypes are set
+    private boolean returnHeadersOfExcludedEvents;
+    private volatile long numberOfVerifiedChecksums;
+    private volatile long numberOfUnverifiedChecksums;
+    private volatile long checksumVerificationTime;
+    private volatile long numberOfChecksumMismatches;
 
     private final Map<Long, TableMapEventData> tableMapEventByTableId;
 
@@ -115,16 +149,21 @@ public class EventDeserializer {
                 new RowsQueryEventDataDeserializer());
         eventDataDeserializers.put(EventType.GTID,
                 new GtidEventDataDeserializer());
+        eventDataDeserializers.put(EventType.ANONYMOUS_GTID,
+                new GtidEventDataDeserializer());
        eventDataDeserializers.put(EventType.PREVIOUS_GTIDS,
                new PreviousGtidSetDeserializer());
         eventDataDeserializers.put(EventType.XA_PREPARE,
                 new XAPrepareEventDataDeserializer());
+        eventDataDeserializers.put(EventType.TRANSACTION_PAYLOAD,
+                new TransactionPayloadEventDataDeserializer());
     }
 
     public void setEventDataDeserializer(EventType eventType, EventDataDeserializer eventDataDeserializer) {
         ensureCompatibility(eventDataDeserializer);
         eventDataDeserializers.put(eventType, eventDataDeserializer);
         afterEventDataDeserializerSet(eventType);
+        transactionPayloadEventReader = null;
     }
 
     private void afterEventDataDeserializerSet(EventType eventType) {
@@ -168,6 +207,205 @@ public class EventDeserializer {
         }
     }
 
+    /**
+     * @param deserializeRowsLazily true if WRITE_ROWS/UPDATE_ROWS/DELETE_ROWS (and their EXT_ counterparts) rows
+     * should be kept in a raw form (with cells deserialized only when asked for), false otherwise (default).
+     * Note that rows are kept in a single array (which has to outlive the packet), meaning that an event split into
+     * multiple packets (&gt;16MB) is materialized in full (taking twice its size while being deserialized). Use
+     * {@link #setRowListener(RowListener)} if that's a concern.
+     * @see com.github.shyiko.mysql.binlog.event.WriteRowsEventData#getLazyRows()
+     * @see com.github.shyiko.mysql.binlog.event.UpdateRowsEventData#getLazyRows()
+     * @see com.github.shyiko.mysql.binlog.event.DeleteRowsEventData#getLazyRows()
+     */
+    public void setDeserializeRowsLazily(boolean deserializeRowsLazily) {
+        this.deserializeRowsLazily = deserializeRowsLazily;
+        for (EventDataDeserializer eventDataDeserializer : eventDataDeserializers.values()) {
+            ensureCompatibility(eventDataDeserializer);
+        }
+    }
+
+    /**
+     * @param columnProjection columns (per table) WRITE_ROWS/UPDATE_ROWS/DELETE_ROWS (and their EXT_ counterparts)
+     * should be limited to (values of all the other ones are skipped), null (default) to deserialize all of them.
+     * Note that includedColumns of row events reflect the projection (and that values of JSON columns narrowed down
+     * with {@link ColumnProjection#includeJsonPath} are the extracted values, not the binary documents).
+     */
+    public void setColumnProjection(ColumnProjection columnProjection) {
+        this.columnProjection = columnProjection;
+        for (EventDataDeserializer eventDataDeserializer : eventDataDeserializers.values()) {
+            ensureCompatibility(eventDataDeserializer);
+        }
+    }
+
+    /**
+     * @param rowListener listener WRITE_ROWS/UPDATE_ROWS/DELETE_ROWS (and their EXT_ counterparts) rows should be
+     * handed over to (one at a time, as they are being decoded), null (default) to collect them into the event data.
+     * When set, rows are not retained (getRows() of the event data is empty, no matter how many rows event holds)
+     * so that memory footprint of a huge (e.g. bulk INSERT) event is bounded by the size of a single row.
+     * Takes precedence over {@link #setDeserializeRowsLazily(boolean)}. Listener is always called by the thread
+     * reading the events (meaning that {@link #nextEvent(ByteArrayInputStream, java.util.concurrent.Executor)}
+     * deserializes row events without the executor once listener is set).
+     */
+    public void setRowListener(RowListener rowListener) {
+        this.rowListener = rowListener;
+        for (EventDataDeserializer eventDataDeserializer : eventDataDeserializers.values()) {
+            ensureCompatibility(eventDataDeserializer);
+        }
+    }
+
+    /**
+     * @param tableFilter filter determining which tables WRITE_ROWS/UPDATE_ROWS/DELETE_ROWS (and their EXT_
+     * counterparts) should be deserialized for (data of the rest is skipped and returned as null),
+     * null (default) to deserialize all of them.
+     */
+    public void setTableFilter(TableFilter tableFilter) {
+        this.tableFilter = tableFilter;
+    }
+
+    /**
+     * @param includedEventTypes types of events {@link #nextEvent(ByteArrayInputStream)} should return, null (default)
+     * to return all of them. Events of any other type are skipped as a whole (in case of array-backed stream, which is
+     * what both BinaryLogClient and BinaryLogFileReader use, that's a single position jump - neither header nor data
+     * is deserialized and no {@link Event} is allocated), unless {@link #setReturnHeadersOfExcludedEvents(boolean)}
+     * says otherwise.
+     * <p>
+     * FORMAT_DESCRIPTION (and TABLE_MAP, if any of the row events are included) is still deserialized (as it's needed
+     * to deserialize other events), just not returned. Same goes for {@link #setRequiredEventTypes(EnumSet)} (which
+     * BinaryLogClient uses to keep track of binlog filename/position (ROTATE) and GTID set (GTID/XID/QUERY/
+     * TRANSACTION_PAYLOAD), meaning that excluding those doesn't affect client's ability to resume), except that these
+     * are returned (check {@link #isIncluded(EventType)} to tell them apart). Note that events embedded into
+     * TRANSACTION_PAYLOAD are only visible if TRANSACTION_PAYLOAD itself is included (same filter applies to them).
+     */
+    public void setIncludedEventTypes(EnumSet<EventType> includedEventTypes) {
+        this.includedEventTypes = includedEventTypes != null ? EnumSet.copyOf(includedEventTypes) : null;
+        updateProcessedEventTypes();
+    }
+
+    /**
+     * @param requiredEventTypes types of events {@link #nextEvent(ByteArrayInputStream)} should always deserialize and
+     * return, even if they are excluded by {@link #setIncludedEventTypes(EnumSet)}, null (default) if none.
+     * BinaryLogClient sets it on connect (overriding whatever was there before) to the types it can't function without.
+     */
+    public void setRequiredEventTypes(EnumSet<EventType> requiredEventTypes) {
+        this.requiredEventTypes = requiredEventTypes != null ? EnumSet.copyOf(requiredEventTypes) : null;
+        updateProcessedEventTypes();
+    }
+
+    /**
+     * @return true if events of a given type are included (see {@link #setIncludedEventTypes(EnumSet)}), false
+     * otherwise (which, for events returned by {@link #nextEvent(ByteArrayInputStream)}, means that they are either
+     * header-only (see {@link #setReturnHeadersOfExcludedEvents(boolean)}) or required
+     * (see {@link #setRequiredEventTypes(EnumSet)}))
+     */
+    public boolean isIncluded(EventType eventType) {
+        EnumSet<EventType> includedEventTypes = this.includedEventTypes;
+        return includedEventTypes == null || includedEventTypes.contains(eventType);
+    }
+
+    private void updateProcessedEventTypes() {
+        boolean[] processedEventTypes = null;
+        if (includedEventTypes != null) {
+            processedEventTypes = new boolean[EventType.values().length];
+            processedEventTypes[EventType.FORMAT_DESCRIPTION.ordinal()] = true;
+            for (EventType eventType : includedEventTypes) {
+                processedEventTypes[eventType.ordinal()] = true;
+                if (EventType.isRowMutation(eventType)) {
+                    processedEventTypes[EventType.TABLE_MAP.ordinal()] = true;
+                }
+            }
+            if (requiredEventTypes != null) {
+                for (EventType eventType : requiredEventTypes) {
+                    processedEventTypes[eventType.ordinal()] = true;
+                }
+            }
+        }
+        this.processedEventTypes = processedEventTypes;
+    }
+
+    /**
+     * @param returnHeadersOfExcludedEvents true if events excluded by {@link #setIncludedEventTypes(EnumSet)} should
+     * still be returned (header only, with data set to null), false otherwise (default).
+     */
+    public void setReturnHeadersOfExcludedEvents(boolean returnHeadersOfExcludedEvents) {
+        this.returnHeadersOfExcludedEvents = returnHeadersOfExcludedEvents;
+    }
+
+    /**
+     * @param verifyChecksums true if CRC32 that comes with each event (binlog_checksum=CRC32) should be checked,
+     * false otherwise (default). Checksum is computed over the event as it sits in the buffer (no copy is made),
+     * which makes it cheap enough to be kept on in production (see {@link #getChecksumVerificationTime()}).
+     * In case of mismatch {@link #nextEvent(ByteArrayInputStream)} skips the event and throws
+     * {@link EventChecksumMismatchException}. BinaryLogClient treats it as a communication failure (reporting it
+     * through {@link com.github.shyiko.mysql.binlog.BinaryLogClient.LifecycleListener#onEventDeserializationFailure}
+     * first), meaning that it reconnects (if keepAlive is on) and re-reads the event instead of skipping it. Anyone
+     * else calling nextEvent directly (e.g. through BinaryLogFileReader) and choosing to continue after the exception
+     * loses the event.
+     * <p>
+     * Note that only array-backed streams (which is what both BinaryLogClient and BinaryLogFileReader use) and
+     * streams over {@link com.github.shyiko.mysql.binlog.io.CompositeInputStream} (packets &gt;16MB) are verified.
+     * Events read from any other stream-backed input can't be (stream can't be rewound) and are counted by
+     * {@link #getNumberOfUnverifiedChecksums()} instead. FORMAT_DESCRIPTION events are not verified either (their
+     * checksum algorithm is not known until they are parsed).
+     */
+    public void setVerifyChecksums(boolean verifyChecksums) {
+        this.crc32 = verifyChecksums ? new CRC32() : null;
+    }
+
+    /**
+     * @return number of events which checksum was verified
+     * @see #setVerifyChecksums(boolean)
+     */
+    public long getNumberOfVerifiedChecksums() {
+        return numberOfVerifiedChecksums;
+    }
+
+    /**
+     * @return number of events which checksum could not be verified (because they were read from the stream that
+     * doesn't support mark/reset)
+     * @see #setVerifyChecksums(boolean)
+     */
+    public long getNumberOfUnverifiedChecksums() {
+        return numberOfUnverifiedChecksums;
+    }
+
+    /**
+     * @return total time (in nanoseconds) spent on checksum verification
+     * @see #setVerifyChecksums(boolean)
+     */
+    public long getChecksumVerificationTime() {
+        return checksumVerificationTime;
+    }
+
+    /**
+     * @return number of events which checksum didn't match
+     * @see #setVerifyChecksums(boolean)
+     */
+    public long getNumberOfChecksumMismatches() {
+        return numberOfChecksumMismatches;
+    }
+
+    /**
+     * Flyweight mode (disabled by default). When enabled, {@link #nextEvent(ByteArrayInputStream)} returns the same
+     * {@link Event} instance (and, if {@link EventHeaderV4Deserializer} is used, the same
+     * {@link com.github.shyiko.mysql.binlog.event.EventHeaderV4}) each time, overwriting it with the content of the
+     * next event. Together with {@link NullEventDataDeserializer}s (for events one is not interested in) this
+     * brings allocation per event down to zero for header-only consumers (position trackers, lag monitors, etc).
+     * <p>
+     * Contract: Event/EventHeader are only valid until the next {@link #nextEvent(ByteArrayInputStream)}
+     * (e.g. within {@link com.github.shyiko.mysql.binlog.BinaryLogClient.EventListener#onEvent}). Anything that
+     * needs to outlive it (queued for later, handed over to another thread, etc) must be copied first
+     * (e.g. with {@link com.github.shyiko.mysql.binlog.event.EventHeaderV4#EventHeaderV4(
+     * com.github.shyiko.mysql.binlog.event.EventHeaderV4)}). EventData is never reused.
+     * <p>
+     * {@link #nextEvent(ByteArrayInputStream, Executor)} ignores this setting (events are always new there).
+     */
+    public void setReuseEvents(boolean reuseEvents) {
+        this.reusableEvent = reuseEvents ? new ReusableEvent() : null;
+        if (eventHeaderDeserializer instanceof EventHeaderV4Deserializer) {
+            ((EventHeaderV4Deserializer) eventHeaderDeserializer).setReuseHeader(reuseEvents);
+        }
+    }
+
     private void ensureCompatibility(EventDataDeserializer eventDataDeserializer) {
         if (eventDataDeserializer instanceof AbstractRowsEventDataDeserializer) {
             AbstractRowsEventDataDeserializer deserializer =
@@ -179,6 +417,9 @@ public class EventDeserializer {
             deserializer.setMicrosecondsPrecision(
                 compatibilitySet.contains(CompatibilityMode.DATE_AND_TIME_AS_LONG_MICRO)
             );
+            deserializer.setProlepticGregorianCalendar(
+                compatibilitySet.contains(CompatibilityMode.DATE_AND_TIME_PROLEPTIC_GREGORIAN)
+            );
             if (compatibilitySet.contains(CompatibilityMode.INVALID_DATE_AND_TIME_AS_ZERO)) {
                 deserializer.setInvalidDateAndTimeRepresentation(0L);
             }
@@ -199,6 +440,9 @@ public class EventDeserializer {
             deserializer.setDeserializeCharAndBinaryAsByteArray(
                 compatibilitySet.contains(CompatibilityMode.CHAR_AND_BINARY_AS_BYTE_ARRAY)
             );
+            deserializer.setDeserializeRowsLazily(deserializeRowsLazily);
+            deserializer.setColumnProjection(columnProjection);
+            deserializer.setRowListener(rowListener);
         }
     }
 
@@ -206,23 +450,238 @@ public class EventDeserializer {
      * @return deserialized event or null in case of end-of-stream
      */
     public Event nextEvent(ByteArrayInputStream inputStream) throws IOException {
-        if (inputStream.peek() == -1) {
+        EventHeader eventHeader = nextEventHeader(inputStream);
+        if (eventHeader == null) {
             return null;
         }
+        EventData eventData = isReturned(eventHeader.getEventType()) ?
+            deserializeEventData(inputStream, eventHeader) : null;
+        ReusableEvent event = this.reusableEvent;
+        if (event != null) {
+            event.reset(eventHeader, eventData);
+            return event;
+        }
+        return new Event(eventHeader, eventData);
+    }
+
+    /**
+     * Same as {@link #nextEvent(ByteArrayInputStream)} except that data of row events (WRITE_ROWS, UPDATE_ROWS,
+     * DELETE_ROWS and their EXT_ counterparts) is deserialized using provided executor (against the
+     * {@link TableMapEventData} that was current at the time event was read). All other events (TABLE_MAP included)
+     * are deserialized by the calling thread. So are row events if {@link #setRowListener(RowListener)} is set (rows
+     * are delivered in binlog order, executor is not used).
+     * <p>
+     * Returned futures are expected to be consumed in the order they were received (so that binlog order is
+     * preserved).
+     * @return future holding deserialized event or null in case of end-of-stream
+     */
+    public Future<Event> nextEvent(ByteArrayInputStream inputStream, Executor executor) throws IOException {
+        EventHeader header = nextEventHeader(inputStream);
+        if (header == null) {
+            return null;
+        }
+        if (reusableEvent != null && header instanceof EventHeaderV4) {
+            header = new EventHeaderV4((EventHeaderV4) header); // header is going to outlive nextEvent call
+        }
+        final EventHeader eventHeader = header;
+        if (!isReturned(eventHeader.getEventType())) {
+            return completed(new Event(eventHeader, null));
+        }
+        EventDataDeserializer eventDataDeserializer = getEventDataDeserializer(eventHeader.getEventType());
+        int eventBodyLength = (int) eventHeader.getDataLength() - checksumLength;
+        // RowListener is called by the thread deserializing the event, which (for rows to be delivered in binlog
+        // order, after all the preceding events) has to be the calling one
+        if (rowListener == null && EventType.isRowMutation(eventHeader.getEventType()) &&
+                eventDataDeserializer instanceof AbstractRowsEventDataDeserializer && eventBodyLength >= 6) {
+            // input stream is going to be reused by the time executor gets to the event, hence the copy (unless
+            // event came in chunks (>16MB), which are simply shared with the executor)
+            final ByteArrayInputStream eventBody = inputStream.readStream(eventBodyLength);
+            inputStream.skip(checksumLength);
+            eventBody.mark(6);
+            long tableId = eventBody.readLong(6);
+            eventBody.reset();
+            final TableMapEventData tableMapEvent = tableMapEventByTableId.get(tableId);
+            if (tableFilter != null && tableMapEvent != null && !tableFilter.isIncluded(tableMapEvent)) {
+                return completed(new Event(eventHeader, null));
+            }
+            final AbstractRowsEventDataDeserializer rowsEventDataDeserializer =
+                (AbstractRowsEventDataDeserializer) eventDataDeserializer;
+            FutureTask<Event> result = new FutureTask<Event>(new Callable<Event>() {
+
+                @Override
+                public Event call() throws Exception {
+                    EventData eventData;
+                    try {
+                        eventData = rowsEventDataDeserializer.deserialize(eventBody, tableMapEvent);
+                    } catch (IOException e) {
+                        throw new EventDataDeserializationException(eventHeader, e);
+                    }
+                    return new Event(eventHeader, eventData);
+                }
+            });
+            if (tableMapEvent != null) {
+                executor.execute(result);
+            } else {
+                result.run(); // MissingTableMapEventException
+            }
+            return result;
+        }
+        return completed(new Event(eventHeader, deserializeEventData(inputStream, eventHeader)));
+    }
+
+    /**
+     * @return header of the next event that should be returned (data of which is yet to be read, unless event type
+     * is excluded (see {@link #setReturnHeadersOfExcludedEvents(boolean)}) in which case it's already been skipped)
+     * or null in case of end-of-stream
+     */
+    private EventHeader nextEventHeader(ByteArrayInputStream inputStream) throws IOException {
+        while (inputStream.peek() != -1) {
+            if (processedEventTypes != null && !returnHeadersOfExcludedEvents && skipExcludedEvent(inputStream)) {
+                continue;
+            }
+            EventHeader eventHeader = deserializeEventHeader(inputStream);
+            if (isReturned(eventHeader.getEventType())) {
+                return eventHeader;
+            }
+            if (processedEventTypes[eventHeader.getEventType().ordinal()]) {
+                deserializeEventData(inputStream, eventHeader);
+            } else {
+                inputStream.skip(eventHeader.getDataLength());
+            }
+            if (returnHeadersOfExcludedEvents) {
+                return eventHeader;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Skip next event (without deserializing its header) if it's of the type that is neither included nor needed to
+     * deserialize the included ones.
+     * @return true if event was skipped, false otherwise (or if it can't be done without deserializing the header)
+     */
+    private boolean skipExcludedEvent(ByteArrayInputStream inputStream) throws IOException {
+        if (!inputStream.markSupported() || !(eventHeaderDeserializer instanceof EventHeaderV4Deserializer)) {
+            return false;
+        }
+        inputStream.mark(0);
+        inputStream.skip(EVENT_TYPE_OFFSET);
+        int eventType = inputStream.read();
+        inputStream.skip(EVENT_LENGTH_OFFSET - EVENT_TYPE_OFFSET - 1);
+        long eventLength = inputStream.readLong(4);
+        inputStream.reset();
+        if (eventType >= processedEventTypes.length || processedEventTypes[eventType]) {
+            return false;
+        }
+        inputStream.skip(eventLength);
+        return true;
+    }
+
+    /**
+     * @return true if event of a given type is to be returned with its data (it's either included or required)
+     */
+    private boolean isReturned(EventType eventType) {
+        EnumSet<EventType> requiredEventTypes = this.requiredEventTypes;
+        return isIncluded(eventType) || requiredEventTypes != null && requiredEventTypes.contains(eventType);
+    }
+
+    private EventHeader deserializeEventHeader(ByteArrayInputStream inputStream) throws IOException {
+        CRC32 crc32 = this.crc32;
+        if (crc32 == null || checksumLength != ChecksumType.CRC32.getLength()) {
+            return eventHeaderDeserializer.deserialize(inputStream);
+        }
+        if (!inputStream.markSupported()) {
+            EventHeader eventHeader = eventHeaderDeserializer.deserialize(inputStream);
+            if (eventHeader.getEventType() != EventType.FORMAT_DESCRIPTION) {
+                numberOfUnverifiedChecksums++;
+            }
+            return eventHeader;
+        }
+        inputStream.mark(0);
         EventHeader eventHeader = eventHeaderDeserializer.deserialize(inputStream);
-        EventData eventData;
+        int headerLength = (int) eventHeader.getHeaderLength();
+        int length = headerLength + (int) eventHeader.getDataLength() - checksumLength;
+        if (eventHeader.getEventType() == EventType.FORMAT_DESCRIPTION || length < headerLength) {
+            return eventHeader;
+        }
+        long start = System.nanoTime();
+        inputStream.reset();
+        crc32.reset();
+        inputStream.updateChecksum(crc32, length);
+        inputStream.skip(length);
+        long expectedChecksum = inputStream.readLong(checksumLength);
+        long actualChecksum = crc32.getValue();
+        inputStream.reset();
+        inputStream.skip(headerLength);
+        checksumVerificationTime += System.nanoTime() - start;
+        numberOfVerifiedChecksums++;
+        if (actualChecksum != expectedChecksum) {
+            numberOfChecksumMismatches++;
+            inputStream.skip(eventHeader.getDataLength());
+            throw new EventChecksumMismatchException(eventHeader, expectedChecksum, actualChecksum);
+        }
+        return eventHeader;
+    }
+
+    private static Future<Event> completed(Event event) {
+        FutureTask<Event> result = new FutureTask<Event>(NO_OP, event);
+        result.run();
+        return result;
+    }
+
+    private static long readTableId(byte[] eventBody) {
+        long result = 0;
+        for (int i = 0; i < 6; ++i) {
+            result |= (((long) eventBody[i] & 0xff) << (i << 3));
+        }
+        return result;
+    }
+
+    private EventData deserializeEventData(ByteArrayInputStream inputStream, EventHeader eventHeader)
+            throws IOException {
         switch (eventHeader.getEventType()) {
             case FORMAT_DESCRIPTION:
-                eventData = deserializeFormatDescriptionEventData(inputStream, eventHeader);
-                break;
+                return deserializeFormatDescriptionEventData(inputStream, eventHeader);
             case TABLE_MAP:
-                eventData = deserializeTableMapEventData(inputStream, eventHeader);
-                break;
+                return deserializeTableMapEventData(inputStream, eventHeader);
+            case TRANSACTION_PAYLOAD:
+                return deserializeTransactionPayloadEventData(inputStream, eventHeader);
             default:
+                if (tableFilter != null && EventType.isRowMutation(eventHeader.getEventType())) {
+                    return deserializeFilteredRowsEventData(inputStream, eventHeader);
+                }
                 EventDataDeserializer eventDataDeserializer = getEventDataDeserializer(eventHeader.getEventType());
-                eventData = deserializeEventData(inputStream, eventHeader, eventDataDeserializer);
+                return deserializeEventData(inputStream, eventHeader, eventDataDeserializer);
         }
-        return new Event(eventHeader, eventData);
+    }
+
+    private EventData deserializeFilteredRowsEventData(ByteArrayInputStream inputStream, EventHeader eventHeader)
+            throws IOException {
+        EventDataDeserializer eventDataDeserializer = getEventDataDeserializer(eventHeader.getEventType());
+        if (!inputStream.markSupported()) {
+            // stream-backed input (e.g. >16MB packet) can't be rewound, hence table id is read and then (unless
+            // event is filtered out) put in front of the rest of the event body (which is never copied)
+            byte[] tableId = inputStream.read(6);
+            if (isFilteredOut(readTableId(tableId))) {
+                inputStream.skip(eventHeader.getDataLength() - tableId.length);
+                return null;
+            }
+            return deserializeEventData(new ByteArrayInputStream(new SequenceInputStream(
+                new java.io.ByteArrayInputStream(tableId), inputStream)), eventHeader, eventDataDeserializer);
+        }
+        inputStream.mark(6);
+        long tableId = inputStream.readLong(6);
+        inputStream.reset();
+        if (isFilteredOut(tableId)) {
+            inputStream.skip(eventHeader.getDataLength());
+            return null;
+        }
+        return deserializeEventData(inputStream, eventHeader, eventDataDeserializer);
+    }
+
+    private boolean isFilteredOut(long tableId) {
+        TableMapEventData tableMapEvent = tableMapEventByTableId.get(tableId);
+        return tableMapEvent != null && !tableFilter.isIncluded(tableMapEvent);
     }
 
     private EventData deserializeFormatDescriptionEventData(ByteArrayInputStream inputStream, EventHeader eventHeader)
@@ -284,6 +743,30 @@ public class EventDeserializer {
         return eventData;
     }
 
+    private EventData deserializeTransactionPayloadEventData(ByteArrayInputStream inputStream,
+            EventHeader eventHeader) throws IOException {
+        EventData eventData = deserializeEventData(inputStream, eventHeader,
+            getEventDataDeserializer(EventType.TRANSACTION_PAYLOAD));
+        if (eventData instanceof TransactionPayloadEventData) {
+            TransactionPayloadEventReader eventReader = transactionPayloadEventReader;
+            if (eventReader == null) {
+                // embedded events carry no checksum, everything else (deserializers & TABLE_MAPs) is shared
+                transactionPayloadEventReader = eventReader = new TransactionPayloadEventReader(
+                    new EventDeserializer(new EventHeaderV4Deserializer(), defaultEventDataDeserializer,
+                        eventDataDeserializers, tableMapEventByTableId));
+            }
+            EventDeserializer embeddedEventDeserializer = eventReader.getEventDeserializer();
+            embeddedEventDeserializer.setTableFilter(tableFilter);
+            embeddedEventDeserializer.includedEventTypes = includedEventTypes;
+            embeddedEventDeserializer.requiredEventTypes = requiredEventTypes;
+            embeddedEventDeserializer.processedEventTypes = processedEventTypes;
+            embeddedEventDeserializer.returnHeadersOfExcludedEvents = returnHeadersOfExcludedEvents;
+            ((TransactionPayloadEventData) eventData).setEvents(eventReader.events(
+                (TransactionPayloadEventData) eventData));
+        }
+        return eventData;
+    }
+
     private EventData deserializeEventData(ByteArrayInputStream inputStream, EventHeader eventHeader,
             EventDataDeserializer eventDataDeserializer) throws EventDataDeserializationException {
         int eventBodyLength = (int) eventHeader.getDataLength() - checksumLength;
@@ -313,6 +796,7 @@ public class EventDeserializer {
      * @see CompatibilityMode#INVALID_DATE_AND_TIME_AS_ZERO
      * @see CompatibilityMode#INVALID_DATE_AND_TIME_AS_MIN_VALUE
      * @see CompatibilityMode#CHAR_AND_BINARY_AS_BYTE_ARRAY
+     * @see CompatibilityMode#DATE_AND_TIME_PROLEPTIC_GREGORIAN
      */
     public enum CompatibilityMode {
         /**
@@ -349,7 +833,13 @@ public class EventDeserializer {
          *
          * <p>This option is going to be enabled by default starting from mysql-binlog-connector-java@1.0.0.
          */
-        CHAR_AND_BINARY_AS_BYTE_ARRAY
+        CHAR_AND_BINARY_AS_BYTE_ARRAY,
+        /**
+         * Interpret DATETIME/DATETIME_V2/DATE values prior to October 15, 1582 according to the proleptic Gregorian
+         * calendar (same as MySQL does) instead of the Julian one (java.util.GregorianCalendar's default).
+         * Apart from being consistent with the server, such values no longer need a Calendar to be converted.
+         */
+        DATE_AND_TIME_PROLEPTIC_GREGORIAN
     }
 
     /**
@@ -28,9 +28,30 @@ public class EventHeaderV4Deserializer implements EventHeaderDeserializer<EventH
 
     private static final EventType[] EVENT_TYPES = EventType.values();
 
+    private boolean reuseHeader;
+    private EventHeaderV4 reusableHeader;
+
+    /**
+     * @param reuseHeader true if the same {@link EventHeaderV4} instance should be returned from each
+     * {@link #deserialize(ByteArrayInputStream)} (meaning that header is only valid until the next call),
+     * false otherwise (default)
+     * @see EventDeserializer#setReuseEvents(boolean)
+     */
+    public void setReuseHeader(boolean reuseHeader) {
+        this.reuseHeader = reuseHeader;
+    }
+
     @Override
     public EventHeaderV4 deserialize(ByteArrayInputStream inputStream) throws IOException {
-        EventHeaderV4 header = new EventHeaderV4();
+        EventHeaderV4 header;
+        if (reuseHeader) {
+            if (reusableHeader == null) {
+                reusableHeader = new EventHeaderV4();
+            }
+            header = reusableHeader;
+        } else {
+            header = new EventHeaderV4();
+        }
         header.setTimestamp(inputStream.readLong(4) * 1000L);
         header.setEventType(getEventType(inputStream.readInteger(1)));
         header.setServerId(inputStream.readLong(4));
@@ -24,29 +24,24 @@ import java.io.IOException;
  */
 public class GtidEventDataDeserializer implements EventDataDeserializer<GtidEventData> {
 
+    private static final int LOGICAL_TIMESTAMP_TYPECODE = 2;
+
     @Override
     public GtidEventData deserialize(ByteArrayInputStream inputStream) throws IOException {
         GtidEventData eventData = new GtidEventData();
         byte flags = (byte) inputStream.readInteger(1);
-        byte[] sid = inputStream.read(16);
+        // SID is stored as 16 raw bytes (big-endian), GNO - as little-endian int64
+        long sidMostSignificantBits = Long.reverseBytes(inputStream.readLong(8));
+        long sidLeastSignificantBits = Long.reverseBytes(inputStream.readLong(8));
         long gno = inputStream.readLong(8);
         eventData.setFlags(flags);
-        eventData.setGtid(byteArrayToHex(sid, 0, 4) + "-" +
-            byteArrayToHex(sid, 4, 2) + "-" +
-            byteArrayToHex(sid, 6, 2) + "-" +
-            byteArrayToHex(sid, 8, 2) + "-" +
-            byteArrayToHex(sid, 10, 6) + ":" +
-            String.format("%d", gno)
-        );
-        return eventData;
-    }
-
-    private String byteArrayToHex(byte[] a, int offset, int len) {
-        StringBuilder sb = new StringBuilder();
-        for (int idx = offset; idx < (offset + len) && idx < a.length; idx++) {
-            sb.append(String.format("%02x", a[idx] & 0xff));
+        eventData.setGtid(sidMostSignificantBits, sidLeastSignificantBits, gno);
+        // MySQL 5.7.6+
+        if (inputStream.available() >= 1 + 8 + 8 && inputStream.read() == LOGICAL_TIMESTAMP_TYPECODE) {
+            eventData.setLastCommitted(inputStream.readLong(8));
+            eventData.setSequenceNumber(inputStream.readLong(8));
         }
-        return sb.toString();
+        return eventData;
     }
 
 }
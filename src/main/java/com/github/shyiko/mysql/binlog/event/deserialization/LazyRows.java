@@ -0,0 +1,519 @@
+/*
+ * Copyright 2018 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog.event.deserialization;
+
+import com.github.shyiko.mysql.binlog.event.TableMapEventData;
+import com.github.shyiko.mysql.binlog.event.deserialization.json.JsonBinary;
+import com.github.shyiko.mysql.binlog.event.deserialization.json.JsonFormatter;
+import com.github.shyiko.mysql.binlog.event.deserialization.json.JsonPath;
+import com.github.shyiko.mysql.binlog.io.ByteArrayInputStream;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Rows of a single WRITE_ROWS/UPDATE_ROWS/DELETE_ROWS event kept in a raw (binary) form along with an index of cell
+ * offsets (built when event is read). Cells are deserialized on demand, meaning that columns nobody looks at cost
+ * nothing beyond the index.
+ * <p>
+ * Columns are addressed the same way {@code Serializable[]} rows are (that is, {@code column} is an index among
+ * the included columns, not the position of a column within the table).
+ * Unless stated otherwise, each call deserializes the cell anew (values are not cached).
+ *
+ * @see EventDeserializer#setDeserializeRowsLazily(boolean)
+ * @author <a href="mailto:stanley.shyiko@gmail.com">Stanley Shyiko</a>
+ */
+public class LazyRows {
+
+    /**
+     * @see #hash(int, int, int, boolean, long)
+     */
+    public static final long UNHASHABLE = 0;
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final AbstractRowsEventDataDeserializer deserializer;
+    private final TableMapEventData tableMapEvent;
+    private byte[] buffer;
+    private final ColumnType[] columnTypes;
+    private final int[] columnMetadata;
+    private final int[] columnLengths;
+    private final StringDecoder[] columnDecoders; // null unless TABLE_MAP carries column charsets
+    private final JsonPath[] columnJsonPaths; // null unless projection narrows JSON columns down
+    // start/end offset of each cell within the buffer (row by row), start is -1 if value is NULL
+    private int[] offsets;
+    private int[] ends;
+    private int numberOfRows;
+
+    LazyRows(AbstractRowsEventDataDeserializer deserializer, byte[] buffer, TableMapEventData tableMapEvent,
+            BitSet includedColumns) {
+        this.deserializer = deserializer;
+        this.tableMapEvent = tableMapEvent;
+        this.buffer = buffer;
+        byte[] types = tableMapEvent.getColumnTypes();
+        int[] metadata = tableMapEvent.getColumnMetadata();
+        int numberOfColumns = includedColumns.cardinality();
+        this.columnTypes = new ColumnType[numberOfColumns];
+        this.columnMetadata = new int[numberOfColumns];
+        this.columnLengths = new int[numberOfColumns];
+        StringDecoder[] decoders = deserializer.getColumnDecoders(tableMapEvent);
+        this.columnDecoders = decoders != null ? new StringDecoder[numberOfColumns] : null;
+        JsonPath[] jsonPaths = deserializer.getJsonPaths(tableMapEvent);
+        this.columnJsonPaths = jsonPaths != null ? new JsonPath[numberOfColumns] : null;
+        for (int i = includedColumns.nextSetBit(0), index = 0; i >= 0 && i < types.length;
+                i = includedColumns.nextSetBit(i + 1), index++) {
+            int typeCode = types[i] & 0xFF, meta = metadata[i];
+            columnTypes[index] = ColumnType.byCode(AbstractRowsEventDataDeserializer.resolveTypeCode(typeCode, meta));
+            columnMetadata[index] = meta;
+            columnLengths[index] = AbstractRowsEventDataDeserializer.resolveLength(typeCode, meta);
+            if (decoders != null) {
+                columnDecoders[index] = decoders[i];
+            }
+            if (jsonPaths != null) {
+                columnJsonPaths[index] = jsonPaths[i];
+            }
+        }
+        this.offsets = new int[numberOfColumns * 4];
+        this.ends = new int[offsets.length];
+    }
+
+    /**
+     * Drop all the rows (so that the same instance could be used to index next chunk of data).
+     */
+    void clear() {
+        numberOfRows = 0;
+    }
+
+    /**
+     * @param buffer buffer cell offsets should be resolved against from now on
+     */
+    void setBuffer(byte[] buffer) {
+        this.buffer = buffer;
+    }
+
+    TableMapEventData getTableMapEvent() {
+        return tableMapEvent;
+    }
+
+    /**
+     * @return index of the new row's first cell (see {@link #setCell(int, int, int)})
+     */
+    int addRow() {
+        int numberOfColumns = columnTypes.length;
+        int index = numberOfRows * numberOfColumns;
+        if (offsets.length < index + numberOfColumns) {
+            int capacity = Math.max(index + numberOfColumns, offsets.length << 1);
+            offsets = Arrays.copyOf(offsets, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+        }
+        numberOfRows++;
+        return index;
+    }
+
+    /**
+     * @param offset offset of the cell within the buffer (length prefix included), -1 if value is NULL
+     * @param end offset of the first byte past the cell
+     */
+    void setCell(int index, int offset, int end) {
+        offsets[index] = offset;
+        ends[index] = end;
+    }
+
+    public int size() {
+        return numberOfRows;
+    }
+
+    public int getNumberOfColumns() {
+        return columnTypes.length;
+    }
+
+    public ColumnType getColumnType(int column) {
+        return columnTypes[column];
+    }
+
+    public boolean isNull(int row, int column) {
+        return offset(row, column) == -1;
+    }
+
+    /**
+     * @return value of TINY/SHORT/INT24/LONG/LONGLONG/YEAR/ENUM/SET column (decoded without boxing),
+     * {@link Number#longValue()} of any other numeric one, 0 if value is NULL
+     * @throws IllegalStateException if value is not a number
+     */
+    public long getLong(int row, int column) {
+        int offset = offset(row, column);
+        if (offset == -1) {
+            return 0;
+        }
+        switch (columnTypes[column]) {
+            case TINY:
+                return buffer[offset];
+            case SHORT:
+                return (short) littleEndian(offset, 2);
+            case INT24:
+                return (littleEndian(offset, 3) << 40) >> 40;
+            case LONG:
+                return (int) littleEndian(offset, 4);
+            case LONGLONG:
+                return littleEndian(offset, 8);
+            case YEAR:
+                return 1900 + (buffer[offset] & 0xFF);
+            case ENUM: case SET:
+                return littleEndian(offset, columnLengths[column]);
+            default:
+                Serializable value = getObject(row, column);
+                if (!(value instanceof Number)) {
+                    throw new IllegalStateException("Column " + column + " (" + columnTypes[column] +
+                        ") is not numeric");
+                }
+                return ((Number) value).longValue();
+        }
+    }
+
+    /**
+     * @return copy of the raw value bytes (length prefix, if any, excluded), null if value is NULL
+     */
+    public byte[] getBytes(int row, int column) {
+        int offset = offset(row, column);
+        if (offset == -1) {
+            return null;
+        }
+        return Arrays.copyOfRange(buffer, offset + prefixLength(column), ends[row * columnTypes.length + column]);
+    }
+
+    /**
+     * Parse value of JSON column straight from the event buffer (as opposed to
+     * {@code JsonBinary.parse(getBytes(row, column), formatter)}, which copies it first). Combined with
+     * {@link com.github.shyiko.mysql.binlog.event.deserialization.json.JsonUtf8Formatter} keys and strings are copied
+     * from the buffer to the output as is.
+     * If column is narrowed down to a JSON path (see {@link ColumnProjection#includeJsonPath}), only the value at
+     * that path is formatted.
+     * @return false if value is NULL or there is no value at the path (formatter is not called), true otherwise
+     * @throws IllegalStateException if column is not a JSON one
+     */
+    public boolean formatJson(int row, int column, JsonFormatter formatter) throws IOException {
+        int offset = offset(row, column);
+        if (columnTypes[column] != ColumnType.JSON) {
+            throw new IllegalStateException("Column " + column + " (" + columnTypes[column] + ") is not JSON");
+        }
+        if (offset == -1) {
+            return false;
+        }
+        int start = offset + prefixLength(column), length = ends[row * columnTypes.length + column] - start;
+        JsonPath path = columnJsonPaths != null ? columnJsonPaths[column] : null;
+        if (path != null) {
+            return length != 0 && JsonBinary.extract(buffer, start, length, path, formatter);
+        }
+        JsonBinary.parse(buffer, start, length, formatter);
+        return true;
+    }
+
+    /**
+     * @return value of FLOAT/DOUBLE column (decoded without boxing), {@link #getLong(int, int)} of integer one,
+     * 0 if value is NULL
+     * @throws IllegalStateException if value is not a number
+     */
+    public double getDouble(int row, int column) {
+        int offset = offset(row, column);
+        if (offset == -1) {
+            return 0;
+        }
+        switch (columnTypes[column]) {
+            case FLOAT:
+                return Float.intBitsToFloat((int) littleEndian(offset, 4));
+            case DOUBLE:
+                return Double.longBitsToDouble(littleEndian(offset, 8));
+            case NEWDECIMAL:
+                return ((Number) getObject(row, column)).doubleValue();
+            default:
+                return getLong(row, column);
+        }
+    }
+
+    /**
+     * @return unscaled value of DECIMAL(M&lt;=18) column (decoded without allocating BigDecimal/BigInteger),
+     * 0 if value is NULL
+     * @throws IllegalStateException if column is not a DECIMAL or its precision exceeds 18
+     * @see #getScale(int)
+     */
+    public long getUnscaledLong(int row, int column) {
+        int offset = offset(row, column);
+        int meta = columnMetadata[column], precision = meta & 0xFF;
+        if (columnTypes[column] != ColumnType.NEWDECIMAL || precision > 18) {
+            throw new IllegalStateException("Column " + column + " (" + columnTypes[column] +
+                (columnTypes[column] == ColumnType.NEWDECIMAL ? "(" + precision + ")" : "") +
+                ") cannot be represented as an unscaled long");
+        }
+        if (offset == -1) {
+            return 0;
+        }
+        try {
+            return AbstractRowsEventDataDeserializer.readUnscaledDecimal(precision, meta >> 8,
+                new ByteArrayInputStream(buffer, offset, buffer.length - offset));
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to deserialize cell (row " + row + ", column " + column + ")",
+                e);
+        }
+    }
+
+    /**
+     * @return scale of DECIMAL column (0 for any other one)
+     */
+    public int getScale(int column) {
+        return columnTypes[column] == ColumnType.NEWDECIMAL ? columnMetadata[column] >> 8 : 0;
+    }
+
+    /**
+     * Folds value of a given cell into a 64-bit hash (without allocating anything, unless column is of a type other
+     * than integer (TINY/SHORT/INT24/LONG/LONGLONG/YEAR/ENUM/SET) or string (STRING/VARCHAR/VAR_STRING/BLOB) one,
+     * in which case {@code getObject(row, column).hashCode()} is used). Values MySQL considers equal hash to the same
+     * value (different values might too) provided that:
+     * <ul>
+     * <li>{@code binary} is true only if column has binary collation (BINARY/VARBINARY/BLOB), in which case bytes are
+     * hashed as is;</li>
+     * <li>text column uses ASCII-compatible charset (see {@link CharsetRegistry#isAsciiCompatible(int)}), in which
+     * case ASCII letters are lower-cased and trailing spaces are ignored. Text containing any non-ASCII characters
+     * is {@link #UNHASHABLE} (case- and accent-insensitive collations consider different byte sequences (e.g.
+     * '&Eacute;'/'&eacute;', '&szlig;'/'ss') to be equal).</li>
+     * </ul>
+     * Result is always the same as the one of {@link #hash(Serializable, int, boolean, long)} given
+     * {@code getObject(row, column)}, except for non-ASCII values of binary columns deserialized into Strings (which
+     * are only hashable here).
+     * @param maxLength max number of value bytes to take into account (e.g. index prefix length), -1 for all
+     * @param seed hash to fold value into
+     * @return hash, {@link #UNHASHABLE} if value can't be hashed consistently with how MySQL compares values
+     */
+    public long hash(int row, int column, int maxLength, boolean binary, long seed) {
+        int offset = offset(row, column);
+        if (offset == -1) {
+            return hashNull(seed);
+        }
+        switch (columnTypes[column]) {
+            case STRING: case VARCHAR: case VAR_STRING: case BLOB:
+                int from = offset + prefixLength(column), to = ends[row * columnTypes.length + column];
+                if (maxLength >= 0 && to - from > maxLength) {
+                    to = from + maxLength;
+                }
+                return hashBytes(buffer, from, to, binary, seed);
+            case TINY: case SHORT: case INT24: case LONG: case LONGLONG: case YEAR: case ENUM: case SET:
+                return hashLong(getLong(row, column), seed);
+            default:
+                return hash(getObject(row, column), maxLength, binary, seed);
+        }
+    }
+
+    /**
+     * Eager ({@code Serializable[]} rows) counterpart of {@link #hash(int, int, int, boolean, long)}.
+     * Integer/Long values are hashed by value, byte[] and String ones - the same way raw string values are (Strings
+     * containing non-ASCII characters are {@link #UNHASHABLE} even if column is binary, as decoding is lossy),
+     * anything else - by {@link Object#hashCode()}.
+     */
+    public static long hash(Serializable value, int maxLength, boolean binary, long seed) {
+        if (value == null) {
+            return hashNull(seed);
+        }
+        if (value instanceof byte[]) {
+            byte[] bytes = (byte[]) value;
+            return hashBytes(bytes, 0, maxLength >= 0 ? Math.min(bytes.length, maxLength) : bytes.length, binary,
+                seed);
+        }
+        if (value instanceof String) {
+            return hashString((String) value, maxLength, binary, seed);
+        }
+        if (value instanceof Integer || value instanceof Long) {
+            return hashLong(((Number) value).longValue(), seed);
+        }
+        return finish(((seed ^ FNV_OFFSET_BASIS) ^ value.hashCode()) * FNV_PRIME);
+    }
+
+    private static long hashNull(long seed) {
+        return finish((seed ^ FNV_OFFSET_BASIS) * FNV_PRIME);
+    }
+
+    private static long hashLong(long value, long seed) {
+        long h = seed ^ FNV_OFFSET_BASIS;
+        for (int i = 0; i < 64; i += 8) {
+            h = (h ^ ((value >>> i) & 0xFF)) * FNV_PRIME;
+        }
+        return finish(h);
+    }
+
+    private static long hashBytes(byte[] bytes, int from, int to, boolean binary, long seed) {
+        long h = seed ^ FNV_OFFSET_BASIS;
+        if (!binary) {
+            while (to > from && bytes[to - 1] == ' ') {
+                to--;
+            }
+        }
+        for (int i = from; i < to; i++) {
+            int b = bytes[i] & 0xFF;
+            if (!binary) {
+                if (b >= 0x80) {
+                    return UNHASHABLE;
+                }
+                if (b >= 'A' && b <= 'Z') {
+                    b += 'a' - 'A';
+                }
+            }
+            h = (h ^ b) * FNV_PRIME;
+        }
+        return finish(h ^ (to - from));
+    }
+
+    /**
+     * Same as {@link #hashBytes(byte[], int, int, boolean, long)} for ASCII-only Strings (one char per byte).
+     */
+    private static long hashString(String value, int maxLength, boolean binary, long seed) {
+        long h = seed ^ FNV_OFFSET_BASIS;
+        int to = maxLength >= 0 ? Math.min(value.length(), maxLength) : value.length();
+        if (!binary) {
+            while (to > 0 && value.charAt(to - 1) == ' ') {
+                to--;
+            }
+        }
+        for (int i = 0; i < to; i++) {
+            int c = value.charAt(i);
+            if (c >= 0x80) {
+                return UNHASHABLE;
+            }
+            if (!binary && c >= 'A' && c <= 'Z') {
+                c += 'a' - 'A';
+            }
+            h = (h ^ c) * FNV_PRIME;
+        }
+        return finish(h ^ to);
+    }
+
+    private static long finish(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h != UNHASHABLE ? h : 1;
+    }
+
+    /**
+     * @return value (same as the one that would have been returned by {@link AbstractRowsEventDataDeserializer}
+     * eagerly), null if value is NULL
+     */
+    public Serializable getObject(int row, int column) {
+        int offset = offset(row, column);
+        if (offset == -1) {
+            return null;
+        }
+        try {
+            JsonPath path = columnJsonPaths != null ? columnJsonPaths[column] : null;
+            if (path != null) {
+                // extracted straight from the buffer
+                int start = offset + prefixLength(column), length = ends[row * columnTypes.length + column] - start;
+                return length != 0 ? JsonBinary.extract(buffer, start, length, path) : null;
+            }
+            return deserializer.deserializeCell(columnTypes[column], columnMetadata[column], columnLengths[column],
+                columnDecoders != null ? columnDecoders[column] : null,
+                new ByteArrayInputStream(buffer, offset, buffer.length - offset));
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to deserialize cell (row " + row + ", column " + column + ")",
+                e);
+        }
+    }
+
+    /**
+     * @return all values of a given row
+     */
+    public Serializable[] getRow(int row) {
+        Serializable[] result = new Serializable[columnTypes.length];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = getObject(row, i);
+        }
+        return result;
+    }
+
+    /**
+     * @return read-only view of the rows (each {@link List#get(int)} deserializes the whole row)
+     */
+    public List<Serializable[]> asList() {
+        return new AbstractList<Serializable[]>() {
+
+            @Override
+            public Serializable[] get(int index) {
+                return getRow(index);
+            }
+
+            @Override
+            public int size() {
+                return numberOfRows;
+            }
+        };
+    }
+
+    byte[] getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * @return offset of the value within the buffer (length prefix excluded), -1 if value is NULL
+     */
+    int getValueOffset(int row, int column) {
+        int offset = offset(row, column);
+        return offset == -1 ? -1 : offset + prefixLength(column);
+    }
+
+    /**
+     * @return length of the value (length prefix excluded), 0 if value is NULL
+     */
+    int getValueLength(int row, int column) {
+        int offset = offset(row, column);
+        return offset == -1 ? 0 : ends[row * columnTypes.length + column] - offset - prefixLength(column);
+    }
+
+    private int prefixLength(int column) {
+        switch (columnTypes[column]) {
+            case STRING:
+                return columnLengths[column] < 256 ? 1 : 2;
+            case VARCHAR: case VAR_STRING:
+                return columnMetadata[column] < 256 ? 1 : 2;
+            case BLOB: case GEOMETRY: case JSON:
+                return columnMetadata[column];
+            default:
+                return 0;
+        }
+    }
+
+    private int offset(int row, int column) {
+        if (row < 0 || row >= numberOfRows) {
+            throw new IndexOutOfBoundsException("Row: " + row + ", size: " + numberOfRows);
+        }
+        if (column < 0 || column >= columnTypes.length) {
+            throw new IndexOutOfBoundsException("Column: " + column + ", number of columns: " + columnTypes.length);
+        }
+        return offsets[row * columnTypes.length + column];
+    }
+
+    private long littleEndian(int offset, int length) {
+        long result = 0;
+        for (int i = 0; i < length; ++i) {
+            result |= (((long) buffer[offset + i] & 0xff) << (i << 3));
+        }
+        return result;
+    }
+
+}
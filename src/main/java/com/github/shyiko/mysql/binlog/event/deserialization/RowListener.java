@@ -0,0 +1,52 @@
+/*
+ * Copyright 2018 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog.event.deserialization;
+
+import com.github.shyiko.mysql.binlog.event.TableMapEventData;
+
+import java.util.BitSet;
+
+/**
+ * Receives rows of WRITE_ROWS/UPDATE_ROWS/DELETE_ROWS (and their EXT_ counterparts) one at a time, as they are being
+ * decoded (instead of them being collected into the event data first).
+ * <pre>
+ * eventDeserializer.setRowListener(new RowListener() {
+ *     public void onRow(TableMapEventData tableMapEvent, BitSet includedColumns, RowView row) {
+ *         if (row.getType() == RowView.Type.WRITE) {
+ *             long id = row.getLong(0);
+ *             ...
+ *         }
+ *     }
+ * });
+ * </pre>
+ *
+ * @see EventDeserializer#setRowListener(RowListener)
+ * @author <a href="mailto:stanley.shyiko@gmail.com">Stanley Shyiko</a>
+ */
+public interface RowListener {
+
+    /**
+     * Called by the thread reading the events, in binlog order (executor passed to
+     * {@link EventDeserializer#nextEvent(com.github.shyiko.mysql.binlog.io.ByteArrayInputStream,
+     * java.util.concurrent.Executor)} is not used for row events once listener is set).
+     * @param tableMapEvent TABLE_MAP describing the table row belongs to
+     * @param includedColumns columns present in the row (projection, if any, applied)
+     * @param row row (before or after image in case of UPDATE_ROWS) which is only valid until this method returns
+     * (view is reused for the next row)
+     */
+    void onRow(TableMapEventData tableMapEvent, BitSet includedColumns, RowView row);
+
+}
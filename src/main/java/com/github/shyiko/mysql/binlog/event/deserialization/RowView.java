@@ -0,0 +1,128 @@
+/*
+ * Copyright 2018 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog.event.deserialization;
+
+import com.github.shyiko.mysql.binlog.event.deserialization.json.JsonFormatter;
+
+import java.io.IOException;
+import java.io.Serializable;
+
+/**
+ * View of a single row handed over to the {@link RowListener}. Cells are decoded on demand, straight from the row
+ * image (see {@link LazyRows} for the details). Columns are addressed the same way {@code Serializable[]} rows are.
+ *
+ * @author <a href="mailto:stanley.shyiko@gmail.com">Stanley Shyiko</a>
+ */
+public class RowView {
+
+    private final LazyRows row;
+    private final Type type;
+
+    RowView(LazyRows row, Type type) {
+        this.row = row;
+        this.type = type;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public int getNumberOfColumns() {
+        return row.getNumberOfColumns();
+    }
+
+    public ColumnType getColumnType(int column) {
+        return row.getColumnType(column);
+    }
+
+    public boolean isNull(int column) {
+        return row.isNull(0, column);
+    }
+
+    /**
+     * @see LazyRows#getLong(int, int)
+     */
+    public long getLong(int column) {
+        return row.getLong(0, column);
+    }
+
+    /**
+     * @see LazyRows#getDouble(int, int)
+     */
+    public double getDouble(int column) {
+        return row.getDouble(0, column);
+    }
+
+    /**
+     * @see LazyRows#getUnscaledLong(int, int)
+     */
+    public long getUnscaledLong(int column) {
+        return row.getUnscaledLong(0, column);
+    }
+
+    /**
+     * @see LazyRows#getScale(int)
+     */
+    public int getScale(int column) {
+        return row.getScale(column);
+    }
+
+    /**
+     * @see LazyRows#formatJson(int, int, JsonFormatter)
+     */
+    public boolean formatJson(int column, JsonFormatter formatter) throws IOException {
+        return row.formatJson(0, column, formatter);
+    }
+
+    /**
+     * @see LazyRows#getBytes(int, int)
+     */
+    public byte[] getBytes(int column) {
+        return row.getBytes(0, column);
+    }
+
+    /**
+     * @see LazyRows#hash(int, int, int, boolean, long)
+     */
+    public long hash(int column, int maxLength, boolean binary, long seed) {
+        return row.hash(0, column, maxLength, binary, seed);
+    }
+
+    /**
+     * @see LazyRows#getObject(int, int)
+     */
+    public Serializable getObject(int column) {
+        return row.getObject(0, column);
+    }
+
+    /**
+     * @return all values of the row (same as the ones {@link AbstractRowsEventDataDeserializer} produces eagerly)
+     */
+    public Serializable[] toArray() {
+        return row.getRow(0);
+    }
+
+    /**
+     * Kind of the row image.
+     */
+    public enum Type {
+        WRITE,
+        UPDATE_BEFORE,
+        UPDATE_AFTER,
+        DELETE
+    }
+
+}
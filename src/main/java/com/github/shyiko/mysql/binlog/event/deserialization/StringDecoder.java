@@ -0,0 +1,69 @@
+/*
+ * Copyright 2018 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog.event.deserialization;
+
+import com.github.shyiko.mysql.binlog.io.ByteArrayInputStream;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+/**
+ * Decodes CHAR/VARCHAR values of a particular charset straight from the input stream. Values that consist of 7-bit
+ * characters only (which is what most of the data is) are turned into Strings as ISO-8859-1 (no CharsetDecoder
+ * involved, and, starting from Java 9, just a copy into a compact (Latin-1) String), provided charset is
+ * ASCII-compatible. Immutable (and so safe to share).
+ *
+ * @see CharsetRegistry
+ * @author <a href="mailto:stanley.shyiko@gmail.com">Stanley Shyiko</a>
+ */
+final class StringDecoder {
+
+    private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+
+    private final Charset charset;
+    private final boolean asciiCompatible;
+
+    StringDecoder(Charset charset) {
+        this.charset = charset;
+        this.asciiCompatible = isAsciiCompatible(charset);
+    }
+
+    Charset getCharset() {
+        return charset;
+    }
+
+    boolean isAsciiCompatible() {
+        return asciiCompatible;
+    }
+
+    String decode(ByteArrayInputStream inputStream, int length) throws IOException {
+        if (asciiCompatible && inputStream.isAscii(length)) {
+            return inputStream.readString(length, ISO_8859_1);
+        }
+        return inputStream.readString(length, charset);
+    }
+
+    private static boolean isAsciiCompatible(Charset charset) {
+        byte[] ascii = new byte[128];
+        char[] expected = new char[ascii.length];
+        for (int i = 0; i < ascii.length; i++) {
+            ascii[i] = (byte) i;
+            expected[i] = (char) i;
+        }
+        return new String(ascii, charset).equals(new String(expected));
+    }
+
+}
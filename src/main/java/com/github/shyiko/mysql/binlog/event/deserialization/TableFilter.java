@@ -0,0 +1,99 @@
+/*
+ * Copyright 2018 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog.event.deserialization;
+
+import com.github.shyiko.mysql.binlog.event.TableMapEventData;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+
+/**
+ * Include/exclude rules (regular expressions matched against database and table names) that determine which
+ * tables WRITE_ROWS/UPDATE_ROWS/DELETE_ROWS (and their EXT_ counterparts) events are deserialized for.
+ * Data of the rest of rows events is skipped as a whole (such events come with null data, same as if
+ * {@link NullEventDataDeserializer} was used).
+ * <p>
+ * Table is included if it matches any of the include rules (or there are none) and none of the exclude ones.
+ * <pre>
+ * TableFilter tableFilter = new TableFilter()
+ *     .include("tenant_(1|2|3)", ".*")
+ *     .exclude(".*", "tmp_.*");
+ * eventDeserializer.setTableFilter(tableFilter);
+ * </pre>
+ * Rules are expected to be configured before filter is handed over to the {@link EventDeserializer}.
+ *
+ * @see EventDeserializer#setTableFilter(TableFilter)
+ * @author <a href="mailto:stanley.shyiko@gmail.com">Stanley Shyiko</a>
+ */
+public class TableFilter {
+
+    private final List<Pattern[]> includes = new ArrayList<Pattern[]>();
+    private final List<Pattern[]> excludes = new ArrayList<Pattern[]>();
+    // outcome for a particular TABLE_MAP (keyed by table id)
+    private final ConcurrentMap<Long, Outcome> outcomeByTableId = new ConcurrentHashMap<Long, Outcome>();
+
+    public TableFilter include(String databasePattern, String tablePattern) {
+        includes.add(new Pattern[] {Pattern.compile(databasePattern), Pattern.compile(tablePattern)});
+        outcomeByTableId.clear();
+        return this;
+    }
+
+    public TableFilter exclude(String databasePattern, String tablePattern) {
+        excludes.add(new Pattern[] {Pattern.compile(databasePattern), Pattern.compile(tablePattern)});
+        outcomeByTableId.clear();
+        return this;
+    }
+
+    public boolean isIncluded(String database, String table) {
+        return (includes.isEmpty() || matches(includes, database, table)) && !matches(excludes, database, table);
+    }
+
+    public boolean isIncluded(TableMapEventData tableMapEvent) {
+        Outcome outcome = outcomeByTableId.get(tableMapEvent.getTableId());
+        if (outcome == null || outcome.tableMapEvent != tableMapEvent) {
+            outcome = new Outcome(tableMapEvent, isIncluded(tableMapEvent.getDatabase(), tableMapEvent.getTable()));
+            outcomeByTableId.put(tableMapEvent.getTableId(), outcome);
+        }
+        return outcome.included;
+    }
+
+    private static boolean matches(List<Pattern[]> rules, String database, String table) {
+        for (Pattern[] rule : rules) {
+            if (rule[0].matcher(database).matches() && rule[1].matcher(table).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Outcome for a particular {@link TableMapEventData} (table id alone is not enough as it might get reassigned).
+     */
+    private static final class Outcome {
+
+        private final TableMapEventData tableMapEvent;
+        private final boolean included;
+
+        private Outcome(TableMapEventData tableMapEvent, boolean included) {
+            this.tableMapEvent = tableMapEvent;
+            this.included = included;
+        }
+    }
+
+}
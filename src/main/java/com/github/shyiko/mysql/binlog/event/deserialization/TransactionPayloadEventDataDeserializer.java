@@ -0,0 +1,67 @@
+/*
+ * Copyright 2018 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog.event.deserialization;
+
+import com.github.shyiko.mysql.binlog.event.TransactionPayloadEventData;
+import com.github.shyiko.mysql.binlog.io.ByteArrayInputStream;
+
+import java.io.IOException;
+
+/**
+ * https://github.com/mysql/mysql-server/blob/8.0/libbinlogevents/src/compression/payload_event.cpp
+ * <p>
+ * Header is a list of (type, length, value) triplets (each one a packed integer) terminated with type 0,
+ * compressed payload (which spans till the end of the event) follows.
+ *
+ * @author <a href="mailto:stanley.shyiko@gmail.com">Stanley Shyiko</a>
+ */
+public class TransactionPayloadEventDataDeserializer implements EventDataDeserializer<TransactionPayloadEventData> {
+
+    private static final int HEADER_END_MARK = 0;
+    private static final int PAYLOAD_SIZE = 1;
+    private static final int COMPRESSION_TYPE = 2;
+    private static final int UNCOMPRESSED_SIZE = 3;
+
+    @Override
+    public TransactionPayloadEventData deserialize(ByteArrayInputStream inputStream) throws IOException {
+        TransactionPayloadEventData eventData = new TransactionPayloadEventData();
+        int payloadSize = -1;
+        int fieldType;
+        while (inputStream.available() > 0 && (fieldType = inputStream.readPackedInteger()) != HEADER_END_MARK) {
+            int fieldLength = inputStream.readPackedInteger();
+            switch (fieldType) {
+                case PAYLOAD_SIZE:
+                    payloadSize = inputStream.readPackedInteger();
+                    break;
+                case COMPRESSION_TYPE:
+                    eventData.setCompressionType(inputStream.readPackedInteger());
+                    break;
+                case UNCOMPRESSED_SIZE:
+                    eventData.setUncompressedSize(inputStream.readPackedNumber().longValue());
+                    break;
+                default:
+                    inputStream.skip(fieldLength);
+            }
+        }
+        if (payloadSize == -1) {
+            payloadSize = inputStream.available();
+        }
+        eventData.setPayloadSize(payloadSize);
+        eventData.setPayload(inputStream.read(payloadSize));
+        return eventData;
+    }
+
+}
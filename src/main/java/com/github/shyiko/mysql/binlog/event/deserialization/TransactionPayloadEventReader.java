@@ -0,0 +1,210 @@
+/*
+ * Copyright 2018 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog.event.deserialization;
+
+import com.github.shyiko.mysql.binlog.event.Event;
+import com.github.shyiko.mysql.binlog.event.TransactionPayloadEventData;
+import com.github.shyiko.mysql.binlog.io.ByteArrayInputStream;
+import com.github.shyiko.mysql.binlog.io.ZstdInputStream;
+import com.github.shyiko.mysql.binlog.network.protocol.PacketBuffer;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Streams events embedded into TRANSACTION_PAYLOAD through the {@link EventDeserializer} (one at a time, so that
+ * transaction is never inflated in full). Decompression stream and event buffer are reused between payloads
+ * (unless iterated concurrently, in which case extra ones are allocated). Neither is allowed to retain more than
+ * {@link PacketBuffer#MAX_RETAINED_CAPACITY} bytes (events larger than that are read into a one-off array, window of
+ * the decompression stream is dropped once payload is over).
+ *
+ * @author <a href="mailto:stanley.shyiko@gmail.com">Stanley Shyiko</a>
+ */
+final class TransactionPayloadEventReader {
+
+    private static final int EVENT_HEADER_LENGTH = 19;
+    private static final int EVENT_LENGTH_OFFSET = 9;
+    private static final int MAX_RETAINED_CAPACITY = PacketBuffer.MAX_RETAINED_CAPACITY;
+
+    private final EventDeserializer eventDeserializer;
+    private ZstdInputStream zstdInputStream = new ZstdInputStream();
+    private byte[] eventBuffer = new byte[4096];
+
+    /**
+     * @param eventDeserializer deserializer of the embedded events (which, unlike top-level ones, carry no checksum)
+     */
+    TransactionPayloadEventReader(EventDeserializer eventDeserializer) {
+        this.eventDeserializer = eventDeserializer;
+    }
+
+    EventDeserializer getEventDeserializer() {
+        return eventDeserializer;
+    }
+
+    Iterable<Event> events(final TransactionPayloadEventData eventData) {
+        return new Iterable<Event>() {
+
+            @Override
+            public Iterator<Event> iterator() {
+                return new EventIterator(eventData);
+            }
+        };
+    }
+
+    private synchronized ZstdInputStream borrowZstdInputStream() {
+        ZstdInputStream result = zstdInputStream != null ? zstdInputStream : new ZstdInputStream();
+        zstdInputStream = null;
+        return result;
+    }
+
+    private synchronized byte[] borrowEventBuffer() {
+        byte[] result = eventBuffer != null ? eventBuffer : new byte[4096];
+        eventBuffer = null;
+        return result;
+    }
+
+    private synchronized void release(ZstdInputStream zstdInputStream, byte[] eventBuffer) {
+        zstdInputStream.clear(MAX_RETAINED_CAPACITY);
+        this.zstdInputStream = zstdInputStream;
+        this.eventBuffer = eventBuffer;
+    }
+
+    private final class EventIterator implements Iterator<Event> {
+
+        private final ByteArrayInputStream eventStream;
+        private ZstdInputStream zstdInputStream;
+        private byte[] eventBuffer;
+        private Event next;
+        private boolean endOfPayload;
+
+        private EventIterator(TransactionPayloadEventData eventData) {
+            byte[] payload = eventData.getPayload();
+            if (eventData.getCompressionType() == TransactionPayloadEventData.COMPRESSION_TYPE_NONE) {
+                this.eventStream = new ByteArrayInputStream(payload);
+            } else if (eventData.getCompressionType() == TransactionPayloadEventData.COMPRESSION_TYPE_ZSTD) {
+                this.zstdInputStream = borrowZstdInputStream();
+                this.zstdInputStream.setBuffer(payload, 0, payload.length);
+                this.eventBuffer = borrowEventBuffer();
+                this.eventStream = new ByteArrayInputStream(eventBuffer, 0, 0);
+            } else {
+                throw new IllegalArgumentException("Unsupported compression type " + eventData.getCompressionType());
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null && !endOfPayload) {
+                try {
+                    next = zstdInputStream != null ? readCompressedEvent() : readEvent();
+                } catch (IOException e) {
+                    endOfPayload();
+                    throw new IllegalStateException("Failed to deserialize TRANSACTION_PAYLOAD", e);
+                }
+                if (next == null) {
+                    endOfPayload();
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public Event next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Event result = next;
+            next = null;
+            return result;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        private Event readEvent() throws IOException {
+            return eventDeserializer.nextEvent(eventStream);
+        }
+
+        private Event readCompressedEvent() throws IOException {
+            Event event;
+            do {
+                int read = readFully(eventBuffer, 0, EVENT_HEADER_LENGTH);
+                if (read == 0) {
+                    return null;
+                }
+                if (read < EVENT_HEADER_LENGTH) {
+                    throw new EOFException();
+                }
+                int eventLength = 0;
+                for (int i = 0; i < 4; i++) {
+                    eventLength |= (eventBuffer[EVENT_LENGTH_OFFSET + i] & 0xFF) << (i << 3);
+                }
+                if (eventLength < EVENT_HEADER_LENGTH) {
+                    throw new IOException("Invalid embedded event length " + eventLength);
+                }
+                byte[] buffer = eventBuffer;
+                if (eventLength > eventBuffer.length) {
+                    // events larger than MAX_RETAINED_CAPACITY get a one-off array (dropped as soon as they are
+                    // deserialized)
+                    buffer = new byte[eventLength > MAX_RETAINED_CAPACITY ? eventLength :
+                        Math.min(Math.max(eventLength, eventBuffer.length << 1), MAX_RETAINED_CAPACITY)];
+                    System.arraycopy(eventBuffer, 0, buffer, 0, EVENT_HEADER_LENGTH);
+                    if (buffer.length <= MAX_RETAINED_CAPACITY) {
+                        eventBuffer = buffer;
+                    }
+                }
+                if (readFully(buffer, EVENT_HEADER_LENGTH, eventLength - EVENT_HEADER_LENGTH) <
+                        eventLength - EVENT_HEADER_LENGTH) {
+                    throw new EOFException();
+                }
+                eventStream.setBuffer(buffer, 0, eventLength);
+                try {
+                    event = readEvent(); // null if event type is excluded
+                } finally {
+                    if (buffer != eventBuffer) {
+                        eventStream.setBuffer(eventBuffer, 0, 0);
+                    }
+                }
+            } while (event == null);
+            return event;
+        }
+
+        private int readFully(byte[] buffer, int offset, int length) throws IOException {
+            int read = 0;
+            while (read < length) {
+                int count = zstdInputStream.read(buffer, offset + read, length - read);
+                if (count == -1) {
+                    break;
+                }
+                read += count;
+            }
+            return read;
+        }
+
+        private void endOfPayload() {
+            endOfPayload = true;
+            if (zstdInputStream != null) {
+                release(zstdInputStream, eventBuffer);
+                zstdInputStream = null;
+                eventBuffer = null;
+            }
+        }
+    }
+
+}
@@ -24,6 +24,7 @@ import java.io.Serializable;
 import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.BitSet;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -53,23 +54,37 @@ public class UpdateRowsEventDataDeserializer extends AbstractRowsEventDataDeseri
             inputStream.skip(extraInfoLength - 2);
         }
         int numberOfColumns = inputStream.readPackedInteger();
-        eventData.setIncludedColumnsBeforeUpdate(inputStream.readBitSet(numberOfColumns, true));
-        eventData.setIncludedColumns(inputStream.readBitSet(numberOfColumns, true));
-        eventData.setRows(deserializeRows(eventData, inputStream));
+        long tableId = eventData.getTableId();
+        BitSet[] includedColumns = {
+            inputStream.readBitSet(numberOfColumns, true), inputStream.readBitSet(numberOfColumns, true)
+        };
+        BitSet[] projectedColumns = {
+            projectColumns(tableId, includedColumns[0]), projectColumns(tableId, includedColumns[1])
+        };
+        eventData.setIncludedColumnsBeforeUpdate(projectedColumns[0]);
+        eventData.setIncludedColumns(projectedColumns[1]);
+        if (getRowListener() != null) {
+            deserializeRows(tableId, includedColumns, projectedColumns,
+                new RowView.Type[] {RowView.Type.UPDATE_BEFORE, RowView.Type.UPDATE_AFTER}, inputStream);
+            eventData.setRows(Collections.<Map.Entry<Serializable[], Serializable[]>>emptyList());
+        } else if (isDeserializeRowsLazily()) {
+            LazyRows[] rows = deserializeRowsLazily(tableId, includedColumns, projectedColumns, inputStream);
+            eventData.setLazyRowsBeforeUpdate(rows[0]);
+            eventData.setLazyRows(rows[1]);
+        } else {
+            eventData.setRows(deserializeRows(tableId, includedColumns, projectedColumns, inputStream));
+        }
         return eventData;
     }
 
-    private List<Map.Entry<Serializable[], Serializable[]>> deserializeRows(UpdateRowsEventData eventData,
-            ByteArrayInputStream inputStream) throws IOException {
-        long tableId = eventData.getTableId();
-        BitSet includedColumnsBeforeUpdate = eventData.getIncludedColumnsBeforeUpdate(),
-               includedColumns = eventData.getIncludedColumns();
+    private List<Map.Entry<Serializable[], Serializable[]>> deserializeRows(long tableId, BitSet[] includedColumns,
+            BitSet[] projectedColumns, ByteArrayInputStream inputStream) throws IOException {
         List<Map.Entry<Serializable[], Serializable[]>> rows =
                 new ArrayList<Map.Entry<Serializable[], Serializable[]>>();
         while (inputStream.available() > 0) {
             rows.add(new AbstractMap.SimpleEntry<Serializable[], Serializable[]>(
-                    deserializeRow(tableId, includedColumnsBeforeUpdate, inputStream),
-                    deserializeRow(tableId, includedColumns, inputStream)
+                    deserializeRow(tableId, includedColumns[0], projectedColumns[0], inputStream),
+                    deserializeRow(tableId, includedColumns[1], projectedColumns[1], inputStream)
             ));
         }
         return rows;
@@ -22,6 +22,7 @@ import com.github.shyiko.mysql.binlog.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.BitSet;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -52,16 +53,28 @@ public class WriteRowsEventDataDeserializer extends AbstractRowsEventDataDeseria
             inputStream.skip(extraInfoLength - 2);
         }
         int numberOfColumns = inputStream.readPackedInteger();
-        eventData.setIncludedColumns(inputStream.readBitSet(numberOfColumns, true));
-        eventData.setRows(deserializeRows(eventData.getTableId(), eventData.getIncludedColumns(), inputStream));
+        BitSet includedColumns = inputStream.readBitSet(numberOfColumns, true);
+        BitSet projectedColumns = projectColumns(eventData.getTableId(), includedColumns);
+        eventData.setIncludedColumns(projectedColumns);
+        if (getRowListener() != null) {
+            deserializeRows(eventData.getTableId(), new BitSet[] {includedColumns}, new BitSet[] {projectedColumns},
+                new RowView.Type[] {RowView.Type.WRITE}, inputStream);
+            eventData.setRows(Collections.<Serializable[]>emptyList());
+        } else if (isDeserializeRowsLazily()) {
+            eventData.setLazyRows(deserializeRowsLazily(eventData.getTableId(), new BitSet[] {includedColumns},
+                new BitSet[] {projectedColumns}, inputStream)[0]);
+        } else {
+            eventData.setRows(deserializeRows(eventData.getTableId(), includedColumns, projectedColumns,
+                inputStream));
+        }
         return eventData;
     }
 
-    private List<Serializable[]> deserializeRows(long tableId, BitSet includedColumns, ByteArrayInputStream inputStream)
-            throws IOException {
+    private List<Serializable[]> deserializeRows(long tableId, BitSet includedColumns, BitSet projectedColumns,
+            ByteArrayInputStream inputStream) throws IOException {
         List<Serializable[]> result = new LinkedList<Serializable[]>();
         while (inputStream.available() > 0) {
-            result.add(deserializeRow(tableId, includedColumns, inputStream));
+            result.add(deserializeRow(tableId, includedColumns, projectedColumns, inputStream));
         }
         return result;
     }
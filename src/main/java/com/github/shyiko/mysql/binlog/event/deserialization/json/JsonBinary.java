@@ -19,7 +19,9 @@ import com.github.shyiko.mysql.binlog.event.deserialization.AbstractRowsEventDat
 import com.github.shyiko.mysql.binlog.event.deserialization.ColumnType;
 import com.github.shyiko.mysql.binlog.io.ByteArrayInputStream;
 
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.Serializable;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.nio.charset.Charset;
@@ -181,14 +183,226 @@ public class JsonBinary {
         new JsonBinary(bytes).parse(formatter);
     }
 
+    /**
+     * Same as {@link #parse(byte[], JsonFormatter)} except that binary representation is read from a given range of
+     * the array (e.g. straight from the event buffer, see
+     * {@link com.github.shyiko.mysql.binlog.event.deserialization.LazyRows#formatJson(int, int, JsonFormatter)}).
+     */
+    public static void parse(byte[] bytes, int offset, int length, JsonFormatter formatter) throws IOException {
+        new JsonBinary(bytes, offset, length).parse(formatter);
+    }
+
+    /**
+     * Extract a single value out of the MySQL binary representation of a {@code JSON} value. Unlike
+     * {@link #parse(byte[], JsonFormatter)}, this method does not walk the document - object keys are looked up
+     * using binary search over the (sorted) key entries, array elements - by their offsets, and only the value the
+     * path points to is decoded.
+     *
+     * @param bytes the binary representation; may not be null
+     * @param path the path to extract
+     * @return String / Integer / Long / BigInteger (UINT64 beyond Long.MAX_VALUE) / Double / Boolean in case of a
+     * scalar, JSON string representation in case of an object, an array or an opaque value (DATE, DECIMAL, etc.),
+     * null if there is no value at the path (or value is JSON null)
+     * @throws IOException if there is a problem reading or processing the binary representation
+     */
+    public static Serializable extract(byte[] bytes, JsonPath path) throws IOException {
+        return extract(bytes, 0, bytes.length, path);
+    }
+
+    /**
+     * Same as {@link #extract(byte[], JsonPath)} except that binary representation is read from a given range of
+     * the array.
+     */
+    public static Serializable extract(byte[] bytes, int offset, int length, JsonPath path) throws IOException {
+        int end = offset + length;
+        long location = locate(bytes, offset, end, path);
+        if (location == -1) {
+            return null;
+        }
+        ValueType type = ValueType.byCode((int) (location >>> 32));
+        int position = (int) location;
+        JsonBinary value = new JsonBinary(bytes, position, end - position);
+        switch (type) {
+            case LITERAL:
+                return value.readLiteral();
+            case INT16:
+                return value.readInt16();
+            case UINT16:
+                return value.readUInt16();
+            case INT32:
+                return value.readInt32();
+            case UINT32:
+                return value.readUInt32();
+            case INT64:
+                return value.readInt64();
+            case UINT64:
+                BigInteger unsigned = value.readUInt64();
+                return unsigned.bitLength() < 64 ? (Serializable) unsigned.longValue() : unsigned;
+            case DOUBLE:
+                return Double.longBitsToDouble(value.readInt64());
+            case STRING:
+                return value.reader.readString(value.readVariableInt(), UTF_8);
+            default:
+                JsonStringFormatter formatter = new JsonStringFormatter();
+                value.parse(type, formatter);
+                return formatter.getString();
+        }
+    }
+
+    /**
+     * Same as {@link #extract(byte[], int, int, JsonPath)} except that value is handed over to a given formatter
+     * (the way {@link #parse(byte[], int, int, JsonFormatter)} would have done it had the document consisted of this
+     * value alone).
+     *
+     * @return false if there is no value at the path (formatter is not called), true otherwise
+     */
+    public static boolean extract(byte[] bytes, int offset, int length, JsonPath path, JsonFormatter formatter)
+            throws IOException {
+        int end = offset + length;
+        long location = locate(bytes, offset, end, path);
+        if (location == -1) {
+            return false;
+        }
+        int position = (int) location;
+        new JsonBinary(bytes, position, end - position).parse(ValueType.byCode((int) (location >>> 32)), formatter);
+        return true;
+    }
+
+    /**
+     * Navigate to the value at the given path (without looking at any of the values along the way).
+     * <p>
+     * Containers start with the number of elements and the size (in bytes), followed by key entries (objects only,
+     * key offset + key length each, sorted by key length and then by key bytes) and value entries (type + value
+     * offset each (offsets are relative to the start of the container), except for LITERAL/INT16/UINT16 (as well as
+     * INT32/UINT32 in case of large containers) values, which are inlined in place of the offset).
+     *
+     * @return type of the value (high 32 bits) and its position within the array (low 32 bits), -1 if there is no
+     * value at the path
+     */
+    private static long locate(byte[] bytes, int offset, int end, JsonPath path) throws IOException {
+        if (offset >= end) {
+            throw new EOFException();
+        }
+        int type = bytes[offset] & 0xFF, position = offset + 1;
+        for (int leg = 0, numberOfLegs = path.size(); leg < numberOfLegs; leg++) {
+            byte[] key = path.getKey(leg);
+            boolean object = type == ValueType.SMALL_DOCUMENT.getCode() || type == ValueType.LARGE_DOCUMENT.getCode();
+            boolean array = type == ValueType.SMALL_ARRAY.getCode() || type == ValueType.LARGE_ARRAY.getCode();
+            if (key == null && !array) {
+                // same as MySQL, scalars (and objects) are treated as single-element arrays
+                if (path.getIndex(leg) == 0) {
+                    continue;
+                }
+                return -1;
+            }
+            if (key != null && !object) {
+                return -1;
+            }
+            boolean small = type == ValueType.SMALL_DOCUMENT.getCode() || type == ValueType.SMALL_ARRAY.getCode();
+            int indexSize = small ? 2 : 4;
+            int numberOfElements = readIndex(bytes, position, indexSize, end);
+            int containerEnd = position + readIndex(bytes, position + indexSize, indexSize, end);
+            if (containerEnd > end || containerEnd < position) {
+                throw new IOException("The size of the JSON container exceeds the size of the document");
+            }
+            int element = key != null ?
+                findKey(bytes, position, numberOfElements, indexSize, key, containerEnd) : path.getIndex(leg);
+            if (element < 0 || element >= numberOfElements) {
+                return -1;
+            }
+            int valueEntry = position + 2 * indexSize + (key != null ? numberOfElements * (indexSize + 2) : 0) +
+                element * (indexSize + 1);
+            if (valueEntry + 1 + indexSize > containerEnd) {
+                throw new EOFException();
+            }
+            int valueType = bytes[valueEntry] & 0xFF;
+            if (isInlined(valueType, small)) {
+                position = valueEntry + 1;
+            } else {
+                position += readIndex(bytes, valueEntry + 1, indexSize, containerEnd);
+            }
+            type = valueType;
+        }
+        if (ValueType.byCode(type) == null) {
+            throw new IOException("Unknown type value '" + asHex(type) + "' in first byte of a JSON value");
+        }
+        return ((long) type << 32) | position;
+    }
+
+    /**
+     * @return index of the element with a given key (within the object starting at {@code position}), -1 if there
+     * is no such key
+     */
+    // checkstyle, please ignore ParameterNumber for the next line
+    private static int findKey(byte[] bytes, int position, int numberOfElements, int indexSize, byte[] key,
+            int containerEnd) throws IOException {
+        int low = 0, high = numberOfElements - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int keyEntry = position + 2 * indexSize + middle * (indexSize + 2);
+            int keyOffset = position + readIndex(bytes, keyEntry, indexSize, containerEnd);
+            int keyLength = readIndex(bytes, keyEntry + indexSize, 2, containerEnd);
+            if (keyOffset + keyLength > containerEnd || keyOffset < position) {
+                throw new EOFException();
+            }
+            int comparison = keyLength - key.length;
+            for (int i = 0; comparison == 0 && i < keyLength; i++) {
+                comparison = (bytes[keyOffset + i] & 0xFF) - (key[i] & 0xFF);
+            }
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isInlined(int type, boolean small) {
+        return type == ValueType.LITERAL.getCode() || type == ValueType.INT16.getCode() ||
+            type == ValueType.UINT16.getCode() ||
+            (!small && (type == ValueType.INT32.getCode() || type == ValueType.UINT32.getCode()));
+    }
+
+    /**
+     * @return unsigned little-endian integer of a given size (2 or 4 bytes)
+     */
+    private static int readIndex(byte[] bytes, int position, int size, int end) throws IOException {
+        if (position + size > end) {
+            throw new EOFException();
+        }
+        long result = 0;
+        for (int i = 0; i < size; i++) {
+            result |= (long) (bytes[position + i] & 0xFF) << (i << 3);
+        }
+        if (result > Integer.MAX_VALUE) {
+            throw new IOException("The JSON container offset/size " + result + " is out of range");
+        }
+        return (int) result;
+    }
+
     private final ByteArrayInputStream reader;
+    // backing array of the reader (null if reader is not array-backed) and the end of the binary representation
+    // within it (needed to hand keys/strings over to Utf8AwareJsonFormatter without copying)
+    private final byte[] bytes;
+    private final int end;
 
     public JsonBinary(byte[] bytes) {
-        this(new ByteArrayInputStream(bytes));
+        this(bytes, 0, bytes.length);
+    }
+
+    public JsonBinary(byte[] bytes, int offset, int length) {
+        this.reader = new ByteArrayInputStream(bytes, offset, length);
+        this.bytes = bytes;
+        this.end = offset + length;
     }
 
     public JsonBinary(ByteArrayInputStream contents) {
         this.reader = contents;
+        this.bytes = null;
+        this.end = 0;
     }
 
     public String getString() {
@@ -373,9 +587,15 @@ public class JsonBinary {
         }
 
         // Read each key ...
-        String[] keys = new String[numElements];
+        Utf8AwareJsonFormatter utf8Formatter = utf8Formatter(formatter);
+        String[] keys = utf8Formatter == null ? new String[numElements] : null;
+        int[] keyOffsets = utf8Formatter != null ? new int[numElements] : null;
         for (int i = 0; i != numElements; ++i) {
-            keys[i] = reader.readString(keyLengths[i]);
+            if (utf8Formatter != null) {
+                keyOffsets[i] = skip(keyLengths[i]);
+            } else {
+                keys[i] = reader.readString(keyLengths[i], UTF_8);
+            }
         }
 
         // Now parse the values ...
@@ -384,7 +604,11 @@ public class JsonBinary {
             if (i != 0) {
                 formatter.nextEntry();
             }
-            formatter.name(keys[i]);
+            if (utf8Formatter != null) {
+                utf8Formatter.name(bytes, keyOffsets[i], keyLengths[i]);
+            } else {
+                formatter.name(keys[i]);
+            }
             ValueEntry entry = entries[i];
             if (entry.resolved) {
                 Object value = entry.value;
@@ -635,10 +859,34 @@ public class JsonBinary {
      */
     protected void parseString(JsonFormatter formatter) throws IOException {
         int length = readVariableInt();
-        String value = new String(reader.read(length), UTF_8);
+        Utf8AwareJsonFormatter utf8Formatter = utf8Formatter(formatter);
+        if (utf8Formatter != null) {
+            utf8Formatter.value(bytes, skip(length), length);
+            return;
+        }
+        String value = reader.readString(length, UTF_8);
         formatter.value(value);
     }
 
+    /**
+     * @return formatter as {@link Utf8AwareJsonFormatter} if it is one (and backing array is known), null otherwise
+     */
+    private Utf8AwareJsonFormatter utf8Formatter(JsonFormatter formatter) {
+        return bytes != null && formatter instanceof Utf8AwareJsonFormatter ? (Utf8AwareJsonFormatter) formatter : null;
+    }
+
+    /**
+     * Skip {@code length} bytes (array-backed reader only).
+     * @return offset of the first skipped byte within the backing array
+     */
+    private int skip(int length) throws IOException {
+        int offset = end - reader.available();
+        if (reader.skip(length) != length) {
+            throw new EOFException();
+        }
+        return offset;
+    }
+
     /**
      * Parse an opaque type. Specific types such as {@link #parseDate(JsonFormatter) DATE},
      * {@link #parseTime(JsonFormatter) TIME}, and {@link #parseDatetime(JsonFormatter) DATETIME} values are
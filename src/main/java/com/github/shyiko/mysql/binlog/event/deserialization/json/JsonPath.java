@@ -0,0 +1,165 @@
+/*
+ * Copyright 2018 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog.event.deserialization.json;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Path to a value within a JSON document (subset of the
+ * <a href="https://dev.mysql.com/doc/refman/8.0/en/json.html#json-path-syntax">MySQL JSON path syntax</a> that
+ * addresses a single value): {@code $}, followed by any number of {@code .key} / {@code ."quoted key"} /
+ * {@code [index]} legs (wildcards, ranges and {@code last} are not supported). Immutable (and so safe to share).
+ * <pre>
+ * JsonPath path = JsonPath.parse("$.tenant.id");
+ * Serializable tenantId = JsonBinary.extract(bytes, path);
+ * </pre>
+ *
+ * @see JsonBinary#extract(byte[], JsonPath)
+ * @author <a href="mailto:stanley.shyiko@gmail.com">Stanley Shyiko</a>
+ */
+public final class JsonPath {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final String path;
+    // UTF-8 encoded key of each leg (null if leg is an array index)
+    private final byte[][] keys;
+    private final int[] indexes;
+
+    private JsonPath(String path, byte[][] keys, int[] indexes) {
+        this.path = path;
+        this.keys = keys;
+        this.indexes = indexes;
+    }
+
+    /**
+     * @throws IllegalArgumentException if path is malformed (or uses features that are not supported)
+     */
+    public static JsonPath parse(String path) {
+        int length = path.length(), position = 0;
+        while (position < length && Character.isWhitespace(path.charAt(position))) {
+            position++;
+        }
+        if (position == length || path.charAt(position) != '$') {
+            throw new IllegalArgumentException("JSON path \"" + path + "\" must start with $");
+        }
+        position++;
+        List<String> keys = new ArrayList<String>();
+        List<Integer> indexes = new ArrayList<Integer>();
+        while (position < length) {
+            char c = path.charAt(position);
+            if (Character.isWhitespace(c)) {
+                position++;
+            } else if (c == '.') {
+                position++;
+                StringBuilder key = new StringBuilder();
+                if (position < length && path.charAt(position) == '"') {
+                    position = parseQuotedKey(path, position + 1, key);
+                } else {
+                    int start = position;
+                    while (position < length && isKeyCharacter(path.charAt(position))) {
+                        position++;
+                    }
+                    if (position == start) {
+                        throw unsupported(path, position);
+                    }
+                    key.append(path, start, position);
+                }
+                keys.add(key.toString());
+                indexes.add(-1);
+            } else if (c == '[') {
+                int end = path.indexOf(']', position);
+                if (end == -1) {
+                    throw unsupported(path, position);
+                }
+                int index;
+                try {
+                    index = Integer.parseInt(path.substring(position + 1, end).trim());
+                } catch (NumberFormatException e) {
+                    throw unsupported(path, position);
+                }
+                if (index < 0) {
+                    throw unsupported(path, position);
+                }
+                keys.add(null);
+                indexes.add(index);
+                position = end + 1;
+            } else {
+                throw unsupported(path, position);
+            }
+        }
+        byte[][] encodedKeys = new byte[keys.size()][];
+        int[] arrayIndexes = new int[indexes.size()];
+        for (int i = 0; i < encodedKeys.length; i++) {
+            String key = keys.get(i);
+            encodedKeys[i] = key != null ? key.getBytes(UTF_8) : null;
+            arrayIndexes[i] = indexes.get(i);
+        }
+        return new JsonPath(path, encodedKeys, arrayIndexes);
+    }
+
+    private static int parseQuotedKey(String path, int position, StringBuilder key) {
+        for (int length = path.length(); position < length; position++) {
+            char c = path.charAt(position);
+            if (c == '"') {
+                return position + 1;
+            }
+            if (c == '\\' && position + 1 < length) {
+                c = path.charAt(++position);
+            }
+            key.append(c);
+        }
+        throw new IllegalArgumentException("JSON path \"" + path + "\" has unterminated quoted key");
+    }
+
+    private static boolean isKeyCharacter(char c) {
+        return c != '.' && c != '[' && c != '*' && c != '"' && !Character.isWhitespace(c);
+    }
+
+    private static IllegalArgumentException unsupported(String path, int position) {
+        return new IllegalArgumentException("JSON path \"" + path + "\" is either malformed or not supported " +
+            "(at position " + position + ")");
+    }
+
+    /**
+     * @return number of legs (0 in case of {@code $})
+     */
+    public int size() {
+        return keys.length;
+    }
+
+    /**
+     * @return UTF-8 encoded key of a given leg, null if leg is an array index
+     */
+    byte[] getKey(int leg) {
+        return keys[leg];
+    }
+
+    /**
+     * @return array index of a given leg, -1 if leg is an object key
+     */
+    int getIndex(int leg) {
+        return indexes[leg];
+    }
+
+    @Override
+    public String toString() {
+        return path;
+    }
+
+}
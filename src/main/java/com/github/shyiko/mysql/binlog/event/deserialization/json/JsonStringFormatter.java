@@ -45,7 +45,7 @@ public class JsonStringFormatter implements JsonFormatter {
      * must be escaped. A value of '0' means no escaping is required; positive values must be escaped with a
      * preceding backslash; and negative values that generic escaping (e.g., {@code \\uXXXX}).
      */
-    private static final int[] ESCAPES;
+    static final int[] ESCAPES;
 
     static {
         int[] escape = new int[128];
@@ -65,7 +65,7 @@ public class JsonStringFormatter implements JsonFormatter {
         ESCAPES = escape;
     }
 
-    private static final char[] HEX_CODES = "0123456789ABCDEF".toCharArray();
+    static final char[] HEX_CODES = "0123456789ABCDEF".toCharArray();
 
     private final StringBuilder sb = new StringBuilder();
 
@@ -78,6 +78,20 @@ public class JsonStringFormatter implements JsonFormatter {
         return sb.toString();
     }
 
+    /**
+     * @return content formatted so far (not a copy)
+     */
+    CharSequence getCharSequence() {
+        return sb;
+    }
+
+    /**
+     * Discard content formatted so far (so that instance could be reused).
+     */
+    void reset() {
+        sb.setLength(0);
+    }
+
     @Override
     public void beginObject(int numElements) {
         sb.append('{');
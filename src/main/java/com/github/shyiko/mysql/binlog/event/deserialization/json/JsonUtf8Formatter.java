@@ -0,0 +1,357 @@
+/*
+ * Copyright 2018 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog.event.deserialization.json;
+
+import com.github.shyiko.mysql.binlog.event.deserialization.ColumnType;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * A {@link JsonFormatter} that writes (UTF-8 encoded) JSON string representation straight to an
+ * {@link OutputStream} (through a fixed-size buffer), producing exactly the same output as
+ * {@link JsonStringFormatter} does (minus String / StringBuilder / re-encoding). Keys and string values
+ * are copied (escaped) from the binary representation as is (see {@link Utf8AwareJsonFormatter}).
+ * <pre>
+ * JsonUtf8Formatter formatter = new JsonUtf8Formatter(outputStream);
+ * JsonBinary.parse(bytes, formatter);
+ * formatter.flush();
+ * </pre>
+ * As {@link JsonFormatter} methods can't throw IOException, first exception thrown by the underlying stream is
+ * deferred till {@link #flush()} (all the subsequent output is discarded).
+ * <p>
+ * Not thread-safe.
+ *
+ * @author <a href="mailto:stanley.shyiko@gmail.com">Stanley Shyiko</a>
+ */
+public class JsonUtf8Formatter implements Utf8AwareJsonFormatter {
+
+    private static final byte[] NULL = {'n', 'u', 'l', 'l'};
+    private static final byte[] TRUE = {'t', 'r', 'u', 'e'};
+    private static final byte[] FALSE = {'f', 'a', 'l', 's', 'e'};
+
+    private static final int[] ESCAPES = JsonStringFormatter.ESCAPES;
+    private static final char[] HEX_CODES = JsonStringFormatter.HEX_CODES;
+
+    private OutputStream outputStream;
+    private final byte[] buffer;
+    private int position;
+    private IOException exception;
+    private final byte[] digits = new byte[20];
+    // used to format rarely seen values (dates, doubles, decimals, etc.) the same way JsonStringFormatter does
+    private JsonStringFormatter stringFormatter;
+
+    public JsonUtf8Formatter(OutputStream outputStream) {
+        this(outputStream, 8192);
+    }
+
+    public JsonUtf8Formatter(OutputStream outputStream, int bufferSize) {
+        if (bufferSize < 16) {
+            throw new IllegalArgumentException("Buffer size must be at least 16 bytes");
+        }
+        this.outputStream = outputStream;
+        this.buffer = new byte[bufferSize];
+    }
+
+    /**
+     * Discard any pending output (as well as deferred exception, if any) and start writing to a given stream
+     * (so that formatter (and its buffer) could be reused).
+     */
+    public void reset(OutputStream outputStream) {
+        this.outputStream = outputStream;
+        this.position = 0;
+        this.exception = null;
+    }
+
+    /**
+     * Write buffered output to the underlying stream (and flush it).
+     * @throws IOException if underlying stream failed at any point (since the last {@link #reset(OutputStream)})
+     */
+    public void flush() throws IOException {
+        drain();
+        if (exception != null) {
+            throw exception;
+        }
+        outputStream.flush();
+    }
+
+    @Override
+    public void beginObject(int numElements) {
+        write('{');
+    }
+
+    @Override
+    public void beginArray(int numElements) {
+        write('[');
+    }
+
+    @Override
+    public void endObject() {
+        write('}');
+    }
+
+    @Override
+    public void endArray() {
+        write(']');
+    }
+
+    @Override
+    public void name(String name) {
+        write('"');
+        writeEscaped(name);
+        write('"');
+        write(':');
+    }
+
+    @Override
+    public void name(byte[] utf8, int offset, int length) {
+        write('"');
+        writeEscaped(utf8, offset, length);
+        write('"');
+        write(':');
+    }
+
+    @Override
+    public void value(String value) {
+        write('"');
+        writeEscaped(value);
+        write('"');
+    }
+
+    @Override
+    public void value(byte[] utf8, int offset, int length) {
+        write('"');
+        writeEscaped(utf8, offset, length);
+        write('"');
+    }
+
+    @Override
+    public void value(int value) {
+        writeLong(value);
+    }
+
+    @Override
+    public void value(long value) {
+        writeLong(value);
+    }
+
+    @Override
+    public void value(double value) {
+        stringFormatter().value(value);
+        writeStringFormatterOutput();
+    }
+
+    @Override
+    public void value(BigInteger value) {
+        stringFormatter().value(value);
+        writeStringFormatterOutput();
+    }
+
+    @Override
+    public void value(BigDecimal value) {
+        stringFormatter().value(value);
+        writeStringFormatterOutput();
+    }
+
+    @Override
+    public void value(boolean value) {
+        write(value ? TRUE : FALSE, 0, value ? TRUE.length : FALSE.length);
+    }
+
+    @Override
+    public void valueNull() {
+        write(NULL, 0, NULL.length);
+    }
+
+    @Override
+    public void valueYear(int year) {
+        writeLong(year);
+    }
+
+    @Override
+    public void valueDate(int year, int month, int day) {
+        stringFormatter().valueDate(year, month, day);
+        writeStringFormatterOutput();
+    }
+
+    @Override
+    // checkstyle, please ignore ParameterNumber for the next line
+    public void valueDatetime(int year, int month, int day, int hour, int min, int sec, int microSeconds) {
+        stringFormatter().valueDatetime(year, month, day, hour, min, sec, microSeconds);
+        writeStringFormatterOutput();
+    }
+
+    @Override
+    public void valueTime(int hour, int min, int sec, int microSeconds) {
+        stringFormatter().valueTime(hour, min, sec, microSeconds);
+        writeStringFormatterOutput();
+    }
+
+    @Override
+    public void valueTimestamp(long secondsPastEpoch, int microSeconds) {
+        stringFormatter().valueTimestamp(secondsPastEpoch, microSeconds);
+        writeStringFormatterOutput();
+    }
+
+    @Override
+    public void valueOpaque(ColumnType type, byte[] value) {
+        stringFormatter().valueOpaque(type, value);
+        writeStringFormatterOutput();
+    }
+
+    @Override
+    public void nextEntry() {
+        write(',');
+    }
+
+    private JsonStringFormatter stringFormatter() {
+        if (stringFormatter == null) {
+            stringFormatter = new JsonStringFormatter();
+        } else {
+            stringFormatter.reset();
+        }
+        return stringFormatter;
+    }
+
+    private void writeStringFormatterOutput() {
+        writeEscaped(stringFormatter.getCharSequence(), false);
+    }
+
+    private void writeLong(long value) {
+        if (value == Long.MIN_VALUE) {
+            writeEscaped(Long.toString(value), false);
+            return;
+        }
+        if (value < 0) {
+            write('-');
+            value = -value;
+        }
+        int index = digits.length;
+        do {
+            digits[--index] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        write(digits, index, digits.length - index);
+    }
+
+    /**
+     * Copy UTF-8 encoded string, escaping any characters that must be escaped (multi-byte sequences are copied as
+     * is).
+     */
+    private void writeEscaped(byte[] utf8, int offset, int length) {
+        int start = offset;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            int ch = utf8[i];
+            if (ch >= 0 && ESCAPES[ch] != 0) {
+                write(utf8, start, i - start);
+                writeEscape(ch);
+                start = i + 1;
+            }
+        }
+        write(utf8, start, offset + length - start);
+    }
+
+    private void writeEscaped(CharSequence value) {
+        writeEscaped(value, true);
+    }
+
+    /**
+     * Write string as UTF-8 (unpaired surrogates are replaced with '?', same as String.getBytes does).
+     * @param escape true if characters that must be escaped should be, false otherwise
+     */
+    private void writeEscaped(CharSequence value, boolean escape) {
+        for (int i = 0, length = value.length(); i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                if (escape && ESCAPES[c] != 0) {
+                    writeEscape(c);
+                } else {
+                    write(c);
+                }
+            } else if (c < 0x800) {
+                write(0xC0 | (c >> 6));
+                write(0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length &&
+                    Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                write(0xF0 | (codePoint >> 18));
+                write(0x80 | ((codePoint >> 12) & 0x3F));
+                write(0x80 | ((codePoint >> 6) & 0x3F));
+                write(0x80 | (codePoint & 0x3F));
+            } else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+                write('?');
+            } else {
+                write(0xE0 | (c >> 12));
+                write(0x80 | ((c >> 6) & 0x3F));
+                write(0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    private void writeEscape(int ch) {
+        int escape = ESCAPES[ch];
+        write('\\');
+        if (escape > 0) {
+            write(escape);
+        } else {
+            // generic escape is only used for control characters (< 0x20)
+            write('u');
+            write('0');
+            write('0');
+            write(HEX_CODES[ch >> 4]);
+            write(HEX_CODES[ch & 0xF]);
+        }
+    }
+
+    private void write(int b) {
+        if (position == buffer.length) {
+            drain();
+        }
+        buffer[position++] = (byte) b;
+    }
+
+    private void write(byte[] bytes, int offset, int length) {
+        if (length > buffer.length - position) {
+            drain();
+            if (length > buffer.length) {
+                if (exception == null) {
+                    try {
+                        outputStream.write(bytes, offset, length);
+                    } catch (IOException e) {
+                        exception = e;
+                    }
+                }
+                return;
+            }
+        }
+        System.arraycopy(bytes, offset, buffer, position, length);
+        position += length;
+    }
+
+    private void drain() {
+        if (position > 0 && exception == null) {
+            try {
+                outputStream.write(buffer, 0, position);
+            } catch (IOException e) {
+                exception = e;
+            }
+        }
+        position = 0;
+    }
+
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2018 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog.event.deserialization.json;
+
+/**
+ * {@link JsonFormatter} capable of receiving keys and string values in their original (utf8mb4) form, which
+ * {@link JsonBinary} takes advantage of (without decoding them into Strings) whenever binary representation is
+ * array-backed (see {@link JsonBinary#JsonBinary(byte[], int, int)}). {@link #name(String)} /
+ * {@link #value(String)} are still used otherwise.
+ * <p>
+ * Arrays must not be modified or retained beyond the call.
+ *
+ * @author <a href="mailto:stanley.shyiko@gmail.com">Stanley Shyiko</a>
+ */
+public interface Utf8AwareJsonFormatter extends JsonFormatter {
+
+    /**
+     * Receive the name of an element in a JSON object.
+     *
+     * @param utf8 array containing UTF-8 encoded name
+     * @param offset offset of the name within the array
+     * @param length length of the name (in bytes)
+     */
+    void name(byte[] utf8, int offset, int length);
+
+    /**
+     * Receive a string value.
+     *
+     * @param utf8 array containing UTF-8 encoded value
+     * @param offset offset of the value within the array
+     * @param length length of the value (in bytes)
+     */
+    void value(byte[] utf8, int offset, int length);
+
+}
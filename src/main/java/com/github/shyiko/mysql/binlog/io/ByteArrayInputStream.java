@@ -18,29 +18,91 @@ package com.github.shyiko.mysql.binlog.io;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.Charset;
 import java.util.BitSet;
+import java.util.zip.Checksum;
 
 /**
+ * Little-endian reader used by all the packet/event deserializers.
+ * <p>
+ * Two modes of operation are supported:
+ * <ul>
+ *   <li>array-backed (see {@link #ByteArrayInputStream(byte[], int, int)} / {@link #setBuffer(byte[], int, int)}),
+ *   in which case values are decoded straight from the array (by index) without going through
+ *   {@link InputStream#read()} for every single byte. This is what BinaryLogClient uses for event packets (whole
+ *   packet body is read once and then handed over to the EventDeserializer);</li>
+ *   <li>stream-backed (see {@link #ByteArrayInputStream(InputStream)}), which is kept for the sources where
+ *   packet/event boundaries are not known upfront (e.g. socket during the handshake, binary log file) and for
+ *   packets split into multiple chunks (see {@link CompositeInputStream}, which, unlike other streams, supports
+ *   mark/reset).</li>
+ * </ul>
+ *
  * @author <a href="mailto:stanley.shyiko@gmail.com">Stanley Shyiko</a>
  */
 public class ByteArrayInputStream extends InputStream {
 
+    private static final int NO_PEEK = -2;
+
+    // stream-backed mode
     private InputStream inputStream;
-    private Integer peek;
+    private int peek = NO_PEEK;
     private int blockLength = -1;
+    private int markPeek = NO_PEEK;
+    private int markBlockLength = -1;
+
+    // array-backed mode
+    private byte[] buffer;
+    private int position;
+    private int limit; // end of the current block (if any) or bufferLimit
+    private int bufferLimit;
+    private boolean withinBlock;
+    private int mark;
 
     public ByteArrayInputStream(InputStream inputStream) {
         this.inputStream = inputStream;
     }
 
     public ByteArrayInputStream(byte[] bytes) {
-        this(new java.io.ByteArrayInputStream(bytes));
+        this(bytes, 0, bytes.length);
+    }
+
+    public ByteArrayInputStream(byte[] bytes, int offset, int length) {
+        setBuffer(bytes, offset, length);
+    }
+
+    /**
+     * (Re)point this (array-backed) stream to a given range of bytes. Allows the same instance to be reused for
+     * multiple packets.
+     * Note that the array is NOT copied.
+     */
+    public void setBuffer(byte[] bytes, int offset, int length) {
+        if (inputStream != null) {
+            throw new IllegalStateException("Stream-backed ByteArrayInputStream cannot be repointed");
+        }
+        if (offset < 0 || length < 0 || offset + length > bytes.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        this.buffer = bytes;
+        this.position = this.mark = offset;
+        this.limit = this.bufferLimit = offset + length;
+        this.withinBlock = false;
     }
 
     /**
      * Read int written in little-endian format.
      */
     public int readInteger(int length) throws IOException {
+        if (buffer != null) {
+            ensureAvailable(length);
+            byte[] buffer = this.buffer;
+            int position = this.position;
+            int result = 0;
+            for (int i = 0; i < length; ++i) {
+                result |= (buffer[position + i] & 0xFF) << (i << 3);
+            }
+            this.position = position + length;
+            return result;
+        }
         int result = 0;
         for (int i = 0; i < length; ++i) {
             result |= (this.read() << (i << 3));
@@ -52,6 +114,17 @@ public class ByteArrayInputStream extends InputStream {
      * Read long written in little-endian format.
      */
     public long readLong(int length) throws IOException {
+        if (buffer != null) {
+            ensureAvailable(length);
+            byte[] buffer = this.buffer;
+            int position = this.position;
+            long result = 0;
+            for (int i = 0; i < length; ++i) {
+                result |= ((long) (buffer[position + i] & 0xFF)) << (i << 3);
+            }
+            this.position = position + length;
+            return result;
+        }
         long result = 0;
         for (int i = 0; i < length; ++i) {
             result |= (((long) this.read()) << (i << 3));
@@ -63,9 +136,46 @@ public class ByteArrayInputStream extends InputStream {
      * Read fixed length string.
      */
     public String readString(int length) throws IOException {
+        if (buffer != null) {
+            ensureAvailable(length);
+            String result = new String(buffer, position, length);
+            position += length;
+            return result;
+        }
         return new String(read(length));
     }
 
+    /**
+     * Read fixed length string encoded using a given charset (in case of array-backed stream - straight from the
+     * backing array, i.e. without intermediate byte[]).
+     */
+    public String readString(int length, Charset charset) throws IOException {
+        if (buffer != null) {
+            ensureAvailable(length);
+            String result = new String(buffer, position, length, charset);
+            position += length;
+            return result;
+        }
+        return new String(read(length), charset);
+    }
+
+    /**
+     * @return true if next {@code length} bytes are all 7-bit (US-ASCII), false otherwise (as well as when stream
+     * is stream-backed (bytes can't be looked at without being consumed) or there are less than {@code length}
+     * bytes available). Bytes are not consumed.
+     */
+    public boolean isAscii(int length) {
+        if (buffer == null || length > limit - position) {
+            return false;
+        }
+        for (int i = position, end = position + length; i < end; i++) {
+            if (buffer[i] < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * Read variable-length string. Preceding packed integer indicates the length of the string.
      */
@@ -77,6 +187,18 @@ public class ByteArrayInputStream extends InputStream {
      * Read variable-length string. End is indicated by 0x00 byte.
      */
     public String readZeroTerminatedString() throws IOException {
+        if (buffer != null) {
+            int end = position;
+            while (end < limit && buffer[end] != 0) {
+                end++;
+            }
+            if (end == limit) {
+                throw new EOFException();
+            }
+            String result = new String(buffer, position, end - position);
+            position = end + 1;
+            return result;
+        }
         ByteArrayOutputStream s = new ByteArrayOutputStream();
         for (int b; (b = this.read()) != 0; ) {
             s.writeInteger(b, 1);
@@ -90,7 +212,32 @@ public class ByteArrayInputStream extends InputStream {
         return bytes;
     }
 
+    /**
+     * Consume next {@code length} bytes, returning them as a separate stream (which stays valid after this one is
+     * repointed / its buffer reused). Content of array-backed stream is copied, while chunks of
+     * {@link CompositeInputStream} are shared (no copy is made).
+     */
+    public ByteArrayInputStream readStream(int length) throws IOException {
+        if (inputStream instanceof CompositeInputStream && peek == NO_PEEK) {
+            if (blockLength != -1 && length > blockLength) {
+                throw new EOFException();
+            }
+            ByteArrayInputStream result = new ByteArrayInputStream(((CompositeInputStream) inputStream).slice(length));
+            if (blockLength != -1) {
+                blockLength -= length;
+            }
+            return result;
+        }
+        return new ByteArrayInputStream(read(length));
+    }
+
     public void fill(byte[] bytes, int offset, int length) throws IOException {
+        if (buffer != null) {
+            ensureAvailable(length);
+            System.arraycopy(buffer, position, bytes, offset, length);
+            position += length;
+            return;
+        }
         int remaining = length;
         while (remaining != 0) {
             int read = read(bytes, offset + length - remaining, remaining);
@@ -103,27 +250,33 @@ public class ByteArrayInputStream extends InputStream {
 
     public BitSet readBitSet(int length, boolean bigEndian) throws IOException {
         // according to MySQL internals the amount of storage required for N columns is INT((N+7)/8) bytes
-        byte[] bytes = read((length + 7) >> 3);
-        bytes = bigEndian ? bytes : reverse(bytes);
+        int numberOfBytes = (length + 7) >> 3;
+        byte[] bytes;
+        int offset;
+        if (buffer != null) {
+            ensureAvailable(numberOfBytes);
+            bytes = buffer;
+            offset = position;
+            position += numberOfBytes;
+        } else {
+            bytes = read(numberOfBytes);
+            offset = 0;
+        }
         BitSet result = new BitSet();
-        for (int i = 0; i < length; i++) {
-            if ((bytes[i >> 3] & (1 << (i % 8))) != 0) {
-                result.set(i);
+        for (int i = 0; i < numberOfBytes; i++) {
+            int b = bytes[offset + (bigEndian ? i : numberOfBytes - 1 - i)] & 0xFF;
+            if (b == 0) {
+                continue;
+            }
+            for (int j = 0, bitIndex = i << 3; j < 8 && bitIndex < length; j++, bitIndex++) {
+                if ((b & (1 << j)) != 0) {
+                    result.set(bitIndex);
+                }
             }
         }
         return result;
     }
 
-    private byte[] reverse(byte[] bytes) {
-        for (int i = 0, length = bytes.length >> 1; i < length; i++) {
-            int j = bytes.length - 1 - i;
-            byte t = bytes[i];
-            bytes[i] = bytes[j];
-            bytes[j] = t;
-        }
-        return bytes;
-    }
-
     /**
      * @see #readPackedNumber()
      */
@@ -164,6 +317,9 @@ public class ByteArrayInputStream extends InputStream {
 
     @Override
     public int available() throws IOException {
+        if (buffer != null) {
+            return limit - position;
+        }
         if (blockLength != -1) {
             return blockLength;
         }
@@ -171,7 +327,10 @@ public class ByteArrayInputStream extends InputStream {
     }
 
     public int peek() throws IOException {
-        if (peek == null) {
+        if (buffer != null) {
+            return position < limit ? buffer[position] & 0xFF : -1;
+        }
+        if (peek == NO_PEEK) {
             peek = readWithinBlockBoundaries();
         }
         return peek;
@@ -179,12 +338,18 @@ public class ByteArrayInputStream extends InputStream {
 
     @Override
     public int read() throws IOException {
+        if (buffer != null) {
+            if (position >= limit) {
+                throw new EOFException();
+            }
+            return buffer[position++] & 0xFF;
+        }
         int result;
-        if (peek == null) {
+        if (peek == NO_PEEK) {
             result = readWithinBlockBoundaries();
         } else {
             result = peek;
-            peek = null;
+            peek = NO_PEEK;
         }
         if (result == -1) {
             throw new EOFException();
@@ -192,6 +357,147 @@ public class ByteArrayInputStream extends InputStream {
         return result;
     }
 
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (buffer != null) {
+            int available = limit - position;
+            if (available <= 0) {
+                return -1;
+            }
+            int length = Math.min(len, available);
+            System.arraycopy(buffer, position, b, off, length);
+            position += length;
+            return length;
+        }
+        int read = 0;
+        if (peek != NO_PEEK) {
+            int value = peek;
+            peek = NO_PEEK;
+            if (value == -1) {
+                return -1;
+            }
+            b[off] = (byte) value;
+            if (len == 1) {
+                return 1;
+            }
+            read = 1;
+        }
+        int length = len - read;
+        if (blockLength != -1) {
+            if (blockLength == 0) {
+                return read == 0 ? -1 : read;
+            }
+            length = Math.min(length, blockLength);
+        }
+        int result = inputStream.read(b, off + read, length);
+        if (result == -1) {
+            return read == 0 ? -1 : read;
+        }
+        if (blockLength != -1) {
+            blockLength -= result;
+        }
+        return read + result;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        if (buffer != null) {
+            if (n <= 0) {
+                return 0;
+            }
+            int length = (int) Math.min(n, limit - position);
+            position += length;
+            return length;
+        }
+        if (inputStream instanceof CompositeInputStream && n > 0) {
+            long skipped = 0;
+            if (peek != NO_PEEK) {
+                if (peek == -1) {
+                    return 0;
+                }
+                peek = NO_PEEK;
+                skipped = 1;
+            }
+            long length = blockLength != -1 ? Math.min(n - skipped, blockLength) : n - skipped;
+            long result = inputStream.skip(length); // chunks are not copied (unlike with InputStream::skip)
+            if (blockLength != -1) {
+                blockLength -= (int) result;
+            }
+            return skipped + result;
+        }
+        return super.skip(n);
+    }
+
+    /**
+     * @return true if stream is array-backed or backed by {@link CompositeInputStream} (content of which is kept in
+     * memory), false otherwise
+     */
+    @Override
+    public boolean markSupported() {
+        return buffer != null || inputStream instanceof CompositeInputStream;
+    }
+
+    @Override
+    public void mark(int readLimit) {
+        if (buffer != null) {
+            mark = position;
+        } else if (inputStream instanceof CompositeInputStream) {
+            inputStream.mark(readLimit);
+            markPeek = peek;
+            markBlockLength = blockLength;
+        }
+    }
+
+    @Override
+    public void reset() throws IOException {
+        if (buffer != null) {
+            position = mark;
+        } else if (inputStream instanceof CompositeInputStream) {
+            inputStream.reset();
+            peek = markPeek;
+            blockLength = markBlockLength;
+        } else {
+            throw new IOException("mark/reset is not supported by ByteArrayInputStream backed by " +
+                inputStream.getClass().getName());
+        }
+    }
+
+    /**
+     * Feed next {@code length} bytes to the checksum without consuming them (straight from the backing array /
+     * chunks, i.e. no copy is made). Supported by the streams {@link #markSupported()} is true for.
+     */
+    public void updateChecksum(Checksum checksum, int length) throws IOException {
+        if (buffer != null) {
+            ensureAvailable(length);
+            checksum.update(buffer, position, length);
+            return;
+        }
+        if (!(inputStream instanceof CompositeInputStream)) {
+            throw new IOException("updateChecksum is not supported by ByteArrayInputStream backed by " +
+                inputStream.getClass().getName());
+        }
+        if (length == 0) {
+            return;
+        }
+        int peeked = peek == NO_PEEK ? 0 : 1;
+        if (peek == -1 || blockLength != -1 && length > blockLength + peeked) {
+            throw new EOFException();
+        }
+        if (peeked != 0) {
+            checksum.update(peek);
+        }
+        ((CompositeInputStream) inputStream).updateChecksum(checksum, length - peeked);
+    }
+
+    private void ensureAvailable(int length) throws EOFException {
+        if (length > limit - position) {
+            throw new EOFException();
+        }
+    }
+
     private int readWithinBlockBoundaries() throws IOException {
         if (blockLength != -1) {
             if (blockLength == 0) {
@@ -204,14 +510,34 @@ public class ByteArrayInputStream extends InputStream {
 
     @Override
     public void close() throws IOException {
-        inputStream.close();
+        if (inputStream != null) {
+            inputStream.close();
+        }
     }
 
     public void enterBlock(int length) {
+        if (buffer != null) {
+            if (length < 0) {
+                withinBlock = false;
+                limit = bufferLimit;
+            } else {
+                withinBlock = true;
+                limit = length < bufferLimit - position ? position + length : bufferLimit;
+            }
+            return;
+        }
         this.blockLength = length < -1 ? -1 : length;
     }
 
     public void skipToTheEndOfTheBlock() throws IOException {
+        if (buffer != null) {
+            if (withinBlock) {
+                position = limit;
+                limit = bufferLimit;
+                withinBlock = false;
+            }
+            return;
+        }
         if (blockLength != -1) {
             skip(blockLength);
             blockLength = -1;
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2018 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog.io;
+
+import java.io.EOFException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.zip.Checksum;
+
+/**
+ * {@link InputStream} over a list of byte arrays (chunks), read one after another as if they were concatenated.
+ * Used for payloads split across multiple packets (see
+ * <a href="https://dev.mysql.com/doc/internals/en/sending-more-than-16mbyte.html">sending more than 16mbyte</a>),
+ * so that they would not have to be copied into a single array. Since all the chunks are kept in memory,
+ * mark/reset is supported (with no read limit).
+ *
+ * @author <a href="mailto:stanley.shyiko@gmail.com">Stanley Shyiko</a>
+ */
+public class CompositeInputStream extends InputStream {
+
+    private final List<byte[]> chunks;
+    private int chunkIndex;
+    private int offset;
+    private long remaining;
+    private int markChunkIndex;
+    private int markOffset;
+    private long markRemaining;
+
+    public CompositeInputStream(List<byte[]> chunks) {
+        this.chunks = chunks;
+        for (byte[] chunk : chunks) {
+            remaining += chunk.length;
+        }
+        mark(0);
+    }
+
+    private CompositeInputStream(List<byte[]> chunks, int chunkIndex, int offset, long length) {
+        this.chunks = chunks;
+        this.chunkIndex = chunkIndex;
+        this.offset = offset;
+        this.remaining = length;
+        mark(0);
+    }
+
+    @Override
+    public int available() {
+        return (int) Math.min(remaining, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int read() {
+        if (remaining == 0 || !nextChunkIfNecessary()) {
+            return -1;
+        }
+        remaining--;
+        return chunks.get(chunkIndex)[offset++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        if (len == 0) {
+            return 0;
+        }
+        int limit = (int) Math.min(len, remaining);
+        int read = 0;
+        while (read < limit && nextChunkIfNecessary()) {
+            byte[] chunk = chunks.get(chunkIndex);
+            int length = Math.min(limit - read, chunk.length - offset);
+            System.arraycopy(chunk, offset, b, off + read, length);
+            offset += length;
+            read += length;
+        }
+        remaining -= read;
+        return read == 0 ? -1 : read;
+    }
+
+    @Override
+    public long skip(long n) {
+        long limit = Math.min(n, remaining);
+        long skipped = 0;
+        while (skipped < limit && nextChunkIfNecessary()) {
+            int length = (int) Math.min(limit - skipped, chunks.get(chunkIndex).length - offset);
+            offset += length;
+            skipped += length;
+        }
+        remaining -= skipped;
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+
+    @Override
+    public void mark(int readLimit) {
+        markChunkIndex = chunkIndex;
+        markOffset = offset;
+        markRemaining = remaining;
+    }
+
+    @Override
+    public void reset() {
+        chunkIndex = markChunkIndex;
+        offset = markOffset;
+        remaining = markRemaining;
+    }
+
+    /**
+     * Feed next {@code length} bytes to the checksum without consuming them (straight from the chunks, i.e.
+     * no copy is made).
+     */
+    public void updateChecksum(Checksum checksum, int length) throws EOFException {
+        if (length > remaining) {
+            throw new EOFException();
+        }
+        for (int i = chunkIndex, position = offset, left = length; left > 0; i++, position = 0) {
+            byte[] chunk = chunks.get(i);
+            int count = Math.min(left, chunk.length - position);
+            checksum.update(chunk, position, count);
+            left -= count;
+        }
+    }
+
+    /**
+     * Consume next {@code length} bytes, returning them as a separate stream (which shares chunks with this one, i.e.
+     * no copy is made).
+     */
+    public CompositeInputStream slice(long length) throws EOFException {
+        if (length > remaining) {
+            throw new EOFException();
+        }
+        CompositeInputStream result = new CompositeInputStream(chunks, chunkIndex, offset, length);
+        skip(length);
+        return result;
+    }
+
+    private boolean nextChunkIfNecessary() {
+        while (chunkIndex < chunks.size() && offset == chunks.get(chunkIndex).length) {
+            chunkIndex++;
+            offset = 0;
+        }
+        return chunkIndex < chunks.size();
+    }
+
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2018 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * {@link BufferedSocketInputStream} counterpart for {@link java.nio.channels.SocketChannel} (in blocking mode).
+ * Data is read from the channel straight into a direct {@link ByteBuffer} (thus saving a copy JDK makes when
+ * reading from the socket into a heap array) and then moved to the destination array in bulk.
+ * <p>
+ * Direct buffers are expensive to allocate (and are released only on GC) and so they are pooled. A buffer is
+ * returned to the pool once end-of-stream (or read failure) is observed by the reading thread, or stream is
+ * closed/{@link #release()}d (whichever comes first). Reads are synchronized with release (so that buffer that is
+ * still being read from never ends up in the pool), which, given that data is moved in bulk, costs next to nothing.
+ *
+ * @author <a href="mailto:stanley.shyiko@gmail.com">Stanley Shyiko</a>
+ */
+public class SocketChannelInputStream extends InputStream {
+
+    private static final int DEFAULT_BUFFER_SIZE = 512 * 1024;
+    private static final int MAX_NUMBER_OF_POOLED_BUFFERS = 8;
+    private static final Queue<ByteBuffer> POOL = new ConcurrentLinkedQueue<ByteBuffer>();
+
+    private final ReadableByteChannel channel;
+    private ByteBuffer buffer;
+
+    public SocketChannelInputStream(ReadableByteChannel channel) {
+        this(channel, DEFAULT_BUFFER_SIZE);
+    }
+
+    public SocketChannelInputStream(ReadableByteChannel channel, int bufferSize) {
+        this.channel = channel;
+        this.buffer = acquire(bufferSize);
+    }
+
+    @Override
+    public synchronized int available() throws IOException {
+        return buffer != null ? buffer.remaining() : 0;
+    }
+
+    @Override
+    public synchronized int read() throws IOException {
+        if ((buffer == null || !buffer.hasRemaining()) && fill() == -1) {
+            return -1;
+        }
+        return buffer.get() & 0xFF;
+    }
+
+    @Override
+    public synchronized int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if ((buffer == null || !buffer.hasRemaining()) && fill() == -1) {
+            return -1;
+        }
+        int length = Math.min(len, buffer.remaining());
+        buffer.get(b, off, length);
+        return length;
+    }
+
+    private int fill() throws IOException {
+        if (buffer == null) {
+            return -1;
+        }
+        buffer.clear();
+        int read;
+        try {
+            do {
+                read = channel.read(buffer);
+            } while (read == 0);
+        } catch (IOException e) {
+            release();
+            throw e;
+        }
+        if (read == -1) {
+            release();
+            return -1;
+        }
+        buffer.flip();
+        return read;
+    }
+
+    /**
+     * Return buffer to the pool without closing the channel (e.g. when channel is about to be wrapped into something
+     * else, like SSLSocket). Any data left in the buffer is discarded and stream yields end-of-stream from this point
+     * on. Blocks if read is in progress (meaning that channel should be closed first if it's being read from by
+     * another thread).
+     */
+    public synchronized void release() {
+        ByteBuffer buffer = this.buffer;
+        this.buffer = null;
+        if (buffer != null && POOL.size() < MAX_NUMBER_OF_POOLED_BUFFERS) {
+            POOL.offer(buffer);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            channel.close(); // unblocks reader (if any)
+        } finally {
+            release();
+        }
+    }
+
+    static int getNumberOfPooledBuffers(int bufferSize) {
+        int result = 0;
+        for (ByteBuffer buffer : POOL) {
+            if (buffer.capacity() == bufferSize) {
+                result++;
+            }
+        }
+        return result;
+    }
+
+    private static ByteBuffer acquire(int bufferSize) {
+        for (ByteBuffer buffer; (buffer = POOL.poll()) != null; ) {
+            if (buffer.capacity() == bufferSize) {
+                buffer.clear().limit(0);
+                return buffer;
+            }
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bufferSize);
+        buffer.limit(0);
+        return buffer;
+    }
+
+}
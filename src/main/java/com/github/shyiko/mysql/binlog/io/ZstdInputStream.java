@@ -0,0 +1,950 @@
+/*
+ * Copyright 2018 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Pure-Java {@link InputStream} over <a href="https://tools.ietf.org/html/rfc8878">Zstandard</a>-compressed content
+ * (one or more frames, skippable frames included). Used to unpack TRANSACTION_PAYLOAD events
+ * (binlog_transaction_compression=ON, MySQL 8.0.20+).
+ * <p>
+ * Content is inflated one block at a time (as it is being read), which means that memory footprint is bounded by the
+ * window size of the frame (and not by the size of decompressed content). All the internal buffers are kept between
+ * {@link #setBuffer(byte[], int, int)} calls, so that the same instance can be reused for multiple inputs.
+ * <p>
+ * Limitations: dictionaries are not supported, content checksum (if present) is not verified.
+ *
+ * @author <a href="mailto:stanley.shyiko@gmail.com">Stanley Shyiko</a>
+ */
+public class ZstdInputStream extends InputStream {
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private static final int MAGIC_NUMBER = 0xFD2FB528;
+    private static final int SKIPPABLE_MAGIC_NUMBER = 0x184D2A50;
+    private static final int SKIPPABLE_MAGIC_NUMBER_MASK = 0xFFFFFFF0;
+
+    private static final int MAX_BLOCK_SIZE = 1 << 17;
+    private static final int MAX_WINDOW_SIZE = 1 << 27;
+    private static final int MAX_HUFFMAN_BITS = 11;
+    private static final int MAX_HUFFMAN_WEIGHTS = 255;
+    private static final int MAX_OFFSET_CODE = 30;
+
+    private static final int BLOCK_RAW = 0;
+    private static final int BLOCK_RLE = 1;
+    private static final int BLOCK_COMPRESSED = 2;
+
+    private static final int LITERALS_RAW = 0;
+    private static final int LITERALS_RLE = 1;
+    private static final int LITERALS_COMPRESSED = 2;
+
+    private static final int MODE_PREDEFINED = 0;
+    private static final int MODE_RLE = 1;
+    private static final int MODE_FSE = 2;
+
+    private static final int LITERALS_LENGTH = 0;
+    private static final int OFFSET = 1;
+    private static final int MATCH_LENGTH = 2;
+
+    private static final int[] MAX_SYMBOL = {35, 31, 52};
+    private static final int[] MAX_ACCURACY_LOG = {9, 8, 9};
+
+    private static final int[] LITERALS_LENGTH_BASE = {
+        0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15,
+        16, 18, 20, 22, 24, 28, 32, 40, 48, 64, 128, 256, 512, 1024, 2048, 4096,
+        8192, 16384, 32768, 65536
+    };
+    private static final int[] LITERALS_LENGTH_BITS = {
+        0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+        1, 1, 1, 1, 2, 2, 3, 3, 4, 6, 7, 8, 9, 10, 11, 12,
+        13, 14, 15, 16
+    };
+    private static final int[] MATCH_LENGTH_BASE = {
+        3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18,
+        19, 20, 21, 22, 23, 24, 25, 26, 27, 28, 29, 30, 31, 32, 33, 34,
+        35, 37, 39, 41, 43, 47, 51, 59, 67, 83, 99, 131, 259, 515, 1027, 2051,
+        4099, 8195, 16387, 32771, 65539
+    };
+    private static final int[] MATCH_LENGTH_BITS = {
+        0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+        0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+        1, 1, 1, 1, 2, 2, 3, 3, 4, 4, 5, 7, 8, 9, 10, 11,
+        12, 13, 14, 15, 16
+    };
+
+    private static final FseTable[] PREDEFINED_TABLES = {
+        predefined(LITERALS_LENGTH, 6, new short[] {
+            4, 3, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 1, 1, 1,
+            2, 2, 2, 2, 2, 2, 2, 2, 2, 3, 2, 1, 1, 1, 1, 1,
+            -1, -1, -1, -1
+        }),
+        predefined(OFFSET, 5, new short[] {
+            1, 1, 1, 1, 1, 1, 2, 2, 2, 1, 1, 1, 1, 1, 1, 1,
+            1, 1, 1, 1, 1, 1, 1, 1, -1, -1, -1, -1, -1
+        }),
+        predefined(MATCH_LENGTH, 6, new short[] {
+            1, 4, 3, 2, 2, 2, 2, 2, 2, 1, 1, 1, 1, 1, 1, 1,
+            1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1,
+            1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, -1, -1,
+            -1, -1, -1, -1, -1
+        })
+    };
+
+    // compressed content
+    private byte[] input;
+    private int inputPosition;
+    private int inputLimit;
+
+    // decompressed content (history of the current frame followed by the bytes that were not read yet)
+    private byte[] window = EMPTY;
+    private int position;
+    private int limit;
+
+    // state of the current frame
+    private boolean withinFrame;
+    private boolean contentChecksum;
+    private int windowSize;
+    private final int[] repeatedOffsets = new int[3];
+    private int huffmanBits;
+    private final FseTable[] sequenceTables = new FseTable[3];
+
+    // reusable buffers
+    private final byte[] huffmanSymbols = new byte[1 << MAX_HUFFMAN_BITS];
+    private final byte[] huffmanLengths = new byte[1 << MAX_HUFFMAN_BITS];
+    private final byte[] huffmanWeights = new byte[MAX_HUFFMAN_WEIGHTS + 1];
+    private final int[] huffmanRanks = new int[MAX_HUFFMAN_BITS + 2];
+    private final FseTable huffmanWeightsTable = new FseTable(6, MAX_HUFFMAN_WEIGHTS);
+    private final FseTable[] decodingTables = {
+        new FseTable(MAX_ACCURACY_LOG[LITERALS_LENGTH], MAX_SYMBOL[LITERALS_LENGTH]),
+        new FseTable(MAX_ACCURACY_LOG[OFFSET], MAX_SYMBOL[OFFSET]),
+        new FseTable(MAX_ACCURACY_LOG[MATCH_LENGTH], MAX_SYMBOL[MATCH_LENGTH])
+    };
+    private final short[] normalizedCounts = new short[MAX_HUFFMAN_WEIGHTS + 1];
+    private final byte[] literals = new byte[MAX_BLOCK_SIZE];
+    private final BitReader bitReader = new BitReader();
+
+    // literals of the current block (either literals buffer or input itself (in case of raw literals))
+    private byte[] literalsBuffer;
+    private int literalsOffset;
+    private int literalsLength;
+
+    /**
+     * Constructs stream without an input. {@link #setBuffer(byte[], int, int)} must be called before reading.
+     */
+    public ZstdInputStream() {
+        this(EMPTY, 0, 0);
+    }
+
+    public ZstdInputStream(byte[] bytes) {
+        this(bytes, 0, bytes.length);
+    }
+
+    public ZstdInputStream(byte[] bytes, int offset, int length) {
+        setBuffer(bytes, offset, length);
+    }
+
+    /**
+     * (Re)point this stream to a given range of compressed bytes (previous input, if any, is discarded).
+     * Note that the array is NOT copied.
+     */
+    public void setBuffer(byte[] bytes, int offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > bytes.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        this.input = bytes;
+        this.inputPosition = offset;
+        this.inputLimit = offset + length;
+        this.position = this.limit = 0;
+        this.withinFrame = false;
+    }
+
+    /**
+     * Discard current input (same as {@link #setBuffer(byte[], int, int)} with an empty range would) and, if window
+     * buffer has grown past {@code maxRetainedCapacity} (frame with a large window), release it too. Meant to be
+     * called before returning instance to a pool so that one large frame would not pin its window for good.
+     */
+    public void clear(int maxRetainedCapacity) {
+        setBuffer(EMPTY, 0, 0);
+        if (window.length > maxRetainedCapacity) {
+            window = EMPTY;
+        }
+    }
+
+    @Override
+    public int available() {
+        return limit - position;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return window[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (len == 0) {
+            return 0;
+        }
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        int length = Math.min(len, limit - position);
+        System.arraycopy(window, position, b, off, length);
+        position += length;
+        return length;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = 0;
+        while (skipped < n && (position < limit || fill())) {
+            int length = (int) Math.min(n - skipped, limit - position);
+            position += length;
+            skipped += length;
+        }
+        return skipped;
+    }
+
+    /**
+     * Inflate next block(s) (until at least one byte is available).
+     * @return false in case of the end of the input, true otherwise
+     */
+    private boolean fill() throws IOException {
+        while (position == limit) {
+            if (withinFrame) {
+                decodeBlock();
+            } else {
+                if (inputPosition == inputLimit) {
+                    return false;
+                }
+                readFrameHeader();
+            }
+        }
+        return true;
+    }
+
+    private void readFrameHeader() throws IOException {
+        int magicNumber = (int) readLittleEndian(4);
+        if ((magicNumber & SKIPPABLE_MAGIC_NUMBER_MASK) == SKIPPABLE_MAGIC_NUMBER) {
+            long frameSize = readLittleEndian(4);
+            ensureInputAvailable(frameSize);
+            inputPosition += (int) frameSize;
+            return;
+        }
+        if (magicNumber != MAGIC_NUMBER) {
+            throw new IOException("Unexpected Zstandard magic number 0x" + Integer.toHexString(magicNumber));
+        }
+        int descriptor = (int) readLittleEndian(1);
+        int contentSizeFlag = descriptor >>> 6;
+        boolean singleSegment = (descriptor & 0x20) != 0;
+        if ((descriptor & 0x08) != 0) {
+            throw malformed("reserved bit of the frame header descriptor is set");
+        }
+        int dictionaryIdFlag = descriptor & 0x03;
+        long windowSize = 0;
+        if (!singleSegment) {
+            int windowDescriptor = (int) readLittleEndian(1);
+            long windowBase = 1L << (10 + (windowDescriptor >>> 3));
+            windowSize = windowBase + (windowBase >>> 3) * (windowDescriptor & 0x07);
+        }
+        if (readLittleEndian(dictionaryIdFlag == 3 ? 4 : dictionaryIdFlag) != 0) {
+            throw new IOException("Zstandard dictionaries are not supported");
+        }
+        int contentSizeLength = contentSizeFlag == 0 ? (singleSegment ? 1 : 0) : 1 << contentSizeFlag;
+        long contentSize = readLittleEndian(contentSizeLength);
+        if (contentSizeLength == 2) {
+            contentSize += 256;
+        }
+        if (singleSegment) {
+            windowSize = contentSize;
+        }
+        if (windowSize < 0 || windowSize > MAX_WINDOW_SIZE) {
+            throw new IOException("Zstandard window size " + windowSize + " exceeds maximum supported (" +
+                MAX_WINDOW_SIZE + ")");
+        }
+        this.windowSize = (int) windowSize;
+        this.contentChecksum = (descriptor & 0x04) != 0;
+        // frames are independent of each other (and everything there was to read has been read at this point)
+        this.position = this.limit = 0;
+        this.repeatedOffsets[0] = 1;
+        this.repeatedOffsets[1] = 4;
+        this.repeatedOffsets[2] = 8;
+        this.huffmanBits = 0;
+        Arrays.fill(sequenceTables, null);
+        this.withinFrame = true;
+    }
+
+    private void decodeBlock() throws IOException {
+        int blockHeader = (int) readLittleEndian(3);
+        boolean lastBlock = (blockHeader & 1) != 0;
+        int blockType = (blockHeader >>> 1) & 0x03;
+        int blockSize = blockHeader >>> 3;
+        if (blockSize > MAX_BLOCK_SIZE) {
+            throw malformed("block size " + blockSize + " exceeds " + MAX_BLOCK_SIZE);
+        }
+        switch (blockType) {
+            case BLOCK_RAW:
+                ensureInputAvailable(blockSize);
+                ensureCapacity(blockSize);
+                System.arraycopy(input, inputPosition, window, limit, blockSize);
+                inputPosition += blockSize;
+                limit += blockSize;
+                break;
+            case BLOCK_RLE:
+                ensureInputAvailable(1);
+                ensureCapacity(blockSize);
+                Arrays.fill(window, limit, limit + blockSize, input[inputPosition++]);
+                limit += blockSize;
+                break;
+            case BLOCK_COMPRESSED:
+                ensureInputAvailable(blockSize);
+                ensureCapacity(MAX_BLOCK_SIZE);
+                int blockEnd = inputPosition + blockSize;
+                decodeSequences(decodeLiterals(inputPosition, blockEnd), blockEnd);
+                inputPosition = blockEnd;
+                break;
+            default:
+                throw malformed("reserved block type");
+        }
+        if (lastBlock) {
+            if (contentChecksum) {
+                ensureInputAvailable(4);
+                inputPosition += 4;
+            }
+            withinFrame = false;
+        }
+    }
+
+    /**
+     * Make sure there is room for at least n more bytes (past the limit), discarding the part of the history that is
+     * no longer reachable (anything before last windowSize bytes) if necessary.
+     */
+    private void ensureCapacity(int n) {
+        if (window.length - limit >= n) {
+            return;
+        }
+        int keepFrom = Math.min(position, Math.max(limit - windowSize, 0));
+        if (keepFrom > 0) {
+            System.arraycopy(window, keepFrom, window, 0, limit - keepFrom);
+            position -= keepFrom;
+            limit -= keepFrom;
+        }
+        if (window.length - limit < n) {
+            int capacity = Math.max(limit + n, Math.min(window.length << 1, (windowSize << 1) + MAX_BLOCK_SIZE));
+            window = Arrays.copyOf(window, capacity);
+        }
+    }
+
+    /**
+     * @return offset of the sequences section
+     */
+    private int decodeLiterals(int offset, int end) throws IOException {
+        if (offset >= end) {
+            throw malformed("missing literals section");
+        }
+        int header = input[offset] & 0xFF;
+        int literalsType = header & 0x03;
+        int sizeFormat = (header >>> 2) & 0x03;
+        if (literalsType == LITERALS_RAW || literalsType == LITERALS_RLE) {
+            int headerSize = sizeFormat == 1 ? 2 : sizeFormat == 3 ? 3 : 1;
+            ensureAvailable(offset, headerSize, end);
+            int regeneratedSize = (int) (readLittleEndian(input, offset, headerSize) >>> (headerSize == 1 ? 3 : 4));
+            offset += headerSize;
+            if (literalsType == LITERALS_RAW) {
+                ensureAvailable(offset, regeneratedSize, end);
+                setLiterals(input, offset, regeneratedSize);
+                return offset + regeneratedSize;
+            }
+            ensureAvailable(offset, 1, end);
+            if (regeneratedSize > MAX_BLOCK_SIZE) {
+                throw malformed("literals size " + regeneratedSize + " exceeds " + MAX_BLOCK_SIZE);
+            }
+            Arrays.fill(literals, 0, regeneratedSize, input[offset]);
+            setLiterals(literals, 0, regeneratedSize);
+            return offset + 1;
+        }
+        int headerSize = sizeFormat < 2 ? 3 : sizeFormat + 2;
+        int sizeBits = sizeFormat < 2 ? 10 : sizeFormat == 2 ? 14 : 18;
+        ensureAvailable(offset, headerSize, end);
+        long sizes = readLittleEndian(input, offset, headerSize) >>> 4;
+        int regeneratedSize = (int) (sizes & ((1 << sizeBits) - 1));
+        int compressedSize = (int) (sizes >>> sizeBits);
+        offset += headerSize;
+        ensureAvailable(offset, compressedSize, end);
+        if (regeneratedSize > MAX_BLOCK_SIZE) {
+            throw malformed("literals size " + regeneratedSize + " exceeds " + MAX_BLOCK_SIZE);
+        }
+        int streamsEnd = offset + compressedSize;
+        if (literalsType == LITERALS_COMPRESSED) {
+            offset = readHuffmanTable(offset, streamsEnd);
+        } else if (huffmanBits == 0) {
+            throw malformed("treeless literals without a prior Huffman table");
+        }
+        if (sizeFormat == 0) {
+            decodeHuffmanStream(offset, streamsEnd, 0, regeneratedSize);
+        } else {
+            decodeHuffmanStreams(offset, streamsEnd, regeneratedSize);
+        }
+        setLiterals(literals, 0, regeneratedSize);
+        return streamsEnd;
+    }
+
+    private void setLiterals(byte[] buffer, int offset, int length) {
+        this.literalsBuffer = buffer;
+        this.literalsOffset = offset;
+        this.literalsLength = length;
+    }
+
+    private void decodeHuffmanStreams(int offset, int end, int regeneratedSize) throws IOException {
+        ensureAvailable(offset, 6, end);
+        int firstStreamSize = (int) readLittleEndian(input, offset, 2);
+        int secondStreamSize = (int) readLittleEndian(input, offset + 2, 2);
+        int thirdStreamSize = (int) readLittleEndian(input, offset + 4, 2);
+        offset += 6;
+        int segmentSize = (regeneratedSize + 3) >>> 2;
+        int lastSegmentSize = regeneratedSize - 3 * segmentSize;
+        if (lastSegmentSize < 0) {
+            throw malformed("literals size " + regeneratedSize + " is too small for 4 streams");
+        }
+        int secondStreamOffset = offset + firstStreamSize;
+        int thirdStreamOffset = secondStreamOffset + secondStreamSize;
+        int fourthStreamOffset = thirdStreamOffset + thirdStreamSize;
+        if (fourthStreamOffset > end) {
+            throw malformed("literals stream exceeds literals section");
+        }
+        decodeHuffmanStream(offset, secondStreamOffset, 0, segmentSize);
+        decodeHuffmanStream(secondStreamOffset, thirdStreamOffset, segmentSize, segmentSize);
+        decodeHuffmanStream(thirdStreamOffset, fourthStreamOffset, segmentSize << 1, segmentSize);
+        decodeHuffmanStream(fourthStreamOffset, end, 3 * segmentSize, lastSegmentSize);
+    }
+
+    private void decodeHuffmanStream(int start, int end, int outputOffset, int length) throws IOException {
+        BitReader bitReader = this.bitReader;
+        bitReader.init(input, start, end);
+        byte[] literals = this.literals;
+        byte[] huffmanSymbols = this.huffmanSymbols;
+        byte[] huffmanLengths = this.huffmanLengths;
+        int huffmanBits = this.huffmanBits;
+        for (int i = outputOffset, e = outputOffset + length; i < e; i++) {
+            int index = bitReader.peekBits(huffmanBits);
+            literals[i] = huffmanSymbols[index];
+            bitReader.skipBits(huffmanLengths[index]);
+        }
+        if (!bitReader.isFinished()) {
+            throw malformed("literals stream was not fully consumed");
+        }
+    }
+
+    /**
+     * @return offset of the first byte following Huffman tree description
+     */
+    private int readHuffmanTable(int offset, int end) throws IOException {
+        ensureAvailable(offset, 1, end);
+        int header = input[offset++] & 0xFF;
+        byte[] weights = huffmanWeights;
+        int numberOfWeights;
+        if (header < 128) {
+            ensureAvailable(offset, header, end);
+            int weightsEnd = offset + header;
+            offset = readFseTableDescription(offset, weightsEnd, huffmanWeightsTable, MAX_HUFFMAN_WEIGHTS, 6);
+            numberOfWeights = decodeHuffmanWeights(offset, weightsEnd);
+            offset = weightsEnd;
+        } else {
+            numberOfWeights = header - 127;
+            ensureAvailable(offset, (numberOfWeights + 1) >>> 1, end);
+            for (int i = 0; i < numberOfWeights; i++) {
+                int value = input[offset + (i >>> 1)] & 0xFF;
+                weights[i] = (byte) ((i & 1) == 0 ? value >>> 4 : value & 0x0F);
+            }
+            offset += (numberOfWeights + 1) >>> 1;
+        }
+        int[] ranks = huffmanRanks;
+        Arrays.fill(ranks, 0);
+        int weightTotal = 0;
+        for (int i = 0; i < numberOfWeights; i++) {
+            int weight = weights[i];
+            if (weight > MAX_HUFFMAN_BITS) {
+                throw malformed("Huffman weight " + weight + " exceeds " + MAX_HUFFMAN_BITS);
+            }
+            ranks[weight]++;
+            weightTotal += (1 << weight) >>> 1;
+        }
+        if (weightTotal == 0) {
+            throw malformed("empty Huffman table");
+        }
+        int maxBits = 32 - Integer.numberOfLeadingZeros(weightTotal);
+        int rest = (1 << maxBits) - weightTotal;
+        if (maxBits > MAX_HUFFMAN_BITS || (rest & (rest - 1)) != 0) {
+            throw malformed("invalid Huffman table");
+        }
+        int lastWeight = 32 - Integer.numberOfLeadingZeros(rest);
+        weights[numberOfWeights] = (byte) lastWeight;
+        ranks[lastWeight]++;
+        // canonical code: entries are assigned in the order of increasing weight (and symbol)
+        for (int weight = 1, next = 0; weight <= maxBits; weight++) {
+            int current = next;
+            next += ranks[weight] << (weight - 1);
+            ranks[weight] = current;
+        }
+        for (int symbol = 0; symbol <= numberOfWeights; symbol++) {
+            int weight = weights[symbol];
+            if (weight != 0) {
+                int from = ranks[weight], to = from + (1 << (weight - 1));
+                Arrays.fill(huffmanSymbols, from, to, (byte) symbol);
+                Arrays.fill(huffmanLengths, from, to, (byte) (maxBits + 1 - weight));
+                ranks[weight] = to;
+            }
+        }
+        huffmanBits = maxBits;
+        return offset;
+    }
+
+    /**
+     * @return number of decoded weights
+     */
+    private int decodeHuffmanWeights(int start, int end) throws IOException {
+        FseTable table = huffmanWeightsTable;
+        BitReader bitReader = this.bitReader;
+        bitReader.init(input, start, end);
+        int firstState = (int) bitReader.readBits(table.accuracyLog);
+        int secondState = (int) bitReader.readBits(table.accuracyLog);
+        byte[] weights = huffmanWeights;
+        int numberOfWeights = 0;
+        // two interleaved states sharing the same bitstream, decoded until the bitstream is exhausted
+        while (true) {
+            if (numberOfWeights > MAX_HUFFMAN_WEIGHTS - 2) {
+                throw malformed("too many Huffman weights");
+            }
+            weights[numberOfWeights++] = table.symbols[firstState];
+            firstState = table.nextState(firstState, bitReader);
+            if (bitReader.isOverflowed()) {
+                weights[numberOfWeights++] = table.symbols[secondState];
+                break;
+            }
+            weights[numberOfWeights++] = table.symbols[secondState];
+            secondState = table.nextState(secondState, bitReader);
+            if (bitReader.isOverflowed()) {
+                weights[numberOfWeights++] = table.symbols[firstState];
+                break;
+            }
+        }
+        return numberOfWeights;
+    }
+
+    /**
+     * Decode FSE table description (normalized counts) into a decoding table.
+     * @return offset of the first byte following table description
+     */
+    private int readFseTableDescription(int start, int end, FseTable table, int maxSymbol, int maxAccuracyLog)
+            throws IOException {
+        short[] counts = normalizedCounts;
+        int accuracyLog = readForwardBits(start, end, 0, 4) + 5;
+        if (accuracyLog > maxAccuracyLog) {
+            throw malformed("FSE accuracy log " + accuracyLog + " exceeds " + maxAccuracyLog);
+        }
+        int remaining = (1 << accuracyLog) + 1;
+        int threshold = 1 << accuracyLog;
+        int numberOfBits = accuracyLog + 1;
+        int bitOffset = 4;
+        int symbol = 0;
+        boolean previousZero = false;
+        while (remaining > 1 && symbol <= maxSymbol) {
+            if (previousZero) {
+                int zeros = symbol;
+                int repeat;
+                while ((repeat = readForwardBits(start, end, bitOffset, 2)) == 3) {
+                    zeros += 3;
+                    bitOffset += 2;
+                }
+                zeros += repeat;
+                bitOffset += 2;
+                if (zeros > maxSymbol) {
+                    throw malformed("FSE symbol exceeds " + maxSymbol);
+                }
+                while (symbol < zeros) {
+                    counts[symbol++] = 0;
+                }
+            }
+            int max = (2 * threshold - 1) - remaining;
+            int value = readForwardBits(start, end, bitOffset, numberOfBits);
+            int count;
+            if ((value & (threshold - 1)) < max) {
+                count = value & (threshold - 1);
+                bitOffset += numberOfBits - 1;
+            } else {
+                count = value & (2 * threshold - 1);
+                if (count >= threshold) {
+                    count -= max;
+                }
+                bitOffset += numberOfBits;
+            }
+            count--;
+            remaining -= count < 0 ? -count : count;
+            if (remaining < 1) {
+                throw malformed("FSE table description is corrupted");
+            }
+            counts[symbol++] = (short) count;
+            previousZero = count == 0;
+            while (remaining < threshold) {
+                numberOfBits--;
+                threshold >>>= 1;
+            }
+        }
+        if (remaining != 1 || bitOffset > (end - start) << 3) {
+            throw malformed("FSE table description is corrupted");
+        }
+        table.build(counts, symbol - 1, accuracyLog);
+        return start + ((bitOffset + 7) >>> 3);
+    }
+
+    private int readForwardBits(int start, int end, int bitOffset, int n) {
+        int offset = start + (bitOffset >>> 3);
+        int value = 0;
+        for (int i = 0, e = Math.min(end - offset, 4); i < e; i++) {
+            value |= (input[offset + i] & 0xFF) << (i << 3);
+        }
+        return (value >>> (bitOffset & 7)) & ((1 << n) - 1);
+    }
+
+    private void decodeSequences(int offset, int end) throws IOException {
+        ensureAvailable(offset, 1, end);
+        int header = input[offset++] & 0xFF;
+        int numberOfSequences = header;
+        if (header >= 128) {
+            if (header < 255) {
+                ensureAvailable(offset, 1, end);
+                numberOfSequences = ((header - 128) << 8) + (input[offset++] & 0xFF);
+            } else {
+                ensureAvailable(offset, 2, end);
+                numberOfSequences = (int) readLittleEndian(input, offset, 2) + 0x7F00;
+                offset += 2;
+            }
+        }
+        if (numberOfSequences == 0) {
+            if (offset != end) {
+                throw malformed("unexpected data after sequences section header");
+            }
+            appendLiterals(literalsLength);
+            return;
+        }
+        ensureAvailable(offset, 1, end);
+        int modes = input[offset++] & 0xFF;
+        if ((modes & 0x03) != 0) {
+            throw malformed("reserved bits of symbol compression modes are set");
+        }
+        offset = selectSequenceTable(LITERALS_LENGTH, modes >>> 6, offset, end);
+        offset = selectSequenceTable(OFFSET, (modes >>> 4) & 0x03, offset, end);
+        offset = selectSequenceTable(MATCH_LENGTH, (modes >>> 2) & 0x03, offset, end);
+        executeSequences(offset, end, numberOfSequences);
+    }
+
+    private int selectSequenceTable(int type, int mode, int offset, int end) throws IOException {
+        switch (mode) {
+            case MODE_PREDEFINED:
+                sequenceTables[type] = PREDEFINED_TABLES[type];
+                return offset;
+            case MODE_RLE:
+                ensureAvailable(offset, 1, end);
+                int symbol = input[offset] & 0xFF;
+                if (symbol > MAX_SYMBOL[type]) {
+                    throw malformed("sequence symbol " + symbol + " exceeds " + MAX_SYMBOL[type]);
+                }
+                decodingTables[type].rle(symbol);
+                sequenceTables[type] = decodingTables[type];
+                return offset + 1;
+            case MODE_FSE:
+                offset = readFseTableDescription(offset, end, decodingTables[type], MAX_SYMBOL[type],
+                    MAX_ACCURACY_LOG[type]);
+                sequenceTables[type] = decodingTables[type];
+                return offset;
+            default:
+                if (sequenceTables[type] == null) {
+                    throw malformed("repeat mode without a prior sequence table");
+                }
+                return offset;
+        }
+    }
+
+    private void executeSequences(int start, int end, int numberOfSequences) throws IOException {
+        FseTable literalsLengthTable = sequenceTables[LITERALS_LENGTH];
+        FseTable offsetTable = sequenceTables[OFFSET];
+        FseTable matchLengthTable = sequenceTables[MATCH_LENGTH];
+        BitReader bitReader = this.bitReader;
+        bitReader.init(input, start, end);
+        int literalsLengthState = (int) bitReader.readBits(literalsLengthTable.accuracyLog);
+        int offsetState = (int) bitReader.readBits(offsetTable.accuracyLog);
+        int matchLengthState = (int) bitReader.readBits(matchLengthTable.accuracyLog);
+        int[] repeatedOffsets = this.repeatedOffsets;
+        byte[] window = this.window;
+        int outputLimit = limit + MAX_BLOCK_SIZE;
+        for (int i = 0; i < numberOfSequences; i++) {
+            int offsetCode = offsetTable.symbols[offsetState] & 0xFF;
+            int matchLengthCode = matchLengthTable.symbols[matchLengthState] & 0xFF;
+            int literalsLengthCode = literalsLengthTable.symbols[literalsLengthState] & 0xFF;
+            if (offsetCode > MAX_OFFSET_CODE) {
+                throw malformed("offset code " + offsetCode + " exceeds " + MAX_OFFSET_CODE);
+            }
+            int offsetValue = (1 << offsetCode) + (int) bitReader.readBits(offsetCode);
+            int matchLength = MATCH_LENGTH_BASE[matchLengthCode] +
+                (int) bitReader.readBits(MATCH_LENGTH_BITS[matchLengthCode]);
+            int literalsLength = LITERALS_LENGTH_BASE[literalsLengthCode] +
+                (int) bitReader.readBits(LITERALS_LENGTH_BITS[literalsLengthCode]);
+            int offset;
+            if (offsetValue > 3) {
+                offset = offsetValue - 3;
+                repeatedOffsets[2] = repeatedOffsets[1];
+                repeatedOffsets[1] = repeatedOffsets[0];
+                repeatedOffsets[0] = offset;
+            } else {
+                int index = offsetValue - (literalsLength == 0 ? 0 : 1);
+                if (index == 0) {
+                    offset = repeatedOffsets[0];
+                } else {
+                    offset = index == 3 ? repeatedOffsets[0] - 1 : repeatedOffsets[index];
+                    if (index != 1) {
+                        repeatedOffsets[2] = repeatedOffsets[1];
+                    }
+                    repeatedOffsets[1] = repeatedOffsets[0];
+                    repeatedOffsets[0] = offset;
+                }
+            }
+            if (i + 1 < numberOfSequences) {
+                literalsLengthState = literalsLengthTable.nextState(literalsLengthState, bitReader);
+                matchLengthState = matchLengthTable.nextState(matchLengthState, bitReader);
+                offsetState = offsetTable.nextState(offsetState, bitReader);
+            }
+            if (literalsLength > this.literalsLength || literalsLength + matchLength > outputLimit - limit) {
+                throw malformed("sequence exceeds block boundaries");
+            }
+            appendLiterals(literalsLength);
+            if (offset <= 0 || offset > limit) {
+                throw malformed("offset " + offset + " is out of window");
+            }
+            int from = limit - offset;
+            int to = limit;
+            int matchEnd = to + matchLength;
+            // overlapping matches are copied in chunks of doubling size
+            while (to < matchEnd) {
+                int length = Math.min(matchEnd - to, to - from);
+                System.arraycopy(window, from, window, to, length);
+                to += length;
+            }
+            limit = matchEnd;
+        }
+        if (!bitReader.isFinished()) {
+            throw malformed("sequences bitstream was not fully consumed");
+        }
+        if (this.literalsLength > outputLimit - limit) {
+            throw malformed("literals exceed block boundaries");
+        }
+        appendLiterals(this.literalsLength);
+    }
+
+    private void appendLiterals(int length) {
+        System.arraycopy(literalsBuffer, literalsOffset, window, limit, length);
+        literalsOffset += length;
+        literalsLength -= length;
+        limit += length;
+    }
+
+    private long readLittleEndian(int length) throws IOException {
+        ensureInputAvailable(length);
+        long result = readLittleEndian(input, inputPosition, length);
+        inputPosition += length;
+        return result;
+    }
+
+    private void ensureInputAvailable(long length) throws EOFException {
+        if (inputLimit - inputPosition < length) {
+            throw new EOFException("Zstandard frame is truncated");
+        }
+    }
+
+    private static void ensureAvailable(int offset, int length, int end) throws IOException {
+        if (end - offset < length) {
+            throw malformed("block is truncated");
+        }
+    }
+
+    private static long readLittleEndian(byte[] bytes, int offset, int length) {
+        long result = 0;
+        for (int i = 0; i < length; i++) {
+            result |= (bytes[offset + i] & 0xFFL) << (i << 3);
+        }
+        return result;
+    }
+
+    private static IOException malformed(String reason) {
+        return new IOException("Malformed Zstandard frame (" + reason + ")");
+    }
+
+    private static FseTable predefined(int type, int accuracyLog, short[] counts) {
+        FseTable table = new FseTable(accuracyLog, MAX_SYMBOL[type]);
+        try {
+            table.build(counts, counts.length - 1, accuracyLog);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        return table;
+    }
+
+    /**
+     * Finite State Entropy decoding table.
+     */
+    private static final class FseTable {
+
+        private final byte[] symbols;
+        private final byte[] numberOfBits;
+        private final int[] baselines;
+        private final int[] symbolNext;
+        private int accuracyLog;
+
+        private FseTable(int maxAccuracyLog, int maxSymbol) {
+            this.symbols = new byte[1 << maxAccuracyLog];
+            this.numberOfBits = new byte[1 << maxAccuracyLog];
+            this.baselines = new int[1 << maxAccuracyLog];
+            this.symbolNext = new int[maxSymbol + 1];
+        }
+
+        private void build(short[] counts, int maxSymbol, int accuracyLog) throws IOException {
+            int tableSize = 1 << accuracyLog;
+            int highThreshold = tableSize - 1;
+            for (int symbol = 0; symbol <= maxSymbol; symbol++) {
+                if (counts[symbol] == -1) {
+                    symbols[highThreshold--] = (byte) symbol;
+                    symbolNext[symbol] = 1;
+                } else {
+                    symbolNext[symbol] = counts[symbol];
+                }
+            }
+            int step = (tableSize >>> 1) + (tableSize >>> 3) + 3;
+            int mask = tableSize - 1;
+            int position = 0;
+            for (int symbol = 0; symbol <= maxSymbol; symbol++) {
+                for (int i = 0; i < counts[symbol]; i++) {
+                    symbols[position] = (byte) symbol;
+                    do {
+                        position = (position + step) & mask;
+                    } while (position > highThreshold);
+                }
+            }
+            if (position != 0) {
+                throw malformed("FSE table is corrupted");
+            }
+            for (int state = 0; state < tableSize; state++) {
+                int next = symbolNext[symbols[state] & 0xFF]++;
+                int bits = accuracyLog - (31 - Integer.numberOfLeadingZeros(next));
+                numberOfBits[state] = (byte) bits;
+                baselines[state] = (next << bits) - tableSize;
+            }
+            this.accuracyLog = accuracyLog;
+        }
+
+        private void rle(int symbol) {
+            symbols[0] = (byte) symbol;
+            numberOfBits[0] = 0;
+            baselines[0] = 0;
+            accuracyLog = 0;
+        }
+
+        private int nextState(int state, BitReader bitReader) {
+            return baselines[state] + (int) bitReader.readBits(numberOfBits[state]);
+        }
+    }
+
+    /**
+     * Reader of a backward bitstream (written forward, read starting from the last bit of the last byte (with the
+     * highest set bit of the last byte being an end mark)).
+     */
+    private static final class BitReader {
+
+        private byte[] buffer;
+        private int start;
+        private int position;
+        private long container;
+        private int consumed;
+
+        private void init(byte[] buffer, int start, int end) throws IOException {
+            if (end <= start || buffer[end - 1] == 0) {
+                throw malformed("bitstream is missing an end mark");
+            }
+            int lastByte = buffer[end - 1] & 0xFF;
+            this.buffer = buffer;
+            this.start = start;
+            this.consumed = Integer.numberOfLeadingZeros(lastByte) - 23;
+            if (end - start >= 8) {
+                this.position = end - 8;
+                this.container = readLittleEndian(buffer, position, 8);
+            } else {
+                this.position = start;
+                this.container = readLittleEndian(buffer, start, end - start);
+                this.consumed += (8 - (end - start)) << 3;
+            }
+        }
+
+        private long readBits(int n) {
+            if (consumed + n > 64) {
+                reload();
+            }
+            long result = consumed >= 64 ? 0 : (container << consumed) >>> 1 >>> (63 - n);
+            consumed += n;
+            return result;
+        }
+
+        private int peekBits(int n) {
+            if (consumed + n > 64) {
+                reload();
+            }
+            return consumed >= 64 ? 0 : (int) ((container << consumed) >>> (64 - n));
+        }
+
+        private void skipBits(int n) {
+            consumed += n;
+        }
+
+        private void reload() {
+            int bytes = consumed >>> 3;
+            if (position - bytes < start) {
+                bytes = position - start;
+            }
+            if (bytes == 0) {
+                return;
+            }
+            position -= bytes;
+            consumed -= bytes << 3;
+            container = readLittleEndian(buffer, position, 8);
+        }
+
+        private boolean isFinished() {
+            return position == start && consumed == 64;
+        }
+
+        private boolean isOverflowed() {
+            return position == start && consumed > 64;
+        }
+    }
+
+}
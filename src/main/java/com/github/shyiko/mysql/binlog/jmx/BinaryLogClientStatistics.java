@@ -18,6 +18,7 @@ package com.github.shyiko.mysql.binlog.jmx;
 import com.github.shyiko.mysql.binlog.BinaryLogClient;
 import com.github.shyiko.mysql.binlog.event.Event;
 import com.github.shyiko.mysql.binlog.event.EventHeader;
+import com.github.shyiko.mysql.binlog.event.deserialization.EventChecksumMismatchException;
 
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
@@ -34,11 +35,14 @@ public class BinaryLogClientStatistics implements BinaryLogClientStatisticsMXBea
     private AtomicLong totalBytesReceived = new AtomicLong();
     private AtomicLong numberOfSkippedEvents = new AtomicLong();
     private AtomicLong numberOfDisconnects = new AtomicLong();
+    private AtomicLong numberOfChecksumMismatches = new AtomicLong();
+    private BinaryLogClient binaryLogClient;
 
     public BinaryLogClientStatistics() {
     }
 
     public BinaryLogClientStatistics(BinaryLogClient binaryLogClient) {
+        this.binaryLogClient = binaryLogClient;
         binaryLogClient.registerEventListener(this);
         binaryLogClient.registerLifecycleListener(this);
     }
@@ -88,6 +92,16 @@ public class BinaryLogClientStatistics implements BinaryLogClientStatisticsMXBea
         return numberOfDisconnects.get();
     }
 
+    @Override
+    public long getNumberOfChecksumMismatches() {
+        return numberOfChecksumMismatches.get();
+    }
+
+    @Override
+    public int getPacketRingBufferDepth() {
+        return binaryLogClient == null ? 0 : binaryLogClient.getPacketRingBufferDepth();
+    }
+
     @Override
     public void reset() {
         lastEventHeader.set(null);
@@ -96,6 +110,7 @@ public class BinaryLogClientStatistics implements BinaryLogClientStatisticsMXBea
         totalBytesReceived.set(0);
         numberOfSkippedEvents.set(0);
         numberOfDisconnects.set(0);
+        numberOfChecksumMismatches.set(0);
     }
 
     @Override
@@ -109,6 +124,11 @@ public class BinaryLogClientStatistics implements BinaryLogClientStatisticsMXBea
 
     @Override
     public void onEventDeserializationFailure(BinaryLogClient client, Exception ex) {
+        if (ex instanceof EventChecksumMismatchException) {
+            // event is not skipped (client reconnects and re-reads it)
+            numberOfChecksumMismatches.getAndIncrement();
+            return;
+        }
         numberOfSkippedEvents.getAndIncrement();
         lastEventHeader.set(null);
         timestampOfLastEvent.set(getCurrentTimeMillis());
@@ -27,6 +27,8 @@ public interface BinaryLogClientStatisticsMXBean {
     long getTotalBytesReceived();
     long getNumberOfSkippedEvents();
     long getNumberOfDisconnects();
+    long getNumberOfChecksumMismatches();
+    int getPacketRingBufferDepth();
     void reset();
 
 }
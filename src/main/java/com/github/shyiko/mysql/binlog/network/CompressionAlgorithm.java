@@ -0,0 +1,39 @@
+/*
+ * Copyright 2018 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog.network;
+
+/**
+ * @see <a href="https://dev.mysql.com/doc/refman/8.0/en/connection-compression-control.html">
+ * Connection Compression Control</a> for the original documentation.
+ * @author <a href="mailto:stanley.shyiko@gmail.com">Stanley Shyiko</a>
+ */
+public enum CompressionAlgorithm {
+
+    /**
+     * Do not use compression protocol.
+     */
+    UNCOMPRESSED,
+    /**
+     * Use zlib compression protocol if the server supports it. Fall back to an uncompressed connection otherwise.
+     */
+    ZLIB,
+    /**
+     * Use zstd compression protocol if the server supports it (MySQL 8.0.18+).
+     * Fall back to {@link #ZLIB} otherwise.
+     */
+    ZSTD
+
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2018 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog.network.protocol;
+
+import com.github.shyiko.mysql.binlog.io.ZstdInputStream;
+import com.github.shyiko.mysql.binlog.network.CompressionAlgorithm;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * {@link InputStream} that strips
+ * <a href="https://dev.mysql.com/doc/internals/en/compressed-packet-header.html">compressed packet</a> envelope
+ * (3 bytes of compressed length, 1 byte of sequence, 3 bytes of uncompressed length (0 if payload was sent as is))
+ * off the underlying stream, presenting decompressed content as a continuous stream of regular packets
+ * (which may span multiple compressed packets or share one).
+ * <p>
+ * Compressed payload is read into a reusable buffer and inflated as it is being read (straight into the caller's
+ * array). {@link Inflater}s are pooled (and returned to the pool on {@link #close()}).
+ *
+ * @author <a href="mailto:stanley.shyiko@gmail.com">Stanley Shyiko</a>
+ */
+public class CompressedPacketInputStream extends InputStream {
+
+    private static final int HEADER_LENGTH = 7;
+    private static final int MIN_CAPACITY = 4 * 1024;
+    private static final Queue<Inflater> INFLATER_POOL = new ConcurrentLinkedQueue<Inflater>();
+
+    private final InputStream inputStream;
+    private final CompressionAlgorithm compressionAlgorithm;
+    private final byte[] header = new byte[HEADER_LENGTH];
+    private final byte[] singleByte = new byte[1];
+    private Inflater inflater;
+    private ZstdInputStream zstdInputStream;
+    private byte[] buffer = new byte[MIN_CAPACITY];
+    private byte[] payload = buffer;
+    private int payloadPosition;
+    private boolean payloadCompressed;
+    private int remaining;
+    private boolean closed;
+
+    /**
+     * @param compressionAlgorithm either {@link CompressionAlgorithm#ZLIB} or {@link CompressionAlgorithm#ZSTD}
+     */
+    public CompressedPacketInputStream(InputStream inputStream, CompressionAlgorithm compressionAlgorithm) {
+        if (compressionAlgorithm != CompressionAlgorithm.ZLIB && compressionAlgorithm != CompressionAlgorithm.ZSTD) {
+            throw new IllegalArgumentException("Unsupported compression algorithm " + compressionAlgorithm);
+        }
+        this.inputStream = inputStream;
+        this.compressionAlgorithm = compressionAlgorithm;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return remaining;
+    }
+
+    @Override
+    public synchronized int read() throws IOException {
+        return read(singleByte, 0, 1) == -1 ? -1 : singleByte[0] & 0xFF;
+    }
+
+    @Override
+    public synchronized int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        while (remaining == 0) {
+            if (!nextPacket()) {
+                return -1;
+            }
+        }
+        int length = Math.min(len, remaining);
+        if (!payloadCompressed) {
+            System.arraycopy(payload, payloadPosition, b, off, length);
+            payloadPosition += length;
+        } else if (compressionAlgorithm == CompressionAlgorithm.ZLIB) {
+            try {
+                length = inflater.inflate(b, off, length);
+            } catch (DataFormatException e) {
+                throw new IOException("Malformed compressed packet", e);
+            }
+            if (length == 0) {
+                throw new IOException("Compressed packet is shorter than declared");
+            }
+        } else {
+            length = zstdInputStream.read(b, off, length);
+            if (length == -1) {
+                throw new IOException("Compressed packet is shorter than declared");
+            }
+        }
+        remaining -= length;
+        return length;
+    }
+
+    /**
+     * @return false in case of end of stream, true otherwise
+     */
+    private boolean nextPacket() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        int read = readFully(header, 0, HEADER_LENGTH);
+        if (read == 0) {
+            return false;
+        }
+        if (read < HEADER_LENGTH) {
+            throw new EOFException();
+        }
+        int compressedLength = readInteger(header, 0);
+        int uncompressedLength = readInteger(header, 4);
+        if (compressedLength <= PacketBuffer.MAX_RETAINED_CAPACITY) {
+            if (buffer.length < compressedLength) {
+                buffer = new byte[Math.min(Math.max(compressedLength, buffer.length << 1),
+                    PacketBuffer.MAX_RETAINED_CAPACITY)];
+            }
+            payload = buffer;
+        } else {
+            payload = new byte[compressedLength];
+        }
+        if (readFully(payload, 0, compressedLength) < compressedLength) {
+            throw new EOFException();
+        }
+        payloadPosition = 0;
+        payloadCompressed = uncompressedLength != 0;
+        remaining = payloadCompressed ? uncompressedLength : compressedLength;
+        if (payloadCompressed) {
+            if (compressionAlgorithm == CompressionAlgorithm.ZLIB) {
+                if (inflater == null) {
+                    Inflater pooledInflater = INFLATER_POOL.poll();
+                    inflater = pooledInflater != null ? pooledInflater : new Inflater();
+                }
+                inflater.reset();
+                inflater.setInput(payload, 0, compressedLength);
+            } else {
+                if (zstdInputStream == null) {
+                    zstdInputStream = new ZstdInputStream();
+                }
+                zstdInputStream.setBuffer(payload, 0, compressedLength);
+            }
+        }
+        return true;
+    }
+
+    private int readFully(byte[] b, int off, int len) throws IOException {
+        int read = 0;
+        while (read < len) {
+            int count = inputStream.read(b, off + read, len - read);
+            if (count == -1) {
+                break;
+            }
+            read += count;
+        }
+        return read;
+    }
+
+    private static int readInteger(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) | (bytes[offset + 1] & 0xFF) << 8 | (bytes[offset + 2] & 0xFF) << 16;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            inputStream.close();
+        } finally {
+            // in case reader is blocked on the (now closed) underlying stream it's going to be woken up (and will
+            // release the monitor) shortly
+            synchronized (this) {
+                closed = true;
+                remaining = 0;
+                if (inflater != null) {
+                    inflater.reset();
+                    INFLATER_POOL.offer(inflater);
+                    inflater = null;
+                }
+            }
+        }
+    }
+
+}
@@ -42,7 +42,8 @@ public class GreetingPacket implements Packet {
         this.serverCapabilities = buffer.readInteger(2);
         this.serverCollation = buffer.readInteger(1);
         this.serverStatus = buffer.readInteger(2);
-        buffer.skip(13); // reserved
+        this.serverCapabilities |= buffer.readInteger(2) << 16;
+        buffer.skip(11); // length of auth-plugin-data & reserved
         this.scramble = scramblePrefix + buffer.readZeroTerminatedString();
         if (buffer.available() > 0) {
             this.pluginProvidedData = buffer.readZeroTerminatedString();
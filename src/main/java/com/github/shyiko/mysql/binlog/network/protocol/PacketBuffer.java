@@ -0,0 +1,120 @@
+/*
+ * Copyright 2018 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog.network.protocol;
+
+import com.github.shyiko.mysql.binlog.io.ByteArrayInputStream;
+import com.github.shyiko.mysql.binlog.io.CompositeInputStream;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reusable holder of a single (raw) packet body.
+ * <p>
+ * Packets up to {@link #MAX_RETAINED_CAPACITY} bytes are read into an array which is kept (and reused) between
+ * packets. Bigger ones get an array of their own (so that a single large packet would not pin memory
+ * indefinitely), while packets split into multiple chunks (&gt;16mb) are kept as a list of chunks.
+ *
+ * @author <a href="mailto:stanley.shyiko@gmail.com">Stanley Shyiko</a>
+ */
+public class PacketBuffer {
+
+    public static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+
+    private static final int MIN_CAPACITY = 4 * 1024;
+    private static final byte[] EMPTY = new byte[0];
+
+    private byte[] buffer = EMPTY;
+    private byte[] bytes = EMPTY;
+    private int length;
+    private List<byte[]> chunks;
+    private final ByteArrayInputStream inputStream = new ByteArrayInputStream(EMPTY);
+
+    /**
+     * Read next packet (header included) from the stream.
+     */
+    public void readFrom(ByteArrayInputStream in) throws IOException {
+        int packetLength = in.readInteger(3);
+        //noinspection ResultOfMethodCallIgnored
+        in.skip(1); // 1 byte for sequence
+        if (packetLength == Packet.MAX_LENGTH) {
+            chunks = readPacketSplitInChunks(in, packetLength);
+            bytes = EMPTY;
+            length = -1;
+            return;
+        }
+        chunks = null;
+        if (packetLength <= MAX_RETAINED_CAPACITY) {
+            if (buffer.length < packetLength) {
+                int capacity = Math.max(packetLength, Math.max(buffer.length << 1, MIN_CAPACITY));
+                buffer = new byte[Math.min(capacity, MAX_RETAINED_CAPACITY)];
+            }
+            bytes = buffer;
+        } else {
+            bytes = new byte[packetLength];
+        }
+        in.fill(bytes, 0, packetLength);
+        length = packetLength;
+    }
+
+    private static List<byte[]> readPacketSplitInChunks(ByteArrayInputStream in, int packetLength)
+            throws IOException {
+        // chunks are kept as is (instead of being concatenated) to avoid quadratic copying / memory overhead
+        List<byte[]> result = new ArrayList<byte[]>();
+        result.add(in.read(packetLength));
+        int chunkLength;
+        do {
+            chunkLength = in.readInteger(3);
+            //noinspection ResultOfMethodCallIgnored
+            in.skip(1); // 1 byte for sequence
+            result.add(in.read(chunkLength));
+        } while (chunkLength == Packet.MAX_LENGTH);
+        return result;
+    }
+
+    /**
+     * @return packet body (starting from the first byte). Note that returned stream (as well as its content) is only
+     * valid until next {@link #readFrom(ByteArrayInputStream)}.
+     */
+    public ByteArrayInputStream getInputStream() {
+        if (chunks != null) {
+            return new ByteArrayInputStream(new CompositeInputStream(chunks));
+        }
+        inputStream.setBuffer(bytes, 0, length);
+        return inputStream;
+    }
+
+    /**
+     * @return packet body length or -1 if packet was split into multiple chunks
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Drop reference to the packet body (unless it's in the retained array), making it eligible for GC.
+     */
+    public void clear() {
+        if (bytes != buffer) {
+            bytes = EMPTY;
+            inputStream.setBuffer(EMPTY, 0, 0);
+        }
+        chunks = null;
+        length = 0;
+    }
+
+}
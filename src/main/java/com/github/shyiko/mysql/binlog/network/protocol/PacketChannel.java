@@ -18,6 +18,8 @@ package com.github.shyiko.mysql.binlog.network.protocol;
 import com.github.shyiko.mysql.binlog.io.BufferedSocketInputStream;
 import com.github.shyiko.mysql.binlog.io.ByteArrayInputStream;
 import com.github.shyiko.mysql.binlog.io.ByteArrayOutputStream;
+import com.github.shyiko.mysql.binlog.io.SocketChannelInputStream;
+import com.github.shyiko.mysql.binlog.network.CompressionAlgorithm;
 import com.github.shyiko.mysql.binlog.network.IdentityVerificationException;
 import com.github.shyiko.mysql.binlog.network.SSLSocketFactory;
 import com.github.shyiko.mysql.binlog.network.protocol.command.Command;
@@ -25,8 +27,10 @@ import com.github.shyiko.mysql.binlog.network.protocol.command.Command;
 import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.SSLSocket;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.Socket;
 import java.nio.channels.Channel;
+import java.nio.channels.SocketChannel;
 
 /**
  * @author <a href="mailto:stanley.shyiko@gmail.com">Stanley Shyiko</a>
@@ -34,8 +38,10 @@ import java.nio.channels.Channel;
 public class PacketChannel implements Channel {
 
     private Socket socket;
+    private InputStream socketInputStream;
     private ByteArrayInputStream inputStream;
     private ByteArrayOutputStream outputStream;
+    private CompressedPacketInputStream compressedPacketInputStream;
 
     public PacketChannel(String hostname, int port) throws IOException {
         this(new Socket(hostname, port));
@@ -43,7 +49,22 @@ public class PacketChannel implements Channel {
 
     public PacketChannel(Socket socket) throws IOException {
         this.socket = socket;
-        this.inputStream = new ByteArrayInputStream(new BufferedSocketInputStream(socket.getInputStream()));
+        this.socketInputStream = new BufferedSocketInputStream(socket.getInputStream());
+        this.inputStream = new ByteArrayInputStream(socketInputStream);
+        this.outputStream = new ByteArrayOutputStream(socket.getOutputStream());
+    }
+
+    /**
+     * @param socketChannel connected socket channel (in blocking mode). Incoming data is read into a (pooled) direct
+     * buffer instead of a heap one (see {@link SocketChannelInputStream}).
+     */
+    public PacketChannel(SocketChannel socketChannel) throws IOException {
+        if (!socketChannel.isBlocking()) {
+            throw new IllegalArgumentException("SocketChannel must be in blocking mode");
+        }
+        this.socket = socketChannel.socket();
+        this.socketInputStream = new SocketChannelInputStream(socketChannel);
+        this.inputStream = new ByteArrayInputStream(socketInputStream);
         this.outputStream = new ByteArrayOutputStream(socket.getOutputStream());
     }
 
@@ -64,6 +85,12 @@ public class PacketChannel implements Channel {
     public void write(Command command, int packetNumber) throws IOException {
         byte[] body = command.toByteArray();
         ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        if (compressedPacketInputStream != null) {
+            // commands are small enough for compression not to be worth it (uncompressed length of 0 means "as is")
+            buffer.writeInteger(body.length + 4, 3);
+            buffer.writeInteger(packetNumber, 1);
+            buffer.writeInteger(0, 3);
+        }
         buffer.writeInteger(body.length, 3); // packet length
         buffer.writeInteger(packetNumber, 1);
         buffer.write(body, 0, body.length);
@@ -85,11 +112,30 @@ public class PacketChannel implements Channel {
         write(command, 0);
     }
 
+    /**
+     * Switch to the compression protocol (which must have been negotiated during the handshake). From this point on
+     * {@link #getInputStream()} yields decompressed content while outgoing packets are wrapped into compressed packet
+     * envelope.
+     * @param compressionAlgorithm either {@link CompressionAlgorithm#ZLIB} or {@link CompressionAlgorithm#ZSTD}
+     */
+    public void enableCompression(CompressionAlgorithm compressionAlgorithm) {
+        if (compressedPacketInputStream != null) {
+            throw new IllegalStateException("Compression is already enabled");
+        }
+        compressedPacketInputStream = new CompressedPacketInputStream(socketInputStream, compressionAlgorithm);
+        inputStream = new ByteArrayInputStream(compressedPacketInputStream);
+    }
+
     public void upgradeToSSL(SSLSocketFactory sslSocketFactory, HostnameVerifier hostnameVerifier) throws IOException {
         SSLSocket sslSocket = sslSocketFactory.createSocket(this.socket);
         sslSocket.startHandshake();
+        if (socketInputStream instanceof SocketChannelInputStream) {
+            // from now on data is read through sslSocket
+            ((SocketChannelInputStream) socketInputStream).release();
+        }
         socket = sslSocket;
-        inputStream = new ByteArrayInputStream(sslSocket.getInputStream());
+        socketInputStream = sslSocket.getInputStream();
+        inputStream = new ByteArrayInputStream(socketInputStream);
         outputStream = new ByteArrayOutputStream(sslSocket.getOutputStream());
         if (hostnameVerifier != null && !hostnameVerifier.verify(sslSocket.getInetAddress().getHostName(),
             sslSocket.getSession())) {
@@ -116,5 +162,12 @@ public class PacketChannel implements Channel {
             // ignore
         }
         socket.close();
+        if (socketInputStream instanceof SocketChannelInputStream) {
+            // socket is closed by now, so reader (if any) is not going to hold on to the buffer
+            ((SocketChannelInputStream) socketInputStream).release();
+        }
+        if (compressedPacketInputStream != null) {
+            compressedPacketInputStream.close(); // returns Inflater to the pool
+        }
     }
 }
@@ -0,0 +1,229 @@
+/*
+ * Copyright 2018 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog.network.protocol;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded single-producer/single-consumer queue of (preallocated) {@link PacketBuffer}s (a la LMAX Disruptor).
+ * <p>
+ * Producer (socket reader):
+ * <pre>
+ * PacketBuffer packet = ringBuffer.claim(); // blocks while ring is full
+ * packet.readFrom(inputStream);
+ * ringBuffer.publish();
+ * ...
+ * ringBuffer.complete(failureOrNull);
+ * </pre>
+ * Consumer:
+ * <pre>
+ * for (PacketBuffer packet; (packet = ringBuffer.take()) != null; ringBuffer.release()) {
+ *     ...
+ * }
+ * </pre>
+ *
+ * @author <a href="mailto:stanley.shyiko@gmail.com">Stanley Shyiko</a>
+ */
+public class PacketRingBuffer {
+
+    private final PacketBuffer[] slots;
+    private final int mask;
+    private final WaitStrategy waitStrategy;
+
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong released = new AtomicLong();
+    private long claimed; // producer-local
+    private long taken; // consumer-local
+
+    private volatile boolean completed;
+    private volatile Exception failure;
+    private volatile boolean closed;
+
+    private final Lock lock = new ReentrantLock();
+    private final Condition stateChanged = lock.newCondition();
+    private volatile int numberOfWaitingThreads;
+
+    /**
+     * @param capacity number of slots (rounded up to the next power of two)
+     * @param waitStrategy strategy used by producer/consumer while waiting for free/published slot
+     */
+    public PacketRingBuffer(int capacity, WaitStrategy waitStrategy) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Capacity must be in [1, 2^30] range");
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.slots = new PacketBuffer[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new PacketBuffer();
+        }
+        this.mask = size - 1;
+        this.waitStrategy = waitStrategy;
+    }
+
+    public int getCapacity() {
+        return slots.length;
+    }
+
+    /**
+     * @return number of packets published but not yet released
+     */
+    public int size() {
+        return (int) (published.get() - released.get());
+    }
+
+    /**
+     * @return next free slot or null if ring buffer has been closed (in which case producer should stop)
+     */
+    public PacketBuffer claim() throws InterruptedException {
+        long sequence = claimed;
+        for (int attempt = 0; sequence - released.get() >= slots.length; attempt++) {
+            if (closed) {
+                return null;
+            }
+            await(attempt, true);
+        }
+        if (closed) {
+            return null;
+        }
+        return slots[(int) sequence & mask];
+    }
+
+    /**
+     * Make last claimed slot available to the consumer.
+     */
+    public void publish() {
+        claimed++;
+        published.set(claimed);
+        signal();
+    }
+
+    /**
+     * Signal end-of-stream.
+     * @param failure exception that caused producer to stop, nullable
+     */
+    public void complete(Exception failure) {
+        this.failure = failure;
+        this.completed = true;
+        signal();
+    }
+
+    /**
+     * @return next published packet or null in case of end-of-stream (see {@link #getFailure()})
+     */
+    public PacketBuffer take() throws InterruptedException {
+        long sequence = taken;
+        for (int attempt = 0; sequence >= published.get(); attempt++) {
+            if (completed && sequence >= published.get()) {
+                return null;
+            }
+            await(attempt, false);
+        }
+        return slots[(int) sequence & mask];
+    }
+
+    /**
+     * Return last taken slot back to the producer.
+     */
+    public void release() {
+        slots[(int) taken & mask].clear();
+        taken++;
+        released.set(taken);
+        signal();
+    }
+
+    /**
+     * @return exception which caused producer to stop (if any)
+     */
+    public Exception getFailure() {
+        return failure;
+    }
+
+    /**
+     * Wake up producer (blocked on full ring buffer) and make it stop.
+     */
+    public void close() {
+        closed = true;
+        signal();
+    }
+
+    private void await(int attempt, boolean producer) throws InterruptedException {
+        switch (waitStrategy) {
+            case BUSY_SPIN:
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                break;
+            case YIELDING:
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                if (attempt > 100) {
+                    Thread.yield();
+                }
+                break;
+            case BLOCKING:
+            default:
+                lock.lock();
+                try {
+                    numberOfWaitingThreads++;
+                    if (producer ?
+                        claimed - released.get() >= slots.length && !closed :
+                        taken >= published.get() && !completed) {
+                        stateChanged.await();
+                    }
+                } finally {
+                    numberOfWaitingThreads--;
+                    lock.unlock();
+                }
+        }
+    }
+
+    private void signal() {
+        if (waitStrategy == WaitStrategy.BLOCKING && numberOfWaitingThreads != 0) {
+            lock.lock();
+            try {
+                stateChanged.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Strategy used while waiting for a free (producer) / published (consumer) slot.
+     */
+    public enum WaitStrategy {
+        /**
+         * Park thread until notified. Lowest CPU usage, highest latency (default).
+         */
+        BLOCKING,
+        /**
+         * Spin for a while, then {@link Thread#yield()}.
+         */
+        YIELDING,
+        /**
+         * Spin. Lowest latency, burns a core per waiting thread.
+         */
+        BUSY_SPIN
+    }
+
+}
@@ -17,6 +17,7 @@ package com.github.shyiko.mysql.binlog.network.protocol.command;
 
 import com.github.shyiko.mysql.binlog.io.ByteArrayOutputStream;
 import com.github.shyiko.mysql.binlog.network.ClientCapabilities;
+import com.github.shyiko.mysql.binlog.network.CompressionAlgorithm;
 
 import java.io.IOException;
 import java.security.MessageDigest;
@@ -33,6 +34,8 @@ public class AuthenticateCommand implements Command {
     private String salt;
     private int clientCapabilities;
     private int collation;
+    private CompressionAlgorithm compressionAlgorithm = CompressionAlgorithm.UNCOMPRESSED;
+    private int zstdCompressionLevel = 3;
 
     public AuthenticateCommand(String schema, String username, String password, String salt) {
         this.schema = schema;
@@ -49,6 +52,22 @@ public class AuthenticateCommand implements Command {
         this.collation = collation;
     }
 
+    /**
+     * @param compressionAlgorithm compression protocol to request (the one server supports, see
+     * {@link ClientCapabilities#COMPRESS} / {@link ClientCapabilities#ZSTD_COMPRESSION_ALGORITHM})
+     */
+    public void setCompressionAlgorithm(CompressionAlgorithm compressionAlgorithm) {
+        this.compressionAlgorithm = compressionAlgorithm;
+    }
+
+    /**
+     * @param zstdCompressionLevel level server is going to use to compress packets (3 by default).
+     * Has no effect unless {@link CompressionAlgorithm#ZSTD} is requested.
+     */
+    public void setZstdCompressionLevel(int zstdCompressionLevel) {
+        this.zstdCompressionLevel = zstdCompressionLevel;
+    }
+
     @Override
     public byte[] toByteArray() throws IOException {
         ByteArrayOutputStream buffer = new ByteArrayOutputStream();
@@ -60,6 +79,11 @@ public class AuthenticateCommand implements Command {
                 clientCapabilities |= ClientCapabilities.CONNECT_WITH_DB;
             }
         }
+        if (compressionAlgorithm == CompressionAlgorithm.ZLIB) {
+            clientCapabilities |= ClientCapabilities.COMPRESS;
+        } else if (compressionAlgorithm == CompressionAlgorithm.ZSTD) {
+            clientCapabilities |= ClientCapabilities.ZSTD_COMPRESSION_ALGORITHM;
+        }
         buffer.writeInteger(clientCapabilities, 4);
         buffer.writeInteger(0, 4); // maximum packet length
         buffer.writeInteger(collation, 1);
@@ -73,6 +97,9 @@ public class AuthenticateCommand implements Command {
         if (schema != null) {
             buffer.writeZeroTerminatedString(schema);
         }
+        if ((clientCapabilities & ClientCapabilities.ZSTD_COMPRESSION_ALGORITHM) != 0) {
+            buffer.writeInteger(zstdCompressionLevel, 1);
+        }
         return buffer.toByteArray();
     }
 
@@ -19,7 +19,6 @@ import com.github.shyiko.mysql.binlog.GtidSet;
 import com.github.shyiko.mysql.binlog.io.ByteArrayOutputStream;
 
 import java.io.IOException;
-import java.util.Collection;
 
 /**
  * @author <a href="mailto:stanley.shyiko@gmail.com">Stanley Shyiko</a>
@@ -47,32 +46,10 @@ public class DumpBinaryLogGtidCommand implements Command {
         buffer.writeInteger(this.binlogFilename.length(), 4);
         buffer.writeString(this.binlogFilename);
         buffer.writeLong(this.binlogPosition, 8);
-        Collection<GtidSet.UUIDSet> uuidSets = gtidSet.getUUIDSets();
-        int dataSize = 8 /* number of uuidSets */;
-        for (GtidSet.UUIDSet uuidSet : uuidSets) {
-            dataSize += 16 /* uuid */ + 8 /* number of intervals */ +
-                uuidSet.getIntervals().size() /* number of intervals */ * 16 /* start-end */;
-        }
-        buffer.writeInteger(dataSize, 4);
-        buffer.writeLong(uuidSets.size(), 8);
-        for (GtidSet.UUIDSet uuidSet : uuidSets) {
-            buffer.write(hexToByteArray(uuidSet.getUUID().replace("-", "")));
-            Collection<GtidSet.Interval> intervals = uuidSet.getIntervals();
-            buffer.writeLong(intervals.size(), 8);
-            for (GtidSet.Interval interval : intervals) {
-                buffer.writeLong(interval.getStart(), 8);
-                buffer.writeLong(interval.getEnd() + 1 /* right-open */, 8);
-            }
-        }
+        byte[] data = gtidSet.toByteArray();
+        buffer.writeInteger(data.length, 4);
+        buffer.write(data);
         return buffer.toByteArray();
     }
 
-    private static byte[] hexToByteArray(String uuid) {
-        byte[] b = new byte[uuid.length() / 2];
-        for (int i = 0, j = 0; j < uuid.length(); j += 2) {
-            b[i++] = (byte) Integer.parseInt(uuid.charAt(j) + "" + uuid.charAt(j + 1), 16);
-        }
-        return b;
-    }
-
 }
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2018 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog.parallel;
+
+import com.github.shyiko.mysql.binlog.event.Event;
+import com.github.shyiko.mysql.binlog.event.GtidEventData;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Group of events making up a single transaction (GTID/ANONYMOUS_GTID (if any), BEGIN, ..., XID/COMMIT (or a
+ * single auto-committed statement, like DDL)).
+ *
+ * @author <a href="mailto:stanley.shyiko@gmail.com">Stanley Shyiko</a>
+ */
+public class Transaction {
+
+    private final GtidEventData gtid;
+    private final List<Event> events = new ArrayList<Event>();
+    // assigned by TransactionScheduler
+    private long sequence;
+    private long dependency;
+    private volatile boolean completed;
+
+    Transaction(GtidEventData gtid) {
+        this.gtid = gtid;
+    }
+
+    void add(Event event) {
+        events.add(event);
+    }
+
+    long getSequence() {
+        return sequence;
+    }
+
+    void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+
+    long getDependency() {
+        return dependency;
+    }
+
+    void setDependency(long dependency) {
+        this.dependency = dependency;
+    }
+
+    boolean isCompleted() {
+        return completed;
+    }
+
+    void setCompleted(boolean completed) {
+        this.completed = completed;
+    }
+
+    /**
+     * @return GTID event data or null if transaction wasn't preceded by GTID/ANONYMOUS_GTID event
+     */
+    public GtidEventData getGtid() {
+        return gtid;
+    }
+
+    /**
+     * @see GtidEventData#getLastCommitted()
+     */
+    public long getLastCommitted() {
+        return gtid != null ? gtid.getLastCommitted() : 0;
+    }
+
+    /**
+     * @see GtidEventData#getSequenceNumber()
+     */
+    public long getSequenceNumber() {
+        return gtid != null ? gtid.getSequenceNumber() : 0;
+    }
+
+    /**
+     * @return events (in binlog order)
+     */
+    public List<Event> getEvents() {
+        return Collections.unmodifiableList(events);
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("Transaction");
+        sb.append("{gtid=").append(gtid != null ? gtid.getGtid() : null);
+        sb.append(", lastCommitted=").append(getLastCommitted());
+        sb.append(", sequenceNumber=").append(getSequenceNumber());
+        sb.append(", numberOfEvents=").append(events.size());
+        sb.append('}');
+        return sb.toString();
+    }
+
+}
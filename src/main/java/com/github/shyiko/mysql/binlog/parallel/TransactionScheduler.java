@@ -0,0 +1,345 @@
+/*
+ * Copyright 2018 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog.parallel;
+
+import com.github.shyiko.mysql.binlog.BinaryLogClient;
+import com.github.shyiko.mysql.binlog.event.Event;
+import com.github.shyiko.mysql.binlog.event.EventData;
+import com.github.shyiko.mysql.binlog.event.EventType;
+import com.github.shyiko.mysql.binlog.event.GtidEventData;
+import com.github.shyiko.mysql.binlog.event.QueryEventData;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * {@link BinaryLogClient.EventListener} grouping events into {@link Transaction}s and applying them (through
+ * {@link Handler}) on the given {@link Executor}.
+ * <p>
+ * Transaction is allowed to start as soon as the transactions it depends on have been applied. Dependencies are
+ * derived from the logical clock MySQL (5.7+) puts into GTID/ANONYMOUS_GTID events (last_committed/sequence_number),
+ * the same way server's own parallel applier (slave_parallel_type=LOGICAL_CLOCK) does it. Transactions without
+ * a logical clock (MySQL 5.6, ...) as well as the first transaction in each binary log file are applied only after
+ * all of the preceding ones (unless {@link DependencyTracker} (like {@link WritesetDependencyTracker}) says otherwise).
+ * <p>
+ * No matter in which order transactions are applied, {@link CommitListener}s are notified in the binlog order
+ * (which makes it safe to use {@link CommitListener#onCommit(Transaction)} for checkpointing).
+ * <p>
+ * NOTE: events are kept until transaction is applied, hence
+ * {@link com.github.shyiko.mysql.binlog.event.deserialization.EventDeserializer#setReuseEvents(boolean)} must be off.
+ *
+ * @author <a href="mailto:stanley.shyiko@gmail.com">Stanley Shyiko</a>
+ */
+public class TransactionScheduler implements BinaryLogClient.EventListener {
+
+    private final Logger logger = Logger.getLogger(getClass().getName());
+
+    private final Executor executor;
+    private final Handler handler;
+    private final List<CommitListener> commitListeners = new CopyOnWriteArrayList<CommitListener>();
+    private volatile int maxNumberOfPendingTransactions = 64;
+    private DependencyTracker dependencyTracker;
+
+    // accessed by the event thread only
+    private Transaction transaction;
+    private boolean explicitTransaction;
+    private boolean clockReset = true;
+    private long lastSequenceNumber;
+
+    private final Object lock = new Object();
+    // scheduled but not yet committed transactions (in binlog order)
+    private final ArrayDeque<Transaction> pendingTransactions = new ArrayDeque<Transaction>();
+    private long sequence;
+    // all transactions with sequence <= committed have been applied
+    private long committed;
+    // number of threads notifying commit listeners
+    private int numberOfCommitNotifiers;
+    private Exception failure;
+    private final Object commitLock = new Object();
+
+    public TransactionScheduler(Executor executor, Handler handler) {
+        this.executor = executor;
+        this.handler = handler;
+    }
+
+    /**
+     * @param maxNumberOfPendingTransactions max number of transactions that are scheduled but not yet committed
+     * (event thread is blocked once this limit is reached). Default is 64.
+     */
+    public void setMaxNumberOfPendingTransactions(int maxNumberOfPendingTransactions) {
+        if (maxNumberOfPendingTransactions < 1) {
+            throw new IllegalArgumentException("Max number of pending transactions must be greater than 0");
+        }
+        this.maxNumberOfPendingTransactions = maxNumberOfPendingTransactions;
+    }
+
+    public int getMaxNumberOfPendingTransactions() {
+        return maxNumberOfPendingTransactions;
+    }
+
+    /**
+     * @return number of transactions that are scheduled but not yet committed
+     */
+    public int getNumberOfPendingTransactions() {
+        synchronized (lock) {
+            return pendingTransactions.size();
+        }
+    }
+
+    /**
+     * @param dependencyTracker tracker used to find out which transactions conflict (on top of the logical clock,
+     * e.g. {@link WritesetDependencyTracker}). Transaction depends on the earliest of the two (meaning tracker can
+     * only make scheduling less conservative). Null by default. Must be set before the first event.
+     */
+    public void setDependencyTracker(DependencyTracker dependencyTracker) {
+        this.dependencyTracker = dependencyTracker;
+    }
+
+    public void registerCommitListener(CommitListener commitListener) {
+        commitListeners.add(commitListener);
+    }
+
+    public void unregisterCommitListener(CommitListener commitListener) {
+        commitListeners.remove(commitListener);
+    }
+
+    @Override
+    public void onEvent(Event event) {
+        EventData data = event.getData();
+        switch (event.getHeader().getEventType()) {
+            case GTID:
+            case ANONYMOUS_GTID:
+                if (transaction != null && logger.isLoggable(Level.WARNING)) {
+                    logger.warning("Discarding incomplete " + transaction);
+                }
+                transaction = new Transaction(data instanceof GtidEventData ? (GtidEventData) data : null);
+                transaction.add(event);
+                explicitTransaction = false;
+                break;
+            case ROTATE:
+                // sequence numbers are relative to the binary log file
+                clockReset = true;
+                break;
+            case QUERY:
+                String sql = data instanceof QueryEventData ? ((QueryEventData) data).getSql() : null;
+                if (transaction == null) {
+                    transaction = new Transaction(null);
+                }
+                transaction.add(event);
+                if ("BEGIN".equals(sql) || isXAStart(sql)) {
+                    // XA transaction (XA START ... XA END) is terminated by XA_PREPARE
+                    explicitTransaction = true;
+                } else
+                if (!explicitTransaction || "COMMIT".equals(sql) || "ROLLBACK".equals(sql)) {
+                    // either an end of transaction or auto-commit query (likely DDL)
+                    commit();
+                }
+                break;
+            case XID:
+            case XA_PREPARE:
+                if (transaction != null) {
+                    transaction.add(event);
+                    commit();
+                } else {
+                    discard(event);
+                }
+                break;
+            default:
+                if (transaction != null) {
+                    transaction.add(event);
+                } else
+                if (!isOutOfTransaction(event.getHeader().getEventType())) {
+                    discard(event);
+                }
+        }
+    }
+
+    /**
+     * @return true if event is never a part of a transaction
+     */
+    private static boolean isOutOfTransaction(EventType eventType) {
+        return eventType == EventType.FORMAT_DESCRIPTION || eventType == EventType.PREVIOUS_GTIDS ||
+            eventType == EventType.HEARTBEAT || eventType == EventType.STOP || eventType == EventType.INCIDENT;
+    }
+
+    private static boolean isXAStart(String sql) {
+        return sql != null && sql.regionMatches(true, 0, "XA START", 0, 8);
+    }
+
+    private void discard(Event event) {
+        if (logger.isLoggable(Level.WARNING)) {
+            logger.warning("Discarding " + event + " (not within a transaction)");
+        }
+    }
+
+    private void commit() {
+        Transaction transaction = this.transaction;
+        this.transaction = null;
+        explicitTransaction = false;
+        long sequenceNumber = transaction.getSequenceNumber();
+        boolean barrier = clockReset || sequenceNumber == 0 || sequenceNumber <= lastSequenceNumber;
+        clockReset = false;
+        lastSequenceNumber = sequenceNumber;
+        try {
+            schedule(transaction, barrier);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while scheduling " + transaction, e);
+        }
+    }
+
+    private void schedule(final Transaction transaction, boolean barrier) throws InterruptedException {
+        // sequence is only ever modified by the event thread
+        long trackedDependency = dependencyTracker != null ?
+            dependencyTracker.getDependency(transaction, sequence + 1) : Long.MAX_VALUE;
+        synchronized (lock) {
+            long dependency = barrier ? sequence : resolveDependency(transaction.getLastCommitted());
+            transaction.setDependency(Math.min(dependency, trackedDependency));
+            while (failure == null && (pendingTransactions.size() >= maxNumberOfPendingTransactions ||
+                    committed < transaction.getDependency())) {
+                lock.wait();
+            }
+            if (failure != null) {
+                throw new IllegalStateException("Unable to schedule " + transaction +
+                    " (one of the previous transactions failed)", failure);
+            }
+            transaction.setSequence(++sequence);
+            pendingTransactions.add(transaction);
+        }
+        executor.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                apply(transaction);
+            }
+        });
+    }
+
+    /**
+     * @return sequence of the most recent pending transaction which sequence_number &lt;= lastCommitted
+     * (or last committed one if there is no such transaction)
+     */
+    private long resolveDependency(long lastCommitted) {
+        Iterator<Transaction> iterator = pendingTransactions.descendingIterator();
+        while (iterator.hasNext()) {
+            Transaction transaction = iterator.next();
+            if (transaction.getSequenceNumber() <= lastCommitted) {
+                return transaction.getSequence();
+            }
+        }
+        return committed;
+    }
+
+    private void apply(Transaction transaction) {
+        try {
+            handler.handle(transaction);
+        } catch (Exception e) {
+            if (logger.isLoggable(Level.SEVERE)) {
+                logger.log(Level.SEVERE, handler + " failed to apply " + transaction, e);
+            }
+            synchronized (lock) {
+                if (failure == null) {
+                    failure = e;
+                }
+                lock.notifyAll();
+            }
+            return;
+        }
+        transaction.setCompleted(true);
+        // commitLock makes sure listeners are notified in order even if transactions are completed concurrently
+        synchronized (commitLock) {
+            List<Transaction> committedTransactions = new ArrayList<Transaction>();
+            synchronized (lock) {
+                while (!pendingTransactions.isEmpty() && pendingTransactions.peek().isCompleted()) {
+                    Transaction committedTransaction = pendingTransactions.poll();
+                    committed = committedTransaction.getSequence();
+                    committedTransactions.add(committedTransaction);
+                }
+                numberOfCommitNotifiers++;
+                lock.notifyAll();
+            }
+            for (Transaction committedTransaction : committedTransactions) {
+                for (CommitListener commitListener : commitListeners) {
+                    try {
+                        commitListener.onCommit(committedTransaction);
+                    } catch (Exception e) {
+                        if (logger.isLoggable(Level.WARNING)) {
+                            logger.log(Level.WARNING, commitListener + " choked on " + committedTransaction, e);
+                        }
+                    }
+                }
+            }
+            synchronized (lock) {
+                numberOfCommitNotifiers--;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Blocks until all scheduled transactions are committed (and {@link CommitListener}s are notified).
+     * @throws ExecutionException if any of the transactions failed to apply (scheduler is unusable after that)
+     */
+    public void flush() throws InterruptedException, ExecutionException {
+        synchronized (lock) {
+            while (failure == null && (!pendingTransactions.isEmpty() || numberOfCommitNotifiers != 0)) {
+                lock.wait();
+            }
+            if (failure != null) {
+                throw new ExecutionException(failure);
+            }
+        }
+    }
+
+    /**
+     * Applies {@link Transaction}s (invoked concurrently, from {@link Executor}'s threads).
+     */
+    public interface Handler {
+
+        void handle(Transaction transaction) throws Exception;
+    }
+
+    /**
+     * Resolves transaction dependencies (invoked from the event thread, in binlog order).
+     */
+    public interface DependencyTracker {
+
+        /**
+         * @param transaction transaction about to be scheduled
+         * @param sequence sequence number transaction is going to get (1, 2, 3, ... (increases by 1 with each
+         * transaction))
+         * @return sequence number of the most recent transaction given one conflicts with (0 if none,
+         * sequence - 1 if transaction must wait for all of the preceding ones)
+         */
+        long getDependency(Transaction transaction, long sequence);
+    }
+
+    /**
+     * Notified (in binlog order) each time transaction (along with all of the preceding ones) is applied.
+     */
+    public interface CommitListener {
+
+        void onCommit(Transaction transaction);
+    }
+
+}
@@ -0,0 +1,332 @@
+/*
+ * Copyright 2018 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog.parallel;
+
+import com.github.shyiko.mysql.binlog.event.DeleteRowsEventData;
+import com.github.shyiko.mysql.binlog.event.Event;
+import com.github.shyiko.mysql.binlog.event.EventData;
+import com.github.shyiko.mysql.binlog.event.EventType;
+import com.github.shyiko.mysql.binlog.event.QueryEventData;
+import com.github.shyiko.mysql.binlog.event.TableMapEventData;
+import com.github.shyiko.mysql.binlog.event.TableMapEventMetadata;
+import com.github.shyiko.mysql.binlog.event.UpdateRowsEventData;
+import com.github.shyiko.mysql.binlog.event.WriteRowsEventData;
+import com.github.shyiko.mysql.binlog.event.deserialization.CharsetRegistry;
+import com.github.shyiko.mysql.binlog.event.deserialization.LazyRows;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Client-side equivalent of binlog_transaction_dependency_tracking=WRITESET. Each row is identified by a 64-bit hash
+ * of database, table and primary key value(s) (hashed straight from the raw cells when rows are deserialized lazily
+ * (see {@link com.github.shyiko.mysql.binlog.event.deserialization.EventDeserializer#setDeserializeRowsLazily})).
+ * Transaction depends on the most recent transaction that touched any of its rows.
+ * <p>
+ * Primary keys are taken from the TABLE_MAP event metadata (binlog_row_metadata=FULL, MySQL 8.0.1+).
+ * Transactions that can't be tracked (DDL/statement-based ones, tables without a primary key (or with primary key
+ * columns missing from the row image)) depend on all of the preceding transactions and all of the following
+ * transactions depend on them.
+ * <p>
+ * NOTE: only primary keys are taken into account (which means that transactions conflicting on a unique secondary
+ * key or through a foreign key are not detected). Binary strings are compared byte-wise, text ones - with ASCII case
+ * and trailing spaces ignored, which is only consistent with how MySQL compares them as long as values are ASCII
+ * (see {@link LazyRows#hash(int, int, int, boolean, long)}). Transactions touching rows with non-ASCII text key values
+ * (or text keys in a charset that is not known to be ASCII-compatible (see
+ * {@link CharsetRegistry#isAsciiCompatible(int)})) are considered to be untrackable.
+ *
+ * @author <a href="mailto:stanley.shyiko@gmail.com">Stanley Shyiko</a>
+ */
+public class WritesetDependencyTracker implements TransactionScheduler.DependencyTracker {
+
+    private static final int UNTRACKABLE = -1;
+    private static final int WHOLE_VALUE = -1;
+    private static final int BINARY_COLLATION = 63;
+
+    private final int historySize;
+    // open-addressing hash table (row hash -> sequence of the last transaction that touched the row), 0 = empty slot
+    private long[] keys;
+    private long[] values;
+    private int size;
+    // all transactions with sequence <= historyStart are considered to be conflicting
+    private long historyStart;
+
+    // reused between transactions
+    private final Map<Long, TableMapEventData> tableMapEventByTableId = new HashMap<Long, TableMapEventData>();
+    private long[] writeset = new long[16];
+    private int writesetSize;
+
+    /**
+     * Same as {@code new WritesetDependencyTracker(25000)} (25000 is the default value of
+     * binlog_transaction_dependency_history_size).
+     */
+    public WritesetDependencyTracker() {
+        this(25000);
+    }
+
+    /**
+     * @param historySize max number of row hashes to keep (once it's reached, history is cleared)
+     */
+    public WritesetDependencyTracker(int historySize) {
+        if (historySize < 1) {
+            throw new IllegalArgumentException("History size must be greater than 0");
+        }
+        this.historySize = historySize;
+        int capacity = Integer.highestOneBit(historySize) << 2;
+        this.keys = new long[capacity];
+        this.values = new long[capacity];
+    }
+
+    @Override
+    public long getDependency(Transaction transaction, long sequence) {
+        writesetSize = 0;
+        tableMapEventByTableId.clear();
+        boolean trackable = collectWriteset(transaction);
+        if (!trackable || writesetSize > historySize) {
+            clear();
+            historyStart = sequence;
+            return sequence - 1;
+        }
+        if (size + writesetSize > historySize) {
+            clear();
+            historyStart = sequence - 1;
+        }
+        long dependency = historyStart;
+        for (int i = 0; i < writesetSize; i++) {
+            long previous = put(writeset[i], sequence);
+            // same row might be touched more than once (e.g. UPDATE that keeps PK intact hashes before and after
+            // images to the same value), transaction can't depend on itself
+            if (previous != sequence) {
+                dependency = Math.max(dependency, previous);
+            }
+        }
+        return dependency;
+    }
+
+    private boolean collectWriteset(Transaction transaction) {
+        boolean containsRows = false;
+        for (Event event : transaction.getEvents()) {
+            EventType eventType = event.getHeader().getEventType();
+            EventData data = event.getData();
+            if (EventType.isRowMutation(eventType)) {
+                if (!collectWriteset(data)) {
+                    return false;
+                }
+                containsRows = true;
+            } else
+            if (eventType == EventType.TABLE_MAP) {
+                TableMapEventData tableMapEventData = (TableMapEventData) data;
+                tableMapEventByTableId.put(tableMapEventData.getTableId(), tableMapEventData);
+            } else
+            if (eventType == EventType.QUERY) {
+                String sql = data instanceof QueryEventData ? ((QueryEventData) data).getSql() : null;
+                if (!"BEGIN".equals(sql) && !"COMMIT".equals(sql)) {
+                    return false;
+                }
+            } else
+            if (eventType == EventType.INTVAR || eventType == EventType.RAND || eventType == EventType.USER_VAR) {
+                // statement-based replication
+                return false;
+            }
+        }
+        return containsRows;
+    }
+
+    private boolean collectWriteset(EventData data) {
+        if (data instanceof WriteRowsEventData) {
+            WriteRowsEventData eventData = (WriteRowsEventData) data;
+            return collectWriteset(eventData.getTableId(), eventData.getIncludedColumns(), eventData.getLazyRows(),
+                eventData.getLazyRows() == null ? eventData.getRows() : null);
+        }
+        if (data instanceof UpdateRowsEventData) {
+            return collectWriteset((UpdateRowsEventData) data);
+        }
+        if (data instanceof DeleteRowsEventData) {
+            DeleteRowsEventData eventData = (DeleteRowsEventData) data;
+            return collectWriteset(eventData.getTableId(), eventData.getIncludedColumns(), eventData.getLazyRows(),
+                eventData.getLazyRows() == null ? eventData.getRows() : null);
+        }
+        // filtered out (see EventDeserializer::setTableFilter) or unknown
+        return false;
+    }
+
+    private boolean collectWriteset(UpdateRowsEventData data) {
+        long tableId = data.getTableId();
+        if (data.getLazyRows() != null) {
+            return collectWriteset(tableId, data.getIncludedColumnsBeforeUpdate(), data.getLazyRowsBeforeUpdate(),
+                null) && collectWriteset(tableId, data.getIncludedColumns(), data.getLazyRows(), null);
+        }
+        List<Map.Entry<Serializable[], Serializable[]>> rows = data.getRows();
+        int[] before = keyColumns(tableId, data.getIncludedColumnsBeforeUpdate());
+        int[] after = keyColumns(tableId, data.getIncludedColumns());
+        if (before == null || after == null) {
+            return false;
+        }
+        long seed = tableHash(tableId);
+        for (Map.Entry<Serializable[], Serializable[]> row : rows) {
+            if (!add(hash(row.getKey(), before, seed)) || !add(hash(row.getValue(), after, seed))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean collectWriteset(long tableId, BitSet includedColumns, LazyRows lazyRows,
+                                    List<Serializable[]> rows) {
+        int[] keyColumns = keyColumns(tableId, includedColumns);
+        if (keyColumns == null) {
+            return false;
+        }
+        long seed = tableHash(tableId);
+        if (lazyRows != null) {
+            for (int i = 0, e = lazyRows.size(); i < e; i++) {
+                long h = seed;
+                for (int k = 0; k < keyColumns.length && h != LazyRows.UNHASHABLE; k += 3) {
+                    h = lazyRows.hash(i, keyColumns[k], keyColumns[k + 1], keyColumns[k + 2] != 0, h);
+                }
+                if (!add(h)) {
+                    return false;
+                }
+            }
+        } else {
+            for (Serializable[] row : rows) {
+                if (!add(hash(row, keyColumns, seed))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return [cell index, prefix length (WHOLE_VALUE if none), 1 if value is to be compared byte-wise (0 otherwise)]
+     * triples of primary key columns, null if they are not known (or missing from the row image, or can't be hashed
+     * consistently with how MySQL compares them)
+     */
+    private int[] keyColumns(long tableId, BitSet includedColumns) {
+        TableMapEventData tableMapEventData = tableMapEventByTableId.get(tableId);
+        TableMapEventMetadata metadata = tableMapEventData != null ? tableMapEventData.getEventMetadata() : null;
+        if (metadata == null) {
+            return null;
+        }
+        List<Integer> simplePrimaryKeys = metadata.getSimplePrimaryKeys();
+        Map<Integer, Integer> primaryKeysWithPrefix = metadata.getPrimaryKeysWithPrefix();
+        int numberOfSimplePrimaryKeys = simplePrimaryKeys != null ? simplePrimaryKeys.size() : 0;
+        int numberOfPrimaryKeysWithPrefix = primaryKeysWithPrefix != null ? primaryKeysWithPrefix.size() : 0;
+        if (numberOfSimplePrimaryKeys + numberOfPrimaryKeysWithPrefix == 0) {
+            return null;
+        }
+        int[] collations = CharsetRegistry.getColumnCollations(tableMapEventData);
+        int[] result = new int[(numberOfSimplePrimaryKeys + numberOfPrimaryKeysWithPrefix) * 3];
+        int index = 0;
+        for (int i = 0; i < numberOfSimplePrimaryKeys; i++) {
+            int column = simplePrimaryKeys.get(i);
+            index = keyColumn(result, index, cellIndex(includedColumns, column), collations[column], 0);
+        }
+        if (numberOfPrimaryKeysWithPrefix != 0) {
+            for (Map.Entry<Integer, Integer> entry : primaryKeysWithPrefix.entrySet()) {
+                int column = entry.getKey();
+                index = keyColumn(result, index, cellIndex(includedColumns, column), collations[column],
+                    entry.getValue());
+            }
+        }
+        for (int i = 0; i < result.length; i += 3) {
+            if (result[i] == UNTRACKABLE) {
+                return null;
+            }
+        }
+        return result;
+    }
+
+    private static int keyColumn(int[] result, int index, int cellIndex, int collation, int prefix) {
+        boolean binary = collation == -1 || collation == BINARY_COLLATION;
+        result[index] = binary || CharsetRegistry.isAsciiCompatible(collation) ? cellIndex : UNTRACKABLE;
+        result[index + 1] = prefix == 0 ? WHOLE_VALUE : prefix;
+        result[index + 2] = binary ? 1 : 0;
+        return index + 3;
+    }
+
+    private static int cellIndex(BitSet includedColumns, int column) {
+        if (!includedColumns.get(column)) {
+            return UNTRACKABLE;
+        }
+        int result = 0;
+        for (int i = includedColumns.nextSetBit(0); i < column; i = includedColumns.nextSetBit(i + 1)) {
+            result++;
+        }
+        return result;
+    }
+
+    private long tableHash(long tableId) {
+        TableMapEventData tableMapEventData = tableMapEventByTableId.get(tableId);
+        return ((long) tableMapEventData.getDatabase().hashCode() << 32) ^ tableMapEventData.getTable().hashCode();
+    }
+
+    private static long hash(Serializable[] row, int[] keyColumns, long seed) {
+        long h = seed;
+        for (int k = 0; k < keyColumns.length && h != LazyRows.UNHASHABLE; k += 3) {
+            h = LazyRows.hash(row[keyColumns[k]], keyColumns[k + 1], keyColumns[k + 2] != 0, h);
+        }
+        return h;
+    }
+
+    /**
+     * @return false if hash is {@link LazyRows#UNHASHABLE} (meaning transaction can't be tracked), true otherwise
+     */
+    private boolean add(long hash) {
+        if (hash == LazyRows.UNHASHABLE) {
+            return false;
+        }
+        if (writesetSize == writeset.length) {
+            writeset = Arrays.copyOf(writeset, writesetSize << 1);
+        }
+        writeset[writesetSize++] = hash;
+        return true;
+    }
+
+    /**
+     * @return sequence previously associated with a hash (historyStart if none)
+     */
+    private long put(long hash, long sequence) {
+        long key = hash;
+        int mask = keys.length - 1;
+        int slot = (int) (key ^ (key >>> 32)) & mask;
+        while (keys[slot] != 0) {
+            if (keys[slot] == key) {
+                long previous = values[slot];
+                values[slot] = sequence;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = sequence;
+        size++;
+        return historyStart;
+    }
+
+    private void clear() {
+        if (size != 0) {
+            Arrays.fill(keys, 0);
+            size = 0;
+        }
+    }
+
+}
@@ -22,6 +22,7 @@ import com.github.shyiko.mysql.binlog.event.EventData;
 import com.github.shyiko.mysql.binlog.event.EventHeaderV4;
 import com.github.shyiko.mysql.binlog.event.EventType;
 import com.github.shyiko.mysql.binlog.event.QueryEventData;
+import com.github.shyiko.mysql.binlog.event.RotateEventData;
 import com.github.shyiko.mysql.binlog.event.UpdateRowsEventData;
 import com.github.shyiko.mysql.binlog.event.WriteRowsEventData;
 import com.github.shyiko.mysql.binlog.event.deserialization.ByteArrayEventDataDeserializer;
@@ -64,6 +65,7 @@ import java.sql.Statement;
 import java.util.AbstractMap;
 import java.util.BitSet;
 import java.util.Calendar;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
 import java.util.ResourceBundle;
@@ -600,6 +602,47 @@ public class BinaryLogClientIntegrationTest {
         assertNotEquals(client.getBinlogPosition(), updatedBinlogPosition);
     }
 
+    @Test
+    public void testTrackingOfBinlogFilenameWithRotateEventsExcluded() throws Exception {
+        try {
+            client.disconnect();
+            final BinaryLogClient binaryLogClient = new BinaryLogClient(slave.hostname, slave.port,
+                slave.username, slave.password);
+            binaryLogClient.registerEventListener(new TraceEventListener());
+            binaryLogClient.registerEventListener(eventListener);
+            CapturingEventListener capturingEventListener = new CapturingEventListener();
+            binaryLogClient.registerEventListener(capturingEventListener);
+            EventDeserializer deserializer = new EventDeserializer();
+            deserializer.setIncludedEventTypes(EnumSet.of(EventType.EXT_WRITE_ROWS, EventType.WRITE_ROWS));
+            binaryLogClient.setEventDeserializer(deserializer);
+            try {
+                eventListener.reset();
+                binaryLogClient.connect(DEFAULT_TIMEOUT);
+                String binlogFilename = binaryLogClient.getBinlogFilename();
+                slave.execute(new Callback<Statement>() {
+                    @Override
+                    public void execute(Statement statement) throws SQLException {
+                        statement.execute("flush logs");
+                    }
+                });
+                master.execute(new Callback<Statement>() {
+                    @Override
+                    public void execute(Statement statement) throws SQLException {
+                        statement.execute("insert into bikini_bottom values('SpongeBob')");
+                    }
+                });
+                eventListener.waitFor(WriteRowsEventData.class, 1, DEFAULT_TIMEOUT);
+                // ROTATE is used internally even though it's not returned to the listeners
+                assertEquals(capturingEventListener.getEvents(RotateEventData.class).size(), 0);
+                assertNotEquals(binaryLogClient.getBinlogFilename(), binlogFilename);
+            } finally {
+                binaryLogClient.disconnect();
+            }
+        } finally {
+            client.connect(DEFAULT_TIMEOUT);
+        }
+    }
+
     @Test
     public void testAbilityToBeSuspendedAndResumed() throws Exception {
         master.execute(new Callback<Statement>() {
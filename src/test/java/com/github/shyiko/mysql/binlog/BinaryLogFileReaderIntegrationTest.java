@@ -21,11 +21,16 @@ import com.github.shyiko.mysql.binlog.event.EventType;
 import com.github.shyiko.mysql.binlog.event.deserialization.ByteArrayEventDataDeserializer;
 import com.github.shyiko.mysql.binlog.event.deserialization.EventDeserializer;
 import com.github.shyiko.mysql.binlog.event.deserialization.NullEventDataDeserializer;
+import com.github.shyiko.mysql.binlog.io.ByteArrayOutputStream;
+import com.github.shyiko.mysql.binlog.network.protocol.PacketBuffer;
 import org.testng.annotations.Test;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.zip.GZIPInputStream;
 
 import static org.testng.Assert.assertEquals;
@@ -70,6 +75,78 @@ public class BinaryLogFileReaderIntegrationTest {
         readAll(reader, 303);
     }
 
+    @Test
+    public void testEventLargerThanRetainedBuffer() throws Exception {
+        byte[] binaryLog = readFully(new FileInputStream("src/test/resources/mysql-bin.checksum-none"));
+        List<String> expected = readAll(new BinaryLogFileReader(new java.io.ByteArrayInputStream(binaryLog),
+            new EventDeserializer()));
+        // (magic header + FORMAT_DESCRIPTION) + IGNORABLE event (bigger than the reusable buffer) + the rest
+        int offset = BinaryLogFileReader.MAGIC_HEADER.length;
+        offset += (binaryLog[offset + 9] & 0xFF) | (binaryLog[offset + 10] & 0xFF) << 8;
+        byte[] data = new byte[PacketBuffer.MAX_RETAINED_CAPACITY * 2];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        ByteArrayOutputStream event = new ByteArrayOutputStream();
+        event.write(new byte[] {0, 0, 0, 0, (byte) EventType.IGNORABLE.ordinal(), 1, 0, 0, 0});
+        event.writeInteger(19 + data.length, 4);
+        event.write(new byte[6]);
+        event.write(data);
+        java.io.ByteArrayOutputStream modifiedBinaryLog = new java.io.ByteArrayOutputStream();
+        modifiedBinaryLog.write(binaryLog, 0, offset);
+        modifiedBinaryLog.write(event.toByteArray());
+        modifiedBinaryLog.write(binaryLog, offset, binaryLog.length - offset);
+        EventDeserializer eventDeserializer = new EventDeserializer();
+        eventDeserializer.setEventDataDeserializer(EventType.IGNORABLE, new ByteArrayEventDataDeserializer());
+        BinaryLogFileReader reader = new BinaryLogFileReader(
+            new java.io.ByteArrayInputStream(modifiedBinaryLog.toByteArray()), eventDeserializer);
+        List<String> actual = new ArrayList<String>();
+        int numberOfIgnorableEvents = 0;
+        try {
+            for (Event e; (e = reader.readEvent()) != null; ) {
+                if (e.getHeader().getEventType() == EventType.IGNORABLE) {
+                    assertEquals(((ByteArrayEventData) e.getData()).getData(), data);
+                    numberOfIgnorableEvents++;
+                    continue;
+                }
+                actual.add(toString(e));
+            }
+        } finally {
+            reader.close();
+        }
+        assertEquals(numberOfIgnorableEvents, 1);
+        assertEquals(actual, expected);
+    }
+
+    private static List<String> readAll(BinaryLogFileReader reader) throws IOException {
+        List<String> result = new ArrayList<String>();
+        try {
+            for (Event event; (event = reader.readEvent()) != null; ) {
+                result.add(toString(event));
+            }
+        } finally {
+            reader.close();
+        }
+        return result;
+    }
+
+    private static String toString(Event event) {
+        return event.toString().replaceAll("\\[B@[0-9a-f]+", "[B"); // byte[]'s identity hash codes
+    }
+
+    private static byte[] readFully(InputStream inputStream) throws IOException {
+        try {
+            java.io.ByteArrayOutputStream result = new java.io.ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            for (int read; (read = inputStream.read(buffer)) != -1; ) {
+                result.write(buffer, 0, read);
+            }
+            return result.toByteArray();
+        } finally {
+            inputStream.close();
+        }
+    }
+
     private void readAll(BinaryLogFileReader reader, int expect) throws IOException {
         try {
             int numberOfEvents = 0;
@@ -17,6 +17,7 @@ package com.github.shyiko.mysql.binlog;
 
 import com.github.shyiko.mysql.binlog.GtidSet.Interval;
 import com.github.shyiko.mysql.binlog.GtidSet.UUIDSet;
+import com.github.shyiko.mysql.binlog.io.ByteArrayInputStream;
 import org.testng.annotations.Test;
 
 import java.util.LinkedList;
@@ -45,6 +46,83 @@ public class GtidSetTest {
             "00000000-0000-0000-0000-000000000000:0-0:2-5:7-7,00000000-0000-0000-0000-000000000001:9-9");
     }
 
+    @Test
+    public void testAddUsingSourceIdBits() throws Exception {
+        java.util.UUID sourceId = java.util.UUID.fromString(UUID);
+        long msb = sourceId.getMostSignificantBits(), lsb = sourceId.getLeastSignificantBits();
+        GtidSet gtidSet = new GtidSet(UUID + ":3-5");
+        assertTrue(gtidSet.add(msb, lsb, 6));
+        assertTrue(gtidSet.add(0, 1, 9));
+        assertTrue(gtidSet.add(msb, lsb, 2));
+        assertEquals(gtidSet.add(msb, lsb, 4), false);
+        assertEquals(gtidSet.toString(), "00000000-0000-0000-0000-000000000001:9-9," + UUID + ":2-6");
+    }
+
+    @Test
+    public void testOrderedByUUID() throws Exception {
+        GtidSet gtidSet = new GtidSet("f0000000-0000-0000-0000-000000000000:1," + UUID + ":1-2");
+        gtidSet.add("00000000-0000-0000-0000-000000000001:3");
+        assertEquals(gtidSet.toString(), "00000000-0000-0000-0000-000000000001:3-3," + UUID + ":1-2," +
+            "f0000000-0000-0000-0000-000000000000:1-1");
+    }
+
+    @Test
+    public void testUnionSubtractIntersect() throws Exception {
+        String other = "00000000-0000-0000-0000-000000000001";
+        GtidSet a = new GtidSet(UUID + ":1-10:20-30:40-50," + other + ":1-5");
+        GtidSet b = new GtidSet(UUID + ":5-22:31-39:45-45:60-70");
+        assertEquals(a.union(b).toString(), other + ":1-5," + UUID + ":1-50:60-70");
+        assertEquals(a.subtract(b).toString(), other + ":1-5," + UUID + ":1-4:23-30:40-44:46-50");
+        assertEquals(a.intersect(b).toString(), UUID + ":5-10:20-22:45-45");
+        assertEquals(a.subtract(a).toString(), "");
+        assertTrue(a.intersect(b).isContainedWithin(a));
+        assertTrue(a.intersect(b).isContainedWithin(b));
+        assertTrue(a.isContainedWithin(a.union(b)));
+        assertEquals(a.toString(), other + ":1-5," + UUID + ":1-10:20-30:40-50");
+    }
+
+    @Test
+    public void testUnorderedOverlappingIntervals() throws Exception {
+        assertEquals(new GtidSet(UUID + ":20-30:1-5:4-10:11").toString(), UUID + ":1-11:20-30");
+    }
+
+    @Test
+    public void testToByteArray() throws Exception {
+        byte[] bytes = new GtidSet(UUID + ":1-191:193-199").toByteArray();
+        ByteArrayInputStream in = new ByteArrayInputStream(bytes);
+        assertEquals(in.readLong(8), 1);
+        byte[] uuid = in.read(16);
+        StringBuilder sb = new StringBuilder();
+        for (byte b : uuid) {
+            sb.append(Integer.toHexString((b & 0xff) | 0x100).substring(1));
+        }
+        assertEquals(sb.toString(), UUID.replace("-", ""));
+        assertEquals(in.readLong(8), 2);
+        assertEquals(in.readLong(8), 1);
+        assertEquals(in.readLong(8), 192);
+        assertEquals(in.readLong(8), 193);
+        assertEquals(in.readLong(8), 200);
+        assertEquals(in.available(), 0);
+    }
+
+    @Test
+    public void testSnapshot() throws Exception {
+        java.util.UUID sourceId = java.util.UUID.fromString(UUID);
+        long msb = sourceId.getMostSignificantBits(), lsb = sourceId.getLeastSignificantBits();
+        String other = "00000000-0000-0000-0000-000000000001";
+        GtidSetSnapshot initial = new GtidSetSnapshot(other + ":1-5," + UUID + ":1-3");
+        GtidSetSnapshot next = initial.add(msb, lsb, 4);
+        assertEquals(next.getVersion(), 1);
+        assertEquals(next.toString(), other + ":1-5," + UUID + ":1-4");
+        assertTrue(next.add(msb, lsb, 2) == next);
+        assertEquals(initial.toString(), other + ":1-5," + UUID + ":1-3");
+        assertTrue(initial.getUUIDSet(other) == next.getUUIDSet(other)); // copy-on-write of affected entry only
+        assertTrue(initial.isContainedWithin(next));
+        GtidSet copy = next.toGtidSet();
+        copy.add(UUID + ":10");
+        assertEquals(next.toString(), other + ":1-5," + UUID + ":1-4");
+    }
+
     @Test
     public void testJoin() throws Exception {
         GtidSet gtidSet = new GtidSet("00000000-0000-0000-0000-000000000000:3-4:6-7");
@@ -15,6 +15,7 @@
  */
 package com.github.shyiko.mysql.binlog;
 
+
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
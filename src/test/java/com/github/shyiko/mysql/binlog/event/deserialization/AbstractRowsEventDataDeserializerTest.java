@@ -15,13 +15,34 @@
  */
 package com.github.shyiko.mysql.binlog.event.deserialization;
 
+import com.github.shyiko.mysql.binlog.event.TableMapEventData;
+import com.github.shyiko.mysql.binlog.event.TableMapEventMetadata;
 import com.github.shyiko.mysql.binlog.event.deserialization.AbstractRowsEventDataDeserializer.UnixTime;
+import com.github.shyiko.mysql.binlog.event.deserialization.json.JsonPath;
+import com.github.shyiko.mysql.binlog.event.deserialization.json.JsonUtf8Formatter;
+import com.github.shyiko.mysql.binlog.io.ByteArrayInputStream;
 import org.testng.annotations.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
 import java.util.TimeZone;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
 
 /**
  * @author <a href="mailto:stanley.shyiko@gmail.com">Stanley Shyiko</a>
@@ -45,6 +66,285 @@ public class AbstractRowsEventDataDeserializerTest {
             timestamp(1, 1, 1, 0, 0, 0, 0));
     }
 
+    @Test
+    public void testFromMatchesCalendar() throws Exception {
+        Random random = new Random(0);
+        for (int i = 0; i < 10000; i++) {
+            int year = 1583 + random.nextInt(1000), month = 1 + random.nextInt(12), day = 1 + random.nextInt(28);
+            int hour = random.nextInt(24), minute = random.nextInt(60), second = random.nextInt(60);
+            int millis = random.nextInt(1000);
+            assetTimeEquals(UnixTime.from(year, month, day, hour, minute, second, millis),
+                timestamp(year, month, day, hour, minute, second, millis));
+        }
+    }
+
+    @Test
+    public void testFromProlepticGregorian() throws Exception {
+        GregorianCalendar c = new GregorianCalendar(TimeZone.getTimeZone("GMT"));
+        c.setGregorianChange(new Date(Long.MIN_VALUE));
+        for (int year = 1; year <= 9999; year++) {
+            for (int month = 1; month <= 12; month += 11) {
+                c.clear();
+                c.set(year, month - 1, 31, 23, 59, 59);
+                c.set(Calendar.MILLISECOND, 999);
+                assetTimeEquals(UnixTime.fromProlepticGregorian(year, month, 31, 23, 59, 59, 999),
+                    c.getTimeInMillis());
+            }
+        }
+        assetTimeEquals(UnixTime.fromProlepticGregorian(1582, 10, 14, 0, 0, 0, 0),
+            UnixTime.from(1582, 10, 15, 0, 0, 0, 0) - 24 * 60 * 60 * 1000);
+    }
+
+    @Test
+    public void testDateAndTime() throws Exception {
+        WriteRowsEventDataDeserializer deserializer =
+            new WriteRowsEventDataDeserializer(new HashMap<Long, TableMapEventData>());
+        long datetime = (1L << 39) | ((2021L * 13 + 3) << 22) | (4 << 17) | (5 << 12) | (6 << 6) | 7;
+        byte[] datetimeV2 = {(byte) (datetime >>> 32), (byte) (datetime >>> 24), (byte) (datetime >>> 16),
+            (byte) (datetime >>> 8), (byte) datetime, 0x01, (byte) 0xE2, 0x40}; // .123456
+        long expected = timestamp(2021, 3, 4, 5, 6, 7, 0);
+        assertEquals(deserializer.deserializeCell(ColumnType.DATETIME_V2, 6, 0,
+            new ByteArrayInputStream(datetimeV2)), new Date(expected + 123));
+        assertEquals(deserializer.deserializeCell(ColumnType.DATETIME_V2, 2, 0,
+            new ByteArrayInputStream(datetimeV2, 0, 6)), new Date(expected + 10));
+        deserializer.setDeserializeDateAndTimeAsLong(true);
+        deserializer.setMicrosecondsPrecision(true);
+        assertEquals(deserializer.deserializeCell(ColumnType.DATETIME_V2, 6, 0,
+            new ByteArrayInputStream(datetimeV2)), expected * 1000 + 123456);
+        deserializer.setMicrosecondsPrecision(false);
+        long value = 20210304050607L;
+        byte[] datetimeV1 = new byte[8];
+        for (int i = 0; i < 8; i++) {
+            datetimeV1[i] = (byte) (value >>> (i << 3));
+        }
+        assertEquals(deserializer.deserializeCell(ColumnType.DATETIME, 0, 0,
+            new ByteArrayInputStream(datetimeV1)), expected);
+        byte[] time = {(byte) 123456, (byte) (123456 >>> 8), (byte) (123456 >>> 16)};
+        assertEquals(deserializer.deserializeCell(ColumnType.TIME, 0, 0,
+            new ByteArrayInputStream(time)), (12 * 60 * 60 + 34 * 60 + 56) * 1000L);
+    }
+
+    @Test
+    public void testCharsetRegistry() throws Exception {
+        assertEquals(CharsetRegistry.getCharset(8), Charset.forName("windows-1252"));
+        assertEquals(CharsetRegistry.getCharset(45), Charset.forName("UTF-8"));
+        assertEquals(CharsetRegistry.getCharset(255), Charset.forName("UTF-8"));
+        assertNull(CharsetRegistry.getCharset(63));
+        assertNull(CharsetRegistry.getCharset(-1));
+        assertNull(CharsetRegistry.getCharset(100000));
+    }
+
+    @Test
+    public void testColumnCharsets() throws Exception {
+        // VARCHAR latin1, VARCHAR utf8mb4, BLOB, VARBINARY, CHAR(30) utf8mb4, INT
+        TableMapEventData tableMapEvent = new TableMapEventData();
+        tableMapEvent.setTableId(1);
+        tableMapEvent.setColumnTypes(new byte[] {(byte) ColumnType.VARCHAR.getCode(),
+            (byte) ColumnType.VARCHAR.getCode(), (byte) ColumnType.BLOB.getCode(), (byte) ColumnType.VARCHAR.getCode(),
+            (byte) ColumnType.STRING.getCode(), (byte) ColumnType.LONG.getCode()});
+        tableMapEvent.setColumnMetadata(new int[] {255, 255, 2, 255, (ColumnType.STRING.getCode() << 8) | 120, 0});
+        ByteArrayOutputStream row = new ByteArrayOutputStream();
+        row.write(0); // no NULLs
+        writeLengthPrefixed(row, new byte[] {'c', 'a', 'f', (byte) 0xE9});
+        writeLengthPrefixed(row, "\u65E5\u672C".getBytes("UTF-8"));
+        row.write(new byte[] {2, 0, 'x', 'y'}); // 2-byte length
+        writeLengthPrefixed(row, new byte[] {'a', 'b'});
+        writeLengthPrefixed(row, "plain".getBytes("UTF-8"));
+        row.write(new byte[] {7, 0, 0, 0});
+        byte[] bytes = row.toByteArray();
+        Map<Long, TableMapEventData> tableMapEventByTableId = new HashMap<Long, TableMapEventData>();
+        tableMapEventByTableId.put(1L, tableMapEvent);
+        WriteRowsEventDataDeserializer deserializer = new WriteRowsEventDataDeserializer(tableMapEventByTableId);
+        BitSet includedColumns = new BitSet();
+        includedColumns.set(0, 6);
+        // no metadata
+        assertEquals(Arrays.deepToString(deserializer.deserializeRow(1, includedColumns,
+            new ByteArrayInputStream(bytes))), "[" + new String(bytes, 2, 4) + ", " +
+            new String(bytes, 7, 6) + ", [120, 121], ab, plain, 7]");
+        String expected = "[caf\u00E9, \u65E5\u672C, [120, 121], ab, plain, 7]";
+        TableMapEventMetadata.DefaultCharset defaultCharset = new TableMapEventMetadata.DefaultCharset();
+        defaultCharset.setDefaultCharsetCollation(255);
+        Map<Integer, Integer> charsetCollations = new HashMap<Integer, Integer>();
+        charsetCollations.put(0, 8);
+        charsetCollations.put(3, 63);
+        defaultCharset.setCharsetCollations(charsetCollations);
+        TableMapEventMetadata eventMetadata = new TableMapEventMetadata();
+        eventMetadata.setDefaultCharset(defaultCharset);
+        tableMapEventByTableId.put(1L, copyOf(tableMapEvent, eventMetadata));
+        assertEquals(Arrays.deepToString(deserializer.deserializeRow(1, includedColumns,
+            new ByteArrayInputStream(bytes))), expected);
+        eventMetadata = new TableMapEventMetadata();
+        eventMetadata.setColumnCharsets(Arrays.asList(8, 255, 63, 63, 255));
+        tableMapEventByTableId.put(1L, copyOf(tableMapEvent, eventMetadata));
+        assertEquals(Arrays.deepToString(deserializer.deserializeRow(1, includedColumns,
+            new ByteArrayInputStream(bytes))), expected);
+        assertEquals(Arrays.deepToString(deserializer.deserializeRow(1, includedColumns,
+            new ByteArrayInputStream(new java.io.ByteArrayInputStream(bytes)))), expected);
+        LazyRows lazyRows = deserializer.deserializeRowsLazily(1, new BitSet[] {includedColumns},
+            new BitSet[] {includedColumns}, new ByteArrayInputStream(bytes))[0];
+        assertEquals(Arrays.deepToString(lazyRows.getRow(0)), expected);
+        deserializer.setDeserializeCharAndBinaryAsByteArray(true);
+        assertEquals(Arrays.deepToString(deserializer.deserializeRow(1, includedColumns,
+            new ByteArrayInputStream(bytes))), "[[99, 97, 102, -23], [-26, -105, -91, -26, -100, -84], [120, 121], " +
+            "[97, 98], [112, 108, 97, 105, 110], 7]");
+    }
+
+    @Test
+    public void testFormatJson() throws Exception {
+        // JSON, INT
+        TableMapEventData tableMapEvent = new TableMapEventData();
+        tableMapEvent.setTableId(1);
+        tableMapEvent.setColumnTypes(new byte[] {(byte) ColumnType.JSON.getCode(), (byte) ColumnType.LONG.getCode()});
+        tableMapEvent.setColumnMetadata(new int[] {4, 0});
+        ByteArrayOutputStream rows = new ByteArrayOutputStream();
+        rows.write(0); // no NULLs
+        rows.write(new byte[] {4, 0, 0, 0, 0x0C, 2, 'h', 'i'}); // "hi"
+        rows.write(new byte[] {1, 0, 0, 0});
+        rows.write(1); // JSON is NULL
+        rows.write(new byte[] {2, 0, 0, 0});
+        Map<Long, TableMapEventData> tableMapEventByTableId = new HashMap<Long, TableMapEventData>();
+        tableMapEventByTableId.put(1L, tableMapEvent);
+        WriteRowsEventDataDeserializer deserializer = new WriteRowsEventDataDeserializer(tableMapEventByTableId);
+        BitSet includedColumns = new BitSet();
+        includedColumns.set(0, 2);
+        LazyRows lazyRows = deserializer.deserializeRowsLazily(1, new BitSet[] {includedColumns},
+            new BitSet[] {includedColumns}, new ByteArrayInputStream(rows.toByteArray()))[0];
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        JsonUtf8Formatter formatter = new JsonUtf8Formatter(outputStream);
+        assertTrue(lazyRows.formatJson(0, 0, formatter));
+        assertFalse(lazyRows.formatJson(1, 0, formatter));
+        formatter.flush();
+        assertEquals(new String(outputStream.toByteArray(), "UTF-8"), "\"hi\"");
+        try {
+            lazyRows.formatJson(0, 1, formatter);
+            fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testJsonPathProjection() throws Exception {
+        // JSON, INT, JSON
+        TableMapEventData tableMapEvent = new TableMapEventData();
+        tableMapEvent.setTableId(1);
+        tableMapEvent.setDatabase("db");
+        tableMapEvent.setTable("t");
+        tableMapEvent.setColumnTypes(new byte[] {(byte) ColumnType.JSON.getCode(), (byte) ColumnType.LONG.getCode(),
+            (byte) ColumnType.JSON.getCode()});
+        tableMapEvent.setColumnMetadata(new int[] {4, 0, 4});
+        // {"a": 1, "bb": "x"}
+        byte[] document = {0x00, 2, 0, 23, 0, 18, 0, 1, 0, 19, 0, 2, 0, 0x05, 1, 0, 0x0C, 21, 0, 'a', 'b', 'b',
+            1, 'x'};
+        ByteArrayOutputStream row = new ByteArrayOutputStream();
+        row.write(0); // no NULLs
+        row.write(new byte[] {(byte) document.length, 0, 0, 0});
+        row.write(document);
+        row.write(new byte[] {7, 0, 0, 0});
+        row.write(new byte[] {(byte) document.length, 0, 0, 0});
+        row.write(document);
+        byte[] bytes = row.toByteArray();
+        Map<Long, TableMapEventData> tableMapEventByTableId = new HashMap<Long, TableMapEventData>();
+        tableMapEventByTableId.put(1L, tableMapEvent);
+        WriteRowsEventDataDeserializer deserializer = new WriteRowsEventDataDeserializer(tableMapEventByTableId);
+        deserializer.setColumnProjection(new ColumnProjection()
+            .includeJsonPath("db", "t", 0, JsonPath.parse("$.bb"))
+            .includeJsonPath("db", "t", 2, JsonPath.parse("$.c"))
+            .includeJsonPath("db", "t", 1, JsonPath.parse("$.a"))); // not a JSON column (path is ignored)
+        BitSet includedColumns = new BitSet();
+        includedColumns.set(0, 3);
+        BitSet projectedColumns = deserializer.projectColumns(1, includedColumns);
+        assertEquals(Arrays.deepToString(deserializer.deserializeRow(1, includedColumns, projectedColumns,
+            new ByteArrayInputStream(bytes))), "[x, 7, null]");
+        LazyRows lazyRows = deserializer.deserializeRowsLazily(1, new BitSet[] {includedColumns},
+            new BitSet[] {projectedColumns}, new ByteArrayInputStream(bytes))[0];
+        assertEquals(Arrays.deepToString(lazyRows.getRow(0)), "[x, 7, null]");
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        JsonUtf8Formatter formatter = new JsonUtf8Formatter(outputStream);
+        assertTrue(lazyRows.formatJson(0, 0, formatter));
+        assertFalse(lazyRows.formatJson(0, 2, formatter));
+        formatter.flush();
+        assertEquals(new String(outputStream.toByteArray(), "UTF-8"), "\"x\"");
+    }
+
+    private static TableMapEventData copyOf(TableMapEventData tableMapEvent, TableMapEventMetadata eventMetadata) {
+        TableMapEventData result = new TableMapEventData();
+        result.setTableId(tableMapEvent.getTableId());
+        result.setColumnTypes(tableMapEvent.getColumnTypes());
+        result.setColumnMetadata(tableMapEvent.getColumnMetadata());
+        result.setEventMetadata(eventMetadata);
+        return result;
+    }
+
+    private static void writeLengthPrefixed(ByteArrayOutputStream outputStream, byte[] value) throws IOException {
+        outputStream.write(value.length);
+        outputStream.write(value);
+    }
+
+    @Test
+    public void testDecimal() throws Exception {
+        // https://dev.mysql.com/doc/refman/8.0/en/precision-math-decimal-characteristics.html
+        byte[] positive = {(byte) 0x81, 0x0D, (byte) 0xFB, 0x38, (byte) 0xD2, 0x04, (byte) 0xD2};
+        byte[] negative = {0x7E, (byte) 0xF2, 0x04, (byte) 0xC7, 0x2D, (byte) 0xFB, 0x2D};
+        assertEquals(AbstractRowsEventDataDeserializer.asBigDecimal(14, 4, positive),
+            new BigDecimal("1234567890.1234"));
+        assertEquals(AbstractRowsEventDataDeserializer.asBigDecimal(14, 4, negative),
+            new BigDecimal("-1234567890.1234"));
+        assertEquals(AbstractRowsEventDataDeserializer.readUnscaledDecimal(14, 4,
+            new ByteArrayInputStream(negative)), -12345678901234L);
+        Random random = new Random(0);
+        for (int precision = 1; precision <= 65; precision++) {
+            for (int scale = 0; scale <= Math.min(precision, 30); scale++) {
+                for (int i = 0; i < 20; i++) {
+                    BigInteger unscaled = new BigInteger(precision * 4, random).mod(BigInteger.TEN.pow(precision));
+                    BigDecimal value = new BigDecimal(random.nextBoolean() ? unscaled : unscaled.negate(), scale);
+                    byte[] bytes = encodeDecimal(value, precision, scale);
+                    ByteArrayInputStream inputStream = new ByteArrayInputStream(bytes);
+                    assertEquals(AbstractRowsEventDataDeserializer.readDecimal(precision, scale, inputStream), value);
+                    assertEquals(inputStream.available(), 0);
+                    if (precision <= 18) {
+                        assertEquals(AbstractRowsEventDataDeserializer.readUnscaledDecimal(precision, scale,
+                            new ByteArrayInputStream(bytes)), value.unscaledValue().longValue());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Straightforward (digit string based) implementation of mysql/strings/decimal.c#decimal2bin.
+     */
+    private byte[] encodeDecimal(BigDecimal value, int precision, int scale) {
+        int[] digitsToBytes = {0, 1, 1, 2, 2, 3, 3, 4, 4, 4};
+        String digits = value.unscaledValue().abs().toString();
+        while (digits.length() < precision) {
+            digits = "0" + digits;
+        }
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        int x = precision - scale;
+        int position = 0;
+        int[] groups = {x % 9, x / 9, scale / 9, scale % 9};
+        for (int g = 0; g < groups.length; g++) {
+            int count = g == 0 || g == 3 ? (groups[g] > 0 ? 1 : 0) : groups[g];
+            int groupDigits = g == 0 || g == 3 ? groups[g] : 9;
+            for (int i = 0; i < count; i++) {
+                int group = Integer.parseInt(digits.substring(position, position + groupDigits));
+                position += groupDigits;
+                for (int b = digitsToBytes[groupDigits] - 1; b >= 0; b--) {
+                    result.write(group >>> (b << 3));
+                }
+            }
+        }
+        byte[] bytes = result.toByteArray();
+        if (value.signum() < 0) {
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = (byte) ~bytes[i];
+            }
+        }
+        bytes[0] ^= 0x80;
+        return bytes;
+    }
+
     private void assetTimeEquals(long actual, long expected) {
         assertEquals(actual, expected, actual + " != " + expected +
             ", discrepancy: " + (actual - expected));
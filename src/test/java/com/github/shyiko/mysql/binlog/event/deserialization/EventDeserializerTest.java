@@ -0,0 +1,870 @@
+/*
+ * Copyright 2018 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog.event.deserialization;
+
+import com.github.shyiko.mysql.binlog.BinaryLogFileReader;
+import com.github.shyiko.mysql.binlog.event.ByteArrayEventData;
+import com.github.shyiko.mysql.binlog.event.DeleteRowsEventData;
+import com.github.shyiko.mysql.binlog.event.Event;
+import com.github.shyiko.mysql.binlog.event.EventData;
+import com.github.shyiko.mysql.binlog.event.EventType;
+import com.github.shyiko.mysql.binlog.event.RotateEventData;
+import com.github.shyiko.mysql.binlog.event.TableMapEventData;
+import com.github.shyiko.mysql.binlog.event.TransactionPayloadEventData;
+import com.github.shyiko.mysql.binlog.event.UpdateRowsEventData;
+import com.github.shyiko.mysql.binlog.event.WriteRowsEventData;
+import com.github.shyiko.mysql.binlog.io.ByteArrayInputStream;
+import com.github.shyiko.mysql.binlog.io.ByteArrayOutputStream;
+import com.github.shyiko.mysql.binlog.io.CompositeInputStream;
+import com.github.shyiko.mysql.binlog.network.protocol.PacketBuffer;
+import org.testng.annotations.Test;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * @author <a href="mailto:stanley.shyiko@gmail.com">Stanley Shyiko</a>
+ */
+public class EventDeserializerTest {
+
+    @Test
+    public void testNextEventUsingExecutorPreservesOrder() throws Exception {
+        List<String> expected = new ArrayList<String>();
+        ByteArrayInputStream inputStream = openBinaryLog();
+        try {
+            EventDeserializer eventDeserializer = new EventDeserializer();
+            for (Event event; (event = eventDeserializer.nextEvent(inputStream)) != null; ) {
+                expected.add(toString(event));
+            }
+        } finally {
+            inputStream.close();
+        }
+        List<String> actual = new ArrayList<String>();
+        int numberOfRowsEvents = 0;
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        inputStream = openBinaryLog();
+        try {
+            EventDeserializer eventDeserializer = new EventDeserializer();
+            List<Future<Event>> futures = new ArrayList<Future<Event>>();
+            for (Future<Event> future; (future = eventDeserializer.nextEvent(inputStream, executor)) != null; ) {
+                futures.add(future);
+            }
+            for (Future<Event> future : futures) {
+                Event event = future.get();
+                if (EventType.isRowMutation(event.getHeader().getEventType())) {
+                    numberOfRowsEvents++;
+                }
+                actual.add(toString(event));
+            }
+            // chunks (>16MB packet) are shared with the executor
+            byte[] binaryLog = readFully(new GZIPInputStream(
+                new FileInputStream("src/test/resources/mysql-bin.sakila.gz")));
+            ByteArrayInputStream chunkedInputStream =
+                new ByteArrayInputStream(new CompositeInputStream(chunks(binaryLog, 4, 4093)));
+            eventDeserializer = new EventDeserializer();
+            futures.clear();
+            for (Future<Event> future; (future = eventDeserializer.nextEvent(chunkedInputStream, executor)) != null; ) {
+                futures.add(future);
+            }
+            List<String> chunkedActual = new ArrayList<String>();
+            for (Future<Event> future : futures) {
+                chunkedActual.add(toString(future.get()));
+            }
+            assertEquals(chunkedActual, expected);
+        } finally {
+            executor.shutdown();
+            inputStream.close();
+        }
+        assertTrue(numberOfRowsEvents > 0);
+        assertEquals(actual, expected);
+    }
+
+    @Test
+    public void testLazyRowsMatchEagerlyDeserializedOnes() throws Exception {
+        ByteArrayInputStream eagerInputStream = openBinaryLog(), lazyInputStream = openBinaryLog();
+        int numberOfCells = 0;
+        try {
+            EventDeserializer eagerEventDeserializer = new EventDeserializer();
+            EventDeserializer lazyEventDeserializer = new EventDeserializer();
+            lazyEventDeserializer.setDeserializeRowsLazily(true);
+            for (Event event; (event = eagerEventDeserializer.nextEvent(eagerInputStream)) != null; ) {
+                Event lazyEvent = lazyEventDeserializer.nextEvent(lazyInputStream);
+                EventData data = lazyEvent.getData();
+                List<Serializable[]> rows;
+                LazyRows lazyRows;
+                if (data instanceof WriteRowsEventData) {
+                    rows = ((WriteRowsEventData) event.getData()).getRows();
+                    lazyRows = ((WriteRowsEventData) data).getLazyRows();
+                } else if (data instanceof DeleteRowsEventData) {
+                    rows = ((DeleteRowsEventData) event.getData()).getRows();
+                    lazyRows = ((DeleteRowsEventData) data).getLazyRows();
+                } else if (data instanceof UpdateRowsEventData) {
+                    rows = new ArrayList<Serializable[]>();
+                    for (Map.Entry<Serializable[], Serializable[]> row :
+                            ((UpdateRowsEventData) event.getData()).getRows()) {
+                        rows.add(row.getValue());
+                    }
+                    lazyRows = ((UpdateRowsEventData) data).getLazyRows();
+                } else {
+                    assertEquals(toString(lazyEvent), toString(event));
+                    continue;
+                }
+                assertEquals(lazyRows.size(), rows.size());
+                for (int i = 0; i < rows.size(); i++) {
+                    Serializable[] row = rows.get(i);
+                    assertEquals(lazyRows.getNumberOfColumns(), row.length);
+                    for (int j = 0; j < row.length; j++, numberOfCells++) {
+                        Serializable value = row[j];
+                        assertEquals(lazyRows.isNull(i, j), value == null);
+                        if (value instanceof byte[]) {
+                            assertEquals(lazyRows.getBytes(i, j), value);
+                            assertEquals((byte[]) lazyRows.getObject(i, j), (byte[]) value);
+                        } else {
+                            assertEquals(lazyRows.getObject(i, j), value);
+                        }
+                        if (value instanceof Integer || value instanceof Long) {
+                            assertEquals(lazyRows.getLong(i, j), ((Number) value).longValue());
+                        }
+                    }
+                }
+                assertEquals(toString(lazyEvent), toString(event)); // rows materialized on demand
+            }
+        } finally {
+            eagerInputStream.close();
+            lazyInputStream.close();
+        }
+        assertTrue(numberOfCells > 0);
+    }
+
+    @Test
+    public void testReuseEvents() throws Exception {
+        ByteArrayInputStream inputStream = openBinaryLog(), reusingInputStream = openBinaryLog();
+        int numberOfEvents = 0;
+        try {
+            EventDeserializer eventDeserializer = new EventDeserializer();
+            EventDeserializer reusingEventDeserializer = new EventDeserializer();
+            reusingEventDeserializer.setReuseEvents(true);
+            Event firstEvent = null;
+            for (Event event; (event = eventDeserializer.nextEvent(inputStream)) != null; numberOfEvents++) {
+                Event reusedEvent = reusingEventDeserializer.nextEvent(reusingInputStream);
+                if (firstEvent == null) {
+                    firstEvent = reusedEvent;
+                }
+                assertSame(reusedEvent, firstEvent);
+                assertEquals(toString(reusedEvent), toString(event));
+            }
+        } finally {
+            inputStream.close();
+            reusingInputStream.close();
+        }
+        assertTrue(numberOfEvents > 0);
+    }
+
+    @Test
+    public void testColumnarRows() throws Exception {
+        ColumnarRows columnarRows = new ColumnarRows();
+        ByteArrayInputStream inputStream = openBinaryLog();
+        int numberOfCells = 0;
+        try {
+            EventDeserializer eventDeserializer = new EventDeserializer();
+            eventDeserializer.setDeserializeRowsLazily(true);
+            for (Event event; (event = eventDeserializer.nextEvent(inputStream)) != null; ) {
+                if (!(event.getData() instanceof WriteRowsEventData)) {
+                    continue;
+                }
+                WriteRowsEventData data = event.getData();
+                LazyRows lazyRows = data.getLazyRows();
+                columnarRows.load(lazyRows);
+                assertEquals(columnarRows.size(), lazyRows.size());
+                for (int i = 0; i < lazyRows.size(); i++) {
+                    for (int j = 0; j < lazyRows.getNumberOfColumns(); j++, numberOfCells++) {
+                        Serializable value = lazyRows.getObject(i, j);
+                        assertEquals(columnarRows.isNull(i, j), value == null);
+                        if (value instanceof Integer || value instanceof Long) {
+                            assertEquals(columnarRows.getLong(i, j), ((Number) value).longValue());
+                        } else if (value instanceof Float || value instanceof Double) {
+                            assertEquals(columnarRows.getDouble(i, j), ((Number) value).doubleValue());
+                        }
+                        byte[] bytes = lazyRows.getBytes(i, j);
+                        if (bytes != null) {
+                            int offset = columnarRows.getOffset(i, j);
+                            assertEquals(Arrays.copyOfRange(columnarRows.getBuffer(), offset,
+                                offset + columnarRows.getLength(i, j)), bytes);
+                        }
+                    }
+                }
+            }
+        } finally {
+            inputStream.close();
+        }
+        assertTrue(numberOfCells > 0);
+    }
+
+    @Test
+    public void testLazyRowsHash() throws Exception {
+        ByteArrayInputStream inputStream = openBinaryLog();
+        int numberOfRows = 0;
+        try {
+            EventDeserializer eventDeserializer = new EventDeserializer();
+            eventDeserializer.setDeserializeRowsLazily(true);
+            for (Event event; (event = eventDeserializer.nextEvent(inputStream)) != null; ) {
+                if (!(event.getData() instanceof WriteRowsEventData)) {
+                    continue;
+                }
+                LazyRows lazyRows = ((WriteRowsEventData) event.getData()).getLazyRows();
+                Map<Long, Serializable> hashes = new HashMap<Long, Serializable>();
+                for (int i = 0; i < lazyRows.size(); i++, numberOfRows++) {
+                    long hash = lazyRows.hash(i, 0, -1, false, 0);
+                    assertEquals(lazyRows.hash(i, 0, -1, false, 0), hash);
+                    Serializable value = lazyRows.getObject(i, 0), previous = hashes.put(hash, value);
+                    // equal hashes imply equal values
+                    assertTrue(previous == null || toString(previous).equals(toString(value)));
+                }
+            }
+        } finally {
+            inputStream.close();
+        }
+        assertTrue(numberOfRows > 0);
+    }
+
+    @Test
+    public void testLazyRowsHashMatchesEagerHash() throws Exception {
+        List<Serializable[]> rows = new ArrayList<Serializable[]>();
+        ByteArrayInputStream inputStream = openBinaryLog();
+        try {
+            EventDeserializer eventDeserializer = new EventDeserializer();
+            for (Event event; (event = eventDeserializer.nextEvent(inputStream)) != null; ) {
+                if (event.getData() instanceof WriteRowsEventData) {
+                    rows.addAll(((WriteRowsEventData) event.getData()).getRows());
+                }
+            }
+        } finally {
+            inputStream.close();
+        }
+        int numberOfHashableCells = 0, numberOfCells = 0;
+        inputStream = openBinaryLog();
+        try {
+            EventDeserializer eventDeserializer = new EventDeserializer();
+            eventDeserializer.setDeserializeRowsLazily(true);
+            int rowIndex = 0;
+            for (Event event; (event = eventDeserializer.nextEvent(inputStream)) != null; ) {
+                if (!(event.getData() instanceof WriteRowsEventData)) {
+                    continue;
+                }
+                LazyRows lazyRows = ((WriteRowsEventData) event.getData()).getLazyRows();
+                for (int i = 0; i < lazyRows.size(); i++) {
+                    Serializable[] row = rows.get(rowIndex++);
+                    for (int j = 0; j < row.length; j++, numberOfCells++) {
+                        long seed = 31L * i + j;
+                        long hash = lazyRows.hash(i, j, -1, false, seed);
+                        assertEquals(LazyRows.hash(row[j], -1, false, seed), hash);
+                        assertEquals(LazyRows.hash(row[j], 3, false, seed), lazyRows.hash(i, j, 3, false, seed));
+                        long binaryHash = LazyRows.hash(row[j], -1, true, seed);
+                        // eagerly deserialized (decoded) binary strings are only hashable if they are ASCII
+                        if (binaryHash != LazyRows.UNHASHABLE) {
+                            assertEquals(lazyRows.hash(i, j, -1, true, seed), binaryHash);
+                        }
+                        if (hash != LazyRows.UNHASHABLE) {
+                            numberOfHashableCells++;
+                        }
+                    }
+                }
+            }
+            assertEquals(rowIndex, rows.size());
+        } finally {
+            inputStream.close();
+        }
+        assertTrue(numberOfHashableCells > 0);
+        assertTrue(numberOfCells > numberOfHashableCells); // sakila contains non-ASCII text
+    }
+
+    @Test
+    public void testColumnProjection() throws Exception {
+        ColumnProjection columnProjection = new ColumnProjection();
+        ByteArrayInputStream inputStream = openBinaryLog();
+        try {
+            EventDeserializer eventDeserializer = new EventDeserializer();
+            for (Event event; (event = eventDeserializer.nextEvent(inputStream)) != null; ) {
+                if (event.getData() instanceof TableMapEventData) {
+                    TableMapEventData tableMapEvent = event.getData();
+                    columnProjection.include(tableMapEvent.getDatabase(), tableMapEvent.getTable(), 0, 2);
+                }
+            }
+        } finally {
+            inputStream.close();
+        }
+        for (boolean lazy : new boolean[] {false, true}) {
+            ByteArrayInputStream fullInputStream = openBinaryLog(), projectedInputStream = openBinaryLog();
+            int numberOfRows = 0;
+            try {
+                EventDeserializer fullEventDeserializer = new EventDeserializer();
+                EventDeserializer projectedEventDeserializer = new EventDeserializer();
+                projectedEventDeserializer.setDeserializeRowsLazily(lazy);
+                projectedEventDeserializer.setColumnProjection(columnProjection);
+                for (Event event; (event = fullEventDeserializer.nextEvent(fullInputStream)) != null; ) {
+                    Event projectedEvent = projectedEventDeserializer.nextEvent(projectedInputStream);
+                    if (!(event.getData() instanceof WriteRowsEventData)) {
+                        continue;
+                    }
+                    WriteRowsEventData data = event.getData(), projectedData = projectedEvent.getData();
+                    BitSet includedColumns = data.getIncludedColumns(),
+                        projectedColumns = projectedData.getIncludedColumns();
+                    assertEquals(projectedColumns.cardinality(), Math.min(includedColumns.cardinality(), 2));
+                    for (int i = 0; i < data.getRows().size(); i++, numberOfRows++) {
+                        Serializable[] row = data.getRows().get(i), projectedRow = projectedData.getRows().get(i);
+                        assertEquals(projectedRow.length, projectedColumns.cardinality());
+                        assertEquals(toString(projectedRow[0]), toString(row[0]));
+                        if (projectedRow.length > 1) {
+                            assertEquals(toString(projectedRow[1]), toString(row[2]));
+                        }
+                    }
+                }
+            } finally {
+                fullInputStream.close();
+                projectedInputStream.close();
+            }
+            assertTrue(numberOfRows > 0);
+        }
+    }
+
+    @Test
+    public void testTableFilter() throws Exception {
+        String includedTable = null;
+        ByteArrayInputStream inputStream = openBinaryLog();
+        try {
+            EventDeserializer eventDeserializer = new EventDeserializer();
+            for (Event event; (event = eventDeserializer.nextEvent(inputStream)) != null && includedTable == null; ) {
+                if (event.getData() instanceof TableMapEventData) {
+                    includedTable = ((TableMapEventData) event.getData()).getTable();
+                }
+            }
+        } finally {
+            inputStream.close();
+        }
+        byte[] binaryLog = readFully(new GZIPInputStream(
+            new FileInputStream("src/test/resources/mysql-bin.sakila.gz")));
+        List<String> expected = new ArrayList<String>();
+        EventDeserializer arrayBackedEventDeserializer = new EventDeserializer();
+        arrayBackedEventDeserializer.setTableFilter(new TableFilter().include(".*", includedTable));
+        ByteArrayInputStream arrayBackedInputStream = new ByteArrayInputStream(binaryLog, 4, binaryLog.length - 4);
+        for (Event event; (event = arrayBackedEventDeserializer.nextEvent(arrayBackedInputStream)) != null; ) {
+            expected.add(toString(event));
+        }
+        List<String> actual = new ArrayList<String>();
+        inputStream = openBinaryLog(); // stream-backed
+        int numberOfIncludedEvents = 0, numberOfExcludedEvents = 0;
+        try {
+            EventDeserializer eventDeserializer = new EventDeserializer();
+            eventDeserializer.setTableFilter(new TableFilter().include(".*", includedTable));
+            Map<Long, String> tableById = new HashMap<Long, String>();
+            for (Event event; (event = eventDeserializer.nextEvent(inputStream)) != null; ) {
+                actual.add(toString(event));
+                EventData data = event.getData();
+                if (data instanceof TableMapEventData) {
+                    TableMapEventData tableMapEvent = (TableMapEventData) data;
+                    tableById.put(tableMapEvent.getTableId(), tableMapEvent.getTable());
+                } else if (EventType.isRowMutation(event.getHeader().getEventType())) {
+                    if (data == null) {
+                        numberOfExcludedEvents++;
+                    } else {
+                        assertEquals(tableById.get(((WriteRowsEventData) data).getTableId()), includedTable);
+                        numberOfIncludedEvents++;
+                    }
+                }
+            }
+        } finally {
+            inputStream.close();
+        }
+        assertTrue(numberOfIncludedEvents > 0);
+        assertTrue(numberOfExcludedEvents > 0);
+        assertEquals(actual, expected);
+    }
+
+    @Test
+    public void testTransactionPayload() throws Exception {
+        byte[] binaryLog = readFully(new GZIPInputStream(
+            new FileInputStream("src/test/resources/mysql-bin.sakila.gz")));
+        // BEGIN ... XID (136462 bytes, which is more than a single zstd block)
+        byte[] transaction = Arrays.copyOfRange(binaryLog, 236894, 373356);
+        List<String> expected = new ArrayList<String>();
+        EventDeserializer eventDeserializer = new EventDeserializer();
+        ByteArrayInputStream inputStream = new ByteArrayInputStream(transaction);
+        for (Event event; (event = eventDeserializer.nextEvent(inputStream)) != null; ) {
+            expected.add(toString(event));
+        }
+        assertTrue(expected.size() > 2);
+        byte[] compressedTransaction =
+            readFully(new FileInputStream("src/test/resources/mysql-bin.sakila.payload.zst"));
+        eventDeserializer = new EventDeserializer();
+        Event event = eventDeserializer.nextEvent(new ByteArrayInputStream(transactionPayloadEvent(
+            TransactionPayloadEventData.COMPRESSION_TYPE_ZSTD, compressedTransaction, transaction.length)));
+        assertEquals(event.getHeader().getEventType(), EventType.TRANSACTION_PAYLOAD);
+        TransactionPayloadEventData eventData = event.getData();
+        assertEquals(eventData.getPayloadSize(), compressedTransaction.length);
+        assertEquals(eventData.getUncompressedSize(), transaction.length);
+        for (int i = 0; i < 2; i++) { // second pass reuses decompression buffers
+            List<String> actual = new ArrayList<String>();
+            for (Event embeddedEvent : eventData) {
+                actual.add(toString(embeddedEvent));
+            }
+            assertEquals(actual, expected);
+        }
+        event = eventDeserializer.nextEvent(new ByteArrayInputStream(transactionPayloadEvent(
+            TransactionPayloadEventData.COMPRESSION_TYPE_NONE, transaction, transaction.length)));
+        List<String> actual = new ArrayList<String>();
+        for (Event embeddedEvent : (TransactionPayloadEventData) event.getData()) {
+            actual.add(toString(embeddedEvent));
+        }
+        assertEquals(actual, expected);
+        eventDeserializer.setIncludedEventTypes(EnumSet.of(EventType.TRANSACTION_PAYLOAD, EventType.XID));
+        event = eventDeserializer.nextEvent(new ByteArrayInputStream(transactionPayloadEvent(
+            TransactionPayloadEventData.COMPRESSION_TYPE_ZSTD, compressedTransaction, transaction.length)));
+        actual.clear();
+        for (Event embeddedEvent : (TransactionPayloadEventData) event.getData()) {
+            actual.add(toString(embeddedEvent));
+        }
+        assertEquals(actual, expected.subList(expected.size() - 1, expected.size()));
+    }
+
+    @Test
+    public void testTransactionPayloadWithEventLargerThanRetainedBuffer() throws Exception {
+        byte[] binaryLog = readFully(new GZIPInputStream(
+            new FileInputStream("src/test/resources/mysql-bin.sakila.gz")));
+        byte[] transaction = Arrays.copyOfRange(binaryLog, 236894, 373356); // BEGIN ... XID
+        List<String> expected = new ArrayList<String>();
+        EventDeserializer eventDeserializer = new EventDeserializer();
+        ByteArrayInputStream inputStream = new ByteArrayInputStream(transaction);
+        for (Event event; (event = eventDeserializer.nextEvent(inputStream)) != null; ) {
+            expected.add(toString(event));
+        }
+        // IGNORABLE event (bigger than the reusable buffer) + BEGIN ... XID
+        byte[] data = new byte[PacketBuffer.MAX_RETAINED_CAPACITY * 2];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        payload.writeInteger(0, 4); // timestamp
+        payload.write(EventType.IGNORABLE.ordinal());
+        payload.writeInteger(1, 4); // server id
+        payload.writeInteger(19 + data.length, 4);
+        payload.writeInteger(0, 4); // next position
+        payload.writeInteger(0, 2); // flags
+        payload.write(data);
+        payload.write(transaction);
+        byte[] uncompressedPayload = payload.toByteArray();
+        eventDeserializer = new EventDeserializer();
+        eventDeserializer.setEventDataDeserializer(EventType.IGNORABLE, new ByteArrayEventDataDeserializer());
+        Event event = eventDeserializer.nextEvent(new ByteArrayInputStream(transactionPayloadEvent(
+            TransactionPayloadEventData.COMPRESSION_TYPE_ZSTD, zstdFrame(uncompressedPayload),
+            uncompressedPayload.length)));
+        for (int i = 0; i < 2; i++) { // second pass reuses decompression buffers
+            Iterator<Event> iterator = ((TransactionPayloadEventData) event.getData()).iterator();
+            assertEquals(((ByteArrayEventData) iterator.next().getData()).getData(), data);
+            List<String> actual = new ArrayList<String>();
+            while (iterator.hasNext()) {
+                actual.add(toString(iterator.next()));
+            }
+            assertEquals(actual, expected);
+        }
+    }
+
+    /**
+     * @return Zstandard frame made of raw (uncompressed) blocks
+     */
+    private static byte[] zstdFrame(byte[] content) throws IOException {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        result.writeInteger(0xFD2FB528, 4); // magic number
+        result.write(0); // frame header descriptor (no content size, no checksum)
+        result.write(7 << 3); // window descriptor (128K)
+        int maxBlockSize = 1 << 17;
+        for (int offset = 0; offset < content.length; offset += maxBlockSize) {
+            int blockSize = Math.min(maxBlockSize, content.length - offset);
+            boolean lastBlock = offset + blockSize == content.length;
+            result.writeInteger(blockSize << 3 | (lastBlock ? 1 : 0), 3); // raw block
+            result.write(content, offset, blockSize);
+        }
+        return result.toByteArray();
+    }
+
+    private static byte[] transactionPayloadEvent(int compressionType, byte[] payload, int uncompressedSize)
+            throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        body.write(1); // payload size
+        body.write(4);
+        body.write(253);
+        body.writeInteger(payload.length, 3);
+        body.write(2); // compression type
+        body.write(3);
+        body.write(252);
+        body.writeInteger(compressionType, 2);
+        body.write(3); // uncompressed size
+        body.write(4);
+        body.write(253);
+        body.writeInteger(uncompressedSize, 3);
+        body.write(0); // end of header
+        body.write(payload);
+        byte[] eventBody = body.toByteArray();
+        ByteArrayOutputStream event = new ByteArrayOutputStream();
+        event.writeInteger(0, 4); // timestamp
+        event.write(EventType.TRANSACTION_PAYLOAD.ordinal());
+        event.writeInteger(1, 4); // server id
+        event.writeInteger(19 + eventBody.length, 4);
+        event.writeInteger(0, 4); // next position
+        event.writeInteger(0, 2); // flags
+        event.write(eventBody);
+        return event.toByteArray();
+    }
+
+    @Test
+    public void testChecksumVerification() throws Exception {
+        byte[] binaryLog = readFully(new FileInputStream("src/test/resources/mysql-bin.checksum-crc32"));
+        EventDeserializer eventDeserializer = new EventDeserializer();
+        eventDeserializer.setVerifyChecksums(true);
+        BinaryLogFileReader reader = new BinaryLogFileReader(new java.io.ByteArrayInputStream(binaryLog),
+            eventDeserializer);
+        int numberOfEvents = 0;
+        while (reader.readEvent() != null) {
+            numberOfEvents++;
+        }
+        assertEquals(numberOfEvents, 303);
+        assertEquals(eventDeserializer.getNumberOfVerifiedChecksums(), 302); // FORMAT_DESCRIPTION excluded
+        assertEquals(eventDeserializer.getNumberOfChecksumMismatches(), 0);
+        assertTrue(eventDeserializer.getChecksumVerificationTime() > 0);
+        binaryLog[binaryLog.length / 2] ^= 0x10;
+        eventDeserializer = new EventDeserializer();
+        eventDeserializer.setVerifyChecksums(true);
+        reader = new BinaryLogFileReader(new java.io.ByteArrayInputStream(binaryLog), eventDeserializer);
+        numberOfEvents = 0;
+        int numberOfMismatches = 0;
+        while (true) {
+            try {
+                if (reader.readEvent() == null) {
+                    break;
+                }
+                numberOfEvents++;
+            } catch (EventChecksumMismatchException e) {
+                assertTrue(e.getExpectedChecksum() != e.getActualChecksum());
+                numberOfMismatches++;
+            }
+        }
+        assertEquals(numberOfEvents, 302);
+        assertEquals(numberOfMismatches, 1);
+        assertEquals(eventDeserializer.getNumberOfChecksumMismatches(), 1);
+    }
+
+    @Test
+    public void testChecksumVerificationOfChunkedInput() throws Exception {
+        byte[] binaryLog = readFully(new FileInputStream("src/test/resources/mysql-bin.checksum-crc32"));
+        List<String> expected = new ArrayList<String>();
+        EventDeserializer eventDeserializer = new EventDeserializer();
+        ByteArrayInputStream inputStream = new ByteArrayInputStream(binaryLog, 4, binaryLog.length - 4);
+        for (Event event; (event = eventDeserializer.nextEvent(inputStream)) != null; ) {
+            expected.add(toString(event));
+        }
+        assertEquals(expected.size(), 303);
+        eventDeserializer = new EventDeserializer();
+        eventDeserializer.setVerifyChecksums(true);
+        inputStream = new ByteArrayInputStream(new CompositeInputStream(chunks(binaryLog, 4, 997)));
+        List<String> actual = new ArrayList<String>();
+        for (Event event; (event = eventDeserializer.nextEvent(inputStream)) != null; ) {
+            actual.add(toString(event));
+        }
+        assertEquals(actual, expected);
+        assertEquals(eventDeserializer.getNumberOfVerifiedChecksums(), 302); // FORMAT_DESCRIPTION excluded
+        assertEquals(eventDeserializer.getNumberOfUnverifiedChecksums(), 0);
+        // stream that can't be rewound
+        eventDeserializer = new EventDeserializer();
+        eventDeserializer.setVerifyChecksums(true);
+        inputStream = new ByteArrayInputStream(new java.io.ByteArrayInputStream(binaryLog, 4, binaryLog.length - 4));
+        while (eventDeserializer.nextEvent(inputStream) != null) {
+            continue;
+        }
+        assertEquals(eventDeserializer.getNumberOfVerifiedChecksums(), 0);
+        assertEquals(eventDeserializer.getNumberOfUnverifiedChecksums(), 302);
+        // corrupted
+        binaryLog[binaryLog.length / 2] ^= 0x10;
+        eventDeserializer = new EventDeserializer();
+        eventDeserializer.setVerifyChecksums(true);
+        inputStream = new ByteArrayInputStream(new CompositeInputStream(chunks(binaryLog, 4, 997)));
+        int numberOfEvents = 0;
+        int numberOfMismatches = 0;
+        while (true) {
+            try {
+                if (eventDeserializer.nextEvent(inputStream) == null) {
+                    break;
+                }
+                numberOfEvents++;
+            } catch (EventChecksumMismatchException e) {
+                numberOfMismatches++;
+            }
+        }
+        assertEquals(numberOfEvents, 302);
+        assertEquals(numberOfMismatches, 1);
+    }
+
+    private static List<byte[]> chunks(byte[] bytes, int offset, int chunkSize) {
+        List<byte[]> result = new ArrayList<byte[]>();
+        for (int i = offset; i < bytes.length; i += chunkSize) {
+            result.add(Arrays.copyOfRange(bytes, i, Math.min(i + chunkSize, bytes.length)));
+        }
+        return result;
+    }
+
+    @Test
+    public void testIncludedEventTypes() throws Exception {
+        EnumSet<EventType> includedEventTypes = EnumSet.of(EventType.ROTATE, EventType.XID, EventType.EXT_WRITE_ROWS);
+        List<String> expected = new ArrayList<String>();
+        int numberOfEvents = 0;
+        ByteArrayInputStream inputStream = openBinaryLog();
+        try {
+            EventDeserializer eventDeserializer = new EventDeserializer();
+            for (Event event; (event = eventDeserializer.nextEvent(inputStream)) != null; numberOfEvents++) {
+                if (includedEventTypes.contains(event.getHeader().getEventType())) {
+                    expected.add(toString(event));
+                }
+            }
+        } finally {
+            inputStream.close();
+        }
+        assertTrue(expected.size() > 2);
+        assertTrue(expected.size() < numberOfEvents);
+        // stream-backed
+        EventDeserializer eventDeserializer = new EventDeserializer();
+        eventDeserializer.setIncludedEventTypes(includedEventTypes);
+        List<String> actual = new ArrayList<String>();
+        inputStream = openBinaryLog();
+        try {
+            for (Event event; (event = eventDeserializer.nextEvent(inputStream)) != null; ) {
+                actual.add(toString(event));
+            }
+        } finally {
+            inputStream.close();
+        }
+        assertEquals(actual, expected);
+        // array-backed (bulk skip)
+        eventDeserializer = new EventDeserializer();
+        eventDeserializer.setIncludedEventTypes(includedEventTypes);
+        actual.clear();
+        BinaryLogFileReader reader = new BinaryLogFileReader(new GZIPInputStream(
+            new FileInputStream("src/test/resources/mysql-bin.sakila.gz")), eventDeserializer);
+        try {
+            for (Event event; (event = reader.readEvent()) != null; ) {
+                actual.add(toString(event));
+            }
+        } finally {
+            reader.close();
+        }
+        assertEquals(actual, expected);
+        // header-only events
+        eventDeserializer.setReturnHeadersOfExcludedEvents(true);
+        int numberOfIncludedEvents = 0;
+        reader = new BinaryLogFileReader(new GZIPInputStream(
+            new FileInputStream("src/test/resources/mysql-bin.sakila.gz")), eventDeserializer);
+        try {
+            int i = 0;
+            for (Event event; (event = reader.readEvent()) != null; i++) {
+                if (includedEventTypes.contains(event.getHeader().getEventType())) {
+                    assertEquals(toString(event), expected.get(numberOfIncludedEvents++));
+                } else {
+                    assertEquals(event.getData(), null);
+                }
+            }
+            assertEquals(i, numberOfEvents);
+        } finally {
+            reader.close();
+        }
+        assertEquals(numberOfIncludedEvents, expected.size());
+    }
+
+    @Test
+    public void testRequiredEventTypes() throws Exception {
+        List<String> expected = new ArrayList<String>();
+        BinaryLogFileReader reader = new BinaryLogFileReader(
+            new FileInputStream("src/test/resources/mysql-bin.checksum-crc32"));
+        try {
+            for (Event event; (event = reader.readEvent()) != null; ) {
+                EventType eventType = event.getHeader().getEventType();
+                if (eventType == EventType.ROTATE || eventType == EventType.XID) {
+                    expected.add(toString(event));
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        EventDeserializer eventDeserializer = new EventDeserializer();
+        eventDeserializer.setIncludedEventTypes(EnumSet.of(EventType.XID));
+        eventDeserializer.setRequiredEventTypes(EnumSet.of(EventType.ROTATE));
+        assertTrue(eventDeserializer.isIncluded(EventType.XID));
+        assertFalse(eventDeserializer.isIncluded(EventType.ROTATE));
+        List<String> actual = new ArrayList<String>();
+        Event lastEvent = null;
+        reader = new BinaryLogFileReader(new FileInputStream("src/test/resources/mysql-bin.checksum-crc32"),
+            eventDeserializer);
+        try {
+            for (Event event; (event = reader.readEvent()) != null; lastEvent = event) {
+                actual.add(toString(event));
+            }
+        } finally {
+            reader.close();
+        }
+        assertEquals(actual, expected);
+        // excluded but still deserialized
+        assertEquals(lastEvent.getHeader().getEventType(), EventType.ROTATE);
+        assertTrue(lastEvent.getData() instanceof RotateEventData);
+    }
+
+    @Test
+    public void testRowListener() throws Exception {
+        List<String> expected = new ArrayList<String>();
+        ByteArrayInputStream inputStream = openBinaryLog();
+        try {
+            EventDeserializer eventDeserializer = new EventDeserializer();
+            for (Event event; (event = eventDeserializer.nextEvent(inputStream)) != null; ) {
+                EventData eventData = event.getData();
+                if (eventData instanceof WriteRowsEventData) {
+                    for (Serializable[] row : ((WriteRowsEventData) eventData).getRows()) {
+                        expected.add("WRITE " + Arrays.deepToString(row));
+                    }
+                } else if (eventData instanceof UpdateRowsEventData) {
+                    for (Map.Entry<Serializable[], Serializable[]> row : ((UpdateRowsEventData) eventData).getRows()) {
+                        expected.add("UPDATE_BEFORE " + Arrays.deepToString(row.getKey()));
+                        expected.add("UPDATE_AFTER " + Arrays.deepToString(row.getValue()));
+                    }
+                } else if (eventData instanceof DeleteRowsEventData) {
+                    for (Serializable[] row : ((DeleteRowsEventData) eventData).getRows()) {
+                        expected.add("DELETE " + Arrays.deepToString(row));
+                    }
+                }
+            }
+        } finally {
+            inputStream.close();
+        }
+        assertTrue(expected.size() > 1000);
+        final List<String> actual = new ArrayList<String>();
+        EventDeserializer eventDeserializer = new EventDeserializer();
+        eventDeserializer.setRowListener(new RowListener() {
+
+            @Override
+            public void onRow(TableMapEventData tableMapEvent, BitSet includedColumns, RowView row) {
+                assertEquals(row.getNumberOfColumns(), includedColumns.cardinality());
+                actual.add(row.getType() + " " + Arrays.deepToString(row.toArray()));
+            }
+        });
+        int numberOfRowsEvents = 0;
+        BinaryLogFileReader reader = new BinaryLogFileReader(new GZIPInputStream(
+            new FileInputStream("src/test/resources/mysql-bin.sakila.gz")), eventDeserializer);
+        try {
+            for (Event event; (event = reader.readEvent()) != null; ) {
+                EventData eventData = event.getData();
+                if (eventData instanceof WriteRowsEventData) {
+                    assertTrue(((WriteRowsEventData) eventData).getRows().isEmpty());
+                    numberOfRowsEvents++;
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        assertTrue(numberOfRowsEvents > 0);
+        assertEquals(actual, expected);
+        // stream-backed
+        actual.clear();
+        inputStream = openBinaryLog();
+        try {
+            while (eventDeserializer.nextEvent(inputStream) != null) {
+                continue;
+            }
+        } finally {
+            inputStream.close();
+        }
+        assertEquals(actual, expected);
+        // chunks (>16MB packet)
+        actual.clear();
+        byte[] binaryLog = readFully(new GZIPInputStream(
+            new FileInputStream("src/test/resources/mysql-bin.sakila.gz")));
+        inputStream = new ByteArrayInputStream(new CompositeInputStream(chunks(binaryLog, 4, 4093)));
+        while (eventDeserializer.nextEvent(inputStream) != null) {
+            continue;
+        }
+        assertEquals(actual, expected);
+        // executor is not used (rows are delivered by the calling thread, in binlog order)
+        actual.clear();
+        inputStream = openBinaryLog();
+        try {
+            Executor executor = new Executor() {
+
+                @Override
+                public void execute(Runnable command) {
+                    throw new AssertionError();
+                }
+            };
+            while (eventDeserializer.nextEvent(inputStream, executor) != null) {
+                continue;
+            }
+        } finally {
+            inputStream.close();
+        }
+        assertEquals(actual, expected);
+    }
+
+    private static byte[] readFully(InputStream inputStream) throws IOException {
+        try {
+            java.io.ByteArrayOutputStream result = new java.io.ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            for (int read; (read = inputStream.read(buffer)) != -1; ) {
+                result.write(buffer, 0, read);
+            }
+            return result.toByteArray();
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    private static String toString(Serializable value) {
+        return value instanceof byte[] ? Arrays.toString((byte[]) value) : String.valueOf(value);
+    }
+
+    private static String toString(Event event) {
+        return event.toString().replaceAll("\\[B@[0-9a-f]+", "[B"); // byte[]'s identity hash codes
+    }
+
+    private static ByteArrayInputStream openBinaryLog() throws IOException {
+        ByteArrayInputStream inputStream = new ByteArrayInputStream(new GZIPInputStream(
+            new FileInputStream("src/test/resources/mysql-bin.sakila.gz")));
+        inputStream.skip(4); // magic header
+        return inputStream;
+    }
+
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2017 Juan Olivares
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog.event.deserialization;
+
+import com.github.shyiko.mysql.binlog.event.GtidEventData;
+import com.github.shyiko.mysql.binlog.io.ByteArrayInputStream;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * @author <a href="mailto:stanley.shyiko@gmail.com">Stanley Shyiko</a>
+ */
+public class GtidEventDataDeserializerTest {
+
+    private static final byte[] DATA = {1, -75, -51, 22, 36, 95, 48, 17, -28, -76, -23, 16, 81, 114, 27, -46, 65,
+        -16, 15, 108, 0, 0, 0, 0, 0};
+
+    @Test
+    public void testDeserialize() throws Exception {
+        GtidEventData eventData = new GtidEventDataDeserializer().deserialize(new ByteArrayInputStream(DATA));
+        assertEquals(eventData.getFlags(), GtidEventData.COMMIT_FLAG);
+        assertEquals(eventData.getTransactionId(), 7081968);
+        assertEquals(eventData.getSourceId().toString(), "b5cd1624-5f30-11e4-b4e9-1051721bd241");
+        assertEquals(eventData.getGtid(), "b5cd1624-5f30-11e4-b4e9-1051721bd241:7081968");
+        GtidEventData copy = new GtidEventData();
+        copy.setGtid(eventData.getGtid());
+        assertEquals(copy.getSourceIdMostSignificantBits(), eventData.getSourceIdMostSignificantBits());
+        assertEquals(copy.getSourceIdLeastSignificantBits(), eventData.getSourceIdLeastSignificantBits());
+        assertEquals(copy.getTransactionId(), eventData.getTransactionId());
+        assertEquals(eventData.getLastCommitted(), 0);
+        assertEquals(eventData.getSequenceNumber(), 0);
+    }
+
+    @Test
+    public void testDeserializeLogicalClock() throws Exception {
+        byte[] data = Arrays.copyOf(DATA, DATA.length + 1 + 8 + 8);
+        data[DATA.length] = 2;
+        data[DATA.length + 1] = 5;
+        data[DATA.length + 1 + 8] = 7;
+        GtidEventData eventData = new GtidEventDataDeserializer().deserialize(new ByteArrayInputStream(data));
+        assertEquals(eventData.getGtid(), "b5cd1624-5f30-11e4-b4e9-1051721bd241:7081968");
+        assertEquals(eventData.getLastCommitted(), 5);
+        assertEquals(eventData.getSequenceNumber(), 7);
+    }
+
+}
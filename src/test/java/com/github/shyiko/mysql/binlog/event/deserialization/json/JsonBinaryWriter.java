@@ -0,0 +1,145 @@
+/*
+ * Copyright 2018 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog.event.deserialization.json;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encodes Map (object) / List (array) / String / Integer / Long / Double / Boolean / null into MySQL binary JSON
+ * format (the same way MySQL does it, that is, with object keys sorted by length and then by bytes).
+ *
+ * @author <a href="mailto:stanley.shyiko@gmail.com">Stanley Shyiko</a>
+ */
+final class JsonBinaryWriter {
+
+    private static final Comparator<byte[]> KEY_ORDER = new Comparator<byte[]>() {
+
+        @Override
+        public int compare(byte[] o1, byte[] o2) {
+            if (o1.length != o2.length) {
+                return o1.length - o2.length;
+            }
+            for (int i = 0; i < o1.length; i++) {
+                int comparison = (o1[i] & 0xFF) - (o2[i] & 0xFF);
+                if (comparison != 0) {
+                    return comparison;
+                }
+            }
+            return 0;
+        }
+    };
+
+    private JsonBinaryWriter() {
+    }
+
+    /**
+     * @param large true if large (4-byte offsets) containers should be used, false otherwise
+     */
+    @SuppressWarnings("unchecked")
+    static byte[] encode(Object value, boolean large) throws IOException {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        int indexSize = large ? 4 : 2;
+        if (value instanceof Map || value instanceof List) {
+            boolean object = value instanceof Map;
+            List<byte[]> keys = new ArrayList<byte[]>();
+            List<Object> values = new ArrayList<Object>();
+            if (object) {
+                Map<String, Object> map = (Map<String, Object>) value;
+                for (String key : map.keySet()) {
+                    keys.add(key.getBytes("UTF-8"));
+                }
+                Collections.sort(keys, KEY_ORDER);
+                for (byte[] key : keys) {
+                    values.add(map.get(new String(key, "UTF-8")));
+                }
+            } else {
+                values.addAll((List<Object>) value);
+            }
+            int headerSize = 2 * indexSize + keys.size() * (indexSize + 2) + values.size() * (1 + indexSize);
+            ByteArrayOutputStream header = new ByteArrayOutputStream();
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            for (byte[] key : keys) {
+                writeInt(header, headerSize + body.size(), indexSize);
+                writeInt(header, key.length, 2);
+                body.write(key);
+            }
+            for (Object element : values) {
+                if (element == null || element instanceof Boolean) {
+                    header.write(ValueType.LITERAL.getCode());
+                    writeInt(header, element == null ? 0 : (Boolean) element ? 1 : 2, indexSize);
+                } else if (element instanceof Integer) {
+                    header.write((large ? ValueType.INT32 : ValueType.INT16).getCode());
+                    writeInt(header, (Integer) element, indexSize);
+                } else {
+                    byte[] bytes = encode(element, large);
+                    header.write(bytes[0]);
+                    writeInt(header, headerSize + body.size(), indexSize);
+                    body.write(bytes, 1, bytes.length - 1);
+                }
+            }
+            result.write((object ? large ? ValueType.LARGE_DOCUMENT : ValueType.SMALL_DOCUMENT :
+                large ? ValueType.LARGE_ARRAY : ValueType.SMALL_ARRAY).getCode());
+            writeInt(result, values.size(), indexSize);
+            writeInt(result, headerSize + body.size(), indexSize);
+            header.writeTo(result);
+            body.writeTo(result);
+        } else if (value instanceof String) {
+            byte[] bytes = ((String) value).getBytes("UTF-8");
+            result.write(ValueType.STRING.getCode());
+            int length = bytes.length;
+            while (length > 0x7F) {
+                result.write(0x80 | (length & 0x7F));
+                length >>>= 7;
+            }
+            result.write(length);
+            result.write(bytes);
+        } else if (value instanceof Integer) {
+            result.write(ValueType.INT32.getCode());
+            writeInt(result, (Integer) value, 4);
+        } else if (value instanceof Long) {
+            result.write(ValueType.INT64.getCode());
+            writeLong(result, (Long) value);
+        } else if (value instanceof Double) {
+            result.write(ValueType.DOUBLE.getCode());
+            writeLong(result, Double.doubleToLongBits((Double) value));
+        } else if (value == null || value instanceof Boolean) {
+            result.write(ValueType.LITERAL.getCode());
+            result.write(value == null ? 0 : (Boolean) value ? 1 : 2);
+        } else {
+            throw new IllegalArgumentException("Unsupported value " + value);
+        }
+        return result.toByteArray();
+    }
+
+    private static void writeInt(ByteArrayOutputStream outputStream, int value, int size) {
+        for (int i = 0; i < size; i++) {
+            outputStream.write((value >>> (i << 3)) & 0xFF);
+        }
+    }
+
+    private static void writeLong(ByteArrayOutputStream outputStream, long value) {
+        for (int i = 0; i < 8; i++) {
+            outputStream.write((int) (value >>> (i << 3)) & 0xFF);
+        }
+    }
+
+}
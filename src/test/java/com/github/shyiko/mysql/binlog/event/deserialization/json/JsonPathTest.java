@@ -0,0 +1,138 @@
+/*
+ * Copyright 2018 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog.event.deserialization.json;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+/**
+ * @author <a href="mailto:stanley.shyiko@gmail.com">Stanley Shyiko</a>
+ */
+public class JsonPathTest {
+
+    @Test
+    public void testParse() throws Exception {
+        JsonPath path = JsonPath.parse(" $.tenant_id[2].\"a \\\"b\\\" c\" [ 10 ]");
+        assertEquals(path.size(), 4);
+        assertEquals(new String(path.getKey(0), "UTF-8"), "tenant_id");
+        assertEquals(path.getIndex(1), 2);
+        assertEquals(new String(path.getKey(2), "UTF-8"), "a \"b\" c");
+        assertEquals(path.getIndex(3), 10);
+        assertEquals(JsonPath.parse("$").size(), 0);
+        for (String invalid : new String[] {"", "tenant_id", "$.", "$.*", "$**.a", "$[*]", "$[last]", "$[-1]",
+                "$[1", "$.\"a", "$ a"}) {
+            try {
+                JsonPath.parse(invalid);
+                fail("\"" + invalid + "\" should have been rejected");
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+    @DataProvider
+    public Object[][] containers() {
+        return new Object[][] {{false}, {true}};
+    }
+
+    @Test(dataProvider = "containers")
+    public void testExtract(boolean large) throws Exception {
+        Map<String, Object> tenant = new LinkedHashMap<String, Object>();
+        tenant.put("id", 42);
+        tenant.put("name", "\u00e9\u65e5");
+        tenant.put("tags", Arrays.<Object>asList("a", null, 7L, 1.5d, true));
+        Map<String, Object> document = new LinkedHashMap<String, Object>();
+        document.put("tenant_id", "acme");
+        document.put("tenant", tenant);
+        document.put("z", false);
+        document.put("empty", new LinkedHashMap<String, Object>());
+        document.put("\u65e5", -3);
+        byte[] bytes = JsonBinaryWriter.encode(document, large);
+        assertEquals(JsonBinary.extract(bytes, JsonPath.parse("$.tenant_id")), "acme");
+        assertEquals(JsonBinary.extract(bytes, JsonPath.parse("$.tenant.id")), 42);
+        assertEquals(JsonBinary.extract(bytes, JsonPath.parse("$.tenant.name")), "\u00e9\u65e5");
+        assertEquals(JsonBinary.extract(bytes, JsonPath.parse("$.tenant.tags[0]")), "a");
+        assertNull(JsonBinary.extract(bytes, JsonPath.parse("$.tenant.tags[1]")));
+        assertEquals(JsonBinary.extract(bytes, JsonPath.parse("$.tenant.tags[2]")), 7L);
+        assertEquals(JsonBinary.extract(bytes, JsonPath.parse("$.tenant.tags[3]")), 1.5d);
+        assertEquals(JsonBinary.extract(bytes, JsonPath.parse("$.tenant.tags[4]")), true);
+        assertEquals(JsonBinary.extract(bytes, JsonPath.parse("$.z")), false);
+        assertEquals(JsonBinary.extract(bytes, JsonPath.parse("$.\"\u65e5\"")), -3);
+        assertEquals(JsonBinary.extract(bytes, JsonPath.parse("$.empty")), "{}");
+        assertEquals(JsonBinary.extract(bytes, JsonPath.parse("$.tenant.tags")), "[\"a\",null,7,1.5,true]");
+        assertEquals(JsonBinary.extract(bytes, JsonPath.parse("$")), JsonBinary.parseAsString(bytes));
+        // scalars are treated as single-element arrays (same as MySQL does)
+        assertEquals(JsonBinary.extract(bytes, JsonPath.parse("$.tenant_id[0]")), "acme");
+        assertNull(JsonBinary.extract(bytes, JsonPath.parse("$.tenant_id[1]")));
+        assertNull(JsonBinary.extract(bytes, JsonPath.parse("$.tenant.tags[5]")));
+        assertNull(JsonBinary.extract(bytes, JsonPath.parse("$.tenant.tags.a")));
+        assertNull(JsonBinary.extract(bytes, JsonPath.parse("$.tenant_id.a")));
+        assertNull(JsonBinary.extract(bytes, JsonPath.parse("$.missing")));
+        assertNull(JsonBinary.extract(bytes, JsonPath.parse("$.tenant.idx")));
+        assertNull(JsonBinary.extract(bytes, JsonPath.parse("$.empty.a")));
+    }
+
+    @Test
+    public void testExtractFromLargeObject() throws Exception {
+        Random random = new Random(0);
+        Map<String, Object> document = new LinkedHashMap<String, Object>();
+        List<String> keys = new ArrayList<String>();
+        for (int i = 0; i < 500; i++) {
+            String key = Integer.toString(random.nextInt(100000), 2 + random.nextInt(35));
+            keys.add(key);
+            document.put(key, i % 3 == 0 ? (Object) key : i);
+        }
+        for (boolean large : new boolean[] {false, true}) {
+            byte[] bytes = JsonBinaryWriter.encode(document, large);
+            for (String key : keys) {
+                assertEquals(JsonBinary.extract(bytes, JsonPath.parse("$.\"" + key + "\"")), document.get(key));
+            }
+        }
+    }
+
+    @Test
+    public void testExtractIntoFormatter() throws Exception {
+        Map<String, Object> document = new LinkedHashMap<String, Object>();
+        document.put("a", Arrays.<Object>asList(1, "\u00e9"));
+        byte[] bytes = JsonBinaryWriter.encode(document, false);
+        byte[] array = new byte[bytes.length + 2];
+        System.arraycopy(bytes, 0, array, 1, bytes.length);
+        JsonStringFormatter formatter = new JsonStringFormatter();
+        assertTrue(JsonBinary.extract(array, 1, bytes.length, JsonPath.parse("$.a"), formatter));
+        assertEquals(formatter.getString(), "[1,\"\u00e9\"]");
+        formatter = new JsonStringFormatter();
+        assertTrue(JsonBinary.extract(array, 1, bytes.length, JsonPath.parse("$.a[0]"), formatter));
+        assertEquals(formatter.getString(), "1");
+        assertFalse(JsonBinary.extract(array, 1, bytes.length, JsonPath.parse("$.b"), formatter));
+        Serializable value = JsonBinary.extract(array, 1, bytes.length, JsonPath.parse("$.a[1]"));
+        assertEquals(value, "\u00e9");
+    }
+
+}
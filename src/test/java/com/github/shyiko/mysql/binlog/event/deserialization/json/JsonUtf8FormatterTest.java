@@ -0,0 +1,132 @@
+/*
+ * Copyright 2018 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog.event.deserialization.json;
+
+import com.github.shyiko.mysql.binlog.io.ByteArrayInputStream;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.fail;
+
+/**
+ * @author <a href="mailto:stanley.shyiko@gmail.com">Stanley Shyiko</a>
+ */
+public class JsonUtf8FormatterTest {
+
+    // keys are sorted (by length and then by bytes) the way MySQL does it
+    private static final String EXPECTED = "{\"long\":-9223372036854775808," +
+        "\"\u00e9\u65e5\":[true,false,null,-2,1.5,\"\u00e9\u65e5\ud83d\ude00\"]," +
+        "\"nested\":{\"\":\"\"},\"key \\\"1\\\"\":\"line\\nbreak\\t\\u0001\"}";
+
+    @Test
+    public void testMatchesJsonStringFormatter() throws Exception {
+        byte[] document = document();
+        assertEquals(JsonBinary.parseAsString(document), EXPECTED);
+        assertEquals(new String(format(document, 8192), "UTF-8"), EXPECTED);
+        // output larger than the buffer
+        assertEquals(new String(format(document, 16), "UTF-8"), EXPECTED);
+    }
+
+    @Test
+    public void testStreamBackedDocument() throws Exception {
+        byte[] document = document();
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        JsonUtf8Formatter formatter = new JsonUtf8Formatter(outputStream, 16);
+        // no backing array (keys and values are passed as Strings)
+        new JsonBinary(new ByteArrayInputStream(new java.io.ByteArrayInputStream(document))).parse(formatter);
+        formatter.flush();
+        assertEquals(new String(outputStream.toByteArray(), "UTF-8"), EXPECTED);
+    }
+
+    @Test
+    public void testDocumentWithinLargerArray() throws Exception {
+        byte[] document = document();
+        byte[] bytes = new byte[document.length + 7];
+        Arrays.fill(bytes, (byte) '"');
+        System.arraycopy(document, 0, bytes, 3, document.length);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        JsonUtf8Formatter formatter = new JsonUtf8Formatter(outputStream);
+        JsonBinary.parse(bytes, 3, document.length, formatter);
+        formatter.flush();
+        assertEquals(new String(outputStream.toByteArray(), "UTF-8"), EXPECTED);
+    }
+
+    @Test
+    public void testExceptionIsDeferredTillFlush() throws Exception {
+        final IOException exception = new IOException();
+        JsonUtf8Formatter formatter = new JsonUtf8Formatter(new OutputStream() {
+
+            @Override
+            public void write(int b) throws IOException {
+                throw exception;
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                throw exception;
+            }
+        }, 16);
+        JsonBinary.parse(document(), formatter);
+        try {
+            formatter.flush();
+            fail();
+        } catch (IOException e) {
+            assertSame(e, exception);
+        }
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        formatter.reset(outputStream);
+        JsonBinary.parse(document(), formatter);
+        formatter.flush();
+        assertEquals(new String(outputStream.toByteArray(), "UTF-8"), EXPECTED);
+    }
+
+    private static byte[] format(byte[] document, int bufferSize) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        JsonUtf8Formatter formatter = new JsonUtf8Formatter(outputStream, bufferSize);
+        JsonBinary.parse(document, formatter);
+        formatter.flush();
+        return outputStream.toByteArray();
+    }
+
+    private static byte[] document() throws IOException {
+        Map<String, Object> nested = new LinkedHashMap<String, Object>();
+        nested.put("", "");
+        List<Object> array = new ArrayList<Object>();
+        array.add(true);
+        array.add(false);
+        array.add(null);
+        array.add(-2);
+        array.add(1.5d);
+        array.add("\u00e9\u65e5\ud83d\ude00");
+        Map<String, Object> object = new LinkedHashMap<String, Object>();
+        object.put("key \"1\"", "line\nbreak\t\u0001");
+        object.put("\u00e9\u65e5", array);
+        object.put("long", Long.MIN_VALUE);
+        object.put("nested", nested);
+        return JsonBinaryWriter.encode(object, false);
+    }
+
+}
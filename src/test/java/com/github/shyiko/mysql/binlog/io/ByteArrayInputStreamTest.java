@@ -0,0 +1,149 @@
+/*
+ * Copyright 2018 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog.io;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.EOFException;
+import java.nio.charset.Charset;
+import java.util.BitSet;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+/**
+ * @author <a href="mailto:stanley.shyiko@gmail.com">Stanley Shyiko</a>
+ */
+public class ByteArrayInputStreamTest {
+
+    private static final byte[] BYTES = new byte[] {
+        0x01, 0x02, 0x03, 0x04, (byte) 0xFF, (byte) 0xFE, (byte) 0xFD, (byte) 0xFC, (byte) 0xFB, (byte) 0xFA,
+        (byte) 0xFC, 0x10, 0x20, 'a', 'b', 0, 0x05, 0x41
+    };
+
+    @DataProvider
+    public Object[][] streams() {
+        byte[] padded = new byte[BYTES.length + 3];
+        System.arraycopy(BYTES, 0, padded, 2, BYTES.length);
+        return new Object[][] {
+            {new ByteArrayInputStream(new java.io.ByteArrayInputStream(BYTES))},
+            {new ByteArrayInputStream(BYTES)},
+            {new ByteArrayInputStream(padded, 2, BYTES.length)}
+        };
+    }
+
+    @Test(dataProvider = "streams")
+    public void testReads(ByteArrayInputStream in) throws Exception {
+        assertEquals(in.peek(), 0x01);
+        assertEquals(in.readInteger(2), 0x0201);
+        assertEquals(in.readInteger(2), 0x0403);
+        assertEquals(in.readLong(6), 0xFAFBFCFDFEFFL);
+        assertEquals(in.readPackedInteger(), 0x2010);
+        assertEquals(in.readZeroTerminatedString(), "ab");
+        assertEquals(in.available(), 2);
+        BitSet bitSet = in.readBitSet(3, true);
+        assertEquals(bitSet.cardinality(), 2);
+        assertEquals(bitSet.nextSetBit(0), 0);
+        assertEquals(bitSet.nextSetBit(1), 2);
+        assertEquals(in.read(), 0x41);
+        assertEquals(in.peek(), -1);
+        try {
+            in.read();
+            fail();
+        } catch (EOFException e) {
+            // expected
+        }
+    }
+
+    @Test(dataProvider = "streams")
+    public void testBlock(ByteArrayInputStream in) throws Exception {
+        in.skip(1);
+        in.enterBlock(4);
+        assertEquals(in.available(), 4);
+        assertEquals(in.readInteger(1), 0x02);
+        byte[] buffer = new byte[8];
+        assertEquals(in.read(buffer, 0, buffer.length), 3);
+        assertEquals(in.read(buffer, 0, buffer.length), -1);
+        try {
+            in.readInteger(1);
+            fail();
+        } catch (EOFException e) {
+            // expected
+        }
+        in.skipToTheEndOfTheBlock();
+        in.enterBlock(8);
+        in.readInteger(1);
+        in.skipToTheEndOfTheBlock();
+        assertEquals(in.readString(2), "ab");
+    }
+
+    @Test
+    public void testBitSetLittleEndian() throws Exception {
+        byte[] bytes = new byte[] {0x01, (byte) 0x80};
+        BitSet bitSet = new ByteArrayInputStream(bytes).readBitSet(16, false);
+        BitSet streamBitSet = new ByteArrayInputStream(new java.io.ByteArrayInputStream(bytes)).readBitSet(16, false);
+        assertEquals(bitSet, streamBitSet);
+        assertEquals(bitSet.nextSetBit(0), 7);
+        assertEquals(bitSet.nextSetBit(8), 8);
+    }
+
+    @Test
+    public void testSetBuffer() throws Exception {
+        ByteArrayInputStream in = new ByteArrayInputStream(new byte[0]);
+        assertEquals(in.peek(), -1);
+        in.setBuffer(BYTES, 4, 2);
+        assertEquals(in.readInteger(2), 0xFEFF);
+        assertEquals(in.peek(), -1);
+    }
+
+    @Test
+    public void testMarkReset() throws Exception {
+        ByteArrayInputStream in = new ByteArrayInputStream(BYTES);
+        assertTrue(in.markSupported());
+        in.skip(2);
+        in.mark(2);
+        assertEquals(in.readInteger(2), 0x0403);
+        in.reset();
+        assertEquals(in.readInteger(2), 0x0403);
+        assertFalse(new ByteArrayInputStream(new java.io.ByteArrayInputStream(BYTES)).markSupported());
+    }
+
+    @Test(dataProvider = "streams")
+    public void testReadStringInCharset(ByteArrayInputStream in) throws Exception {
+        in.skip(13);
+        boolean arrayBacked = in.markSupported();
+        assertEquals(in.isAscii(2), arrayBacked);
+        assertFalse(in.isAscii(100));
+        assertEquals(in.readString(2, Charset.forName("UTF-16BE")), "\u6162");
+        in.skip(1);
+        assertEquals(in.readString(2, Charset.forName("windows-1252")), "\u0005A");
+        try {
+            in.readString(1, Charset.forName("UTF-8"));
+            fail();
+        } catch (EOFException e) {
+            // expected
+        }
+        byte[] latin1 = {'c', 'a', 'f', (byte) 0xE9};
+        ByteArrayInputStream latin1Stream = new ByteArrayInputStream(latin1);
+        assertTrue(latin1Stream.isAscii(3));
+        assertFalse(latin1Stream.isAscii(4));
+        assertEquals(latin1Stream.readString(4, Charset.forName("windows-1252")), "caf\u00E9");
+    }
+
+}
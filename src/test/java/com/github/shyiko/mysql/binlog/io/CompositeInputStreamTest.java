@@ -0,0 +1,136 @@
+/*
+ * Copyright 2018 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog.io;
+
+import org.testng.annotations.Test;
+
+import java.io.EOFException;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * @author <a href="mailto:stanley.shyiko@gmail.com">Stanley Shyiko</a>
+ */
+public class CompositeInputStreamTest {
+
+    @Test
+    public void testReadAcrossChunkBoundaries() throws Exception {
+        CompositeInputStream in = new CompositeInputStream(Arrays.asList(
+            new byte[] {0, 1, 2}, new byte[0], new byte[] {3, 4}, new byte[] {5, 6, 7, 8}));
+        assertEquals(in.available(), 9);
+        assertEquals(in.read(), 0);
+        byte[] buf = new byte[4];
+        assertEquals(in.read(buf, 0, buf.length), 4);
+        assertEquals(buf, new byte[] {1, 2, 3, 4});
+        assertEquals(in.skip(2), 2);
+        assertEquals(in.available(), 2);
+        assertEquals(in.read(buf, 0, buf.length), 2);
+        assertEquals(Arrays.copyOf(buf, 2), new byte[] {7, 8});
+        assertEquals(in.read(), -1);
+        assertEquals(in.read(buf, 0, buf.length), -1);
+        assertEquals(in.skip(1), 0);
+    }
+
+    @Test
+    public void testByteArrayInputStreamOverChunks() throws Exception {
+        ByteArrayInputStream in = new ByteArrayInputStream(new CompositeInputStream(Arrays.asList(
+            new byte[] {1, 2}, new byte[] {3, 4, 5}, new byte[] {6})));
+        assertEquals(in.readInteger(3), 0x030201);
+        assertEquals(in.readLong(3), 0x060504);
+        assertEquals(in.peek(), -1);
+    }
+
+    @Test
+    public void testMarkReset() throws Exception {
+        CompositeInputStream in = new CompositeInputStream(Arrays.asList(
+            new byte[] {0, 1, 2}, new byte[0], new byte[] {3, 4}, new byte[] {5, 6, 7, 8}));
+        assertEquals(in.read(), 0);
+        in.mark(0);
+        assertEquals(in.skip(5), 5);
+        assertEquals(in.read(), 6);
+        in.reset();
+        assertEquals(in.available(), 8);
+        assertEquals(in.read(), 1);
+        ByteArrayInputStream stream = new ByteArrayInputStream(new CompositeInputStream(Arrays.asList(
+            new byte[] {1, 2}, new byte[] {3, 4, 5}, new byte[] {6})));
+        assertTrue(stream.markSupported());
+        assertEquals(stream.peek(), 1);
+        stream.mark(0);
+        assertEquals(stream.readInteger(3), 0x030201);
+        stream.reset();
+        assertEquals(stream.read(), 1);
+        stream.enterBlock(4);
+        stream.mark(0);
+        assertEquals(stream.readInteger(3), 0x040302);
+        assertEquals(stream.available(), 1);
+        stream.reset();
+        assertEquals(stream.available(), 4);
+        assertEquals(stream.skip(10), 4);
+        stream.skipToTheEndOfTheBlock();
+        assertEquals(stream.read(), 6);
+    }
+
+    @Test
+    public void testSlice() throws Exception {
+        CompositeInputStream in = new CompositeInputStream(Arrays.asList(
+            new byte[] {0, 1, 2}, new byte[0], new byte[] {3, 4}, new byte[] {5, 6, 7, 8}));
+        assertEquals(in.read(), 0);
+        CompositeInputStream slice = in.slice(5);
+        assertEquals(in.read(), 6);
+        byte[] buf = new byte[8];
+        assertEquals(slice.available(), 5);
+        assertEquals(slice.read(buf, 0, buf.length), 5);
+        assertEquals(Arrays.copyOf(buf, 5), new byte[] {1, 2, 3, 4, 5});
+        assertEquals(slice.read(), -1);
+        ByteArrayInputStream stream = new ByteArrayInputStream(new CompositeInputStream(Arrays.asList(
+            new byte[] {1, 2}, new byte[] {3, 4, 5}, new byte[] {6})));
+        stream.enterBlock(4);
+        ByteArrayInputStream body = stream.readStream(3);
+        assertEquals(stream.available(), 1);
+        assertEquals(body.readInteger(3), 0x030201);
+        assertEquals(body.available(), 0);
+    }
+
+    @Test
+    public void testUpdateChecksum() throws Exception {
+        byte[] bytes = new byte[] {0, 1, 2, 3, 4, 5, 6, 7, 8};
+        CRC32 expected = new CRC32();
+        expected.update(bytes, 1, 7);
+        CompositeInputStream in = new CompositeInputStream(Arrays.asList(
+            new byte[] {0, 1, 2}, new byte[0], new byte[] {3, 4}, new byte[] {5, 6, 7, 8}));
+        assertEquals(in.read(), 0);
+        CRC32 actual = new CRC32();
+        in.updateChecksum(actual, 7);
+        assertEquals(actual.getValue(), expected.getValue());
+        assertEquals(in.read(), 1); // nothing was consumed
+        ByteArrayInputStream stream = new ByteArrayInputStream(new CompositeInputStream(Arrays.asList(
+            new byte[] {0, 1, 2}, new byte[] {3, 4}, new byte[] {5, 6, 7, 8})));
+        assertEquals(stream.read(), 0);
+        assertEquals(stream.peek(), 1);
+        actual = new CRC32();
+        stream.updateChecksum(actual, 7);
+        assertEquals(actual.getValue(), expected.getValue());
+        assertEquals(stream.read(), 1);
+    }
+
+    @Test(expectedExceptions = EOFException.class)
+    public void testUpdateChecksumPastTheEnd() throws Exception {
+        new CompositeInputStream(Arrays.asList(new byte[] {0, 1}, new byte[] {2})).updateChecksum(new CRC32(), 4);
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2018 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog.io;
+
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * @author <a href="mailto:stanley.shyiko@gmail.com">Stanley Shyiko</a>
+ */
+public class SocketChannelInputStreamTest {
+
+    @Test
+    public void testCorrectness() throws Exception {
+        SocketChannelInputStream in = new SocketChannelInputStream(Channels.newChannel(new ByteArrayInputStream(
+            new byte[]{0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16})), 5);
+        assertEquals(in.read(), 0);
+        assertEquals(in.read(), 1);
+        byte[] buf = new byte[6];
+        assertEquals(in.read(buf, 0, buf.length), 3); // data remaining in the buffer
+        assertEquals(Arrays.copyOf(buf, 3), new byte[] {2, 3, 4});
+        assertEquals(in.read(buf, 0, buf.length), 5);
+        assertEquals(Arrays.copyOf(buf, 5), new byte[] {5, 6, 7, 8, 9});
+        assertEquals(in.read(buf, 0, 3), 3);
+        assertEquals(Arrays.copyOf(buf, 3), new byte[] {10, 11, 12});
+        assertEquals(in.available(), 2);
+        assertEquals(in.read(buf, 0, 3), 2); // data remaining in the buffer
+        assertEquals(Arrays.copyOf(buf, 2), new byte[] {13, 14});
+        assertEquals(in.read(), 15);
+        assertEquals(in.read(), 16);
+        assertEquals(in.read(), -1);
+        assertEquals(in.read(buf, 0, 3), -1);
+    }
+
+    @Test
+    public void testBufferIsReturnedToThePool() throws Exception {
+        int bufferSize = 4099; // not used anywhere else
+        ReadableByteChannel channel = Channels.newChannel(new ByteArrayInputStream(new byte[] {1, 2, 3}));
+        SocketChannelInputStream in = new SocketChannelInputStream(channel, bufferSize);
+        assertEquals(in.read(), 1);
+        in.close();
+        assertFalse(channel.isOpen());
+        assertEquals(SocketChannelInputStream.getNumberOfPooledBuffers(bufferSize), 1);
+        assertEquals(in.read(), -1);
+        in.close(); // no-op
+        assertEquals(SocketChannelInputStream.getNumberOfPooledBuffers(bufferSize), 1);
+        // released without closing the channel (e.g. upon upgrade to SSL)
+        channel = Channels.newChannel(new ByteArrayInputStream(new byte[] {1, 2, 3}));
+        in = new SocketChannelInputStream(channel, bufferSize);
+        assertEquals(SocketChannelInputStream.getNumberOfPooledBuffers(bufferSize), 0);
+        assertEquals(in.read(), 1);
+        in.release();
+        assertTrue(channel.isOpen());
+        assertEquals(SocketChannelInputStream.getNumberOfPooledBuffers(bufferSize), 1);
+        assertEquals(in.read(), -1);
+    }
+}
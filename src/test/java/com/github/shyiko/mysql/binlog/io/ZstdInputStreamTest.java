@@ -0,0 +1,128 @@
+/*
+ * Copyright 2018 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog.io;
+
+import org.testng.annotations.Test;
+
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * @author <a href="mailto:stanley.shyiko@gmail.com">Stanley Shyiko</a>
+ */
+public class ZstdInputStreamTest {
+
+    /**
+     * mysql-bin.sakila.zst is a concatenation of the following frames (produced by the reference implementation):
+     * first 300000 bytes of mysql-bin.sakila (level 19, no content size, with checksum), next 150000 bytes
+     * (level 1), skippable frame, 100000 'a's (RLE block), 20000 bytes of multiplicative hash (with checksum),
+     * 8000 bytes of xorshift64 (raw block) and an empty frame.
+     */
+    @Test
+    public void testRead() throws Exception {
+        byte[] expected = expectedContent();
+        byte[] compressed = readFully(new FileInputStream("src/test/resources/mysql-bin.sakila.zst"));
+        assertTrue(compressed.length < expected.length / 4);
+        ZstdInputStream in = new ZstdInputStream(compressed);
+        assertTrue(Arrays.equals(readFully(in), expected));
+        assertEquals(in.read(), -1);
+        // same instance, different chunk sizes
+        in.setBuffer(compressed, 0, compressed.length);
+        byte[] actual = new byte[expected.length];
+        int offset = 0;
+        for (int chunkSize = 1; offset < actual.length; chunkSize = chunkSize % 8191 + 7) {
+            int read = in.read(actual, offset, Math.min(chunkSize, actual.length - offset));
+            assertTrue(read > 0);
+            offset += read;
+        }
+        assertTrue(Arrays.equals(actual, expected));
+        assertEquals(in.read(actual, 0, 1), -1);
+    }
+
+    @Test
+    public void testSkip() throws Exception {
+        byte[] expected = expectedContent();
+        byte[] compressed = readFully(new FileInputStream("src/test/resources/mysql-bin.sakila.zst"));
+        ZstdInputStream in = new ZstdInputStream(compressed);
+        assertEquals(in.skip(449999), 449999);
+        assertEquals(in.read(), expected[449999] & 0xFF);
+        assertEquals(in.read(), 'a');
+        assertEquals(in.skip(expected.length), expected.length - 450001);
+        assertEquals(in.read(), -1);
+    }
+
+    @Test
+    public void testClear() throws Exception {
+        byte[] expected = expectedContent();
+        byte[] compressed = readFully(new FileInputStream("src/test/resources/mysql-bin.sakila.zst"));
+        ZstdInputStream in = new ZstdInputStream(compressed);
+        assertEquals(in.skip(1000), 1000);
+        in.clear(0);
+        assertEquals(in.read(), -1);
+        in.setBuffer(compressed, 0, compressed.length);
+        assertTrue(Arrays.equals(readFully(in), expected));
+    }
+
+    @Test(expectedExceptions = EOFException.class)
+    public void testTruncatedInput() throws Exception {
+        byte[] compressed = readFully(new FileInputStream("src/test/resources/mysql-bin.sakila.zst"));
+        readFully(new ZstdInputStream(compressed, 0, 50000));
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void testUnknownMagicNumber() throws Exception {
+        new ZstdInputStream(new byte[] {0x28, (byte) 0xB5, 0x2F, (byte) 0xFE, 0, 0, 0}).read();
+    }
+
+    private static byte[] expectedContent() throws IOException {
+        byte[] sakila = readFully(new GZIPInputStream(new FileInputStream("src/test/resources/mysql-bin.sakila.gz")));
+        byte[] result = new byte[578000];
+        System.arraycopy(sakila, 0, result, 0, 450000);
+        Arrays.fill(result, 450000, 550000, (byte) 'a');
+        for (int i = 0; i < 20000; i++) {
+            result[550000 + i] = (byte) ((i * 2654435761L) >> 13);
+        }
+        long x = 88172645463325252L;
+        for (int i = 0; i < 8000; i++) {
+            x ^= x << 13;
+            x ^= x >>> 7;
+            x ^= x << 17;
+            result[570000 + i] = (byte) x;
+        }
+        return result;
+    }
+
+    private static byte[] readFully(InputStream inputStream) throws IOException {
+        try {
+            java.io.ByteArrayOutputStream result = new java.io.ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                result.write(buffer, 0, read);
+            }
+            return result.toByteArray();
+        } finally {
+            inputStream.close();
+        }
+    }
+}
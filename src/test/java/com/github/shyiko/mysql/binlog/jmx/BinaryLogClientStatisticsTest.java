@@ -18,6 +18,7 @@ package com.github.shyiko.mysql.binlog.jmx;
 import com.github.shyiko.mysql.binlog.event.Event;
 import com.github.shyiko.mysql.binlog.event.EventHeaderV4;
 import com.github.shyiko.mysql.binlog.event.EventType;
+import com.github.shyiko.mysql.binlog.event.deserialization.EventChecksumMismatchException;
 import org.testng.annotations.Test;
 
 import java.util.Arrays;
@@ -79,6 +80,18 @@ public class BinaryLogClientStatisticsTest {
         assertEquals(statistics.getNumberOfSkippedEvents(), 1L);
     }
 
+    @Test
+    public void testOnEventChecksumMismatch() throws Exception {
+        BinaryLogClientStatistics statistics = new BinaryLogClientStatistics();
+        statistics.onEvent(generateEvent(1L, EventType.FORMAT_DESCRIPTION, 1, 104));
+        statistics.onEventDeserializationFailure(null, new EventChecksumMismatchException(null, 1, 2));
+        assertEquals(statistics.getTotalNumberOfEventsSeen(), 1L);
+        assertEquals(statistics.getNumberOfSkippedEvents(), 0L);
+        assertEquals(statistics.getNumberOfChecksumMismatches(), 1L);
+        statistics.reset();
+        assertEquals(statistics.getNumberOfChecksumMismatches(), 0L);
+    }
+
     @Test
     public void testOnDisconnect() throws Exception {
         BinaryLogClientStatistics statistics = new BinaryLogClientStatistics();
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2018 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog.network.protocol;
+
+import com.github.shyiko.mysql.binlog.io.ByteArrayInputStream;
+import com.github.shyiko.mysql.binlog.io.ZstdInputStream;
+import com.github.shyiko.mysql.binlog.network.CompressionAlgorithm;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * @author <a href="mailto:stanley.shyiko@gmail.com">Stanley Shyiko</a>
+ */
+public class CompressedPacketInputStreamTest {
+
+    @Test
+    public void testZlib() throws Exception {
+        Random random = new Random(42);
+        ByteArrayOutputStream packets = new ByteArrayOutputStream();
+        for (int i = 0; i < 500; i++) {
+            int length = random.nextInt(i % 50 == 0 ? 70000 : 300);
+            writeInteger(packets, length, 3);
+            packets.write(i & 0xFF);
+            for (int j = 0; j < length; j++) {
+                packets.write(j % 7 == 0 ? random.nextInt(256) : i);
+            }
+        }
+        byte[] uncompressed = packets.toByteArray();
+        // packets are spread across compressed packets of random length (some of which are stored as is)
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Deflater deflater = new Deflater();
+        for (int offset = 0, seq = 0; offset < uncompressed.length; seq++) {
+            int length = Math.min(1 + random.nextInt(seq % 10 == 0 ? 100000 : 1000), uncompressed.length - offset);
+            if (seq % 3 == 0) {
+                writeCompressedPacket(out, Arrays.copyOfRange(uncompressed, offset, offset + length), seq, 0);
+            } else {
+                deflater.reset();
+                deflater.setInput(uncompressed, offset, length);
+                deflater.finish();
+                ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+                byte[] chunk = new byte[4096];
+                while (!deflater.finished()) {
+                    compressed.write(chunk, 0, deflater.deflate(chunk));
+                }
+                writeCompressedPacket(out, compressed.toByteArray(), seq, length);
+            }
+            offset += length;
+        }
+        ByteArrayInputStream in = new ByteArrayInputStream(new CompressedPacketInputStream(
+            new java.io.ByteArrayInputStream(out.toByteArray()), CompressionAlgorithm.ZLIB));
+        for (int i = 0, offset = 0; i < 500; i++) {
+            int length = in.readInteger(3);
+            assertEquals(in.read(), i & 0xFF);
+            offset += 4;
+            assertTrue(Arrays.equals(in.read(length), Arrays.copyOfRange(uncompressed, offset, offset + length)));
+            offset += length;
+        }
+        assertEquals(in.peek(), -1);
+        in = new ByteArrayInputStream(new CompressedPacketInputStream(
+            new java.io.ByteArrayInputStream(out.toByteArray()), CompressionAlgorithm.ZLIB));
+        assertTrue(Arrays.equals(in.read(uncompressed.length), uncompressed));
+        assertEquals(in.peek(), -1);
+    }
+
+    @Test
+    public void testZstd() throws Exception {
+        byte[] frame = readFully(new FileInputStream("src/test/resources/mysql-bin.sakila.payload.zst"));
+        byte[] expected = readFully(new ZstdInputStream(frame));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeCompressedPacket(out, frame, 0, expected.length);
+        writeCompressedPacket(out, new byte[] {1, 2, 3}, 1, 0);
+        writeCompressedPacket(out, frame, 2, expected.length);
+        CompressedPacketInputStream in = new CompressedPacketInputStream(
+            new java.io.ByteArrayInputStream(out.toByteArray()), CompressionAlgorithm.ZSTD);
+        byte[] actual = readFully(in);
+        assertEquals(actual.length, expected.length * 2 + 3);
+        assertTrue(Arrays.equals(Arrays.copyOfRange(actual, 0, expected.length), expected));
+        assertTrue(Arrays.equals(Arrays.copyOfRange(actual, expected.length, expected.length + 3),
+            new byte[] {1, 2, 3}));
+        assertTrue(Arrays.equals(Arrays.copyOfRange(actual, expected.length + 3, actual.length), expected));
+    }
+
+    @Test(expectedExceptions = EOFException.class)
+    public void testTruncatedPacket() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeCompressedPacket(out, new byte[] {1, 2, 3}, 0, 0);
+        byte[] bytes = out.toByteArray();
+        readFully(new CompressedPacketInputStream(new java.io.ByteArrayInputStream(bytes, 0, bytes.length - 1),
+            CompressionAlgorithm.ZLIB));
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void testReadAfterClose() throws Exception {
+        CompressedPacketInputStream in = new CompressedPacketInputStream(
+            new java.io.ByteArrayInputStream(new byte[0]), CompressionAlgorithm.ZLIB);
+        in.close();
+        in.read();
+    }
+
+    private static void writeCompressedPacket(ByteArrayOutputStream out, byte[] payload, int seq,
+            int uncompressedLength) throws IOException {
+        writeInteger(out, payload.length, 3);
+        out.write(seq);
+        writeInteger(out, uncompressedLength, 3);
+        out.write(payload);
+    }
+
+    private static void writeInteger(ByteArrayOutputStream out, int value, int length) {
+        for (int i = 0; i < length; i++) {
+            out.write((value >>> (i << 3)) & 0xFF);
+        }
+    }
+
+    private static byte[] readFully(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        for (int read; (read = inputStream.read(buffer)) != -1;) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2018 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog.network.protocol;
+
+import com.github.shyiko.mysql.binlog.io.ByteArrayInputStream;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+
+/**
+ * @author <a href="mailto:stanley.shyiko@gmail.com">Stanley Shyiko</a>
+ */
+public class PacketRingBufferTest {
+
+    @DataProvider
+    public Object[][] waitStrategies() {
+        PacketRingBuffer.WaitStrategy[] values = PacketRingBuffer.WaitStrategy.values();
+        Object[][] result = new Object[values.length][];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = new Object[] {values[i]};
+        }
+        return result;
+    }
+
+    @Test(dataProvider = "waitStrategies", timeOut = 10000)
+    public void testPacketsAreDeliveredInOrder(PacketRingBuffer.WaitStrategy waitStrategy) throws Exception {
+        final int numberOfPackets = 1000;
+        final ByteArrayInputStream in = new ByteArrayInputStream(packets(numberOfPackets));
+        final PacketRingBuffer ringBuffer = new PacketRingBuffer(3, waitStrategy);
+        assertEquals(ringBuffer.getCapacity(), 4);
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Exception failure = null;
+                try {
+                    PacketBuffer packet;
+                    while (in.peek() != -1 && (packet = ringBuffer.claim()) != null) {
+                        packet.readFrom(in);
+                        ringBuffer.publish();
+                    }
+                } catch (Exception e) {
+                    failure = e;
+                } finally {
+                    ringBuffer.complete(failure);
+                }
+            }
+        });
+        producer.start();
+        int i = 0;
+        for (PacketBuffer packet; (packet = ringBuffer.take()) != null; ringBuffer.release(), i++) {
+            assertEquals(packet.getLength(), 4);
+            assertEquals(packet.getInputStream().readInteger(4), i);
+        }
+        producer.join();
+        assertNull(ringBuffer.getFailure());
+        assertEquals(i, numberOfPackets);
+        assertEquals(ringBuffer.size(), 0);
+    }
+
+    @Test(timeOut = 10000)
+    public void testProducerFailureIsPropagated() throws Exception {
+        PacketRingBuffer ringBuffer = new PacketRingBuffer(1, PacketRingBuffer.WaitStrategy.BLOCKING);
+        ringBuffer.claim().readFrom(new ByteArrayInputStream(packets(1)));
+        ringBuffer.publish();
+        ringBuffer.complete(new IOException("connection reset"));
+        assertNotNull(ringBuffer.take());
+        assertEquals(ringBuffer.size(), 1);
+        ringBuffer.release();
+        assertNull(ringBuffer.take());
+        assertEquals(ringBuffer.getFailure().getMessage(), "connection reset");
+    }
+
+    @Test(timeOut = 10000)
+    public void testCloseUnblocksProducer() throws Exception {
+        final PacketRingBuffer ringBuffer = new PacketRingBuffer(1, PacketRingBuffer.WaitStrategy.BLOCKING);
+        ringBuffer.claim();
+        ringBuffer.publish();
+        Thread closer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                ringBuffer.close();
+            }
+        });
+        closer.start();
+        assertNull(ringBuffer.claim());
+        closer.join();
+    }
+
+    private static byte[] packets(int numberOfPackets) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < numberOfPackets; i++) {
+            out.write(new byte[] {4, 0, 0, (byte) i}, 0, 4); // length + sequence
+            out.write(new byte[] {(byte) i, (byte) (i >>> 8), (byte) (i >>> 16), (byte) (i >>> 24)}, 0, 4);
+        }
+        return out.toByteArray();
+    }
+
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright 2018 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog.parallel;
+
+import com.github.shyiko.mysql.binlog.event.Event;
+import com.github.shyiko.mysql.binlog.event.EventData;
+import com.github.shyiko.mysql.binlog.event.EventHeaderV4;
+import com.github.shyiko.mysql.binlog.event.EventType;
+import com.github.shyiko.mysql.binlog.event.GtidEventData;
+import com.github.shyiko.mysql.binlog.event.QueryEventData;
+import com.github.shyiko.mysql.binlog.event.XidEventData;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+/**
+ * @author <a href="mailto:stanley.shyiko@gmail.com">Stanley Shyiko</a>
+ */
+public class TransactionSchedulerTest {
+
+    private static final String UUID = "24bc7850-2c16-11e6-a073-0242ac110002";
+
+    private ExecutorService executor;
+
+    @BeforeMethod
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test(timeOut = 10000)
+    public void testIndependentTransactionsAreAppliedConcurrently() throws Exception {
+        final CountDownLatch started = new CountDownLatch(3);
+        final List<Long> committed = Collections.synchronizedList(new ArrayList<Long>());
+        TransactionScheduler scheduler = new TransactionScheduler(executor, new TransactionScheduler.Handler() {
+
+            @Override
+            public void handle(Transaction transaction) throws Exception {
+                started.countDown();
+                // would never return unless all 3 are in flight at the same time
+                started.await();
+                // make the first one finish last
+                if (transaction.getSequenceNumber() == 1) {
+                    Thread.sleep(100);
+                }
+            }
+        });
+        scheduler.registerCommitListener(new TransactionScheduler.CommitListener() {
+
+            @Override
+            public void onCommit(Transaction transaction) {
+                committed.add(transaction.getSequenceNumber());
+            }
+        });
+        scheduler.onEvent(event(EventType.ROTATE, null));
+        transaction(scheduler, 1, 0, 1);
+        transaction(scheduler, 2, 0, 2);
+        transaction(scheduler, 3, 0, 3);
+        scheduler.flush();
+        assertEquals(committed, Arrays.asList(1L, 2L, 3L));
+    }
+
+    @Test(timeOut = 10000)
+    public void testDependentTransactionWaitsForItsDependency() throws Exception {
+        final List<String> log = Collections.synchronizedList(new ArrayList<String>());
+        TransactionScheduler scheduler = new TransactionScheduler(executor, new TransactionScheduler.Handler() {
+
+            @Override
+            public void handle(Transaction transaction) throws Exception {
+                long sequenceNumber = transaction.getSequenceNumber();
+                log.add("start " + sequenceNumber);
+                if (sequenceNumber == 1) {
+                    Thread.sleep(100);
+                }
+                log.add("end " + sequenceNumber);
+            }
+        });
+        scheduler.onEvent(event(EventType.ROTATE, null));
+        transaction(scheduler, 1, 0, 1);
+        transaction(scheduler, 2, 1, 2); // last_committed = 1
+        scheduler.flush();
+        assertEquals(log, Arrays.asList("start 1", "end 1", "start 2", "end 2"));
+    }
+
+    @Test(timeOut = 10000)
+    public void testTransactionsWithoutLogicalClockAreAppliedSequentially() throws Exception {
+        final List<String> log = Collections.synchronizedList(new ArrayList<String>());
+        TransactionScheduler scheduler = new TransactionScheduler(executor, new TransactionScheduler.Handler() {
+
+            @Override
+            public void handle(Transaction transaction) throws Exception {
+                String gtid = transaction.getGtid().getGtid();
+                log.add("start " + gtid);
+                Thread.sleep(20);
+                log.add("end " + gtid);
+            }
+        });
+        transaction(scheduler, 1, 0, 0);
+        transaction(scheduler, 2, 0, 0);
+        scheduler.flush();
+        assertEquals(log, Arrays.asList("start " + UUID + ":1", "end " + UUID + ":1",
+            "start " + UUID + ":2", "end " + UUID + ":2"));
+    }
+
+    @Test(timeOut = 10000)
+    public void testGrouping() throws Exception {
+        final List<Transaction> transactions = Collections.synchronizedList(new ArrayList<Transaction>());
+        TransactionScheduler scheduler = new TransactionScheduler(executor, new TransactionScheduler.Handler() {
+
+            @Override
+            public void handle(Transaction transaction) throws Exception {
+                transactions.add(transaction);
+            }
+        });
+        scheduler.onEvent(event(EventType.GTID, gtid(1, 0, 1)));
+        scheduler.onEvent(event(EventType.QUERY, query("CREATE TABLE t (id int)")));
+        transaction(scheduler, 2, 1, 2);
+        scheduler.flush();
+        assertEquals(transactions.size(), 2);
+        assertEquals(transactions.get(0).getEvents().size(), 2);
+        assertEquals(transactions.get(1).getEvents().size(), 4);
+    }
+
+    @Test(timeOut = 10000)
+    public void testXATransaction() throws Exception {
+        final List<Transaction> transactions = Collections.synchronizedList(new ArrayList<Transaction>());
+        TransactionScheduler scheduler = new TransactionScheduler(executor, new TransactionScheduler.Handler() {
+
+            @Override
+            public void handle(Transaction transaction) throws Exception {
+                transactions.add(transaction);
+            }
+        });
+        scheduler.onEvent(event(EventType.GTID, gtid(1, 0, 1)));
+        scheduler.onEvent(event(EventType.QUERY, query("XA START X'78',X'',1")));
+        scheduler.onEvent(event(EventType.TABLE_MAP, null));
+        scheduler.onEvent(event(EventType.EXT_WRITE_ROWS, null));
+        scheduler.onEvent(event(EventType.QUERY, query("XA END X'78',X'',1")));
+        scheduler.onEvent(event(EventType.XA_PREPARE, null));
+        scheduler.onEvent(event(EventType.GTID, gtid(2, 1, 2)));
+        scheduler.onEvent(event(EventType.QUERY, query("XA COMMIT X'78',X'',1")));
+        scheduler.flush();
+        assertEquals(transactions.size(), 2);
+        assertEquals(transactions.get(0).getEvents().size(), 6);
+        assertEquals(transactions.get(1).getEvents().size(), 2);
+    }
+
+    @Test(timeOut = 10000)
+    public void testFailure() throws Exception {
+        TransactionScheduler scheduler = new TransactionScheduler(executor, new TransactionScheduler.Handler() {
+
+            @Override
+            public void handle(Transaction transaction) throws Exception {
+                throw new UnsupportedOperationException();
+            }
+        });
+        transaction(scheduler, 1, 0, 1);
+        try {
+            scheduler.flush();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof UnsupportedOperationException);
+        }
+        try {
+            transaction(scheduler, 2, 0, 2);
+            fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    private static void transaction(TransactionScheduler scheduler, long gno, long lastCommitted,
+                                    long sequenceNumber) {
+        scheduler.onEvent(event(EventType.GTID, gtid(gno, lastCommitted, sequenceNumber)));
+        scheduler.onEvent(event(EventType.QUERY, query("BEGIN")));
+        scheduler.onEvent(event(EventType.EXT_WRITE_ROWS, null));
+        scheduler.onEvent(event(EventType.XID, new XidEventData()));
+    }
+
+    private static GtidEventData gtid(long gno, long lastCommitted, long sequenceNumber) {
+        GtidEventData eventData = new GtidEventData();
+        eventData.setGtid(UUID + ":" + gno);
+        eventData.setLastCommitted(lastCommitted);
+        eventData.setSequenceNumber(sequenceNumber);
+        return eventData;
+    }
+
+    private static QueryEventData query(String sql) {
+        QueryEventData eventData = new QueryEventData();
+        eventData.setSql(sql);
+        return eventData;
+    }
+
+    private static Event event(EventType eventType, EventData data) {
+        EventHeaderV4 header = new EventHeaderV4();
+        header.setEventType(eventType);
+        return new Event(header, data);
+    }
+
+}
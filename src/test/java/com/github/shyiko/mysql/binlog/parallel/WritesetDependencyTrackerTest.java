@@ -0,0 +1,207 @@
+/*
+ * Copyright 2018 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog.parallel;
+
+import com.github.shyiko.mysql.binlog.event.Event;
+import com.github.shyiko.mysql.binlog.event.EventData;
+import com.github.shyiko.mysql.binlog.event.EventHeaderV4;
+import com.github.shyiko.mysql.binlog.event.EventType;
+import com.github.shyiko.mysql.binlog.event.QueryEventData;
+import com.github.shyiko.mysql.binlog.event.TableMapEventData;
+import com.github.shyiko.mysql.binlog.event.TableMapEventMetadata;
+import com.github.shyiko.mysql.binlog.event.UpdateRowsEventData;
+import com.github.shyiko.mysql.binlog.event.WriteRowsEventData;
+import com.github.shyiko.mysql.binlog.event.XidEventData;
+import com.github.shyiko.mysql.binlog.event.deserialization.ColumnType;
+import org.testng.annotations.Test;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * @author <a href="mailto:stanley.shyiko@gmail.com">Stanley Shyiko</a>
+ */
+public class WritesetDependencyTrackerTest {
+
+    private static final int UTF8MB4_0900_AI_CI = 255;
+
+    @Test
+    public void testGetDependency() throws Exception {
+        WritesetDependencyTracker tracker = new WritesetDependencyTracker();
+        assertEquals(tracker.getDependency(insert("t", 1, "a"), 1), 0);
+        assertEquals(tracker.getDependency(insert("t", 2, "b"), 2), 0);
+        assertEquals(tracker.getDependency(insert("t2", 1, "a"), 3), 0); // different table
+        assertEquals(tracker.getDependency(update("t", 1, 3), 4), 1);
+        assertEquals(tracker.getDependency(insert("t", 3, "c"), 5), 4); // row 3 was touched by 4 (update)
+        assertEquals(tracker.getDependency(insert("t", 4, "d"), 6), 0);
+        assertEquals(tracker.getDependency(insert("t", 2, "e"), 7), 2);
+        assertEquals(tracker.getDependency(ddl(), 8), 7); // untrackable
+        assertEquals(tracker.getDependency(insert("t", 5, "f"), 9), 8);
+        assertEquals(tracker.getDependency(insert(table("t3", null), 1, "a"), 10), 9); // no PK metadata
+        assertEquals(tracker.getDependency(insert("t", 6, "g"), 11), 10);
+    }
+
+    @Test
+    public void testRowTouchedMoreThanOnce() throws Exception {
+        WritesetDependencyTracker tracker = new WritesetDependencyTracker();
+        assertEquals(tracker.getDependency(insert("t", 1, "a"), 1), 0);
+        assertEquals(tracker.getDependency(insert("t", 2, "b"), 2), 0);
+        assertEquals(tracker.getDependency(update("t", 2, 2), 3), 2); // PK is kept intact
+        assertEquals(tracker.getDependency(update("t", 1, 1), 4), 1);
+        // same row inserted and then updated within the same transaction
+        TableMapEventData tableMapEventData = table("t", primaryKey());
+        Transaction transaction = transaction(event(EventType.TABLE_MAP, tableMapEventData),
+            writeRows(tableMapEventData, 3, "c"), updateRows(tableMapEventData, 3, 3));
+        assertEquals(tracker.getDependency(transaction, 5), 0);
+        assertEquals(tracker.getDependency(update("t", 3, 3), 6), 5);
+    }
+
+    @Test
+    public void testCompositeKeyWithPrefix() throws Exception {
+        WritesetDependencyTracker tracker = new WritesetDependencyTracker();
+        TableMapEventMetadata metadata = new TableMapEventMetadata();
+        metadata.setSimplePrimaryKeys(Collections.singletonList(0));
+        metadata.setPrimaryKeysWithPrefix(Collections.singletonMap(1, 3));
+        metadata.setColumnCharsets(Collections.singletonList(UTF8MB4_0900_AI_CI));
+        TableMapEventData tableMapEventData = table("t", metadata);
+        assertEquals(tracker.getDependency(insert(tableMapEventData, 1, "abcd"), 1), 0);
+        assertEquals(tracker.getDependency(insert(tableMapEventData, 1, "abce"), 2), 1); // same prefix
+        assertEquals(tracker.getDependency(insert(tableMapEventData, 1, "ABC "), 3), 2); // case/pad insensitive
+        assertEquals(tracker.getDependency(insert(tableMapEventData, 1, "abd"), 4), 0);
+        assertEquals(tracker.getDependency(insert(tableMapEventData, 2, "abc"), 5), 0);
+    }
+
+    @Test
+    public void testStringKey() throws Exception {
+        WritesetDependencyTracker tracker = new WritesetDependencyTracker();
+        TableMapEventData binary = table("t", primaryKey(1, 63));
+        assertEquals(tracker.getDependency(insert(binary, 1, "abc"), 1), 0);
+        assertEquals(tracker.getDependency(insert(binary, 1, "ABC"), 2), 0); // compared byte-wise
+        assertEquals(tracker.getDependency(insert(binary, 1, "abc "), 3), 0);
+        assertEquals(tracker.getDependency(insert(binary, 1, "abc"), 4), 1);
+        TableMapEventData text = table("t2", primaryKey(1, UTF8MB4_0900_AI_CI));
+        assertEquals(tracker.getDependency(insert(text, 1, "abc"), 5), 0);
+        assertEquals(tracker.getDependency(insert(text, 1, "ABC "), 6), 5);
+        // '\u00e9' and '\u00c9' are equal under accent/case-insensitive collation but hash differently
+        assertEquals(tracker.getDependency(insert(text, 1, "\u00e9"), 7), 6); // untrackable
+        assertEquals(tracker.getDependency(insert(text, 1, "d"), 8), 7);
+        TableMapEventData unknown = table("t3", primaryKey(1, 0)); // no charset information
+        assertEquals(tracker.getDependency(insert(unknown, 1, "abc"), 9), 8);
+    }
+
+    @Test
+    public void testHistoryOverflow() throws Exception {
+        WritesetDependencyTracker tracker = new WritesetDependencyTracker(2);
+        assertEquals(tracker.getDependency(insert("t", 1, "a"), 1), 0);
+        assertEquals(tracker.getDependency(insert("t", 2, "a"), 2), 0);
+        assertEquals(tracker.getDependency(insert("t", 3, "a"), 3), 2);
+        assertEquals(tracker.getDependency(insert("t", 4, "a"), 4), 2);
+    }
+
+    private static Transaction insert(String table, int id, String value) {
+        return insert(table(table, primaryKey()), id, value);
+    }
+
+    private static Transaction insert(TableMapEventData tableMapEventData, int id, String value) {
+        return transaction(event(EventType.TABLE_MAP, tableMapEventData), writeRows(tableMapEventData, id, value));
+    }
+
+    private static Transaction update(String table, int id, int newId) {
+        TableMapEventData tableMapEventData = table(table, primaryKey());
+        return transaction(event(EventType.TABLE_MAP, tableMapEventData), updateRows(tableMapEventData, id, newId));
+    }
+
+    private static Event writeRows(TableMapEventData tableMapEventData, int id, String value) {
+        WriteRowsEventData eventData = new WriteRowsEventData();
+        eventData.setTableId(tableMapEventData.getTableId());
+        eventData.setIncludedColumns(columns(2));
+        eventData.setRows(Collections.<Serializable[]>singletonList(new Serializable[] {id, value}));
+        return event(EventType.EXT_WRITE_ROWS, eventData);
+    }
+
+    private static Event updateRows(TableMapEventData tableMapEventData, int id, int newId) {
+        UpdateRowsEventData eventData = new UpdateRowsEventData();
+        eventData.setTableId(tableMapEventData.getTableId());
+        eventData.setIncludedColumnsBeforeUpdate(columns(2));
+        eventData.setIncludedColumns(columns(2));
+        eventData.setRows(Collections.<Map.Entry<Serializable[], Serializable[]>>singletonList(
+            new AbstractMap.SimpleEntry<Serializable[], Serializable[]>(new Serializable[] {id, "x"},
+                new Serializable[] {newId, "x"})));
+        return event(EventType.EXT_UPDATE_ROWS, eventData);
+    }
+
+    private static TableMapEventMetadata primaryKey() {
+        return primaryKey(0, UTF8MB4_0900_AI_CI);
+    }
+
+    private static TableMapEventMetadata primaryKey(int column, int collation) {
+        TableMapEventMetadata metadata = new TableMapEventMetadata();
+        metadata.setSimplePrimaryKeys(Collections.singletonList(column));
+        metadata.setColumnCharsets(Collections.singletonList(collation));
+        return metadata;
+    }
+
+    private static Transaction ddl() {
+        Transaction transaction = new Transaction(null);
+        QueryEventData eventData = new QueryEventData();
+        eventData.setSql("ALTER TABLE t ADD COLUMN c int");
+        transaction.add(event(EventType.QUERY, eventData));
+        return transaction;
+    }
+
+    private static Transaction transaction(Event... events) {
+        Transaction transaction = new Transaction(null);
+        QueryEventData begin = new QueryEventData();
+        begin.setSql("BEGIN");
+        transaction.add(event(EventType.QUERY, begin));
+        for (Event event : Arrays.asList(events)) {
+            transaction.add(event);
+        }
+        transaction.add(event(EventType.XID, new XidEventData()));
+        return transaction;
+    }
+
+    private static TableMapEventData table(String table, TableMapEventMetadata metadata) {
+        TableMapEventData eventData = new TableMapEventData();
+        eventData.setTableId(table.hashCode());
+        eventData.setDatabase("db");
+        eventData.setTable(table);
+        // (id INT, value VARCHAR(255))
+        eventData.setColumnTypes(new byte[] {(byte) ColumnType.LONG.getCode(), (byte) ColumnType.VARCHAR.getCode()});
+        eventData.setColumnMetadata(new int[] {0, 255});
+        eventData.setEventMetadata(metadata);
+        return eventData;
+    }
+
+    private static BitSet columns(int numberOfColumns) {
+        BitSet result = new BitSet();
+        result.set(0, numberOfColumns);
+        return result;
+    }
+
+    private static Event event(EventType eventType, EventData data) {
+        EventHeaderV4 header = new EventHeaderV4();
+        header.setEventType(eventType);
+        return new Event(header, data);
+    }
+
+}